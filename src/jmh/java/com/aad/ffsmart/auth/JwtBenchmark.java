@@ -0,0 +1,79 @@
+package com.aad.ffsmart.auth;
+
+import com.aad.ffsmart.user.Role;
+import com.aad.ffsmart.user.User;
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JWT benchmarks
+ * <p>
+ * Token generation, full signature verification and the cached verification used by AuthenticationManager
+ *
+ * @author Oliver Wortley
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtBenchmark {
+
+    private JWTUtil jwtUtil;
+
+    private AuthenticationManager authenticationManager;
+
+    private User user;
+
+    private String token;
+
+    private Authentication authentication;
+
+    @Setup
+    public void setup() {
+        byte[] secret = new byte[64];
+        new SecureRandom().nextBytes(secret);
+
+        jwtUtil = new JWTUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", Base64.getEncoder().encodeToString(secret));
+        ReflectionTestUtils.setField(jwtUtil, "validity", TimeUnit.HOURS.toMillis(1));
+        ReflectionTestUtils.invokeMethod(jwtUtil, "init");
+
+        authenticationManager = new AuthenticationManager(jwtUtil, 10000);
+        user = new User("63f0c0ffee0000000000beef", "chef@ffsmart.com", null, "Head", "Chef", Role.ROLE_HEAD_CHEF, null);
+        token = jwtUtil.generateToken(user);
+        authentication = new UsernamePasswordAuthenticationToken(token, token);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtUtil.generateToken(user);
+    }
+
+    @Benchmark
+    public Claims verifyToken() {
+        return jwtUtil.getAllClaimsFromToken(token);
+    }
+
+    @Benchmark
+    public Authentication authenticateCached() {
+        return authenticationManager.authenticate(authentication).block();
+    }
+}
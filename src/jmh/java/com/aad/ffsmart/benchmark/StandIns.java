@@ -0,0 +1,78 @@
+package com.aad.ffsmart.benchmark;
+
+import com.aad.ffsmart.forecast.DemandForecaster;
+import com.aad.ffsmart.inventory.InventoryDailyStats;
+import com.aad.ffsmart.inventory.InventoryDailyStatsRepository;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.ReflectionUtils;
+import reactor.core.publisher.Flux;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Benchmark stand-ins
+ * <p>
+ * Builds in-memory implementations of repository/service interfaces from a map of method name -> handler,
+ * so service pipelines can be measured without Mongo (or mocking framework overhead)
+ * Calling a method without a handler throws UnsupportedOperationException
+ * requireWired fails setup when a required @Autowired field of a hand-wired service was left null,
+ * so a collaborator added to a service breaks its benchmark at setup rather than partway through a run
+ * demandForecaster builds the real forecaster, seeded from in-memory daily stats, for services which record or forecast demand
+ *
+ * @author Oliver Wortley
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class StandIns {
+
+    @SuppressWarnings("unchecked")
+    public static <T> T of(Class<T> type, Map<String, Function<Object[], Object>> handlers) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> type.getSimpleName() + " stand-in";
+                };
+            }
+            Function<Object[], Object> handler = handlers.get(method.getName());
+            if (handler == null) {
+                throw new UnsupportedOperationException(type.getSimpleName() + "." + method.getName());
+            }
+            return handler.apply(args);
+        });
+    }
+
+    public static void requireWired(Object... targets) {
+        for (Object target : targets) {
+            List<String> missing = new ArrayList<>();
+            ReflectionUtils.doWithFields(target.getClass(), field -> {
+                Autowired autowired = field.getAnnotation(Autowired.class);
+                if (autowired != null && autowired.required()) {
+                    ReflectionUtils.makeAccessible(field);
+                    if (field.get(target) == null) {
+                        missing.add(field.getName());
+                    }
+                }
+            });
+            if (!missing.isEmpty()) {
+                throw new IllegalStateException(target.getClass().getSimpleName() + " is missing " + missing);
+            }
+        }
+    }
+
+    public static DemandForecaster demandForecaster(List<InventoryDailyStats> history) {
+        DemandForecaster demandForecaster = new DemandForecaster();
+        ReflectionTestUtils.setField(demandForecaster, "inventoryDailyStatsRepository", of(InventoryDailyStatsRepository.class, Map.of(
+                "findByDayRange", args -> Flux.fromIterable(history))));
+        demandForecaster.ready().block();
+        return demandForecaster;
+    }
+}
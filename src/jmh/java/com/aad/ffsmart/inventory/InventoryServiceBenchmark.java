@@ -0,0 +1,136 @@
+package com.aad.ffsmart.inventory;
+
+import com.aad.ffsmart.benchmark.StandIns;
+import com.aad.ffsmart.forecast.DemandForecaster;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * Inventory service benchmarks
+ * <p>
+ * Runs the add/remove inventory pipelines (inventory upserts, supplier stock projection, change log, daily stats, expiry index) against
+ * in-memory repository stand-ins, so only the service-side cost is measured
+ *
+ * @author Oliver Wortley
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InventoryServiceBenchmark {
+
+    @Param({"1", "20", "200"})
+    private int batchSize;
+
+    private final Map<String, Integer> inventory = new ConcurrentHashMap<>();
+
+    private final Map<String, Integer> supplierStock = new ConcurrentHashMap<>();
+
+    private final Map<String, Integer> dailyStats = new ConcurrentHashMap<>();
+
+    private final AtomicLong changeIds = new AtomicLong();
+
+    private InventoryServiceImpl inventoryService;
+
+    private List<InventoryItem> items;
+
+    @Setup
+    public void setup() {
+        Date expiryDate = new Date();
+        items = IntStream.range(0, batchSize)
+                .mapToObj(i -> new InventoryItem("item" + i, "Item " + i, "supplier" + (i % 5), "Supplier " + (i % 5), 1, expiryDate))
+                .toList();
+        // removals never run the stand-in inventory dry
+        items.forEach(item -> inventory.put(key(item), Integer.MAX_VALUE / 2));
+
+        inventoryService = new InventoryServiceImpl();
+        ReflectionTestUtils.setField(inventoryService, "inventoryRepository", StandIns.of(InventoryRepository.class, Map.of(
+                "addQuantities", args -> addQuantities(args[0]),
+                "removeQuantities", args -> removeQuantities(args[0]))));
+        ReflectionTestUtils.setField(inventoryService, "supplierStockRepository", StandIns.of(SupplierStockRepository.class, Map.of(
+                "applyChanges", this::applyChanges)));
+        ReflectionTestUtils.setField(inventoryService, "inventoryChangeRepository", StandIns.of(InventoryChangeRepository.class, Map.<String, Function<Object[], Object>>of(
+                "save", args -> {
+                    InventoryChange change = (InventoryChange) args[0];
+                    change.setId(Long.toString(changeIds.incrementAndGet()));
+                    return Mono.just(change);
+                })));
+        ReflectionTestUtils.setField(inventoryService, "inventoryDailyStatsRepository", StandIns.of(InventoryDailyStatsRepository.class, Map.of(
+                "applyChange", this::applyChange)));
+        DemandForecaster demandForecaster = StandIns.demandForecaster(List.of());
+        ReflectionTestUtils.setField(inventoryService, "demandForecaster", demandForecaster);
+        ExpiryIndex expiryIndex = new ExpiryIndex();
+        ReflectionTestUtils.setField(expiryIndex, "jobScheduler", Schedulers.parallel());
+        ReflectionTestUtils.setField(inventoryService, "expiryIndex", expiryIndex);
+        ReflectionTestUtils.setField(inventoryService, "inventoryFeed", new InventoryFeed()); // not used by add/remove
+        StandIns.requireWired(inventoryService, demandForecaster);
+    }
+
+    @Benchmark
+    public InventoryChange addInventory() {
+        return inventoryService.addInventory(items, "user").block();
+    }
+
+    @Benchmark
+    public InventoryChange removeInventory() {
+        return inventoryService.removeInventory(items, "user").block();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Mono<Void> addQuantities(Object arg) {
+        return Mono.fromRunnable(() -> ((List<InventoryItem>) arg)
+                .forEach(item -> inventory.merge(key(item), item.getQuantity(), Integer::sum)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Mono<List<InventoryItem>> removeQuantities(Object arg) {
+        List<InventoryItem> items = (List<InventoryItem>) arg;
+        return Mono.fromCallable(() -> items.stream().allMatch(item -> inventory.containsKey(key(item))))
+                .filter(exist -> exist)
+                .map(exist -> {
+                    items.forEach(item -> inventory.computeIfPresent(key(item), (key, quantity) -> quantity - item.getQuantity()));
+                    return items;
+                });
+    }
+
+    @SuppressWarnings("unchecked")
+    private Mono<Void> applyChanges(Object[] args) {
+        return Mono.fromRunnable(() -> ((List<SupplierStock>) args[0])
+                .forEach(change -> supplierStock.merge(change.getId(), change.getQuantity(), Integer::sum)));
+    }
+
+    // added/removed counter per item per day, as InventoryDailyStatsRepositoryCustomImpl.applyChange keeps them
+    private Mono<Void> applyChange(Object[] args) {
+        InventoryChange change = (InventoryChange) args[0];
+        Date day = InventoryDailyStats.dayOf(change.getDate());
+        return Mono.fromRunnable(() -> change.getItems().forEach(item -> dailyStats.merge(
+                item.getItemId() + ":" + day.getTime() + ":" + change.getOperation(), item.getQuantity(), Integer::sum)));
+    }
+
+    private static String key(InventoryItem item) {
+        return item.getItemId() + ":" + item.getExpiryDate().getTime();
+    }
+}
@@ -0,0 +1,124 @@
+package com.aad.ffsmart.order;
+
+import com.aad.ffsmart.alert.Alert;
+import com.aad.ffsmart.alert.AlertOutbox;
+import com.aad.ffsmart.benchmark.StandIns;
+import com.aad.ffsmart.forecast.DemandForecaster;
+import com.aad.ffsmart.forecast.model.ForecastModel;
+import com.aad.ffsmart.forecast.model.ForecastSettings;
+import com.aad.ffsmart.inventory.InventoryDailyStats;
+import com.aad.ffsmart.inventory.InventoryService;
+import com.aad.ffsmart.inventory.model.ItemCount;
+import com.aad.ffsmart.inventory.model.SupplierItems;
+import com.aad.ffsmart.item.Item;
+import com.aad.ffsmart.supplier.Supplier;
+import com.aad.ffsmart.supplier.SupplierService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Auto order benchmarks
+ * <p>
+ * Runs auto order generation over a synthetic 4 week daily stats history (seeded into the demand forecaster)
+ * and supplier stock levels (a tenth of each supplier's catalog items out of stock), for each forecast model,
+ * with in-memory order repository and a no-op alert outbox
+ *
+ * @author Oliver Wortley
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AutoOrderBenchmark {
+
+    @Param({"5"})
+    private int suppliers;
+
+    @Param({"50", "500"})
+    private int itemsPerSupplier;
+
+    @Param({"MOVING_AVERAGE", "EWMA", "DAY_OF_WEEK"})
+    private ForecastModel model;
+
+    private OrderServiceImpl orderService;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42); // same history every run, so results can be compared between builds
+        long today = TimeUnit.MILLISECONDS.toDays(System.currentTimeMillis());
+        List<InventoryDailyStats> removed = IntStream.range(0, suppliers * itemsPerSupplier)
+                .boxed()
+                .flatMap(i -> IntStream.rangeClosed(1, 28).mapToObj(daysAgo -> dailyCount(i, today - daysAgo, random.nextInt(15))))
+                .toList();
+        List<SupplierItems> stock = IntStream.range(0, suppliers)
+                .mapToObj(s -> new SupplierItems("supplier" + s, "Supplier " + s, IntStream.range(0, itemsPerSupplier)
+                        .filter(i -> i % 10 != 0) // run out, no stock total
+                        .mapToObj(i -> itemCount(s * itemsPerSupplier + i, random.nextInt(120)))
+                        .toList()))
+                .toList();
+        List<Supplier> supplierList = IntStream.range(0, suppliers)
+                .mapToObj(s -> new Supplier("supplier" + s, "Supplier " + s, IntStream.range(0, itemsPerSupplier)
+                        .mapToObj(i -> new Item("item" + (s * itemsPerSupplier + i), "Item " + (s * itemsPerSupplier + i), "supplier" + s, "Supplier " + s))
+                        .toList(), null, null, new ForecastSettings(model, 28, 0.3, 5)))
+                .toList();
+
+        DemandForecaster demandForecaster = StandIns.demandForecaster(removed);
+
+        orderService = new OrderServiceImpl();
+        ReflectionTestUtils.setField(orderService, "inventoryService", StandIns.of(InventoryService.class, Map.of(
+                "aggregateInventory", args -> Flux.fromIterable(stock))));
+        ReflectionTestUtils.setField(orderService, "supplierService", StandIns.of(SupplierService.class, Map.of(
+                "getAllSuppliers", args -> Flux.fromIterable(supplierList))));
+        ReflectionTestUtils.setField(orderService, "demandForecaster", demandForecaster);
+        ReflectionTestUtils.setField(orderService, "orderRepository", StandIns.of(OrderRepository.class, Map.of(
+                "save", args -> Mono.just(args[0]))));
+        ReflectionTestUtils.setField(orderService, "alertOutbox", new AlertOutbox() {
+            @Override
+            public Mono<Void> add(Alert alert) {
+                return Mono.empty(); // alerts are not part of the measurement
+            }
+        });
+        ReflectionTestUtils.setField(orderService, "jobScheduler", Schedulers.immediate());
+        StandIns.requireWired(orderService, demandForecaster);
+    }
+
+    @Benchmark
+    public List<Order> generateOrders() {
+        return orderService.generateOrders().collectList().block();
+    }
+
+    private static InventoryDailyStats dailyCount(int item, long day, int removed) {
+        Date date = new Date(TimeUnit.DAYS.toMillis(day));
+        return new InventoryDailyStats(InventoryDailyStats.key("item" + item, date), "item" + item, "Item " + item, date, 0, removed);
+    }
+
+    private static ItemCount itemCount(int item, int quantity) {
+        ItemCount itemCount = new ItemCount();
+        itemCount.setItemId("item" + item);
+        itemCount.setItemName("Item " + item);
+        itemCount.setQuantity(quantity);
+        return itemCount;
+    }
+}
@@ -0,0 +1,61 @@
+package com.aad.ffsmart.report;
+
+import com.aad.ffsmart.inventory.InventoryItem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * PDF report benchmarks
+ * <p>
+ * Renders the expired items table in the same 100 row batches as report generation, to a discarding stream
+ *
+ * @author Oliver Wortley
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PdfReportBenchmark {
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"100", "1000", "10000"})
+    private int rows;
+
+    private List<List<InventoryItem>> batches;
+
+    @Setup
+    public void setup() {
+        Date expiryDate = new Date();
+        List<InventoryItem> items = IntStream.range(0, rows)
+                .mapToObj(i -> new InventoryItem("inv" + i, "item" + i, "Item " + i, "supplier", "Supplier", i % 20 + 1, expiryDate))
+                .toList();
+        batches = IntStream.range(0, (rows + BATCH_SIZE - 1) / BATCH_SIZE)
+                .mapToObj(i -> items.subList(i * BATCH_SIZE, Math.min(rows, (i + 1) * BATCH_SIZE)))
+                .toList();
+    }
+
+    @Benchmark
+    public void renderReport() {
+        try (PdfReportWriter writer = new PdfReportWriter(OutputStream.nullOutputStream(), new Date())) {
+            batches.forEach(writer::writeRows);
+            writer.finish();
+        }
+    }
+}
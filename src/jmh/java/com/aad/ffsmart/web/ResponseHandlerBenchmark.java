@@ -0,0 +1,93 @@
+package com.aad.ffsmart.web;
+
+import com.aad.ffsmart.inventory.InventoryItem;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Flux;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * ResponseHandler benchmarks
+ * <p>
+ * Serializes large Fluxes through the buffered (collectList + Jackson) response and the streaming JSON/NDJSON responses
+ * Each benchmark produces the full response body so the results are comparable
+ *
+ * @author Oliver Wortley
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseHandlerBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    private int size;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    private List<InventoryItem> items;
+
+    private MockServerWebExchange jsonExchange;
+
+    private MockServerWebExchange ndjsonExchange;
+
+    @Setup
+    public void setup() {
+        Date expiryDate = new Date();
+        items = IntStream.range(0, size)
+                .mapToObj(i -> new InventoryItem("inv" + i, "item" + (i % 50), "Item " + (i % 50),
+                        "supplier" + (i % 5), "Supplier " + (i % 5), i % 20 + 1, expiryDate))
+                .toList();
+        jsonExchange = MockServerWebExchange.from(MockServerHttpRequest.get("/inventory").accept(MediaType.APPLICATION_JSON));
+        ndjsonExchange = MockServerWebExchange.from(MockServerHttpRequest.get("/inventory").accept(MediaType.APPLICATION_NDJSON));
+    }
+
+    @Benchmark
+    public byte[] buffered() throws Exception {
+        ResponseEntity<Object> response = ResponseHandler.generateResponse("Inventory retrieved", HttpStatus.OK, Flux.fromIterable(items)).block();
+        return objectMapper.writeValueAsBytes(response.getBody());
+    }
+
+    @Benchmark
+    public long streamingJson() {
+        return bodyLength(ResponseHandler.generateStreamingResponse("Inventory retrieved", HttpStatus.OK, Flux.fromIterable(items), jsonExchange, objectMapper).block());
+    }
+
+    @Benchmark
+    public long streamingNdjson() {
+        return bodyLength(ResponseHandler.generateStreamingResponse("Inventory retrieved", HttpStatus.OK, Flux.fromIterable(items), ndjsonExchange, objectMapper).block());
+    }
+
+    private static long bodyLength(ResponseEntity<Flux<DataBuffer>> response) {
+        return response.getBody()
+                .map(buffer -> (long) buffer.readableByteCount())
+                .reduce(0L, Long::sum)
+                .block();
+    }
+}
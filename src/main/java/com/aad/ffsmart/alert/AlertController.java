@@ -2,18 +2,27 @@ package com.aad.ffsmart.alert;
 
 import com.aad.ffsmart.web.ResponseMessage;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.Date;
+
 import static com.aad.ffsmart.web.ResponseHandler.generateResponse;
 
 /**
  * Alert controller class
  *
- * Allows head chef to get new alerts, older alerts are cached client-side
+ * Allows head chef to get recent alerts (optionally only those after a timestamp), older alerts are cached client-side
+ * /alerts/stream pushes new alerts as Server-Sent Events to every connected head chef client
+ * /alerts/publisher/stats reports alert publish/confirm counts and confirm latency
  *
  * @author Oliver Wortley
  *
@@ -21,13 +30,30 @@ import static com.aad.ffsmart.web.ResponseHandler.generateResponse;
 @RestController
 @RequestMapping("/alerts")
 public class AlertController {
+    private static final Duration HEARTBEAT_INTERVAL = Duration.ofSeconds(15);
 
     @Autowired
     private AlertService alertService;
 
     @GetMapping
     @PreAuthorize("hasRole('HEAD_CHEF')")
-    public Mono<ResponseEntity<Object>> getAlerts() {
-        return generateResponse(ResponseMessage.SUCCESS, HttpStatus.OK, alertService.getAlerts());
+    public Mono<ResponseEntity<Object>> getAlerts(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date since) {
+        return generateResponse(ResponseMessage.SUCCESS, HttpStatus.OK, alertService.getAlerts(since));
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasRole('HEAD_CHEF')")
+    public Flux<ServerSentEvent<Alert>> streamAlerts() {
+        // heartbeat comments stop idle connections being closed by proxies
+        return Flux.merge(
+                alertService.streamAlerts().map(alert -> ServerSentEvent.builder(alert).event("alert").build()),
+                Flux.interval(HEARTBEAT_INTERVAL).map(tick -> ServerSentEvent.<Alert>builder().comment("heartbeat").build())
+        );
+    }
+
+    @GetMapping("/publisher/stats")
+    @PreAuthorize("hasRole('HEAD_CHEF')")
+    public Mono<ResponseEntity<Object>> getPublisherStatistics() {
+        return generateResponse(ResponseMessage.SUCCESS, HttpStatus.OK, alertService.getPublisherStatistics());
     }
 }
@@ -0,0 +1,127 @@
+package com.aad.ffsmart.alert;
+
+import com.aad.ffsmart.alert.model.AlertOutboxStatus;
+import com.aad.ffsmart.metrics.ReactorMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Alert outbox
+ * <p>
+ * Services add alerts to the AlertOutbox collection once their own writes have succeeded, instead of publishing
+ * to RabbitMQ on the request path. A relay drains the outbox in batches:
+ * - the batch is published by AlertPublisher, which returns the ids the broker confirmed
+ * - confirmed alerts are marked sent with one update, the rest are retried with exponential backoff
+ * Delivery is at least once, each message carries the outbox entry id as message id so consumers can drop duplicates
+ * Alerts still unconfirmed after alerts.outbox.max-attempts are marked failed, and removed 30 days later (TTL index)
+ *
+ * @author Oliver Wortley
+ */
+@Component
+@Slf4j
+public class AlertOutbox {
+    private static final Duration RETRY_BASE_DELAY = Duration.ofSeconds(5);
+    private static final Duration MAX_RETRY_DELAY = Duration.ofMinutes(10);
+
+    @Autowired
+    private AlertOutboxRepository alertOutboxRepository;
+
+    @Autowired
+    private AlertPublisher alertPublisher;
+
+    @Value("${alerts.outbox.batch-size:100}")
+    private int batchSize = 100;
+
+    @Value("${alerts.outbox.max-attempts:10}")
+    private int maxAttempts = 10;
+
+    private final AtomicBoolean relayRunning = new AtomicBoolean(false);
+
+    public Mono<Void> add(Alert alert) {
+        return addAll(List.of(alert));
+    }
+
+    public Mono<Void> addAll(List<Alert> alerts) {
+        Date now = new Date();
+        return alertOutboxRepository.insert(alerts.stream()
+                        .map(alert -> new AlertOutboxEntry(null, alert, RabbitConfig.HEAD_CHEF_QUEUE_NAME, AlertOutboxStatus.PENDING, 0, now, now, null, null))
+                        .toList())
+                .then(Mono.fromRunnable(this::relayAlerts)); // publish now rather than waiting for the next poll
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initFailedDates() {
+        alertOutboxRepository.backfillFailedDates(new Date())
+                .filter(updated -> updated > 0)
+                .subscribe(updated -> log.info("Failed dates set on " + updated + " alert outbox entries"),
+                        error -> log.error("Alert outbox failed date backfill failed", error));
+    }
+
+    @Scheduled(fixedDelayString = "${alerts.outbox.poll-interval:2000}")
+    void relayAlerts() {
+        if (!relayRunning.compareAndSet(false, true)) {
+            return;
+        }
+        ReactorMetrics.timed("jobs.alert-outbox-relay", publishDue())
+                .doFinally(signal -> relayRunning.set(false))
+                .subscribe(null, error -> log.error("Alert outbox relay failed", error));
+    }
+
+    Mono<Void> publishDue() {
+        // keep taking batches while they come back full
+        return Mono.defer(this::publishBatch)
+                .repeat()
+                .takeWhile(published -> published == batchSize)
+                .then();
+    }
+
+    private Mono<Integer> publishBatch() {
+        return alertOutboxRepository.findDue(AlertOutboxStatus.PENDING, new Date(), PageRequest.of(0, batchSize))
+                .collectList()
+                .flatMap(entries -> entries.isEmpty()
+                        ? Mono.just(0)
+                        : alertPublisher.publish(entries).flatMap(confirmed -> record(entries, confirmed)).thenReturn(entries.size()));
+    }
+
+    private Mono<Void> record(List<AlertOutboxEntry> entries, Set<String> confirmed) {
+        Date now = new Date();
+        List<String> sentIds = entries.stream().map(AlertOutboxEntry::getId).filter(confirmed::contains).toList();
+        List<AlertOutboxEntry> failed = entries.stream()
+                .filter(entry -> !confirmed.contains(entry.getId()))
+                .map(entry -> retry(entry, now))
+                .toList();
+
+        return (sentIds.isEmpty() ? Mono.just(0L) : alertOutboxRepository.markSent(sentIds, now))
+                .thenMany(alertOutboxRepository.saveAll(failed))
+                .then();
+    }
+
+    private AlertOutboxEntry retry(AlertOutboxEntry entry, Date now) {
+        int attempts = entry.getAttempts() + 1;
+        entry.setAttempts(attempts);
+        if (attempts >= maxAttempts) {
+            log.error("Alert " + entry.getId() + " not published after " + attempts + " attempts");
+            entry.setStatus(AlertOutboxStatus.FAILED);
+            entry.setNextAttempt(null);
+            entry.setFailedDate(now);
+        } else {
+            // exponential backoff: 5, 10, 20... seconds, at most 10 minutes
+            long delay = Math.min(RETRY_BASE_DELAY.toMillis() << Math.min(attempts - 1, 20), MAX_RETRY_DELAY.toMillis());
+            entry.setNextAttempt(new Date(now.getTime() + delay));
+        }
+        return entry;
+    }
+}
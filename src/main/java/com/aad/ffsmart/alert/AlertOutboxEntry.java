@@ -0,0 +1,50 @@
+package com.aad.ffsmart.alert;
+
+import com.aad.ffsmart.alert.model.AlertOutboxStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.MongoId;
+
+import java.util.Date;
+
+/**
+ * Alert outbox entry data class
+ * <p>
+ * Defines schema for AlertOutbox collection, one document per alert waiting to be published to RabbitMQ
+ * status + nextAttempt index serves the relay's due alerts query, sent entries are removed after 7 days (TTL index),
+ * entries which failed every attempt after 30 days, so they can still be looked into
+ *
+ * @author Oliver Wortley
+ */
+@Document("AlertOutbox")
+@CompoundIndex(name = "status_nextAttempt", def = "{ status : 1, nextAttempt : 1 }")
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class AlertOutboxEntry {
+
+    @MongoId
+    private String id;
+
+    private Alert alert;
+
+    private String routingKey;
+
+    private AlertOutboxStatus status;
+
+    private Integer attempts;
+
+    private Date nextAttempt;
+
+    private Date createdDate;
+
+    @Indexed(expireAfter = "7d")
+    private Date sentDate;
+
+    @Indexed(expireAfter = "30d")
+    private Date failedDate;
+}
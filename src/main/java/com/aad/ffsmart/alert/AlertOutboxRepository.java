@@ -0,0 +1,42 @@
+package com.aad.ffsmart.alert;
+
+import com.aad.ffsmart.alert.model.AlertOutboxStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.data.mongodb.repository.Update;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Alert outbox repository
+ * <p>
+ * Links to AlertOutbox collection
+ * findDue returns alerts which are ready for a (re)publish attempt, oldest first, a page at a time
+ * markSent marks a whole confirmed batch as sent in one update
+ * countByStatus backs the outbox backlog gauge
+ * backfillFailedDates dates failed entries written before failedDate existed, so the TTL index removes them too
+ *
+ * @author Oliver Wortley
+ */
+@Repository
+public interface AlertOutboxRepository extends ReactiveMongoRepository<AlertOutboxEntry, String> {
+
+    @Query(value = "{ status : ?0, nextAttempt : { $lte : ?1 } }", sort = "{ nextAttempt : 1 }")
+    Flux<AlertOutboxEntry> findDue(AlertOutboxStatus status, Date now, Pageable pageable);
+
+    @Query(value = "{ status : ?0 }", count = true)
+    Mono<Long> countByStatus(AlertOutboxStatus status);
+
+    @Query("{ _id : { $in : ?0 } }")
+    @Update("{ $set : { status : 'SENT', sentDate : ?1, nextAttempt : null }, $inc : { attempts : 1 } }")
+    Mono<Long> markSent(List<String> ids, Date sentDate);
+
+    @Query("{ status : 'FAILED', failedDate : null }")
+    @Update("{ $set : { failedDate : ?0 } }")
+    Mono<Long> backfillFailedDates(Date failedDate);
+}
@@ -0,0 +1,102 @@
+package com.aad.ffsmart.alert;
+
+import com.aad.ffsmart.scheduling.SchedulerConfig;
+import com.aad.ffsmart.tracing.ReactorTracing;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.contextpropagation.ObservationThreadLocalAccessor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+/**
+ * Alert publisher
+ * <p>
+ * Publishes a batch of alerts on a single channel (one cache checkout for the whole batch rather than one per message),
+ * then waits for the publisher confirms of the whole batch together
+ * Each message carries its outbox entry id as message id, and is timed by PublisherMetrics
+ * A batch is traced as alerts.publish, with the RabbitTemplate's publish spans under it
+ *
+ * @author Oliver Wortley
+ */
+@Component
+@Slf4j
+public class AlertPublisher {
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    @Autowired
+    private PublisherMetrics publisherMetrics;
+
+    @Autowired
+    @Qualifier(SchedulerConfig.JOB_SCHEDULER)
+    private Scheduler jobScheduler;
+
+    @Autowired(required = false)
+    private ObservationRegistry observationRegistry = ObservationRegistry.NOOP;
+
+    @Value("${alerts.outbox.confirm-timeout:10000}")
+    private long confirmTimeout = 10000;
+
+    /**
+     * Publishes alerts to the alerts exchange
+     *
+     * @return ids of the entries acked by the broker (and not returned as unroutable)
+     */
+    public Mono<Set<String>> publish(List<AlertOutboxEntry> entries) {
+        return ReactorTracing.observed(observationRegistry, "alerts.publish", Mono.deferContextual(context ->
+                        Mono.fromCallable(() -> send(entries, context.getOrDefault(ObservationThreadLocalAccessor.KEY, null))))
+                .subscribeOn(jobScheduler) // channel writes block, keep them off driver threads
+                .flatMapMany(Flux::fromIterable)
+                .flatMap(pending -> Mono.fromFuture(pending.getT2())
+                        .timeout(Duration.ofMillis(confirmTimeout))
+                        .onErrorReturn(false)
+                        .filter(confirmed -> confirmed)
+                        .map(confirmed -> pending.getT1()))
+                .collect(Collectors.toSet()));
+    }
+
+    // the RabbitTemplate takes the parent of its publish observations from the thread, not the Reactor context
+    private List<Tuple2<String, CompletableFuture<Boolean>>> send(List<AlertOutboxEntry> entries, Observation parent) {
+        try (Observation.Scope scope = parent != null ? parent.openScope() : null) {
+            return rabbitTemplate.invoke(operations -> entries.stream().map(entry -> send(operations, entry)).toList());
+        } catch (AmqpException ex) {
+            log.warn("Publish of " + entries.size() + " alerts failed", ex);
+            return entries.stream().map(entry -> Tuples.of(entry.getId(), CompletableFuture.completedFuture(false))).toList();
+        }
+    }
+
+    private Tuple2<String, CompletableFuture<Boolean>> send(RabbitOperations operations, AlertOutboxEntry entry) {
+        CorrelationData correlation = publisherMetrics.correlation(entry.getId());
+        try {
+            operations.convertAndSend(RabbitConfig.ALERTS_EXCHANGE_NAME, entry.getRoutingKey(), entry.getAlert(), message -> {
+                message.getMessageProperties().setMessageId(entry.getId()); // lets the consumer drop redelivered duplicates
+                return message;
+            }, correlation);
+        } catch (AmqpException ex) {
+            log.warn("Publish alert " + entry.getId() + " failed", ex);
+            publisherMetrics.sendFailed(correlation);
+            return Tuples.of(entry.getId(), CompletableFuture.completedFuture(false));
+        }
+        // unroutable messages are acked too, so a returned message counts as a failure
+        return Tuples.of(entry.getId(), correlation.getFuture().thenApply(confirm -> confirm.isAck() && correlation.getReturned() == null));
+    }
+}
@@ -0,0 +1,84 @@
+package com.aad.ffsmart.alert;
+
+import com.aad.ffsmart.alert.model.AlertOutboxStatus;
+import com.aad.ffsmart.scheduling.SchedulerConfig;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Alert queue metrics
+ * <p>
+ * Gauges for the alert backlog:
+ * - alerts.queue.depth / alerts.queue.consumers -> messages ready and consumers on the head chef's queue (broker)
+ * - alerts.outbox.pending -> outbox entries not yet confirmed by the broker
+ * Both need a round trip (the broker's admin call blocks), so they are refreshed on the job scheduler
+ * every alerts.queue-metrics.interval and scrapes read the last values; NaN until known or while unreachable
+ *
+ * @author Oliver Wortley
+ */
+@Component
+@Slf4j
+public class AlertQueueMetrics implements MeterBinder {
+    private static final long UNKNOWN = -1;
+
+    @Autowired
+    private AmqpAdmin amqpAdmin;
+
+    @Autowired
+    private AlertOutboxRepository alertOutboxRepository;
+
+    @Autowired
+    @Qualifier(SchedulerConfig.JOB_SCHEDULER)
+    private Scheduler jobScheduler;
+
+    private final AtomicLong queueDepth = new AtomicLong(UNKNOWN);
+
+    private final AtomicLong queueConsumers = new AtomicLong(UNKNOWN);
+
+    private final AtomicLong outboxPending = new AtomicLong(UNKNOWN);
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        gauge(registry, "alerts.queue.depth", queueDepth, "Alerts waiting on the head chef's queue");
+        gauge(registry, "alerts.queue.consumers", queueConsumers, "Consumers of the head chef's queue");
+        gauge(registry, "alerts.outbox.pending", outboxPending, "Alerts in the outbox waiting to be published");
+    }
+
+    private static void gauge(MeterRegistry registry, String name, AtomicLong value, String description) {
+        Gauge.builder(name, value, current -> current.get() == UNKNOWN ? Double.NaN : current.get())
+                .description(description)
+                .register(registry);
+    }
+
+    @Scheduled(fixedDelayString = "${alerts.queue-metrics.interval:30000}")
+    void refresh() {
+        Mono.fromCallable(() -> amqpAdmin.getQueueInfo(RabbitConfig.HEAD_CHEF_QUEUE_NAME))
+                .subscribeOn(jobScheduler)
+                .doOnNext(this::recordQueue)
+                .doOnError(error -> log.debug("Alert queue depth not available: " + error.getMessage()))
+                .onErrorResume(error -> Mono.empty())
+                .switchIfEmpty(Mono.fromRunnable(() -> recordQueue(null)))
+                .then(alertOutboxRepository.countByStatus(AlertOutboxStatus.PENDING))
+                .subscribe(outboxPending::set, error -> {
+                    outboxPending.set(UNKNOWN);
+                    log.debug("Alert outbox backlog not available: " + error.getMessage());
+                });
+    }
+
+    private void recordQueue(QueueInformation info) {
+        queueDepth.set(info != null ? info.getMessageCount() : UNKNOWN);
+        queueConsumers.set(info != null ? info.getConsumerCount() : UNKNOWN);
+    }
+}
@@ -1,6 +1,10 @@
 package com.aad.ffsmart.alert;
 
+import com.aad.ffsmart.alert.model.PublisherStatistics;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Date;
 
 /**
  * Alert service interface
@@ -10,5 +14,9 @@ import reactor.core.publisher.Flux;
  */
 public interface AlertService {
 
-    Flux<Alert> getAlerts();
+    Flux<Alert> getAlerts(Date since);
+
+    Flux<Alert> streamAlerts();
+
+    Mono<PublisherStatistics> getPublisherStatistics();
 }
@@ -1,36 +1,87 @@
 package com.aad.ffsmart.alert;
 
+import com.aad.ffsmart.alert.model.PublisherStatistics;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.AmqpHeaders;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Alert service implementation class
  * <p>
- * Contains functionality for reading alerts from the head chef's queue and returning as Flux
+ * Consumes the head chef's queue with a long-lived listener (see RabbitConfig.alertListenerContainerFactory)
+ * Each alert is kept in a bounded buffer of recent alerts (oldest dropped first) and pushed to every connected stream
+ * subscriber, so requests never block on the broker
+ * Alerts are published at least once (see AlertOutbox), redelivered alerts are dropped by message id
  *
  * @author Oliver Wortley
  */
 @Service
 @Slf4j
 public class AlertServiceImpl implements AlertService {
+    private static final int RECENT_MESSAGE_IDS = 1000;
+
     @Autowired
-    private RabbitTemplate rabbitTemplate;
+    private PublisherMetrics publisherMetrics;
+
+    @Value("${alerts.buffer-size:100}")
+    private int bufferSize = 100;
+
+    private final Deque<Alert> recentAlerts = new ArrayDeque<>();
+
+    private final Set<String> recentMessageIds = new LinkedHashSet<>();
+
+    // slow subscribers miss alerts rather than holding up the listener or other subscribers
+    private final Sinks.Many<Alert> alertSink = Sinks.many().multicast().directBestEffort();
+
+    @RabbitListener(queues = RabbitConfig.HEAD_CHEF_QUEUE_NAME, containerFactory = RabbitConfig.ALERT_LISTENER_FACTORY)
+    public void receiveAlert(Alert alert, @Header(name = AmqpHeaders.MESSAGE_ID, required = false) String messageId) {
+        synchronized (recentAlerts) {
+            if (messageId != null && !recentMessageIds.add(messageId)) {
+                log.debug("Dropping duplicate alert " + messageId);
+                return;
+            }
+            if (recentMessageIds.size() > RECENT_MESSAGE_IDS) {
+                recentMessageIds.remove(recentMessageIds.iterator().next()); // oldest
+            }
+            if (recentAlerts.size() >= bufferSize) {
+                recentAlerts.removeLast();
+            }
+            recentAlerts.addFirst(alert);
+        }
+        alertSink.tryEmitNext(alert);
+    }
 
     @Override
-    public Flux<Alert> getAlerts() {
-        List<Alert> alerts = new ArrayList<>();
-        Alert alert = (Alert) rabbitTemplate.receiveAndConvert(RabbitConfig.HEAD_CHEF_QUEUE_NAME);
-        while (alert != null) {
-            alerts.add(0, alert);
-            alert = (Alert) rabbitTemplate.receiveAndConvert(RabbitConfig.HEAD_CHEF_QUEUE_NAME);
+    public Flux<Alert> getAlerts(Date since) {
+        List<Alert> alerts;
+        synchronized (recentAlerts) {
+            alerts = new ArrayList<>(recentAlerts);
         }
-        return Mono.just(alerts).flatMapMany(Flux::fromIterable);
+        return Flux.fromIterable(alerts) // newest first
+                .filter(alert -> since == null || alert.getTimestamp().after(since));
+    }
+
+    @Override
+    public Flux<Alert> streamAlerts() {
+        return alertSink.asFlux();
+    }
+
+    public Mono<PublisherStatistics> getPublisherStatistics() {
+        return Mono.fromSupplier(publisherMetrics::getStatistics);
     }
 }
@@ -0,0 +1,114 @@
+package com.aad.ffsmart.alert;
+
+import com.aad.ffsmart.alert.model.PublisherStatistics;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.Getter;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Publisher metrics
+ * <p>
+ * Registered as the RabbitTemplate's confirm callback (see RabbitConfig), so every broker ack/nack is counted
+ * asynchronously on the connection thread. Publishes are timed from the correlation data they are sent with
+ * In-flight = published messages which have not been confirmed (or failed to send) yet
+ * Also bound to Micrometer: publish to confirm latency (alerts.publish.confirm, tagged by ack/nack),
+ * published/confirmed counters and the in-flight gauge
+ *
+ * @author Oliver Wortley
+ */
+public class PublisherMetrics implements RabbitTemplate.ConfirmCallback, MeterBinder {
+    private final LongAdder published = new LongAdder();
+
+    private final LongAdder acked = new LongAdder();
+
+    private final LongAdder nacked = new LongAdder();
+
+    private final AtomicLong inFlight = new AtomicLong();
+
+    private final LongAdder totalLatencyNanos = new LongAdder();
+
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    // null until bound to a registry
+    private volatile Timer ackLatency;
+
+    private volatile Timer nackLatency;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        ackLatency = confirmTimer(registry, "ack");
+        nackLatency = confirmTimer(registry, "nack");
+        FunctionCounter.builder("alerts.published", published, LongAdder::sum)
+                .description("Alerts published with publisher confirms")
+                .register(registry);
+        Gauge.builder("alerts.publish.in-flight", inFlight, AtomicLong::get)
+                .description("Published alerts awaiting a broker confirm")
+                .register(registry);
+    }
+
+    private static Timer confirmTimer(MeterRegistry registry, String outcome) {
+        return Timer.builder("alerts.publish.confirm")
+                .description("Time from publishing an alert to the broker's confirm")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    public CorrelationData correlation(String id) {
+        published.increment();
+        inFlight.incrementAndGet();
+        return new TimedCorrelationData(id, System.nanoTime());
+    }
+
+    public void sendFailed(CorrelationData correlationData) {
+        if (correlationData instanceof TimedCorrelationData) {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void confirm(CorrelationData correlationData, boolean ack, String cause) {
+        if (!(correlationData instanceof TimedCorrelationData timed)) {
+            return; // not sent through correlation(), e.g. a plain convertAndSend
+        }
+        long latency = System.nanoTime() - timed.getSentNanos();
+        inFlight.decrementAndGet();
+        (ack ? acked : nacked).increment();
+        totalLatencyNanos.add(latency);
+        maxLatencyNanos.accumulateAndGet(latency, Math::max);
+        Timer timer = ack ? ackLatency : nackLatency;
+        if (timer != null) {
+            timer.record(latency, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public PublisherStatistics getStatistics() {
+        long confirmed = acked.sum() + nacked.sum();
+        return new PublisherStatistics(published.sum(), acked.sum(), nacked.sum(), inFlight.get(),
+                confirmed == 0 ? 0 : toMillis(totalLatencyNanos.sum()) / confirmed,
+                toMillis(maxLatencyNanos.get()));
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Getter
+    static class TimedCorrelationData extends CorrelationData {
+        private final long sentNanos;
+
+        TimedCorrelationData(String id, long sentNanos) {
+            super(id);
+            this.sentNanos = sentNanos;
+        }
+    }
+}
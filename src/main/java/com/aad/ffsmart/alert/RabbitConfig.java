@@ -1,11 +1,14 @@
 package com.aad.ffsmart.alert;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.core.*;
 import org.springframework.amqp.rabbit.annotation.EnableRabbit;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -13,16 +16,44 @@ import org.springframework.context.annotation.Configuration;
  * Rabbit MQ config
  *
  * Defines exchanges, queues and bindings, as well as Jackson message converter and the connection to local RabbitMQ server
+ * Also defines the listener container factory used to consume the head chef's queue
+ * Publishes use correlated publisher confirms and mandatory returns, which the alert outbox relay waits on
+ * Publishing channels are cached (rabbitmq.channel-cache-size), confirms are counted by PublisherMetrics
+ * Publishes and deliveries are observed, so a trace carries on from the publisher to the alert listener
  *
  * @author Oliver Wortley
  *
  */
 @Configuration
 @EnableRabbit
+@Slf4j
 public class RabbitConfig {
 
     public static final String ALERTS_EXCHANGE_NAME = "dx.user-alerts";
     public static final String HEAD_CHEF_QUEUE_NAME = "q.head-chef";
+    public static final String ALERT_LISTENER_FACTORY = "alertListenerContainerFactory";
+
+    @Value("${rabbitmq.host:localhost}")
+    private String host = "localhost";
+
+    @Value("${rabbitmq.port:5672}")
+    private int port = 5672;
+
+    @Value("${rabbitmq.username:guest}")
+    private String username = "guest";
+
+    @Value("${rabbitmq.password:guest}")
+    private String password = "guest";
+
+    @Value("${rabbitmq.channel-cache-size:25}")
+    private int channelCacheSize = 25;
+
+    // 0 = no limit on open channels, otherwise channel-cache-size is a hard limit and publishers wait this long (ms)
+    @Value("${rabbitmq.channel-checkout-timeout:0}")
+    private long channelCheckoutTimeout = 0;
+
+    @Value("${rabbitmq.alerts.prefetch:50}")
+    private int alertPrefetch = 50;
 
     @Bean
     public Queue headChefQueue() {
@@ -42,10 +73,14 @@ public class RabbitConfig {
     @Bean
     public ConnectionFactory connectionFactory() {
         CachingConnectionFactory connectionFactory = new CachingConnectionFactory();
-        connectionFactory.setHost("localhost");
-        connectionFactory.setPort(5672);
-        connectionFactory.setUsername("guest");
-        connectionFactory.setPassword("guest");
+        connectionFactory.setHost(host);
+        connectionFactory.setPort(port);
+        connectionFactory.setUsername(username);
+        connectionFactory.setPassword(password);
+        connectionFactory.setChannelCacheSize(channelCacheSize);
+        connectionFactory.setChannelCheckoutTimeout(channelCheckoutTimeout);
+        connectionFactory.setPublisherConfirmType(CachingConnectionFactory.ConfirmType.CORRELATED);
+        connectionFactory.setPublisherReturns(true);
         return connectionFactory;
     }
 
@@ -55,9 +90,32 @@ public class RabbitConfig {
     }
 
     @Bean
-    public RabbitTemplate rabbitTemplate(Jackson2JsonMessageConverter converter, ConnectionFactory connectionFactory) {
+    public PublisherMetrics publisherMetrics() {
+        return new PublisherMetrics();
+    }
+
+    @Bean
+    public RabbitTemplate rabbitTemplate(Jackson2JsonMessageConverter converter, ConnectionFactory connectionFactory, PublisherMetrics publisherMetrics) {
         RabbitTemplate template = new RabbitTemplate(connectionFactory);
         template.setMessageConverter(converter);
+        template.setMandatory(true);
+        template.setObservationEnabled(true);
+        template.setConfirmCallback(publisherMetrics);
+        template.setReturnsCallback(returned -> log.warn("Alert returned by broker: " + returned.getReplyText()
+                + " (exchange " + returned.getExchange() + ", routing key " + returned.getRoutingKey() + ")"));
         return template;
     }
+
+    @Bean(name = ALERT_LISTENER_FACTORY)
+    public SimpleRabbitListenerContainerFactory alertListenerContainerFactory(Jackson2JsonMessageConverter converter, ConnectionFactory connectionFactory) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setMessageConverter(converter);
+        factory.setPrefetchCount(alertPrefetch);
+        factory.setObservationEnabled(true);
+        // single consumer keeps alerts in queue order and emissions to the alert sink serialized
+        factory.setConcurrentConsumers(1);
+        factory.setMaxConcurrentConsumers(1);
+        return factory;
+    }
 }
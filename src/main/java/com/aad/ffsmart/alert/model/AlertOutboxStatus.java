@@ -0,0 +1,16 @@
+package com.aad.ffsmart.alert.model;
+
+/**
+ * Alert outbox status enum
+ * <p>
+ * PENDING -> waiting to be published (or retried) by the relay
+ * SENT -> published and confirmed by the broker
+ * FAILED -> gave up after the maximum number of attempts
+ *
+ * @author Oliver Wortley
+ */
+public enum AlertOutboxStatus {
+    PENDING,
+    SENT,
+    FAILED
+}
@@ -0,0 +1,28 @@
+package com.aad.ffsmart.alert.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Publisher statistics
+ * <p>
+ * Counts of published/confirmed alert messages since startup, messages still waiting for a broker confirm
+ * and publish -> confirm latency
+ *
+ * @author Oliver Wortley
+ */
+@Data
+@AllArgsConstructor
+public class PublisherStatistics {
+    private long published;
+
+    private long acked;
+
+    private long nacked;
+
+    private long inFlight;
+
+    private double averageConfirmLatencyMillis;
+
+    private double maxConfirmLatencyMillis;
+}
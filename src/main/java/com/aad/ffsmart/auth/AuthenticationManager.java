@@ -1,8 +1,15 @@
 package com.aad.ffsmart.auth;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
-import lombok.AllArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.ReactiveAuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
@@ -10,38 +17,117 @@ import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Authentication manager
  * <p>
  * Used to authenticate users vio JWT token, 401 is returned if token is invalid
+ * Verified claims are cached by token hash until the token expires, so a token's signature is only checked once
+ * The authenticated principal is the user id (token subject)
+ * Signature checks are timed (jwt.verifications, tagged valid/invalid) and the claims cache's hit rate is bound to Micrometer
  *
  * @author Oliver Wortley
  */
 @Component
-@AllArgsConstructor
 @Slf4j
-public class AuthenticationManager implements ReactiveAuthenticationManager {
-    private JWTUtil jwtUtil;
+public class AuthenticationManager implements ReactiveAuthenticationManager, MeterBinder {
+    private final JWTUtil jwtUtil;
+
+    private final Cache<String, Claims> claimsCache;
+
+    // null until bound to a registry
+    private volatile Timer validVerifications;
+
+    private volatile Timer invalidVerifications;
+
+    public AuthenticationManager(JWTUtil jwtUtil, @Value("${jwt.cache-size:10000}") long cacheSize) {
+        this.jwtUtil = jwtUtil;
+        this.claimsCache = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .recordStats()
+                .expireAfter(new Expiry<String, Claims>() {
+                    @Override
+                    public long expireAfterCreate(String key, Claims claims, long currentTime) {
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, claims.getExpiration().getTime() - System.currentTimeMillis()));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        validVerifications = verificationTimer(registry, "valid");
+        invalidVerifications = verificationTimer(registry, "invalid");
+        CaffeineCacheMetrics.monitor(registry, claimsCache, "jwt.claims");
+    }
+
+    private static Timer verificationTimer(MeterRegistry registry, String outcome) {
+        return Timer.builder("jwt.verifications")
+                .description("Time to parse and verify the signature of a token not yet in the claims cache")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
 
     @Override
     @SuppressWarnings("unchecked")
     public Mono<Authentication> authenticate(Authentication authentication) {
         String authToken = authentication.getCredentials().toString();
-        String username = jwtUtil.getUsernameFromToken(authToken);
-        return Mono.just(jwtUtil.validateToken(authToken))
-                .filter(valid -> valid)
-                .switchIfEmpty(Mono.empty())
-                .map(valid -> {
-                    Claims claims = jwtUtil.getAllClaimsFromToken(authToken);
+        return Mono.fromCallable(() -> getVerifiedClaims(authToken))
+                .filter(claims -> claims.getExpiration().after(new Date()))
+                .map(claims -> {
                     List<String> rolesMap = claims.get("role", List.class);
                     return new UsernamePasswordAuthenticationToken(
-                            username,
+                            claims.getSubject(),
                             null,
                             rolesMap.stream().map(SimpleGrantedAuthority::new).toList()
                     );
                 });
     }
 
-}
\ No newline at end of file
+    private Claims getVerifiedClaims(String authToken) {
+        // only tokens that pass verification are cached, invalid tokens are rejected by JWTUtil every time
+        return claimsCache.get(hash(authToken), key -> verify(authToken));
+    }
+
+    private Claims verify(String authToken) {
+        long start = System.nanoTime();
+        boolean valid = false;
+        try {
+            Claims claims = jwtUtil.getAllClaimsFromToken(authToken);
+            valid = true;
+            return claims;
+        } finally {
+            Timer timer = valid ? validVerifications : invalidVerifications;
+            if (timer != null) {
+                timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+}
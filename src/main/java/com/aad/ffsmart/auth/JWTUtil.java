@@ -3,7 +3,10 @@ package com.aad.ffsmart.auth;
 import com.aad.ffsmart.user.User;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.io.Serializer;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
@@ -13,6 +16,7 @@ import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.ServiceLoader;
 
 import io.jsonwebtoken.Jwts;
 import org.springframework.web.server.ResponseStatusException;
@@ -25,6 +29,9 @@ import org.springframework.web.server.ResponseStatusException;
  *  - generate new token
  *  - get expiration from token
  *
+ * A single JwtParser is shared for all verification, and the JSON serializer is looked up once
+ * (the builder otherwise scans the classpath for one on every token)
+ *
  */
 @Component
 @Slf4j
@@ -36,10 +43,23 @@ public class JWTUtil {
     @Value("${jwt.validity:3600000}")
     private long validity; // 1hr
 
+    private JwtParser jwtParser;
+
+    private Serializer<Map<String, ?>> serializer;
+
+    @PostConstruct
+    @SuppressWarnings("unchecked")
+    private void init() {
+        // parser is immutable and thread-safe, so it is built once rather than per token
+        jwtParser = Jwts.parserBuilder().setSigningKey(secret).build();
+        serializer = ServiceLoader.load(Serializer.class).findFirst()
+                .orElseThrow(() -> new IllegalStateException("No JWT serializer on the classpath"));
+    }
+
     public Claims getAllClaimsFromToken(String token) {
         try {
-            return Jwts.parserBuilder().setSigningKey(secret).build().parseClaimsJws(token).getBody();
-        } catch (JwtException ex) {
+            return jwtParser.parseClaimsJws(token).getBody();
+        } catch (JwtException | IllegalArgumentException ex) {
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid token");
         }
     }
@@ -69,6 +89,7 @@ public class JWTUtil {
         final Date expirationDate = new Date(createdDate.getTime() + validity);
 
         return Jwts.builder()
+                .serializeToJsonWith(serializer)
                 .setClaims(claims)
                 .setSubject(username)
                 .setIssuedAt(createdDate)
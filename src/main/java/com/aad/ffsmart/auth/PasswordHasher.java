@@ -0,0 +1,71 @@
+package com.aad.ffsmart.auth;
+
+import com.aad.ffsmart.scheduling.SchedulerConfig;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Password hasher
+ * <p>
+ * Runs BCrypt hashes and checks (tens of ms of CPU each) on the bounded hash scheduler instead of the event loop,
+ * so a burst of logins queues behind itself rather than stalling every other request
+ * When the scheduler's queues are full the call fails straight away with 429 Too Many Requests
+ * (counted as passwords.hash.rejected) rather than waiting
+ * needsRehash tells whether a stored hash was made with a lower work factor than passwords.bcrypt.strength,
+ * so hashes are upgraded on the next login when the work factor is raised
+ *
+ * @author Oliver Wortley
+ */
+@Component
+public class PasswordHasher implements MeterBinder {
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    @Qualifier(SchedulerConfig.HASH_SCHEDULER)
+    private Scheduler hashScheduler;
+
+    private final LongAdder rejected = new LongAdder();
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("passwords.hash.rejected", rejected, LongAdder::sum)
+                .description("Password hashes / checks rejected because the hash scheduler was saturated")
+                .register(registry);
+    }
+
+    public Mono<String> encode(String rawPassword) {
+        return offload(() -> passwordEncoder.encode(rawPassword));
+    }
+
+    public Mono<Boolean> matches(String rawPassword, String encodedPassword) {
+        return offload(() -> passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+
+    public boolean needsRehash(String encodedPassword) {
+        return passwordEncoder.upgradeEncoding(encodedPassword);
+    }
+
+    private <T> Mono<T> offload(Callable<T> hash) {
+        return Mono.fromCallable(hash)
+                .subscribeOn(hashScheduler)
+                .onErrorMap(RejectedExecutionException.class, ex -> {
+                    rejected.increment();
+                    return new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Too many password checks, try again shortly");
+                });
+    }
+}
@@ -0,0 +1,45 @@
+package com.aad.ffsmart.auth;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.MongoId;
+
+import java.util.Date;
+
+/**
+ * RefreshToken data class
+ * <p>
+ * Defines schema for RefreshTokens collection, one document per refresh token issued
+ * Only the SHA-256 hash of the token is stored; tokens rotated from the same login share a familyId
+ * Documents are removed by a TTL index once expiresAt has passed
+ *
+ * @author Oliver Wortley
+ */
+@Document("RefreshTokens")
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class RefreshToken {
+
+    @MongoId
+    private String id;
+
+    @Indexed(unique = true)
+    private String tokenHash;
+
+    @Indexed
+    private String userId;
+
+    @Indexed
+    private String familyId;
+
+    private boolean used;
+
+    private Date createdDate;
+
+    @Indexed(expireAfterSeconds = 0)
+    private Date expiresAt;
+}
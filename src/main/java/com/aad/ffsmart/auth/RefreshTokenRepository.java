@@ -0,0 +1,30 @@
+package com.aad.ffsmart.auth;
+
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.data.mongodb.repository.Update;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+/**
+ * Refresh token repository
+ * <p>
+ * Links to RefreshTokens collection
+ * markUsed only matches an unused token, so of two requests redeeming the same token only one gets a count of 1
+ *
+ * @author Oliver Wortley
+ */
+@Repository
+public interface RefreshTokenRepository extends ReactiveMongoRepository<RefreshToken, String> {
+
+    @Query(value = "{ tokenHash : ?0 }")
+    Mono<RefreshToken> findByTokenHash(String tokenHash);
+
+    @Query("{ tokenHash : ?0, used : false }")
+    @Update("{ $set : { used : true } }")
+    Mono<Long> markUsed(String tokenHash);
+
+    Mono<Long> deleteByFamilyId(String familyId);
+
+    Mono<Long> deleteByUserId(String userId);
+}
@@ -0,0 +1,116 @@
+package com.aad.ffsmart.auth;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HexFormat;
+
+/**
+ * Refresh token service
+ * <p>
+ * Issues opaque refresh tokens (256 random bits) which are exchanged for new access tokens without a password check,
+ * so clients keep their session without rerunning BCrypt every time their access token expires
+ * Tokens rotate: redeeming one marks it used, and the caller issues its replacement in the same family
+ * Redeeming a token which was already used means it was copied, so the whole family is revoked
+ * Tokens are valid for refresh-token.validity (default 30 days) from when they were issued
+ *
+ * @author Oliver Wortley
+ */
+@Service
+@Slf4j
+public class RefreshTokenService {
+    private static final String INVALID_TOKEN_MSG = "Invalid refresh token";
+    private static final int TOKEN_BYTES = 32;
+    private static final int FAMILY_ID_BYTES = 16;
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Value("${refresh-token.validity:2592000000}")
+    private long validity = 2592000000L; // 30 days
+
+    private final SecureRandom random = seededRandom();
+
+    /**
+     * Issues a refresh token for the user, starting a new family when familyId is null
+     */
+    public Mono<String> issue(String userId, String familyId) {
+        String token = randomString(TOKEN_BYTES);
+        Date now = new Date();
+        RefreshToken refreshToken = new RefreshToken(null, hash(token), userId,
+                familyId != null ? familyId : randomString(FAMILY_ID_BYTES), false, now, new Date(now.getTime() + validity));
+        return refreshTokenRepository.save(refreshToken).thenReturn(token);
+    }
+
+    /**
+     * Marks the token used and returns it, for its replacement to be issued in the same family
+     */
+    public Mono<RefreshToken> redeem(String token) {
+        return Mono.defer(() -> refreshTokenRepository.findByTokenHash(hash(token)))
+                .filter(refreshToken -> refreshToken.getExpiresAt().after(new Date()))
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.UNAUTHORIZED, INVALID_TOKEN_MSG)))
+                .flatMap(refreshToken -> refreshTokenRepository.markUsed(refreshToken.getTokenHash())
+                        .flatMap(updated -> {
+                            if (updated > 0) {
+                                return Mono.just(refreshToken);
+                            }
+                            log.warn("Refresh token reused for user " + refreshToken.getUserId() + ", revoking its family");
+                            return refreshTokenRepository.deleteByFamilyId(refreshToken.getFamilyId())
+                                    .then(Mono.error(new ResponseStatusException(HttpStatus.UNAUTHORIZED, INVALID_TOKEN_MSG)));
+                        }));
+    }
+
+    /**
+     * Revokes the token and every token rotated from the same login, unknown tokens are ignored
+     */
+    public Mono<Void> revoke(String token) {
+        return Mono.defer(() -> refreshTokenRepository.findByTokenHash(hash(token)))
+                .flatMap(refreshToken -> refreshTokenRepository.deleteByFamilyId(refreshToken.getFamilyId()))
+                .then();
+    }
+
+    public Mono<Void> revokeAll(String userId) {
+        return refreshTokenRepository.deleteByUserId(userId).then();
+    }
+
+    private String randomString(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    // tokens are random, so a fast hash is enough, and lets the stored hash be looked up directly
+    static String hash(String token) {
+        if (token == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, INVALID_TOKEN_MSG);
+        }
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // DRBG is seeded here rather than on the first token, which may be issued on an event loop thread,
+    // and is used for family ids too as UUID.randomUUID reads /dev/urandom
+    private static SecureRandom seededRandom() {
+        try {
+            SecureRandom random = SecureRandom.getInstance("DRBG");
+            random.nextBytes(new byte[1]);
+            return random;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.aad.ffsmart.db;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+
+/**
+ * Change stream helpers
+ * <p>
+ * Shared by the change stream listeners (supplier cache, live inventory feed)
+ *
+ * @author Oliver Wortley
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+@Slf4j
+public class ChangeStreams {
+    private static final Duration MIN_BACKOFF = Duration.ofSeconds(1);
+    private static final Duration MAX_BACKOFF = Duration.ofMinutes(1);
+
+    /**
+     * Keeps a change stream open: resubscribes with backoff when it fails, and when it completes,
+     * which it does after a drop, rename or invalidate event
+     *
+     * @param name collection name for log messages
+     */
+    public static <T> Flux<T> reopening(Flux<T> changeStream, String name) {
+        return changeStream
+                .repeatWhen(completions -> completions.index().concatMap(completion -> {
+                    log.warn(name + " change stream closed, reopening");
+                    return Mono.delay(backoff(completion.getT1()));
+                }))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, MIN_BACKOFF)
+                        .maxBackoff(MAX_BACKOFF)
+                        .doBeforeRetry(signal -> log.warn(name + " change stream failed, reopening", signal.failure())));
+    }
+
+    private static Duration backoff(long attempt) {
+        Duration backoff = MIN_BACKOFF.multipliedBy(1L << Math.min(attempt, 6));
+        return backoff.compareTo(MAX_BACKOFF) < 0 ? backoff : MAX_BACKOFF;
+    }
+
+    /**
+     * @return id of the changed document, null for events without a document key (drop, rename, invalidate)
+     */
+    public static String documentId(ChangeStreamEvent<?> event) {
+        BsonDocument documentKey = event.getRaw() != null ? event.getRaw().getDocumentKey() : null;
+        BsonValue id = documentKey != null ? documentKey.get("_id") : null;
+        if (id == null) {
+            return null;
+        }
+        if (id.isObjectId()) {
+            return id.asObjectId().getValue().toHexString();
+        }
+        return id.isString() ? id.asString().getValue() : null;
+    }
+}
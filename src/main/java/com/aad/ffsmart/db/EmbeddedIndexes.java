@@ -0,0 +1,46 @@
+package com.aad.ffsmart.db;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Embedded index filter
+ * <p>
+ * Spring resolves the indexes declared on a @Document class onto every collection embedding it
+ * (e.g. InventoryItem's unique itemId + expiryDate index onto Orders.items and InventoryChanges.items)
+ * There they become multikey indexes, a unique one rejecting a second order or change for the same stock,
+ * so IndexProvisioner leaves them to the embedded type's own collection
+ *
+ * @author Oliver Wortley
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+class EmbeddedIndexes {
+
+    /**
+     * @return path prefixes of the entity's properties holding another @Document type
+     */
+    static List<String> paths(MongoPersistentEntity<?> entity) {
+        List<String> paths = new ArrayList<>();
+        entity.doWithProperties((MongoPersistentProperty property) -> {
+            if (property.isEntity() && property.getActualType().isAnnotationPresent(Document.class)) {
+                paths.add(property.getFieldName() + ".");
+            }
+        });
+        return paths;
+    }
+
+    /**
+     * @return whether the index has a key under one of the paths
+     */
+    static boolean isEmbedded(IndexDefinition index, List<String> paths) {
+        return index.getIndexKeys().keySet().stream()
+                .anyMatch(key -> paths.stream().anyMatch(key::startsWith));
+    }
+}
@@ -0,0 +1,115 @@
+package com.aad.ffsmart.db;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mapping.context.MappingContext;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.ReactiveIndexOperations;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.StreamSupport;
+
+/**
+ * Index provisioning component
+ * <p>
+ * On startup, creates the indexes declared with @Indexed/@CompoundIndex/@TextIndexed on every @Document class
+ * (Spring Boot leaves auto index creation off, so annotations alone do nothing)
+ * Indexes declared on a @Document class which is embedded in another (e.g. InventoryItem in Order.items) belong to
+ * its own collection and are not created on the embedding one, see EmbeddedIndexes
+ * Any such index already created on an embedding collection (by earlier versions) is dropped before provisioning
+ * If mongodb.explain-check is enabled, repository queries are then checked with QueryPlanChecker and startup fails
+ * when any of them would run as a collection scan
+ *
+ * @author Oliver Wortley
+ */
+@Component
+@Slf4j
+public class IndexProvisioner {
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Autowired
+    private QueryPlanChecker queryPlanChecker;
+
+    @Value("${mongodb.index-provisioning:true}")
+    private boolean indexProvisioning;
+
+    @Value("${mongodb.explain-check:false}")
+    private boolean explainCheck;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        Mono<Void> provisioning = indexProvisioning ? provisionIndexes().then() : Mono.empty();
+        if (explainCheck) {
+            provisioning.then(queryPlanChecker.verifyRepositoryQueries()).block(); // fail fast
+        } else {
+            provisioning.subscribe();
+        }
+    }
+
+    public Flux<String> provisionIndexes() {
+        MappingContext<? extends MongoPersistentEntity<?>, MongoPersistentProperty> mappingContext =
+                mongoTemplate.getConverter().getMappingContext();
+        IndexResolver indexResolver = IndexResolver.create(mappingContext);
+
+        return Flux.fromIterable(mappingContext.getPersistentEntities())
+                .filter(entity -> entity.isAnnotationPresent(Document.class))
+                .flatMap(entity -> dropEmbeddedIndexes(indexResolver, entity)
+                        .thenMany(Flux.fromIterable(resolveIndexes(indexResolver, entity)))
+                        .concatMap(index -> mongoTemplate.indexOps(entity.getType()).ensureIndex(index)
+                                .doOnNext(name -> log.info("Index " + name + " ensured on " + entity.getCollection()))
+                                .onErrorResume(e -> {
+                                    log.error("Index creation failed on " + entity.getCollection() + ": " + e.getMessage());
+                                    return Mono.empty();
+                                })));
+    }
+
+    private Mono<Void> dropEmbeddedIndexes(IndexResolver indexResolver, MongoPersistentEntity<?> entity) {
+        List<String> embeddedIndexes = embeddedIndexNames(indexResolver, entity);
+        if (embeddedIndexes.isEmpty()) {
+            return Mono.empty();
+        }
+        ReactiveIndexOperations indexOps = mongoTemplate.indexOps(entity.getType());
+        return indexOps.getIndexInfo()
+                .map(IndexInfo::getName)
+                .filter(embeddedIndexes::contains)
+                .concatMap(name -> indexOps.dropIndex(name)
+                        .doOnSuccess(v -> log.info("Embedded index " + name + " dropped from " + entity.getCollection())))
+                .onErrorResume(e -> {
+                    log.error("Embedded index drop failed on " + entity.getCollection() + ": " + e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    static List<? extends IndexDefinition> resolveIndexes(IndexResolver indexResolver, MongoPersistentEntity<?> entity) {
+        List<String> embeddedDocuments = EmbeddedIndexes.paths(entity);
+        return StreamSupport.stream(indexResolver.resolveIndexFor(entity.getTypeInformation()).spliterator(), false)
+                .filter(index -> !EmbeddedIndexes.isEmbedded(index, embeddedDocuments))
+                .toList();
+    }
+
+    // names of the indexes declared by embedded documents, which are not created on this collection
+    static List<String> embeddedIndexNames(IndexResolver indexResolver, MongoPersistentEntity<?> entity) {
+        List<String> embeddedDocuments = EmbeddedIndexes.paths(entity);
+        return StreamSupport.stream(indexResolver.resolveIndexFor(entity.getTypeInformation()).spliterator(), false)
+                .filter(index -> EmbeddedIndexes.isEmbedded(index, embeddedDocuments))
+                .map(index -> (String) index.getIndexOptions().get("name"))
+                .filter(Objects::nonNull)
+                .toList();
+    }
+}
@@ -4,9 +4,15 @@ import com.mongodb.ConnectionString;
 import com.mongodb.MongoClientSettings;
 import com.mongodb.reactivestreams.client.MongoClient;
 import com.mongodb.reactivestreams.client.MongoClients;
+import io.micrometer.core.instrument.binder.mongodb.MongoMetricsCommandListener;
+import io.micrometer.core.instrument.binder.mongodb.MongoMetricsConnectionPoolListener;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.observability.ContextProviderFactory;
+import org.springframework.data.mongodb.observability.MongoObservationCommandListener;
 import org.springframework.data.mongodb.repository.config.EnableReactiveMongoRepositories;
 
 import java.util.concurrent.TimeUnit;
@@ -15,6 +21,10 @@ import java.util.concurrent.TimeUnit;
  * Mongo configuration class
  * <p>
  * Configures Mongo client connection
+ * Command timings (mongodb.driver.commands, per collection and command) and connection pool gauges are recorded
+ * by the Micrometer listeners from the actuator's Mongo metrics configuration
+ * Each command is also observed (spring.data.mongodb.command), as a child of the observation in the Reactor context
+ * of the query, so commands show up as spans under the request / service span that ran them
  * Sets base packages for Mongo repository search
  *
  * @author Oliver Wortley
@@ -28,16 +38,25 @@ public class MongoConfig {
     private String connectionString;
 
     @Bean
-    public MongoClient mongoClient() {
-        MongoClientSettings clientSettings = MongoClientSettings.builder()
+    public MongoClient mongoClient(ObjectProvider<MongoMetricsCommandListener> commandListener,
+                                   ObjectProvider<MongoMetricsConnectionPoolListener> connectionPoolListener,
+                                   ObjectProvider<ObservationRegistry> observationRegistry) {
+        ConnectionString connection = new ConnectionString(connectionString);
+        MongoClientSettings.Builder clientSettings = MongoClientSettings.builder()
                 .retryWrites(true)
-                .applyConnectionString(new ConnectionString(connectionString))
+                .applyConnectionString(connection)
                 .applyToSocketSettings(builder ->
                         builder.connectTimeout(2000, TimeUnit.MILLISECONDS)
                 )
-                .applicationName(APP_NAME)
-                .build();
+                .applicationName(APP_NAME);
+        commandListener.ifAvailable(clientSettings::addCommandListener);
+        connectionPoolListener.ifAvailable(listener ->
+                clientSettings.applyToConnectionPoolSettings(builder -> builder.addConnectionPoolListener(listener)));
+        // the context provider hands the subscriber's Reactor context (and the observation in it) to the listener
+        observationRegistry.ifAvailable(registry -> clientSettings
+                .contextProvider(ContextProviderFactory.create(registry))
+                .addCommandListener(new MongoObservationCommandListener(registry, connection)));
 
-        return MongoClients.create(clientSettings);
+        return MongoClients.create(clientSettings.build());
     }
 }
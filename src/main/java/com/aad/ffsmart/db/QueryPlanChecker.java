@@ -0,0 +1,113 @@
+package com.aad.ffsmart.db;
+
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.util.json.ParameterBindingDocumentCodec;
+import org.springframework.data.repository.core.RepositoryInformation;
+import org.springframework.data.repository.support.Repositories;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Query plan checker
+ * <p>
+ * Explains every @Query declared on the application's repositories (binding placeholder parameters to sample values)
+ * and reports any whose winning plan contains a COLLSCAN stage
+ * Aggregations are not checked
+ *
+ * @author Oliver Wortley
+ */
+@Component
+@Slf4j
+public class QueryPlanChecker {
+    private static final String COLLSCAN = "COLLSCAN";
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    private final ParameterBindingDocumentCodec codec = new ParameterBindingDocumentCodec();
+
+    /**
+     * @return error listing every repository method which falls back to a collection scan, empty if none do
+     */
+    public Mono<Void> verifyRepositoryQueries() {
+        return findCollectionScans()
+                .collectList()
+                .flatMap(methods -> methods.isEmpty()
+                        ? Mono.empty()
+                        : Mono.error(new IllegalStateException("Queries fall back to COLLSCAN: " + methods)));
+    }
+
+    public Flux<String> findCollectionScans() {
+        Repositories repositories = new Repositories(applicationContext);
+        return Flux.fromIterable(repositories)
+                .map(repositories::getRequiredRepositoryInformation)
+                .flatMap(info -> Flux.fromArray(info.getRepositoryInterface().getDeclaredMethods())
+                        .filter(method -> method.isAnnotationPresent(Query.class))
+                        .flatMap(method -> explain(info, method)
+                                .filter(QueryPlanChecker::containsCollectionScan)
+                                .map(plan -> info.getRepositoryInterface().getSimpleName() + "." + method.getName())))
+                .doOnNext(method -> log.warn("Query plan for " + method + " uses a collection scan"));
+    }
+
+    private Mono<Document> explain(RepositoryInformation info, Method method) {
+        Document filter = codec.decode(method.getAnnotation(Query.class).value(), sampleArguments(method));
+        Document explain = new Document("explain", new Document("find", mongoTemplate.getCollectionName(info.getDomainType()))
+                .append("filter", filter))
+                .append("verbosity", "queryPlanner");
+        return mongoTemplate.executeCommand(explain)
+                .map(result -> result.get("queryPlanner", Document.class).get("winningPlan", Document.class));
+    }
+
+    private Object[] sampleArguments(Method method) {
+        return Arrays.stream(method.getParameterTypes())
+                .map(this::sampleValue)
+                .map(value -> mongoTemplate.getConverter().convertToMongoType(value))
+                .toArray();
+    }
+
+    private Object sampleValue(Class<?> type) {
+        if (type == String.class) {
+            return "a";
+        } else if (Number.class.isAssignableFrom(type) || type.isPrimitive()) {
+            return 0;
+        } else if (Date.class.isAssignableFrom(type)) {
+            return new Date();
+        } else if (type.isEnum()) {
+            return type.getEnumConstants()[0];
+        }
+        return null;
+    }
+
+    /**
+     * Walks a winning plan (inputStage/inputStages/shards) looking for a COLLSCAN stage
+     */
+    public static boolean containsCollectionScan(Document plan) {
+        if (COLLSCAN.equals(plan.getString("stage"))) {
+            return true;
+        }
+        for (Object value : plan.values()) {
+            if (value instanceof Document child && containsCollectionScan(child)) {
+                return true;
+            }
+            if (value instanceof List<?> children && children.stream()
+                    .anyMatch(it -> it instanceof Document child && containsCollectionScan(child))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,45 @@
+package com.aad.ffsmart.forecast;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Day of week forecaster
+ * <p>
+ * Keeps an exponentially weighted level per weekday (Mondays only update the Monday level etc.)
+ * and sums the levels of the weekdays being forecast
+ *
+ * @author Oliver Wortley
+ */
+@AllArgsConstructor
+@Getter
+class DayOfWeekForecaster implements Forecaster {
+    private final int windowDays;
+
+    private final double alpha;
+
+    public double forecast(int[] daily, long lastDay, int days) {
+        double[] levels = new double[7];
+        boolean[] seen = new boolean[7];
+        long firstDay = lastDay - daily.length + 1;
+        for (int i = 0; i < daily.length; i++) {
+            int weekday = weekday(firstDay + i);
+            if (seen[weekday]) {
+                levels[weekday] += alpha * (daily[i] - levels[weekday]);
+            } else {
+                levels[weekday] = daily[i];
+                seen[weekday] = true;
+            }
+        }
+
+        double total = 0;
+        for (long day = lastDay + 1; day <= lastDay + days; day++) {
+            total += levels[weekday(day)];
+        }
+        return total;
+    }
+
+    private static int weekday(long epochDay) {
+        return (int) Math.floorMod(epochDay + 3, 7L); // 1970-01-01 was a Thursday, 0 -> Monday
+    }
+}
@@ -0,0 +1,169 @@
+package com.aad.ffsmart.forecast;
+
+import com.aad.ffsmart.forecast.model.ForecastModel;
+import com.aad.ffsmart.forecast.model.ForecastSettings;
+import com.aad.ffsmart.inventory.InventoryChange;
+import com.aad.ffsmart.inventory.InventoryDailyStats;
+import com.aad.ffsmart.inventory.InventoryDailyStatsRepository;
+import com.aad.ffsmart.inventory.InventoryItem;
+import com.aad.ffsmart.inventory.model.InventoryOperation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Demand forecaster
+ * <p>
+ * Keeps a DemandHistory (removed quantity per day) for every item, updated as inventory is removed,
+ * so auto order generation does not re-read weeks of inventory changes on every run
+ * History is seeded once from the InventoryDailyStats rollup, for the days before the seed:
+ * removals before that day are counted by the seed, removals after it by record, so none are counted twice
+ * Removals recorded before the seed starts are held until it picks its cutoff, then the ones from its day are counted
+ * Forecasters are built from a supplier's ForecastSettings, unset fields fall back to the forecast.* defaults
+ *
+ * @author Oliver Wortley
+ */
+@Component
+@Slf4j
+public class DemandForecaster {
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    @Autowired
+    private InventoryDailyStatsRepository inventoryDailyStatsRepository;
+
+    @Value("${forecast.history-days:56}")
+    private int historyDays = 56;
+
+    @Value("${forecast.model:MOVING_AVERAGE}")
+    private ForecastModel defaultModel = ForecastModel.MOVING_AVERAGE;
+
+    @Value("${forecast.window-days:28}")
+    private int defaultWindowDays = 28;
+
+    @Value("${forecast.alpha:0.3}")
+    private double defaultAlpha = 0.3;
+
+    @Value("${forecast.min-order-quantity:1}")
+    private int defaultMinOrderQuantity = 1;
+
+    private final Map<String, DemandHistory> histories = new ConcurrentHashMap<>();
+
+    // removals before this time (start of the seed's day) are left to the seed, Long.MAX_VALUE until the seed starts
+    private final AtomicLong seedCutoff = new AtomicLong(Long.MAX_VALUE);
+
+    // removals recorded before the seed starts, guarded by itself so none are added after the seed drains it
+    private final List<InventoryChange> pending = new ArrayList<>();
+
+    // errors are not cached, so a failed seed is tried again by the next caller
+    private final Mono<Integer> seeded = Mono.defer(this::seed).cacheInvalidateIf(items -> false);
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initHistory() {
+        seeded.subscribe(null, error -> log.error("Demand history seed failed", error));
+    }
+
+    /**
+     * Completes once demand history has been seeded
+     */
+    public Mono<Void> ready() {
+        return seeded.then();
+    }
+
+    private Mono<Integer> seed() {
+        List<InventoryChange> recorded;
+        synchronized (pending) {
+            seedCutoff.compareAndSet(Long.MAX_VALUE, epochDay(System.currentTimeMillis()) * DAY_MILLIS);
+            recorded = new ArrayList<>(pending);
+            pending.clear();
+        }
+        recorded.forEach(this::record);
+        long cutoff = seedCutoff.get();
+        Date from = new Date((epochDay(cutoff) - historyDays) * DAY_MILLIS);
+        return inventoryDailyStatsRepository.findByDayRange(from, new Date(cutoff))
+                .filter(stats -> stats.getRemoved() != null && stats.getRemoved() > 0)
+                .collectList() // applied all together, so a failed seed leaves nothing half counted
+                .map(days -> {
+                    for (InventoryDailyStats stats : days) {
+                        history(stats.getItemId()).add(epochDay(stats.getDay().getTime()), stats.getRemoved());
+                    }
+                    log.info("Demand history seeded for " + histories.size() + " items");
+                    return histories.size();
+                });
+    }
+
+    public void record(InventoryChange change) {
+        if (change.getOperation() != InventoryOperation.REMOVE) {
+            return;
+        }
+        if (seedCutoff.get() == Long.MAX_VALUE) {
+            synchronized (pending) {
+                if (seedCutoff.get() == Long.MAX_VALUE) {
+                    pending.add(change);
+                    return;
+                }
+            }
+        }
+        if (change.getDate().getTime() < seedCutoff.get()) {
+            return;
+        }
+        long day = epochDay(change.getDate().getTime());
+        for (InventoryItem item : change.getItems()) {
+            history(item.getItemId()).add(day, item.getQuantity());
+        }
+    }
+
+    public ForecastSettings resolve(ForecastSettings settings) {
+        ForecastSettings supplierSettings = settings != null ? settings : new ForecastSettings();
+        return new ForecastSettings(
+                supplierSettings.getModel() != null ? supplierSettings.getModel() : defaultModel,
+                Math.min(supplierSettings.getWindowDays() != null ? supplierSettings.getWindowDays() : defaultWindowDays, historyDays),
+                supplierSettings.getAlpha() != null ? supplierSettings.getAlpha() : defaultAlpha,
+                supplierSettings.getMinOrderQuantity() != null ? supplierSettings.getMinOrderQuantity() : defaultMinOrderQuantity);
+    }
+
+    /**
+     * @param settings resolved settings (see resolve)
+     */
+    public Forecaster forecaster(ForecastSettings settings) {
+        return switch (settings.getModel()) {
+            case MOVING_AVERAGE -> new MovingAverageForecaster(settings.getWindowDays());
+            case EWMA -> new EwmaForecaster(settings.getWindowDays(), settings.getAlpha());
+            case DAY_OF_WEEK -> new DayOfWeekForecaster(settings.getWindowDays(), settings.getAlpha());
+        };
+    }
+
+    /**
+     * Forecasts an item's demand from the window of complete days up to yesterday
+     *
+     * @return forecast total demand over the given number of days starting today, 0 for items never removed
+     */
+    public double forecast(String itemId, Forecaster forecaster, int days) {
+        DemandHistory history = histories.get(itemId);
+        if (history == null) {
+            return 0;
+        }
+        // today is not over yet, its demand so far would pull forecasts down
+        long yesterday = epochDay(System.currentTimeMillis()) - 1;
+        return forecaster.forecast(history.window(yesterday, forecaster.getWindowDays()), yesterday, days);
+    }
+
+    private DemandHistory history(String itemId) {
+        return histories.computeIfAbsent(itemId, id -> new DemandHistory(historyDays));
+    }
+
+    private static long epochDay(long millis) {
+        return Math.floorDiv(millis, DAY_MILLIS);
+    }
+}
@@ -0,0 +1,52 @@
+package com.aad.ffsmart.forecast;
+
+/**
+ * Demand history of one item
+ * <p>
+ * Removed quantity per day (UTC epoch day) in a fixed size ring, so state per item stays small however long the app runs
+ * Days older than the ring are dropped as newer days are added
+ *
+ * @author Oliver Wortley
+ */
+class DemandHistory {
+    private final int[] quantities;
+
+    private long lastDay = Long.MIN_VALUE;
+
+    DemandHistory(int days) {
+        quantities = new int[days];
+    }
+
+    synchronized void add(long day, int quantity) {
+        if (lastDay == Long.MIN_VALUE) {
+            lastDay = day;
+        } else if (day > lastDay) {
+            // clear the slots of the days skipped since the last removal
+            for (long cleared = Math.max(lastDay + 1, day - quantities.length + 1); cleared <= day; cleared++) {
+                quantities[slot(cleared)] = 0;
+            }
+            lastDay = day;
+        } else if (day <= lastDay - quantities.length) {
+            return; // older than the history kept
+        }
+        quantities[slot(day)] += quantity;
+    }
+
+    /**
+     * @return quantities of the given number of days up to and including lastDay, oldest first
+     */
+    synchronized int[] window(long lastDay, int days) {
+        int[] window = new int[days];
+        for (int i = 0; i < days; i++) {
+            long day = lastDay - days + 1 + i;
+            if (day <= this.lastDay && day > this.lastDay - quantities.length) {
+                window[i] = quantities[slot(day)];
+            }
+        }
+        return window;
+    }
+
+    private int slot(long day) {
+        return (int) Math.floorMod(day, (long) quantities.length);
+    }
+}
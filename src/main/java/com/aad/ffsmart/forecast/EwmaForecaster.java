@@ -0,0 +1,27 @@
+package com.aad.ffsmart.forecast;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Exponentially weighted moving average forecaster
+ * <p>
+ * Starts from the window mean, then each day moves the level alpha of the way towards that day's demand
+ *
+ * @author Oliver Wortley
+ */
+@AllArgsConstructor
+@Getter
+class EwmaForecaster implements Forecaster {
+    private final int windowDays;
+
+    private final double alpha;
+
+    public double forecast(int[] daily, long lastDay, int days) {
+        double level = new MovingAverageForecaster(windowDays).forecast(daily, lastDay, 1);
+        for (int quantity : daily) {
+            level += alpha * (quantity - level);
+        }
+        return level * days;
+    }
+}
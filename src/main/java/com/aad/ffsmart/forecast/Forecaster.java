@@ -0,0 +1,24 @@
+package com.aad.ffsmart.forecast;
+
+/**
+ * Forecaster interface
+ * <p>
+ * Forecasts an item's total demand over the days following its history window
+ * Implemented by MovingAverageForecaster, EwmaForecaster and DayOfWeekForecaster
+ *
+ * @author Oliver Wortley
+ */
+public interface Forecaster {
+
+    /**
+     * @return days of history the forecaster reads
+     */
+    int getWindowDays();
+
+    /**
+     * @param daily   removed quantity per day, oldest first, ending at lastDay
+     * @param lastDay epoch day of the last entry in daily
+     * @param days    number of days after lastDay to forecast
+     */
+    double forecast(int[] daily, long lastDay, int days);
+}
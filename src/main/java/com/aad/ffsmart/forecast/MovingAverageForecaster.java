@@ -0,0 +1,25 @@
+package com.aad.ffsmart.forecast;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Moving average forecaster
+ * <p>
+ * Mean daily demand over the window, every day weighted the same
+ *
+ * @author Oliver Wortley
+ */
+@AllArgsConstructor
+@Getter
+class MovingAverageForecaster implements Forecaster {
+    private final int windowDays;
+
+    public double forecast(int[] daily, long lastDay, int days) {
+        long total = 0;
+        for (int quantity : daily) {
+            total += quantity;
+        }
+        return (double) total / daily.length * days;
+    }
+}
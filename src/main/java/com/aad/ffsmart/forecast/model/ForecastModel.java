@@ -0,0 +1,16 @@
+package com.aad.ffsmart.forecast.model;
+
+/**
+ * Demand forecast models
+ * <p>
+ * MOVING_AVERAGE -> mean daily demand over the window
+ * EWMA -> exponentially weighted daily demand, recent days count more
+ * DAY_OF_WEEK -> exponentially weighted demand per weekday, for items used more on some days than others
+ *
+ * @author Oliver Wortley
+ */
+public enum ForecastModel {
+    MOVING_AVERAGE,
+    EWMA,
+    DAY_OF_WEEK
+}
@@ -0,0 +1,27 @@
+package com.aad.ffsmart.forecast.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Forecast settings
+ * <p>
+ * Stored per supplier, fields left null fall back to the forecast.* defaults
+ * windowDays -> days of demand history used, alpha -> smoothing factor (EWMA, DAY_OF_WEEK)
+ * minOrderQuantity -> smallest quantity ordered for an item once it needs reordering
+ *
+ * @author Oliver Wortley
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ForecastSettings {
+    private ForecastModel model;
+
+    private Integer windowDays;
+
+    private Double alpha;
+
+    private Integer minOrderQuantity;
+}
@@ -0,0 +1,335 @@
+package com.aad.ffsmart.inventory;
+
+import com.aad.ffsmart.alert.Alert;
+import com.aad.ffsmart.alert.AlertCode;
+import com.aad.ffsmart.alert.AlertOutbox;
+import com.aad.ffsmart.inventory.model.ExpirySummary;
+import com.aad.ffsmart.scheduling.SchedulerConfig;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Expiry index
+ * <p>
+ * Keeps the quantity of every Inventory document (itemId + expiryDate, unique) in memory, ordered by expiry date,
+ * so expired / expiring / next expiry checks are a seek into a sorted map instead of a scan of the Inventory collection
+ * Kept current by inventory writes, mirroring the repository: add increments, remove decrements and drops entries at 0
+ * Seeded once from the Inventory collection; writes running while the seed reads are detected and the seed retried,
+ * with a growing delay and without giving up, in the background (expiry queries go to the collection until it is seeded)
+ * A failed or cancelled write may have been partly written without being applied, so it makes the index re-seed the same way
+ * <p>
+ * Only sees writes made through this instance's InventoryService. Set inventory.expiry-index.sole-writer=false when
+ * several instances share the database, or Inventory is written from outside the app: expiry queries then always go
+ * to the collection, and the index (still used for the alert timer and gauges) is re-seeded periodically
+ * <p>
+ * Also drives the expiring items alert: a single timer on the job scheduler fires when the next item comes within
+ * the alert window, or straight away when stock is added already inside it, at most once per alert.min-interval
+ * <p>
+ * Being in memory, it also backs the inventory gauges (inventory.items, inventory.quantity, inventory.expired.items)
+ * without a query per scrape
+ *
+ * @author Oliver Wortley
+ */
+@Component
+@Slf4j
+public class ExpiryIndex implements MeterBinder {
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final Duration SEED_RETRY_DELAY = Duration.ofMillis(250);
+    private static final Duration SEED_RETRY_MAX_DELAY = Duration.ofSeconds(30);
+
+    @Autowired
+    private InventoryRepository inventoryRepository;
+
+    @Autowired
+    private AlertOutbox alertOutbox;
+
+    @Autowired
+    @Qualifier(SchedulerConfig.JOB_SCHEDULER)
+    private Scheduler jobScheduler;
+
+    @Value("${inventory.expiry-alert.days:3}")
+    private int alertDays = 3;
+
+    @Value("${inventory.expiry-alert.min-interval:3600000}")
+    private long alertMinInterval = 3600000;
+
+    @Value("${inventory.expiry-index.sole-writer:true}")
+    private boolean soleWriter = true;
+
+    private volatile ConcurrentSkipListMap<ExpiryKey, Integer> index = new ConcurrentSkipListMap<>();
+
+    // seed is installed only if no write started or was running while it read the collection
+    private final AtomicLong writesStarted = new AtomicLong();
+    private final AtomicInteger writesInFlight = new AtomicInteger();
+
+    // expiries up to this time have been covered by an alert, guarded by this
+    private long alertedUpTo;
+    private long lastAlertAt = Long.MIN_VALUE / 2;
+    private boolean alertPending;
+    private Disposable timer;
+    private long timerAt = Long.MAX_VALUE;
+    private long timerGeneration;
+    private volatile boolean seededIndex;
+    private final AtomicBoolean reseeding = new AtomicBoolean();
+
+    // errors are not cached, so a failed seed is tried again by the next caller
+    private final Mono<Integer> seeded = Mono.defer(this::seed).cacheInvalidateIf(items -> false);
+
+    record ExpiryKey(long expiry, String itemId) implements Comparable<ExpiryKey> {
+        static ExpiryKey of(InventoryItem item) {
+            return new ExpiryKey(item.getExpiryDate().getTime(), item.getItemId());
+        }
+
+        // lowest key at the given time, itemIds are never empty
+        static ExpiryKey at(long time) {
+            return new ExpiryKey(time, "");
+        }
+
+        @Override
+        public int compareTo(ExpiryKey other) {
+            int byExpiry = Long.compare(expiry, other.expiry);
+            return byExpiry != 0 ? byExpiry : itemId.compareTo(other.itemId);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initIndex() {
+        seeded.subscribe(null, error -> log.error("Expiry index seed failed", error));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("inventory.items", this, expiryIndex -> expiryIndex.index.size())
+                .description("Inventory documents (item + expiry date)")
+                .register(registry);
+        Gauge.builder("inventory.quantity", this, expiryIndex -> expiryIndex.index.values().stream().mapToLong(Integer::longValue).sum())
+                .description("Total quantity of every item in the fridge")
+                .register(registry);
+        Gauge.builder("inventory.expired.items", this, expiryIndex -> expiryIndex.index.headMap(ExpiryKey.at(expiryIndex.now())).size())
+                .description("Inventory documents past their expiry date")
+                .register(registry);
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.expiry-index.reseed-interval:3600000}", initialDelayString = "${inventory.expiry-index.reseed-interval:3600000}")
+    void reseed() {
+        if (!soleWriter) {
+            startReseed();
+        }
+    }
+
+    private void startReseed() {
+        if (reseeding.compareAndSet(false, true)) {
+            seed().doFinally(signal -> reseeding.set(false))
+                    .subscribe(null, error -> log.error("Expiry index re-seed failed", error));
+        }
+    }
+
+    /**
+     * Completes once the index has been seeded
+     */
+    public Mono<Void> ready() {
+        return seeded.then();
+    }
+
+    /**
+     * Whether expiry queries can be answered from the index: it has been seeded and sees every inventory write
+     */
+    public boolean isCurrent() {
+        return soleWriter && seededIndex;
+    }
+
+    private Mono<Integer> seed() {
+        return Mono.defer(() -> {
+                    if (writesInFlight.get() > 0) {
+                        return Mono.<Integer>empty();
+                    }
+                    long started = writesStarted.get();
+                    return inventoryRepository.findAll()
+                            .collect(ConcurrentSkipListMap<ExpiryKey, Integer>::new,
+                                    (seed, item) -> seed.merge(ExpiryKey.of(item), item.getQuantity(), Integer::sum))
+                            .flatMap(seed -> install(seed, started) ? Mono.just(seed.size()) : Mono.<Integer>empty());
+                })
+                .repeatWhenEmpty(attempts -> attempts.concatMap(attempt -> Mono.delay(retryDelay(attempt), jobScheduler)))
+                .doOnNext(size -> log.info("Expiry index seeded with " + size + " entries"));
+    }
+
+    // 250ms, doubling up to 30s
+    private static Duration retryDelay(long attempt) {
+        return attempt < 7 ? SEED_RETRY_DELAY.multipliedBy(1L << attempt) : SEED_RETRY_MAX_DELAY;
+    }
+
+    private synchronized boolean install(ConcurrentSkipListMap<ExpiryKey, Integer> seed, long started) {
+        if (writesStarted.get() != started || writesInFlight.get() > 0) {
+            return false;
+        }
+        index = seed;
+        seededIndex = true;
+        schedule();
+        return true;
+    }
+
+    /**
+     * Called before an inventory write is sent, paired with writeFinished
+     */
+    public void writeStarted() {
+        writesStarted.incrementAndGet();
+        writesInFlight.incrementAndGet();
+    }
+
+    public void writeFinished() {
+        writesInFlight.decrementAndGet();
+    }
+
+    /**
+     * Called when an inventory write failed or was cancelled, before writeFinished
+     * <p>
+     * Part of it may have been written without being applied, e.g. an ordered bulk write failing partway,
+     * so the index stops answering expiry queries until it has been re-seeded
+     */
+    public void writeFailed() {
+        seededIndex = false;
+        log.warn("Inventory write failed, expiry index re-seeding");
+        startReseed();
+    }
+
+    /**
+     * Applies an add (sign 1) or remove (sign -1) of the given items, after it has been written
+     */
+    public synchronized void apply(List<InventoryItem> items, int sign) {
+        long now = now();
+        for (InventoryItem item : items) {
+            ExpiryKey key = ExpiryKey.of(item);
+            Integer previous = index.get(key);
+            int quantity = (previous != null ? previous : 0) + sign * item.getQuantity();
+            if (quantity > 0) {
+                index.put(key, quantity);
+                // new stock inside a window already alerted on would otherwise never be alerted
+                if (previous == null && key.expiry() > now && key.expiry() <= alertedUpTo) {
+                    alertPending = true;
+                }
+            } else {
+                index.remove(key);
+            }
+        }
+        schedule();
+    }
+
+    /**
+     * Drops every entry which expired before the cutoff, after they have been deleted
+     */
+    public synchronized void removeExpired(Date cutoff) {
+        index.headMap(ExpiryKey.at(cutoff.getTime())).clear();
+    }
+
+    public boolean hasExpired(Date now) {
+        Map.Entry<ExpiryKey, Integer> first = index.firstEntry();
+        return first != null && first.getKey().expiry() < now.getTime();
+    }
+
+    public ExpirySummary getSummary(int days) {
+        ConcurrentSkipListMap<ExpiryKey, Integer> current = index;
+        long now = now();
+        ExpiryKey next = current.ceilingKey(ExpiryKey.at(now));
+        return new ExpirySummary(
+                days,
+                (long) current.headMap(ExpiryKey.at(now)).size(),
+                countExpiring(current, now, now + days * DAY_MILLIS),
+                next != null ? new Date(next.expiry()) : null);
+    }
+
+    private static long countExpiring(ConcurrentSkipListMap<ExpiryKey, Integer> index, long from, long to) {
+        return index.subMap(ExpiryKey.at(from), ExpiryKey.at(to + 1)).size(); // from <= expiry <= to
+    }
+
+    private static long sumExpiring(ConcurrentSkipListMap<ExpiryKey, Integer> index, long from, long to) {
+        return index.subMap(ExpiryKey.at(from), ExpiryKey.at(to + 1)).values().stream().mapToLong(Integer::longValue).sum();
+    }
+
+    private long now() {
+        return jobScheduler.now(TimeUnit.MILLISECONDS);
+    }
+
+    // (re)arms the alert timer if the next alert is due sooner than the timer, must hold the lock
+    private void schedule() {
+        if (!seededIndex) {
+            return;
+        }
+        long now = now();
+        long due;
+        if (alertPending) {
+            due = now;
+        } else {
+            ExpiryKey next = index.ceilingKey(ExpiryKey.at(Math.max(alertedUpTo, now) + 1));
+            if (next == null) {
+                return;
+            }
+            due = next.expiry() - alertDays * DAY_MILLIS;
+        }
+        due = Math.max(due, Math.max(now, lastAlertAt + alertMinInterval));
+        if (timer != null && timerAt <= due) {
+            return;
+        }
+        if (timer != null) {
+            timer.dispose();
+        }
+        long generation = ++timerGeneration;
+        timer = null;
+        timerAt = due;
+        try {
+            Disposable scheduled = jobScheduler.schedule(() -> alertExpiring(generation), due - now, TimeUnit.MILLISECONDS);
+            // a scheduler running due tasks inline may already have fired (and re-armed) before returning
+            if (timerGeneration == generation && timerAt == due) {
+                timer = scheduled;
+            }
+        } catch (RejectedExecutionException e) {
+            // leave unarmed, the next write or seed tries again
+            timer = null;
+            timerAt = Long.MAX_VALUE;
+            log.error("Expiring items alert could not be scheduled", e);
+        }
+    }
+
+    private synchronized void alertExpiring(long generation) {
+        if (generation != timerGeneration) {
+            return; // replaced by an earlier timer
+        }
+        timer = null;
+        timerAt = Long.MAX_VALUE;
+        long now = now();
+        long windowEnd = now + alertDays * DAY_MILLIS;
+        long quantity = sumExpiring(index, now, windowEnd);
+        boolean newlyExpiring = alertPending || countExpiring(index, Math.max(alertedUpTo + 1, now), windowEnd) > 0;
+        if (quantity > 0 && newlyExpiring) {
+            alertOutbox.add(new Alert(AlertCode.ITEMS_TO_EXPIRE, "Expiring items",
+                            quantity + " items in the fridge are due to expire within the next " + alertDays + " days", new Date(now)))
+                    .subscribe(null, error -> log.error("Expiring items alert failed", error));
+            lastAlertAt = now;
+        }
+        alertedUpTo = windowEnd;
+        alertPending = false;
+        schedule();
+    }
+}
@@ -4,6 +4,7 @@ import com.aad.ffsmart.inventory.model.InventoryOperation;
 import com.fasterxml.jackson.annotation.JsonFormat;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.MongoId;
 
@@ -14,11 +15,13 @@ import java.util.List;
  * Inventory change data class
  *
  * Defines schema for InventoryChanges collection
+ * Indexed on date (+ _id as a tie-break) for history ordering, time-range queries and keyset pagination
  *
  * @author Oliver Wortley
  *
  */
 @Document("InventoryChanges")
+@CompoundIndex(name = "date_id", def = "{ date : -1, _id : -1 }")
 @AllArgsConstructor
 @Data
 public class InventoryChange {
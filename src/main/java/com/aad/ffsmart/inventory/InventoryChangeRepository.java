@@ -1,15 +1,31 @@
 package com.aad.ffsmart.inventory;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+import java.util.Date;
 
 /**
  * Inventory changes repository
- *
- * All required methods predefined by Spring magic
+ * <p>
+ * Date range queries are served by the date/_id compound index on InventoryChange
+ * findByDateRangeBefore continues a page from a (date, id) keyset cursor, so paging does not skip over earlier pages
  *
  * @author Oliver Wortley
  */
 @Repository
 public interface InventoryChangeRepository extends ReactiveMongoRepository<InventoryChange, String> {
+
+    @Query(value = "{ date : { $gte : ?0 } }")
+    Flux<InventoryChange> findSince(Date from, Sort sort);
+
+    @Query(value = "{ date : { $gte : ?0, $lt : ?1 } }")
+    Flux<InventoryChange> findByDateRange(Date from, Date to, Pageable pageable);
+
+    @Query(value = "{ $and : [ { date : { $gte : ?0, $lt : ?1 } }, { $or : [ { date : { $lt : ?2 } }, { date : ?2, _id : { $lt : ?3 } } ] } ] }")
+    Flux<InventoryChange> findByDateRangeBefore(Date from, Date to, Date cursorDate, String cursorId, Pageable pageable);
 }
@@ -1,62 +1,96 @@
 package com.aad.ffsmart.inventory;
 
-import com.aad.ffsmart.auth.JWTUtil;
+import com.aad.ffsmart.inventory.model.InventoryFeedEvent;
+import com.aad.ffsmart.inventory.model.InventoryFeedEventType;
 import com.aad.ffsmart.inventory.model.InventoryItemRequest;
+import com.aad.ffsmart.inventory.model.StatsInterval;
 import com.aad.ffsmart.web.ResponseMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.format.annotation.DateTimeFormat;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.security.Principal;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.util.Date;
 import java.util.List;
 
 import static com.aad.ffsmart.web.ResponseHandler.generateResponse;
+import static com.aad.ffsmart.web.ResponseHandler.generateStreamingResponse;
 
 /**
  * Inventory controller class
  * <p>
  * Defines endpoints for /inventory path with params, request body, required user role
+ * /inventory/feed streams the inventory matching the same filters as GET /inventory as Server-Sent Events
+ * from/to on /inventory/change-history and /inventory/stats are whole UTC days, both ends included
  *
  * @author Oliver Wortley
  */
 @RestController
 @RequestMapping("/inventory")
 public class InventoryController {
+    private static final Duration HEARTBEAT_INTERVAL = Duration.ofSeconds(15);
+
     @Autowired
     private InventoryService inventoryService;
+
     @Autowired
-    private JWTUtil jwtUtil;
+    private ObjectMapper objectMapper;
 
     @PostMapping("/insert")
     @PreAuthorize("hasRole('DELIVERY_DRIVER') or hasRole('CHEF') or hasRole('HEAD_CHEF')")
-    public Mono<ResponseEntity<Object>> addInventory(@RequestBody List<InventoryItem> items, ServerWebExchange serverWebExchange) {
-        String authToken = serverWebExchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
-        String userId = jwtUtil.getUsernameFromToken(authToken != null ? authToken.substring(7) : null);
+    public Mono<ResponseEntity<Object>> addInventory(@RequestBody List<InventoryItem> items, Principal principal) {
+        String userId = principal.getName();
         return generateResponse(ResponseMessage.SUCCESS, HttpStatus.CREATED, inventoryService.addInventory(items, userId));
     }
 
     @PostMapping("/remove")
     @PreAuthorize("hasRole('CHEF') or hasRole('HEAD_CHEF')")
-    public Mono<ResponseEntity<Object>> removeInventory(@RequestBody List<InventoryItem> items, ServerWebExchange serverWebExchange) {
-        String authToken = serverWebExchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
-        String userId = jwtUtil.getUsernameFromToken(authToken != null ? authToken.substring(7) : null);
+    public Mono<ResponseEntity<Object>> removeInventory(@RequestBody List<InventoryItem> items, Principal principal) {
+        String userId = principal.getName();
         return generateResponse(ResponseMessage.SUCCESS, HttpStatus.OK, inventoryService.removeInventory(items, userId));
     }
 
     @GetMapping
     @PreAuthorize("hasRole('CHEF') or hasRole('HEAD_CHEF')")
-    public Mono<ResponseEntity<Object>> getAllInventory(@RequestParam(required = false, defaultValue = "") String itemName,
-                                                        @RequestParam(required = false, defaultValue = "0") Integer minQuantity,
-                                                        @RequestParam(required = false, defaultValue = "100000") Integer maxQuantity,
-                                                        @RequestParam(required = false, defaultValue = "2020-01-01") @DateTimeFormat(pattern = "yyyy-MM-dd") Date expiryDateFrom,
-                                                        @RequestParam(required = false, defaultValue = "2030-01-01") @DateTimeFormat(pattern = "yyyy-MM-dd") Date expiryDateTo) {
-        return generateResponse(ResponseMessage.SUCCESS, HttpStatus.OK, inventoryService.getAllInventory(itemName, minQuantity, maxQuantity, expiryDateFrom, expiryDateTo));
+    public Mono<ResponseEntity<Flux<DataBuffer>>> getAllInventory(@RequestParam(required = false, defaultValue = "") String itemName,
+                                                                  @RequestParam(required = false, defaultValue = "") String search,
+                                                                  @RequestParam(required = false, defaultValue = "0") Integer minQuantity,
+                                                                  @RequestParam(required = false, defaultValue = "100000") Integer maxQuantity,
+                                                                  @RequestParam(required = false, defaultValue = "2020-01-01") @DateTimeFormat(pattern = "yyyy-MM-dd") Date expiryDateFrom,
+                                                                  @RequestParam(required = false, defaultValue = "2030-01-01") @DateTimeFormat(pattern = "yyyy-MM-dd") Date expiryDateTo,
+                                                                  ServerWebExchange serverWebExchange) {
+        // itemName matches the start of the name, search matches whole words anywhere in it
+        Flux<InventoryItem> inventory = search.isBlank()
+                ? inventoryService.getAllInventory(itemName, minQuantity, maxQuantity, expiryDateFrom, expiryDateTo)
+                : inventoryService.searchInventory(search, itemName, minQuantity, maxQuantity, expiryDateFrom, expiryDateTo);
+        return generateStreamingResponse(ResponseMessage.SUCCESS, HttpStatus.OK, inventory, serverWebExchange, objectMapper);
+    }
+
+    @GetMapping(value = "/feed", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasRole('CHEF') or hasRole('HEAD_CHEF')")
+    public Flux<ServerSentEvent<InventoryFeedEvent>> streamInventory(@RequestParam(required = false, defaultValue = "") String itemName,
+                                                                     @RequestParam(required = false, defaultValue = "0") Integer minQuantity,
+                                                                     @RequestParam(required = false, defaultValue = "100000") Integer maxQuantity,
+                                                                     @RequestParam(required = false, defaultValue = "2020-01-01") @DateTimeFormat(pattern = "yyyy-MM-dd") Date expiryDateFrom,
+                                                                     @RequestParam(required = false, defaultValue = "2030-01-01") @DateTimeFormat(pattern = "yyyy-MM-dd") Date expiryDateTo) {
+        // heartbeat comments stop idle connections being closed by proxies, the stream ends after a reset
+        return Flux.merge(
+                inventoryService.streamInventory(itemName, minQuantity, maxQuantity, expiryDateFrom, expiryDateTo)
+                        .map(event -> ServerSentEvent.builder(event).event(event.getType().event).build()),
+                Flux.interval(HEARTBEAT_INTERVAL).map(tick -> ServerSentEvent.<InventoryFeedEvent>builder().comment("heartbeat").build())
+        ).takeUntil(event -> event.data() != null && event.data().getType() == InventoryFeedEventType.RESET);
     }
 
     @GetMapping("/{inventoryId}")
@@ -82,8 +116,13 @@ public class InventoryController {
 
     @GetMapping("/change-history")
     @PreAuthorize("hasRole('CHEF') or hasRole('HEAD_CHEF')")
-    public Mono<ResponseEntity<Object>> getInventoryChangeHistory() {
-        return generateResponse(ResponseMessage.SUCCESS, HttpStatus.OK, inventoryService.getInventoryChangeHistory());
+    public Mono<ResponseEntity<Flux<DataBuffer>>> getInventoryChangeHistory(@RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate from,
+                                                                            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate to,
+                                                                            @RequestParam(required = false) String cursor,
+                                                                            @RequestParam(required = false) Integer limit,
+                                                                            ServerWebExchange serverWebExchange) {
+        return generateStreamingResponse(ResponseMessage.SUCCESS, HttpStatus.OK,
+                inventoryService.getInventoryChangeHistory(from, to, cursor, limit), serverWebExchange, objectMapper);
     }
 
     @GetMapping("/change-history/{inventoryChangeId}")
@@ -104,4 +143,43 @@ public class InventoryController {
         return inventoryService.removeExpiredItems().then(generateResponse(ResponseMessage.SUCCESS, HttpStatus.NO_CONTENT));
     }
 
+    @GetMapping("/expiry")
+    @PreAuthorize("hasRole('CHEF') or hasRole('HEAD_CHEF')")
+    public Mono<ResponseEntity<Object>> getExpirySummary(@RequestParam(required = false) Integer days) {
+        return generateResponse(ResponseMessage.SUCCESS, HttpStatus.OK, inventoryService.getExpirySummary(days));
+    }
+
+    @GetMapping("/supplier-stock")
+    @PreAuthorize("hasRole('CHEF') or hasRole('HEAD_CHEF')")
+    public Mono<ResponseEntity<Object>> getSupplierStock() {
+        return generateResponse(ResponseMessage.SUCCESS, HttpStatus.OK, inventoryService.aggregateInventory());
+    }
+
+    @PostMapping("/supplier-stock/rebuild")
+    @PreAuthorize("hasRole('HEAD_CHEF')")
+    public Mono<ResponseEntity<Object>> rebuildSupplierStock() {
+        return inventoryService.rebuildSupplierStock().then(generateResponse(ResponseMessage.SUCCESS, HttpStatus.NO_CONTENT));
+    }
+
+    @GetMapping("/supplier-stock/check")
+    @PreAuthorize("hasRole('HEAD_CHEF')")
+    public Mono<ResponseEntity<Object>> checkSupplierStock() {
+        return generateResponse(ResponseMessage.SUCCESS, HttpStatus.OK, inventoryService.checkSupplierStock());
+    }
+
+    @GetMapping("/stats")
+    @PreAuthorize("hasRole('CHEF') or hasRole('HEAD_CHEF')")
+    public Mono<ResponseEntity<Object>> getUsageStats(@RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate from,
+                                                      @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate to,
+                                                      @RequestParam(required = false, defaultValue = "DAY") StatsInterval interval,
+                                                      @RequestParam(required = false) String itemId) {
+        return generateResponse(ResponseMessage.SUCCESS, HttpStatus.OK, inventoryService.getUsageStats(from, to, interval, itemId));
+    }
+
+    @PostMapping("/stats/rebuild")
+    @PreAuthorize("hasRole('HEAD_CHEF')")
+    public Mono<ResponseEntity<Object>> rebuildDailyStats() {
+        return inventoryService.rebuildDailyStats().then(generateResponse(ResponseMessage.SUCCESS, HttpStatus.NO_CONTENT));
+    }
+
 }
@@ -0,0 +1,60 @@
+package com.aad.ffsmart.inventory;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.MongoId;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * InventoryDailyStats data class
+ * <p>
+ * Defines schema for InventoryDailyStats collection, a rollup of InventoryChanges holding the quantity of each item
+ * added and removed per (UTC) day. Kept up to date by inventory writes, see InventoryDailyStatsRepositoryCustom
+ * id is itemId:yyyy-MM-dd, so each item/day pair has exactly one document
+ * Indexed on day for date range queries
+ *
+ * @author Oliver Wortley
+ */
+@Document("InventoryDailyStats")
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class InventoryDailyStats {
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    @MongoId
+    private String id;
+
+    private String itemId;
+
+    private String itemName;
+
+    @Indexed
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd")
+    private Date day;
+
+    private Integer added;
+
+    private Integer removed;
+
+    public static String key(String itemId, Date day) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return itemId + ":" + format.format(day);
+    }
+
+    /**
+     * @return start (UTC midnight) of the day containing date
+     */
+    public static Date dayOf(Date date) {
+        return new Date(Math.floorDiv(date.getTime(), DAY_MILLIS) * DAY_MILLIS);
+    }
+}
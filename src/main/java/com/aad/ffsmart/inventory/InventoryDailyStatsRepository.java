@@ -0,0 +1,23 @@
+package com.aad.ffsmart.inventory;
+
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+import java.util.Date;
+
+/**
+ * Inventory daily stats repository
+ * <p>
+ * Links to InventoryDailyStats collection, the per item/day rollup of InventoryChanges used for usage history
+ * Incremental updates, rebuild and usage aggregation are inherited from InventoryDailyStatsRepositoryCustom
+ *
+ * @author Oliver Wortley
+ */
+@Repository
+public interface InventoryDailyStatsRepository extends ReactiveMongoRepository<InventoryDailyStats, String>, InventoryDailyStatsRepositoryCustom {
+
+    @Query(value = "{ day : { $gte : ?0, $lt : ?1 } }")
+    Flux<InventoryDailyStats> findByDayRange(Date from, Date to);
+}
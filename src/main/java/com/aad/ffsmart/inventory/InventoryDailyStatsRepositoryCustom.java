@@ -0,0 +1,25 @@
+package com.aad.ffsmart.inventory;
+
+import com.aad.ffsmart.inventory.model.ItemUsage;
+import com.aad.ffsmart.inventory.model.StatsInterval;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Date;
+
+/**
+ * Inventory daily stats repository custom fragment
+ * <p>
+ * Defines incremental updates, the full rebuild of the InventoryDailyStats rollup and usage totals per day/week/month
+ * Implemented in InventoryDailyStatsRepositoryCustomImpl, mixed into InventoryDailyStatsRepository by Spring Data
+ *
+ * @author Oliver Wortley
+ */
+public interface InventoryDailyStatsRepositoryCustom {
+
+    Mono<Void> applyChange(InventoryChange change);
+
+    Mono<Void> rebuild();
+
+    Flux<ItemUsage> aggregateUsage(Date from, Date to, StatsInterval interval, String itemId);
+}
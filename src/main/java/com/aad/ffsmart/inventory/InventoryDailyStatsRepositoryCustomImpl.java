@@ -0,0 +1,155 @@
+package com.aad.ffsmart.inventory;
+
+import com.aad.ffsmart.inventory.model.InventoryOperation;
+import com.aad.ffsmart.inventory.model.ItemUsage;
+import com.aad.ffsmart.inventory.model.StatsInterval;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inventory daily stats repository custom fragment implementation
+ * <p>
+ * Applies each inventory change as a single bulkWrite of server-side $inc upserts, one per item in the change
+ * Rebuild recomputes every item/day total from the InventoryChanges collection and replaces the rollup with $out
+ * Usage is summed per item per day/week/month in Mongo, reading only the rollup documents in the date range
+ *
+ * @author Oliver Wortley
+ */
+public class InventoryDailyStatsRepositoryCustomImpl implements InventoryDailyStatsRepositoryCustom {
+    private static final String ID = "_id";
+    private static final String ITEM_ID = "itemId";
+    private static final String ITEM_NAME = "itemName";
+    private static final String DAY = "day";
+    private static final String ADDED = "added";
+    private static final String REMOVED = "removed";
+    private static final String PERIOD_START = "periodStart";
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    public InventoryDailyStatsRepositoryCustomImpl(ReactiveMongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    private Bson setOnInsert(InventoryDailyStats stats) {
+        // map through the converter so new documents look the same as ones written by save (inc. _class)
+        Document document = new Document();
+        mongoTemplate.getConverter().write(stats, document);
+        document.remove(ID);
+        return Updates.setOnInsert(document);
+    }
+
+    @Override
+    public Mono<Void> applyChange(InventoryChange change) {
+        Date day = InventoryDailyStats.dayOf(change.getDate());
+        String counter = change.getOperation() == InventoryOperation.REMOVE ? REMOVED : ADDED;
+        String otherCounter = change.getOperation() == InventoryOperation.REMOVE ? ADDED : REMOVED;
+
+        // one update per item, even if the change lists an item more than once
+        Map<String, InventoryItem> items = new LinkedHashMap<>();
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        for (InventoryItem item : change.getItems()) {
+            items.putIfAbsent(item.getItemId(), item);
+            quantities.merge(item.getItemId(), item.getQuantity(), Integer::sum);
+        }
+
+        List<WriteModel<Document>> operations = new ArrayList<>(items.size());
+        items.forEach((itemId, item) -> {
+            String id = InventoryDailyStats.key(itemId, day);
+            operations.add(new UpdateOneModel<>(
+                    Filters.eq(ID, id),
+                    Updates.combine(
+                            Updates.inc(counter, quantities.get(itemId)),
+                            Updates.inc(otherCounter, 0), // creates the other counter at 0 on insert
+                            setOnInsert(new InventoryDailyStats(id, itemId, item.getItemName(), day, null, null))),
+                    new UpdateOptions().upsert(true)
+            ));
+        });
+        if (operations.isEmpty()) {
+            return Mono.empty();
+        }
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(InventoryDailyStats.class))
+                .flatMap(collection -> Mono.from(collection.bulkWrite(operations, new BulkWriteOptions().ordered(false))))
+                .then();
+    }
+
+    /**
+     * Replaces the rollup with totals computed from the InventoryChanges collection
+     * Changes applied while the rebuild is running may be lost, so this is intended for recovery during quiet periods
+     */
+    @Override
+    public Mono<Void> rebuild() {
+        List<Bson> pipeline = List.of(
+                Aggregates.unwind("$items"),
+                Aggregates.group(new Document(ITEM_ID, "$items.itemId")
+                                .append(DAY, new Document("$dateTrunc", new Document("date", "$date").append("unit", "day"))),
+                        Accumulators.first(ITEM_NAME, "$items.itemName"),
+                        Accumulators.sum(ADDED, quantityIf(InventoryOperation.INSERT)),
+                        Accumulators.sum(REMOVED, quantityIf(InventoryOperation.REMOVE))),
+                Aggregates.project(new Document(ID, new Document("$concat", List.of("$_id.itemId", ":",
+                                new Document("$dateToString", new Document("format", "%Y-%m-%d").append("date", "$_id.day")))))
+                        .append(ITEM_ID, "$_id.itemId")
+                        .append(ITEM_NAME, 1)
+                        .append(DAY, "$_id.day")
+                        .append(ADDED, 1)
+                        .append(REMOVED, 1)),
+                Aggregates.out(mongoTemplate.getCollectionName(InventoryDailyStats.class))
+        );
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(InventoryChange.class))
+                .flatMap(collection -> Mono.from(collection.aggregate(pipeline).toCollection()));
+    }
+
+    private static Document quantityIf(InventoryOperation operation) {
+        return new Document("$cond", List.of(new Document("$eq", List.of("$operation", operation.name())), "$items.quantity", 0));
+    }
+
+    @Override
+    public Flux<ItemUsage> aggregateUsage(Date from, Date to, StatsInterval interval, String itemId) {
+        Bson match = itemId == null
+                ? Filters.and(Filters.gte(DAY, from), Filters.lt(DAY, to))
+                : Filters.and(Filters.gte(DAY, from), Filters.lt(DAY, to), Filters.eq(ITEM_ID, itemId));
+        Object periodStart = "$day";
+        if (interval != StatsInterval.DAY) {
+            Document dateTrunc = new Document("date", "$day").append("unit", interval.unit);
+            if (interval == StatsInterval.WEEK) {
+                dateTrunc.append("startOfWeek", "monday");
+            }
+            periodStart = new Document("$dateTrunc", dateTrunc);
+        }
+
+        List<Bson> pipeline = List.of(
+                Aggregates.match(match),
+                Aggregates.group(new Document(ITEM_ID, "$itemId").append(PERIOD_START, periodStart),
+                        Accumulators.first(ITEM_NAME, "$itemName"),
+                        Accumulators.sum(ADDED, "$added"),
+                        Accumulators.sum(REMOVED, "$removed")),
+                Aggregates.project(new Document(ID, 0)
+                        .append(ITEM_ID, "$_id.itemId")
+                        .append(ITEM_NAME, 1)
+                        .append(PERIOD_START, "$_id.periodStart")
+                        .append(ADDED, 1)
+                        .append(REMOVED, 1)),
+                Aggregates.sort(Sorts.ascending(PERIOD_START, ITEM_ID))
+        );
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(InventoryDailyStats.class))
+                .flatMapMany(collection -> Flux.from(collection.aggregate(pipeline)))
+                .map(document -> mongoTemplate.getConverter().read(ItemUsage.class, document));
+    }
+}
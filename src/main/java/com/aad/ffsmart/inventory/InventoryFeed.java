@@ -0,0 +1,128 @@
+package com.aad.ffsmart.inventory;
+
+import com.aad.ffsmart.db.ChangeStreams;
+import com.aad.ffsmart.inventory.model.InventoryFeedEvent;
+import com.aad.ffsmart.inventory.model.InventoryFeedEventType;
+import com.mongodb.client.model.changestream.FullDocument;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+import java.util.Date;
+import java.util.function.Predicate;
+
+/**
+ * Live inventory feed
+ * <p>
+ * One change stream on the Inventory collection is shared by every open feed
+ * Each feed sends a snapshot of the items matching its filters (same query as GET /inventory), then deltas:
+ * - insert/update/replace -> UPSERT with the full document if it matches the filters, otherwise REMOVE
+ * - delete -> REMOVE
+ * - drop/rename/invalidate, change stream reconnect or a feed falling too far behind -> RESET, then the feed ends
+ * The change stream is reopened with backoff when it fails, and when it closes after a drop/rename/invalidate
+ * Deltas are buffered from before the snapshot query runs, so nothing is missed in between;
+ * a change already in the snapshot may also arrive as a delta, which is harmless as deltas carry whole documents
+ *
+ * @author Oliver Wortley
+ */
+@Component
+public class InventoryFeed {
+    private static final InventoryFeedEvent SNAPSHOT_END = new InventoryFeedEvent(InventoryFeedEventType.SNAPSHOT_END, null, null);
+    private static final InventoryFeedEvent RESET = new InventoryFeedEvent(InventoryFeedEventType.RESET, null, null);
+
+    @Autowired
+    private InventoryRepository inventoryRepository;
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Value("${inventory.feed.buffer-size:256}")
+    private int bufferSize = 256;
+
+    // unfiltered changes, UPSERT / REMOVE / RESET
+    private final Sinks.Many<InventoryFeedEvent> changes = Sinks.many().multicast().directBestEffort();
+
+    private Disposable changeSubscription;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void watchChanges() {
+        changeSubscription = ChangeStreams.reopening(mongoTemplate.changeStream(InventoryItem.class)
+                        .withOptions(options -> options.fullDocumentLookup(FullDocument.UPDATE_LOOKUP))
+                        .watchCollection(InventoryItem.class)
+                        .listen()
+                        .doOnSubscribe(subscription -> changes.tryEmitNext(RESET)) // feeds may have missed changes while not watching
+                        .doOnNext(this::onChange), "Inventory")
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stopWatching() {
+        if (changeSubscription != null) {
+            changeSubscription.dispose();
+        }
+    }
+
+    void onChange(ChangeStreamEvent<InventoryItem> event) {
+        String id = ChangeStreams.documentId(event);
+        InventoryFeedEvent change = switch (event.getOperationType()) {
+            // body is null if the document was deleted before the update lookup
+            case INSERT, UPDATE, REPLACE -> event.getBody() != null
+                    ? new InventoryFeedEvent(InventoryFeedEventType.UPSERT, id, event.getBody())
+                    : new InventoryFeedEvent(InventoryFeedEventType.REMOVE, id, null);
+            case DELETE -> new InventoryFeedEvent(InventoryFeedEventType.REMOVE, id, null);
+            default -> RESET;
+        };
+        // emitted from the change stream's thread only, fails only when no feed is open
+        changes.tryEmitNext(change);
+    }
+
+    /**
+     * Snapshot of the inventory matching the filters followed by deltas, filters as for getAllInventory
+     */
+    public Flux<InventoryFeedEvent> feed(String itemName, Integer minQuantity, Integer maxQuantity, Date expiryDateFrom, Date expiryDateTo) {
+        return Flux.defer(() -> {
+            Predicate<InventoryItem> filter = filter(itemName, minQuantity, maxQuantity, expiryDateFrom, expiryDateTo);
+
+            // subscribed before the snapshot query, holds deltas until the snapshot has been sent
+            Sinks.Many<InventoryFeedEvent> buffered = Sinks.many().unicast().onBackpressureBuffer(Queues.<InventoryFeedEvent>get(bufferSize).get());
+            Disposable live = changes.asFlux().subscribe(change -> {
+                if (buffered.tryEmitNext(change).isFailure()) {
+                    buffered.tryEmitError(Exceptions.failWithOverflow());
+                }
+            });
+
+            Flux<InventoryFeedEvent> snapshot = inventoryRepository.findAll(itemName, minQuantity, maxQuantity, expiryDateFrom, expiryDateTo)
+                    .map(item -> new InventoryFeedEvent(InventoryFeedEventType.SNAPSHOT, item.getId(), item))
+                    .concatWith(Mono.just(SNAPSHOT_END));
+            Flux<InventoryFeedEvent> deltas = buffered.asFlux()
+                    .map(change -> change.getType() == InventoryFeedEventType.UPSERT && !filter.test(change.getItem())
+                            ? new InventoryFeedEvent(InventoryFeedEventType.REMOVE, change.getId(), null)
+                            : change)
+                    .onErrorResume(Exceptions::isOverflow, error -> Mono.just(RESET))
+                    .takeUntil(change -> change.getType() == InventoryFeedEventType.RESET);
+
+            return Flux.concat(snapshot, deltas).doFinally(signal -> live.dispose());
+        });
+    }
+
+    // same conditions as InventoryRepository.findAll
+    private static Predicate<InventoryItem> filter(String itemName, Integer minQuantity, Integer maxQuantity, Date expiryDateFrom, Date expiryDateTo) {
+        String prefix = itemName != null ? InventoryItem.searchKey(itemName) : "";
+        return item -> InventoryItem.searchKey(item.getItemName()).startsWith(prefix)
+                && (minQuantity == null || item.getQuantity() >= minQuantity)
+                && (maxQuantity == null || item.getQuantity() <= maxQuantity)
+                && (expiryDateFrom == null || !item.getExpiryDate().before(expiryDateFrom))
+                && (expiryDateTo == null || !item.getExpiryDate().after(expiryDateTo));
+    }
+}
@@ -1,23 +1,31 @@
 package com.aad.ffsmart.inventory;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.TextIndexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.MongoId;
 
+import java.text.Normalizer;
 import java.util.Date;
+import java.util.Locale;
 
 /**
  * InventoryItem data class
  * <p>
  * Features all args and required args constructors
  * Defines schema for Inventory collection
+ * itemId + expiryDate is unique, used by add/remove upserts; expiryDate index serves range and expired queries
+ * searchKey is the case-folded item name, kept in step with itemName by the constructors and setter,
+ * so name prefix searches are an index range scan; itemName has a text index for word searches
  *
  * @author Oliver Wortley
  */
 @Document("Inventory")
-@AllArgsConstructor
-@RequiredArgsConstructor
+@CompoundIndex(name = "itemId_expiryDate", def = "{ itemId : 1, expiryDate : 1 }", unique = true)
 @NoArgsConstructor
 @Data
 public class InventoryItem {
@@ -29,8 +37,13 @@ public class InventoryItem {
     private String itemId;
 
     @NonNull
+    @TextIndexed
     private String itemName;
 
+    @JsonIgnore
+    @Indexed
+    private String searchKey;
+
     @NonNull
     private String supplierId;
 
@@ -42,5 +55,35 @@ public class InventoryItem {
 
     @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd")
     @NonNull
+    @Indexed
     private Date expiryDate;
+
+    public InventoryItem(String id, @NonNull String itemId, @NonNull String itemName, @NonNull String supplierId,
+                         @NonNull String supplierName, @NonNull Integer quantity, @NonNull Date expiryDate) {
+        this.id = id;
+        this.itemId = itemId;
+        this.supplierId = supplierId;
+        this.supplierName = supplierName;
+        this.quantity = quantity;
+        this.expiryDate = expiryDate;
+        setItemName(itemName);
+    }
+
+    public InventoryItem(@NonNull String itemId, @NonNull String itemName, @NonNull String supplierId,
+                         @NonNull String supplierName, @NonNull Integer quantity, @NonNull Date expiryDate) {
+        this(null, itemId, itemName, supplierId, supplierName, quantity, expiryDate);
+    }
+
+    public void setItemName(@NonNull String itemName) {
+        this.itemName = itemName;
+        this.searchKey = searchKey(itemName);
+    }
+
+    /**
+     * Case-folded, accent and whitespace insensitive form of an item name (or a search prefix)
+     */
+    public static String searchKey(String name) {
+        String decomposed = Normalizer.normalize(name.strip(), Normalizer.Form.NFKD);
+        return decomposed.replaceAll("\\p{M}+", "").replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
 }
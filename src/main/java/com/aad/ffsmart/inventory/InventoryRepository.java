@@ -14,15 +14,36 @@ import java.util.Date;
  * Inventory repository
  * <p>
  * Links to Inventory collection in MongoDB Atlas
- * Contains queries for finding all inventory, removing expired, and aggregation used in auto order generation
+ * Contains queries for finding all inventory, removing expired, and the live per supplier aggregation
+ * Expiry counts and the next expiry are only queried when the expiry index cannot answer (see ExpiryIndex)
+ * Item name filters match a prefix of the case-folded searchKey as an index range, never as a regex,
+ * searchInventory also matches whole words through the itemName text index
+ * (auto order generation reads the SupplierStock projection instead, aggregateInventory is used to check it)
+ * Bulk quantity updates are inherited from InventoryRepositoryCustom
  *
  * @author Oliver Wortley
  */
 @Repository
-public interface InventoryRepository extends ReactiveMongoRepository<InventoryItem, String> {
+public interface InventoryRepository extends ReactiveMongoRepository<InventoryItem, String>, InventoryRepositoryCustom {
 
-    @Query(value = "{ itemName : { $regex : '^?0', $options : 'i' }, quantity : { $gte : ?1, $lte : ?2}, expiryDate : { $gte : ?3, $lte : ?4}}")
-    Flux<InventoryItem> findAll(String itemName, Integer minQuantity, Integer maxQuantity, Date expiryDateFrom, Date expiryDateTo);
+    // above every string starting with the key it is appended to
+    String SEARCH_KEY_END = new String(Character.toChars(Character.MAX_CODE_POINT));
+
+    @Query(value = "{ searchKey : { $gte : ?0, $lt : ?1 }, quantity : { $gte : ?2, $lte : ?3}, expiryDate : { $gte : ?4, $lte : ?5}}", sort = "{ expiryDate : -1 }")
+    Flux<InventoryItem> findBySearchKeyRange(String searchKeyFrom, String searchKeyTo, Integer minQuantity, Integer maxQuantity, Date expiryDateFrom, Date expiryDateTo);
+
+    @Query(value = "{ $text : { $search : ?0 }, searchKey : { $gte : ?1, $lt : ?2 }, quantity : { $gte : ?3, $lte : ?4}, expiryDate : { $gte : ?5, $lte : ?6}}", sort = "{ expiryDate : -1 }")
+    Flux<InventoryItem> findByTextAndSearchKeyRange(String text, String searchKeyFrom, String searchKeyTo, Integer minQuantity, Integer maxQuantity, Date expiryDateFrom, Date expiryDateTo);
+
+    default Flux<InventoryItem> findAll(String itemName, Integer minQuantity, Integer maxQuantity, Date expiryDateFrom, Date expiryDateTo) {
+        String prefix = itemName != null ? InventoryItem.searchKey(itemName) : "";
+        return findBySearchKeyRange(prefix, prefix + SEARCH_KEY_END, minQuantity, maxQuantity, expiryDateFrom, expiryDateTo);
+    }
+
+    default Flux<InventoryItem> searchInventory(String text, String itemName, Integer minQuantity, Integer maxQuantity, Date expiryDateFrom, Date expiryDateTo) {
+        String prefix = itemName != null ? InventoryItem.searchKey(itemName) : "";
+        return findByTextAndSearchKeyRange(text, prefix, prefix + SEARCH_KEY_END, minQuantity, maxQuantity, expiryDateFrom, expiryDateTo);
+    }
 
     @Query(value = "{ $and : [ { itemId : ?0}, { expiryDate : ?1 } ] }")
     Mono<InventoryItem> findByItemIdExpiryDate(String itemId, Date expiryDate);
@@ -30,8 +51,22 @@ public interface InventoryRepository extends ReactiveMongoRepository<InventoryIt
     @Query(value = "{ expiryDate : { $lt : new Date() } }")
     Flux<InventoryItem> findExpired();
 
-    @Query(value = "{ expiryDate : { $lt : new Date() } }", delete = true)
-    Mono<Void> deleteExpired();
+    @Query(value = "{ expiryDate : { $lt : ?0 } }", count = true)
+    Mono<Long> countExpired(Date cutoff);
+
+    @Query(value = "{ expiryDate : { $gte : ?0, $lte : ?1 } }", count = true)
+    Mono<Long> countExpiringBetween(Date from, Date to);
+
+    Mono<InventoryItem> findFirstByExpiryDateGreaterThanEqualOrderByExpiryDateAsc(Date from);
+
+    @Query(value = "{ expiryDate : { $lt : ?0 } }", delete = true)
+    Mono<Void> deleteExpired(Date cutoff);
+
+    @Aggregation(pipeline = {
+            "{ $match : { expiryDate : { $lt : ?0 } } }",
+            "{ $group : { _id : { supplierId : '$supplierId', itemId : '$itemId' }, supplierName: { $first : '$supplierName' }, itemName: { $first: '$itemName' }, quantity: { $sum : $quantity } } }",
+            "{ $project : { _id : { $concat : [ '$_id.supplierId', ':', '$_id.itemId' ] }, supplierId : '$_id.supplierId', supplierName : 1, itemId : '$_id.itemId', itemName : 1, quantity : 1 } }"})
+    Flux<SupplierStock> sumExpired(Date cutoff);
 
     @Aggregation(pipeline = {
             "{ $group : { _id : { supplierId : '$supplierId', itemId : '$itemId' }, supplierName: { $first : '$supplierName' }, itemName: { $first: '$itemName' }, total: { $sum : $quantity } } }",
@@ -0,0 +1,22 @@
+package com.aad.ffsmart.inventory;
+
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Inventory repository custom fragment
+ * <p>
+ * Defines bulk quantity updates and the searchKey backfill, which cannot be expressed as derived/annotated queries
+ * Implemented in InventoryRepositoryCustomImpl, mixed into InventoryRepository by Spring Data
+ *
+ * @author Oliver Wortley
+ */
+public interface InventoryRepositoryCustom {
+
+    Mono<Void> addQuantities(List<InventoryItem> items);
+
+    Mono<List<InventoryItem>> removeQuantities(List<InventoryItem> items);
+
+    Mono<Long> backfillSearchKeys();
+}
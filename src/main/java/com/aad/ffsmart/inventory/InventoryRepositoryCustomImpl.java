@@ -0,0 +1,182 @@
+package com.aad.ffsmart.inventory;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteManyModel;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inventory repository custom fragment implementation
+ * <p>
+ * Adds and removes stock with server-side updates so concurrent requests for the same item/expiry date
+ * cannot overwrite each other:
+ * - add -> one bulkWrite of upserts on itemId + expiryDate incrementing quantity
+ * - remove -> one find of the line items' documents, then one bulkWrite decrementing each quantity (floored at 0) and
+ *   deleting emptied documents; the amount removed per line item is worked out from the documents read, so it is known
+ *   even when more is requested than is in stock; nothing is written if a line item has no document
+ * Documents written before searchKey existed are given one by backfillSearchKeys, in batches of bulk $set
+ *
+ * @author Oliver Wortley
+ */
+@Slf4j
+public class InventoryRepositoryCustomImpl implements InventoryRepositoryCustom {
+    private static final String ID = "_id";
+    private static final String ITEM_ID = "itemId";
+    private static final String EXPIRY_DATE = "expiryDate";
+    private static final String QUANTITY = "quantity";
+    private static final String ITEM_NAME = "itemName";
+    private static final String SEARCH_KEY = "searchKey";
+    private static final int BACKFILL_BATCH_SIZE = 500;
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    public InventoryRepositoryCustomImpl(ReactiveMongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    private Bson itemFilter(InventoryItem item) {
+        return Filters.and(Filters.eq(ITEM_ID, item.getItemId()), Filters.eq(EXPIRY_DATE, item.getExpiryDate()));
+    }
+
+    private Bson setOnInsert(InventoryItem item) {
+        // map through the converter so new documents look the same as ones written by save (inc. _class)
+        Document document = new Document();
+        mongoTemplate.getConverter().write(item, document);
+        document.remove(ID);
+        document.remove(ITEM_ID);
+        document.remove(EXPIRY_DATE);
+        document.remove(QUANTITY);
+        return Updates.setOnInsert(document);
+    }
+
+    private Mono<BulkWriteResult> bulkWrite(List<WriteModel<Document>> operations) {
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(InventoryItem.class))
+                .flatMap(collection -> Mono.from(collection.bulkWrite(operations, new BulkWriteOptions().ordered(true))));
+    }
+
+    @Override
+    public Mono<Void> addQuantities(List<InventoryItem> items) {
+        if (items.isEmpty()) {
+            return Mono.empty();
+        }
+        List<WriteModel<Document>> operations = new ArrayList<>(items.size());
+        items.forEach(item -> operations.add(new UpdateOneModel<>(
+                itemFilter(item),
+                Updates.combine(Updates.inc(QUANTITY, item.getQuantity()), setOnInsert(item)),
+                new UpdateOptions().upsert(true)
+        )));
+        return bulkWrite(operations).then();
+    }
+
+    /**
+     * Decrements quantities and removes emptied documents
+     * <p>
+     * Writes only when every line item has a document, and writes to exactly the documents read. Between the read and
+     * the write another request may still empty or purge one of them; its update then matches nothing, while the rest
+     * are applied and the returned quantities are the ones worked out from the read (logged as a warning)
+     *
+     * @return one item per line item, as stored, with the quantity removed (0 lines omitted), or empty, without writing,
+     * when a line item has no document
+     */
+    @Override
+    public Mono<List<InventoryItem>> removeQuantities(List<InventoryItem> items) {
+        if (items.isEmpty()) {
+            return Mono.just(List.of());
+        }
+        List<Criteria> keys = keyCriteria(items);
+        return mongoTemplate.find(Query.query(new Criteria().orOperator(keys)), Document.class, mongoTemplate.getCollectionName(InventoryItem.class))
+                .collectMap(document -> key(document.getString(ITEM_ID), document.getDate(EXPIRY_DATE)))
+                // itemId + expiryDate is unique, so each distinct key matches at most one document
+                .filter(documents -> documents.size() == keys.size())
+                .flatMap(documents -> {
+                    // line items for the same document share its stock, in request order
+                    Map<Object, Integer> inStock = new HashMap<>();
+                    Map<Object, Integer> requested = new LinkedHashMap<>();
+                    List<InventoryItem> removed = new ArrayList<>();
+                    for (InventoryItem item : items) {
+                        Document document = documents.get(key(item.getItemId(), item.getExpiryDate()));
+                        Object id = document.get(ID);
+                        int available = inStock.computeIfAbsent(id, documentId -> Math.max(document.get(QUANTITY, Number.class).intValue(), 0));
+                        int quantity = Math.min(available, item.getQuantity());
+                        inStock.put(id, available - quantity);
+                        requested.merge(id, item.getQuantity(), Integer::sum);
+                        if (quantity > 0) {
+                            removed.add(removed(document, quantity));
+                        }
+                    }
+                    List<WriteModel<Document>> operations = new ArrayList<>(requested.size() + 1);
+                    requested.forEach((id, quantity) -> operations.add(new UpdateOneModel<>(Filters.eq(ID, id), decrement(quantity))));
+                    operations.add(new DeleteManyModel<>(Filters.and(Filters.in(ID, requested.keySet()), Filters.lte(QUANTITY, 0))));
+                    return bulkWrite(operations)
+                            .doOnNext(result -> {
+                                if (result.getMatchedCount() < requested.size()) {
+                                    log.warn("Inventory removal matched " + result.getMatchedCount() + " of " + requested.size()
+                                            + " documents read, removed quantities may be overstated");
+                                }
+                            })
+                            .thenReturn(removed);
+                });
+    }
+
+    // quantity = max(quantity - removed, 0)
+    private static List<Bson> decrement(int quantity) {
+        return List.of(Updates.set(QUANTITY, new Document("$max",
+                List.of(0, new Document("$subtract", List.of("$" + QUANTITY, quantity))))));
+    }
+
+    private InventoryItem removed(Document document, int quantity) {
+        InventoryItem removed = mongoTemplate.getConverter().read(InventoryItem.class, document);
+        removed.setId(null); // a line item, like the ones recorded for adds
+        removed.setQuantity(quantity);
+        return removed;
+    }
+
+    private static List<Criteria> keyCriteria(List<InventoryItem> items) {
+        return items.stream()
+                .map(item -> key(item.getItemId(), item.getExpiryDate()))
+                .distinct()
+                .map(key -> Criteria.where(ITEM_ID).is(key.get(0)).and(EXPIRY_DATE).is(key.get(1)))
+                .toList();
+    }
+
+    private static List<Object> key(String itemId, Date expiryDate) {
+        return List.of(itemId, expiryDate);
+    }
+
+    /**
+     * Sets searchKey on every document without one
+     *
+     * @return number of documents updated
+     */
+    @Override
+    public Mono<Long> backfillSearchKeys() {
+        Query missing = Query.query(Criteria.where(SEARCH_KEY).exists(false));
+        missing.fields().include(ITEM_NAME);
+        return mongoTemplate.find(missing, Document.class, mongoTemplate.getCollectionName(InventoryItem.class))
+                .filter(document -> document.getString(ITEM_NAME) != null)
+                .map(document -> (WriteModel<Document>) new UpdateOneModel<Document>(
+                        Filters.eq(ID, document.get(ID)),
+                        Updates.set(SEARCH_KEY, InventoryItem.searchKey(document.getString(ITEM_NAME)))))
+                .buffer(BACKFILL_BATCH_SIZE)
+                .concatMap(this::bulkWrite)
+                .reduce(0L, (updated, result) -> updated + result.getModifiedCount());
+    }
+}
@@ -1,9 +1,15 @@
 package com.aad.ffsmart.inventory;
 
+import com.aad.ffsmart.inventory.model.ExpirySummary;
+import com.aad.ffsmart.inventory.model.InventoryFeedEvent;
+import com.aad.ffsmart.inventory.model.ItemUsage;
+import com.aad.ffsmart.inventory.model.StatsInterval;
+import com.aad.ffsmart.inventory.model.StockDiscrepancy;
 import com.aad.ffsmart.inventory.model.SupplierItems;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.LocalDate;
 import java.util.Date;
 import java.util.List;
 
@@ -23,11 +29,19 @@ public interface InventoryService {
 
     Flux<InventoryItem> getAllInventory(String itemName, Integer minQuantity, Integer maxQuantity, Date expiryDateFrom, Date expiryDateTo);
 
+    Flux<InventoryItem> searchInventory(String search, String itemName, Integer minQuantity, Integer maxQuantity, Date expiryDateFrom, Date expiryDateTo);
+
+    Flux<InventoryFeedEvent> streamInventory(String itemName, Integer minQuantity, Integer maxQuantity, Date expiryDateFrom, Date expiryDateTo);
+
     Mono<InventoryItem> getInventoryById(String inventoryId);
 
     Mono<InventoryItem> updateInventoryById(String inventoryId, InventoryItem inventoryItem);
 
-    Flux<InventoryChange> getInventoryChangeHistory();
+    /**
+     * @param from first day, inclusive (UTC)
+     * @param to   last day, inclusive (UTC)
+     */
+    Flux<InventoryChange> getInventoryChangeHistory(LocalDate from, LocalDate to, String cursor, Integer limit);
 
     Flux<InventoryChange> getInventoryChanges4Weeks();
 
@@ -37,5 +51,19 @@ public interface InventoryService {
 
     Mono<Void> removeExpiredItems();
 
+    Mono<ExpirySummary> getExpirySummary(Integer days);
+
     Flux<SupplierItems> aggregateInventory();
+
+    Mono<Void> rebuildSupplierStock();
+
+    Flux<StockDiscrepancy> checkSupplierStock();
+
+    /**
+     * @param from first day, inclusive (UTC)
+     * @param to   last day, inclusive (UTC)
+     */
+    Flux<ItemUsage> getUsageStats(LocalDate from, LocalDate to, StatsInterval interval, String itemId);
+
+    Mono<Void> rebuildDailyStats();
 }
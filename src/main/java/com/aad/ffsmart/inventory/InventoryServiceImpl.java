@@ -1,40 +1,66 @@
 package com.aad.ffsmart.inventory;
 
-import com.aad.ffsmart.alert.Alert;
-import com.aad.ffsmart.alert.AlertCode;
-import com.aad.ffsmart.alert.RabbitConfig;
+import com.aad.ffsmart.forecast.DemandForecaster;
+import com.aad.ffsmart.inventory.model.ExpirySummary;
+import com.aad.ffsmart.inventory.model.InventoryFeedEvent;
 import com.aad.ffsmart.inventory.model.InventoryOperation;
+import com.aad.ffsmart.inventory.model.ItemUsage;
+import com.aad.ffsmart.inventory.model.StatsInterval;
+import com.aad.ffsmart.inventory.model.StockDiscrepancy;
 import com.aad.ffsmart.inventory.model.SupplierItems;
+import com.aad.ffsmart.tracing.ReactorTracing;
+import io.micrometer.observation.ObservationRegistry;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
 
+import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.util.Calendar;
-import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Inventory service implementation class
  * <p>
  * Contains all inventory logic, uses repository interface methods. Methods include:
  * - add inventory
- * - remove inventory
- * - get expired items
- * - remove expired items
- * - get inventory change history
+ * - remove inventory (removals also update the demand forecaster's item histories)
+ * - get all inventory (item name prefix) / search inventory (words in the item name, through the text index)
+ * - get expired items / remove expired items (skipped when the expiry index holds nothing expired)
+ * - get inventory change history (date range, keyset paginated by the id of the last change returned)
+ * - live inventory feed (snapshot then change stream deltas, same filters as get all inventory)
+ * - expiry checks answered from the in-memory expiry index, kept current by every inventory write
+ *   (queried from the collection instead while the index is not seeded, or not the only view of inventory writes)
+ * - supplier stock projection, updated by every inventory write, with rebuild and consistency check
+ * - daily stats rollup (added/removed per item per day), updated by every add/remove, queried by day/week/month
+ * Add and remove are traced (inventory.add / inventory.remove), each spanning the writes above
  *
  * @author Oliver Wortley
  */
 @Service
 @Slf4j
 public class InventoryServiceImpl implements InventoryService {
+    private static final int DEFAULT_CHANGE_HISTORY_LIMIT = 50;
+    private static final int MAX_CHANGE_HISTORY_LIMIT = 500;
+    private static final Sort CHANGE_HISTORY_SORT = Sort.by(Sort.Direction.DESC, "date", "id");
+    private static final int DEFAULT_USAGE_STATS_WEEKS = 4;
+    private static final int DEFAULT_EXPIRY_DAYS = 3;
 
     @Autowired
     private InventoryRepository inventoryRepository;
@@ -43,58 +69,83 @@ public class InventoryServiceImpl implements InventoryService {
     private InventoryChangeRepository inventoryChangeRepository;
 
     @Autowired
-    private RabbitTemplate rabbitTemplate;
+    private SupplierStockRepository supplierStockRepository;
 
-    @Scheduled(cron = "0 0 12 * * *") // every day at 12pm
-    private void alertWhenExpiringItems() {
-        List<InventoryItem> items = inventoryRepository.findAll().collectList().block();
-        Calendar calendar = Calendar.getInstance();
-        calendar.add(Calendar.DATE, 3);
+    @Autowired
+    private InventoryDailyStatsRepository inventoryDailyStatsRepository;
 
-        assert items != null;
-        if (!items.stream().filter(it -> it.getExpiryDate().before(calendar.getTime()) && it.getExpiryDate().after(new Date())).toList().isEmpty()) {
-            rabbitTemplate.convertAndSend(RabbitConfig.ALERTS_EXCHANGE_NAME, RabbitConfig.HEAD_CHEF_QUEUE_NAME,
-                    new Alert(AlertCode.ITEMS_TO_EXPIRE, "Expiring items", "Some items in the fridge are due to expire within the next 3 days", new Date()));
-        }
+    @Autowired
+    private DemandForecaster demandForecaster;
+
+    @Autowired
+    private ExpiryIndex expiryIndex;
+
+    @Autowired
+    private InventoryFeed inventoryFeed;
+
+    @Autowired(required = false)
+    private ObservationRegistry observationRegistry = ObservationRegistry.NOOP;
+
+    // lets the expiry index tell whether a write overlapped its seed, and re-seed if one may have been partly written
+    private <T> Mono<T> trackExpiry(Mono<T> write) {
+        return write
+                .doOnSubscribe(subscription -> expiryIndex.writeStarted())
+                .doFinally(signal -> {
+                    if (signal != SignalType.ON_COMPLETE) {
+                        expiryIndex.writeFailed();
+                    }
+                    expiryIndex.writeFinished();
+                });
     }
 
-    public Mono<InventoryChange> addInventory(List<InventoryItem> items, String userId) {
-        return Mono.just(items).flatMapMany(Flux::fromIterable).flatMap(item -> inventoryRepository.findByItemIdExpiryDate(item.getItemId(), item.getExpiryDate())
-                .map(it -> {
-                    it.setQuantity(it.getQuantity() + item.getQuantity());
-                    return it;
-                })
-                .flatMap(inventoryRepository::save)
-                .switchIfEmpty(inventoryRepository.save(item))
-        ).then(inventoryChangeRepository.save(new InventoryChange(
-                null,
-                userId,
-                items,
-                InventoryOperation.INSERT,
-                new Date()
-        )));
+    private static List<SupplierStock> stockChanges(List<InventoryItem> items, int sign) {
+        return items.stream().map(item -> SupplierStock.of(item, sign * item.getQuantity())).toList();
     }
 
-    public Mono<InventoryChange> removeInventory(List<InventoryItem> items, String userId) {
-        return Mono.just(items).flatMapMany(Flux::fromIterable).flatMap(item -> inventoryRepository.findByItemIdExpiryDate(item.getItemId(), item.getExpiryDate())
-                        .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Inventory item not found")))
-                        .map(it -> {
-                            it.setQuantity(it.getQuantity() - item.getQuantity());
-                            return it;
-                        })
-                        .flatMap(it -> it.getQuantity() <= 0 ? inventoryRepository.deleteById(it.getId()) : inventoryRepository.save(it)))
+    public Mono<InventoryChange> addInventory(List<InventoryItem> items, String userId) {
+        return ReactorTracing.observed(observationRegistry, "inventory.add", trackExpiry(inventoryRepository.addQuantities(items).then(Mono.fromRunnable(() -> expiryIndex.apply(items, 1))))
+                .then(supplierStockRepository.applyChanges(stockChanges(items, 1)))
                 .then(inventoryChangeRepository.save(new InventoryChange(
                         null,
                         userId,
                         items,
-                        InventoryOperation.REMOVE,
+                        InventoryOperation.INSERT,
                         new Date()
-                )));
+                )))
+                .flatMap(change -> inventoryDailyStatsRepository.applyChange(change).thenReturn(change)));
+    }
+
+    public Mono<InventoryChange> removeInventory(List<InventoryItem> items, String userId) {
+        // a missing item fails before anything is written; once written the change is always recorded
+        // everything downstream is given what was actually removed, which is less than requested when stock runs out
+        return ReactorTracing.observed(observationRegistry, "inventory.remove", trackExpiry(inventoryRepository.removeQuantities(items)
+                        .doOnNext(removed -> expiryIndex.apply(removed, -1)))
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Inventory item not found")))
+                .flatMap(removed -> supplierStockRepository.applyChanges(stockChanges(removed, -1))
+                        .then(inventoryChangeRepository.save(new InventoryChange(
+                                null,
+                                userId,
+                                removed,
+                                InventoryOperation.REMOVE,
+                                new Date()
+                        ))))
+                .flatMap(change -> inventoryDailyStatsRepository.applyChange(change).thenReturn(change))
+                .doOnNext(demandForecaster::record));
     }
 
     public Flux<InventoryItem> getAllInventory(String itemName, Integer minQuantity, Integer maxQuantity, Date expiryDateFrom, Date expiryDateTo) {
-        return inventoryRepository.findAll(itemName, minQuantity, maxQuantity, expiryDateFrom, expiryDateTo)
-                .sort(Comparator.comparing(InventoryItem::getExpiryDate).reversed());
+        return inventoryRepository.findAll(itemName, minQuantity, maxQuantity, expiryDateFrom, expiryDateTo);
+    }
+
+    public Flux<InventoryItem> searchInventory(String search, String itemName, Integer minQuantity, Integer maxQuantity, Date expiryDateFrom, Date expiryDateTo) {
+        if (search == null || search.isBlank()) {
+            return getAllInventory(itemName, minQuantity, maxQuantity, expiryDateFrom, expiryDateTo);
+        }
+        return inventoryRepository.searchInventory(search, itemName, minQuantity, maxQuantity, expiryDateFrom, expiryDateTo);
+    }
+
+    public Flux<InventoryFeedEvent> streamInventory(String itemName, Integer minQuantity, Integer maxQuantity, Date expiryDateFrom, Date expiryDateTo) {
+        return inventoryFeed.feed(itemName, minQuantity, maxQuantity, expiryDateFrom, expiryDateTo);
     }
 
     public Mono<InventoryItem> getInventoryById(String inventoryId) {
@@ -105,19 +156,38 @@ public class InventoryServiceImpl implements InventoryService {
     public Mono<InventoryItem> updateInventoryById(String inventoryId, InventoryItem inventoryItem) {
         return inventoryRepository.findById(inventoryId)
                 .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Inventory not found")))
-                .then(inventoryRepository.save(inventoryItem));
+                .flatMap(existing -> trackExpiry(inventoryRepository.save(inventoryItem)
+                                .doOnNext(saved -> {
+                                    expiryIndex.apply(List.of(existing), -1);
+                                    expiryIndex.apply(List.of(saved), 1);
+                                }))
+                        .flatMap(saved -> supplierStockRepository.applyChanges(List.of(
+                                SupplierStock.of(existing, -existing.getQuantity()),
+                                SupplierStock.of(saved, saved.getQuantity())
+                        )).thenReturn(saved)));
     }
 
-    public Flux<InventoryChange> getInventoryChangeHistory() {
-        return inventoryChangeRepository.findAll().sort(Comparator.comparing(InventoryChange::getDate).reversed());
+    public Flux<InventoryChange> getInventoryChangeHistory(LocalDate from, LocalDate to, String cursor, Integer limit) {
+        // whole UTC days, both ends included, as for usage stats
+        if (from != null && to != null && from.isAfter(to)) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "from must not be after to"));
+        }
+        Date dateFrom = from != null ? startOfDay(from) : new Date(0);
+        Date dateTo = to != null ? startOfDay(to.plusDays(1)) : new Date(Long.MAX_VALUE);
+        Pageable page = PageRequest.of(0, limit != null ? Math.min(Math.max(limit, 1), MAX_CHANGE_HISTORY_LIMIT) : DEFAULT_CHANGE_HISTORY_LIMIT, CHANGE_HISTORY_SORT);
+
+        if (cursor == null) {
+            return inventoryChangeRepository.findByDateRange(dateFrom, dateTo, page);
+        }
+        return inventoryChangeRepository.findById(cursor)
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor")))
+                .flatMapMany(last -> inventoryChangeRepository.findByDateRangeBefore(dateFrom, dateTo, last.getDate(), last.getId(), page));
     }
 
     public Flux<InventoryChange> getInventoryChanges4Weeks() {
         Calendar calendar = Calendar.getInstance();
         calendar.add(Calendar.WEEK_OF_YEAR, -4);
-        return inventoryChangeRepository.findAll()
-                .filter(change -> change.getDate().after(calendar.getTime()))
-                .sort(Comparator.comparing(InventoryChange::getDate).reversed());
+        return inventoryChangeRepository.findSince(calendar.getTime(), CHANGE_HISTORY_SORT);
     }
 
     public Mono<InventoryChange> getInventoryChangeById(String inventoryChangeId) {
@@ -125,15 +195,126 @@ public class InventoryServiceImpl implements InventoryService {
     }
 
     public Flux<InventoryItem> getExpiredItems() {
-        return inventoryRepository.findExpired();
+        // the index knows whether anything has expired, so the collection is only queried when something has
+        return Flux.defer(() -> expiryIndex.isCurrent() && !expiryIndex.hasExpired(new Date()) ? Flux.empty() : inventoryRepository.findExpired());
     }
 
     public Mono<Void> removeExpiredItems() {
-        return inventoryRepository.deleteExpired();
+        return Mono.defer(() -> {
+            Date cutoff = new Date(); // same cutoff for totals and delete, so items expiring in between are not missed
+            if (expiryIndex.isCurrent() && !expiryIndex.hasExpired(cutoff)) {
+                return Mono.empty();
+            }
+            return trackExpiry(inventoryRepository.sumExpired(cutoff)
+                    .doOnNext(expired -> expired.setQuantity(-expired.getQuantity()))
+                    .collectList()
+                    .flatMap(changes -> inventoryRepository.deleteExpired(cutoff)
+                            .then(Mono.fromRunnable(() -> expiryIndex.removeExpired(cutoff)))
+                            .then(supplierStockRepository.applyChanges(changes))));
+        });
+    }
+
+    public Mono<ExpirySummary> getExpirySummary(Integer days) {
+        if (days != null && days < 0) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "days must not be negative"));
+        }
+        int summaryDays = days != null ? days : DEFAULT_EXPIRY_DAYS;
+        return Mono.defer(() -> expiryIndex.isCurrent() ? Mono.just(expiryIndex.getSummary(summaryDays)) : queryExpirySummary(summaryDays));
+    }
+
+    // same ranges as ExpirySummary from the index: expired before now, expiring from now to the end of the window
+    private Mono<ExpirySummary> queryExpirySummary(int days) {
+        Date now = new Date();
+        return Mono.zip(
+                        inventoryRepository.countExpired(now),
+                        inventoryRepository.countExpiringBetween(now, new Date(now.getTime() + TimeUnit.DAYS.toMillis(days))),
+                        inventoryRepository.findFirstByExpiryDateGreaterThanEqualOrderByExpiryDateAsc(now)
+                                .map(item -> Optional.of(item.getExpiryDate()))
+                                .defaultIfEmpty(Optional.empty()))
+                .map(summary -> new ExpirySummary(days, summary.getT1(), summary.getT2(), summary.getT3().orElse(null)));
     }
 
     public Flux<SupplierItems> aggregateInventory() {
-        return inventoryRepository.aggregateInventory();
+        return supplierStockRepository.aggregateBySupplier();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initSearchKeys() {
+        // inventory written before searchKey existed is not matched by name until it has one
+        inventoryRepository.backfillSearchKeys()
+                .filter(updated -> updated > 0)
+                .subscribe(updated -> log.info("Search keys set on " + updated + " inventory items"),
+                        error -> log.error("Inventory search key backfill failed", error));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initSupplierStock() {
+        // first run (or collection dropped) -> build the projection from the current inventory
+        supplierStockRepository.count()
+                .filter(count -> count == 0)
+                .flatMap(count -> rebuildSupplierStock())
+                .subscribe(null, error -> log.error("Supplier stock initialisation failed", error));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initDailyStats() {
+        // first run (or collection dropped) -> build the rollup from the change history
+        inventoryDailyStatsRepository.count()
+                .filter(count -> count == 0)
+                .flatMap(count -> rebuildDailyStats())
+                .subscribe(null, error -> log.error("Inventory daily stats initialisation failed", error));
+    }
+
+    public Mono<Void> rebuildDailyStats() {
+        log.info("Rebuilding inventory daily stats from change history");
+        return inventoryDailyStatsRepository.rebuild();
+    }
+
+    public Flux<ItemUsage> getUsageStats(LocalDate from, LocalDate to, StatsInterval interval, String itemId) {
+        // whole UTC days (the rollup's days), both ends included, by default the 4 weeks up to and including today
+        LocalDate lastDay = to != null ? to : LocalDate.now(ZoneOffset.UTC);
+        LocalDate firstDay = from != null ? from : lastDay.minusWeeks(DEFAULT_USAGE_STATS_WEEKS).plusDays(1);
+        if (firstDay.isAfter(lastDay)) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "from must not be after to"));
+        }
+        return inventoryDailyStatsRepository.aggregateUsage(startOfDay(firstDay), startOfDay(lastDay.plusDays(1)),
+                interval != null ? interval : StatsInterval.DAY, itemId);
+    }
+
+    private static Date startOfDay(LocalDate day) {
+        return Date.from(day.atStartOfDay(ZoneOffset.UTC).toInstant());
+    }
+
+    public Mono<Void> rebuildSupplierStock() {
+        log.info("Rebuilding supplier stock from inventory");
+        return supplierStockRepository.rebuild();
+    }
+
+    public Flux<StockDiscrepancy> checkSupplierStock() {
+        Mono<Map<String, SupplierStock>> inventoryTotals = inventoryRepository.aggregateInventory()
+                .flatMapIterable(supplierItems -> supplierItems.getItems().stream()
+                        .map(item -> new SupplierStock(SupplierStock.key(supplierItems.getSupplierId(), item.getItemId()),
+                                supplierItems.getSupplierId(), supplierItems.getSupplierName(), item.getItemId(), item.getItemName(), item.getQuantity()))
+                        .toList())
+                .collectMap(SupplierStock::getId);
+        Mono<Map<String, SupplierStock>> projectedTotals = supplierStockRepository.findAll().collectMap(SupplierStock::getId);
+
+        return Mono.zip(inventoryTotals, projectedTotals)
+                .flatMapIterable(totals -> {
+                    Set<String> keys = new TreeSet<>(totals.getT1().keySet());
+                    keys.addAll(totals.getT2().keySet());
+                    return keys.stream()
+                            .map(key -> {
+                                SupplierStock inventory = totals.getT1().get(key);
+                                SupplierStock projected = totals.getT2().get(key);
+                                SupplierStock stock = inventory != null ? inventory : projected;
+                                return new StockDiscrepancy(stock.getSupplierId(), stock.getItemId(),
+                                        inventory != null ? inventory.getQuantity() : 0,
+                                        projected != null ? projected.getQuantity() : 0);
+                            })
+                            .filter(discrepancy -> !discrepancy.getInventoryQuantity().equals(discrepancy.getProjectedQuantity()))
+                            .toList();
+                });
     }
 
 }
@@ -0,0 +1,56 @@
+package com.aad.ffsmart.inventory;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.MongoId;
+
+/**
+ * SupplierStock data class
+ * <p>
+ * Defines schema for SupplierStock collection, a projection of the Inventory collection holding the running total
+ * quantity of each item per supplier. Kept up to date by inventory writes, see SupplierStockRepositoryCustom
+ * id is supplierId:itemId, so each supplier/item pair has exactly one document
+ *
+ * @author Oliver Wortley
+ */
+@Document("SupplierStock")
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class SupplierStock {
+
+    @MongoId
+    private String id;
+
+    private String supplierId;
+
+    private String supplierName;
+
+    private String itemId;
+
+    private String itemName;
+
+    private Integer quantity;
+
+    public static String key(String supplierId, String itemId) {
+        return supplierId + ":" + itemId;
+    }
+
+    /**
+     * Creates a stock change for an inventory item
+     *
+     * @param quantity signed change in quantity, negative for removals
+     */
+    public static SupplierStock of(InventoryItem item, int quantity) {
+        return new SupplierStock(
+                key(item.getSupplierId(), item.getItemId()),
+                item.getSupplierId(),
+                item.getSupplierName(),
+                item.getItemId(),
+                item.getItemName(),
+                quantity
+        );
+    }
+}
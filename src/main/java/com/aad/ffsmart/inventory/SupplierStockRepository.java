@@ -0,0 +1,24 @@
+package com.aad.ffsmart.inventory;
+
+import com.aad.ffsmart.inventory.model.SupplierItems;
+import org.springframework.data.mongodb.repository.Aggregation;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+/**
+ * Supplier stock repository
+ * <p>
+ * Links to SupplierStock collection, the per supplier/item stock projection used by auto order generation
+ * Incremental updates and rebuild are inherited from SupplierStockRepositoryCustom
+ *
+ * @author Oliver Wortley
+ */
+@Repository
+public interface SupplierStockRepository extends ReactiveMongoRepository<SupplierStock, String>, SupplierStockRepositoryCustom {
+
+    @Aggregation(pipeline = {
+            "{ $group : { _id : '$supplierId', supplierName : { $first : '$supplierName' }, items : { $push : { itemId : '$itemId', itemName : '$itemName', quantity : '$quantity' } } } }",
+            "{ $project : { _id : 0, supplierId : '$_id', supplierName : 1, items : 1 } }"})
+    Flux<SupplierItems> aggregateBySupplier();
+}
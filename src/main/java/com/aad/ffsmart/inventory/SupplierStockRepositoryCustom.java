@@ -0,0 +1,20 @@
+package com.aad.ffsmart.inventory;
+
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Supplier stock repository custom fragment
+ * <p>
+ * Defines incremental updates and the full rebuild of the SupplierStock projection
+ * Implemented in SupplierStockRepositoryCustomImpl, mixed into SupplierStockRepository by Spring Data
+ *
+ * @author Oliver Wortley
+ */
+public interface SupplierStockRepositoryCustom {
+
+    Mono<Void> applyChanges(List<SupplierStock> changes);
+
+    Mono<Void> rebuild();
+}
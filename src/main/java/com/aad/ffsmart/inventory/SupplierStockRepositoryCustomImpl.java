@@ -0,0 +1,98 @@
+package com.aad.ffsmart.inventory;
+
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Supplier stock repository custom fragment implementation
+ * <p>
+ * Applies stock changes as a single ordered bulkWrite of server-side $inc upserts, deleting documents whose quantity
+ * drops to 0 or below (the same rule used for Inventory documents, so the projection matches the live aggregation)
+ * Rebuild recomputes every total from the Inventory collection and replaces the projection with $out
+ *
+ * @author Oliver Wortley
+ */
+public class SupplierStockRepositoryCustomImpl implements SupplierStockRepositoryCustom {
+    private static final String ID = "_id";
+    private static final String SUPPLIER_ID = "supplierId";
+    private static final String SUPPLIER_NAME = "supplierName";
+    private static final String ITEM_ID = "itemId";
+    private static final String ITEM_NAME = "itemName";
+    private static final String QUANTITY = "quantity";
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    public SupplierStockRepositoryCustomImpl(ReactiveMongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    private Bson setOnInsert(SupplierStock change) {
+        // map through the converter so new documents look the same as ones written by save (inc. _class)
+        Document document = new Document();
+        mongoTemplate.getConverter().write(change, document);
+        document.remove(ID);
+        document.remove(QUANTITY);
+        return Updates.setOnInsert(document);
+    }
+
+    @Override
+    public Mono<Void> applyChanges(List<SupplierStock> changes) {
+        List<WriteModel<Document>> operations = new ArrayList<>(changes.size() * 2);
+        changes.stream()
+                .filter(change -> change.getQuantity() != 0)
+                .forEach(change -> {
+                    operations.add(new UpdateOneModel<>(
+                            Filters.eq(ID, change.getId()),
+                            Updates.combine(Updates.inc(QUANTITY, change.getQuantity()), setOnInsert(change)),
+                            new UpdateOptions().upsert(true)
+                    ));
+                    if (change.getQuantity() < 0) {
+                        operations.add(new DeleteOneModel<>(Filters.and(Filters.eq(ID, change.getId()), Filters.lte(QUANTITY, 0))));
+                    }
+                });
+        if (operations.isEmpty()) {
+            return Mono.empty();
+        }
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(SupplierStock.class))
+                .flatMap(collection -> Mono.from(collection.bulkWrite(operations, new BulkWriteOptions().ordered(true))))
+                .then();
+    }
+
+    /**
+     * Replaces the projection with totals computed from the Inventory collection
+     * Changes applied while the rebuild is running may be lost, so this is intended for recovery during quiet periods
+     */
+    @Override
+    public Mono<Void> rebuild() {
+        List<Bson> pipeline = List.of(
+                Aggregates.group(new Document(SUPPLIER_ID, "$supplierId").append(ITEM_ID, "$itemId"),
+                        Accumulators.first(SUPPLIER_NAME, "$supplierName"),
+                        Accumulators.first(ITEM_NAME, "$itemName"),
+                        Accumulators.sum(QUANTITY, "$quantity")),
+                Aggregates.match(Filters.gt(QUANTITY, 0)),
+                Aggregates.project(new Document(ID, new Document("$concat", List.of("$_id.supplierId", ":", "$_id.itemId")))
+                        .append(SUPPLIER_ID, "$_id.supplierId")
+                        .append(SUPPLIER_NAME, 1)
+                        .append(ITEM_ID, "$_id.itemId")
+                        .append(ITEM_NAME, 1)
+                        .append(QUANTITY, 1)),
+                Aggregates.out(mongoTemplate.getCollectionName(SupplierStock.class))
+        );
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(InventoryItem.class))
+                .flatMap(collection -> Mono.from(collection.aggregate(pipeline).toCollection()));
+    }
+}
@@ -0,0 +1,24 @@
+package com.aad.ffsmart.inventory.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * ExpirySummary class
+ *
+ * Returned by the expiry check, answered from the in-memory expiry index
+ * nextExpiry is the earliest expiry date still to come, null if no stock expires in the future
+ */
+@Data
+@AllArgsConstructor
+public class ExpirySummary {
+    private Integer days;
+
+    private Long expired;
+
+    private Long expiring;
+
+    private Date nextExpiry;
+}
@@ -0,0 +1,20 @@
+package com.aad.ffsmart.inventory.model;
+
+import com.aad.ffsmart.inventory.InventoryItem;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * InventoryFeedEvent class
+ *
+ * One message on the live inventory feed, item is set for SNAPSHOT and UPSERT, id for SNAPSHOT, UPSERT and REMOVE
+ */
+@Data
+@AllArgsConstructor
+public class InventoryFeedEvent {
+    private InventoryFeedEventType type;
+
+    private String id;
+
+    private InventoryItem item;
+}
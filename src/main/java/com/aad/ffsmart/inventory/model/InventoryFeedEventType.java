@@ -0,0 +1,28 @@
+package com.aad.ffsmart.inventory.model;
+
+/**
+ * Inventory feed event type enum
+ * <p>
+ * SNAPSHOT -> an item currently matching the filters, sent when the feed opens
+ * SNAPSHOT_END -> the snapshot is complete, deltas follow
+ * UPSERT -> an item was added or changed and matches the filters
+ * REMOVE -> an item was deleted or no longer matches the filters
+ * RESET -> changes may have been missed, the feed ends and the client should reconnect for a new snapshot
+ * event is the Server-Sent Event name
+ *
+ * @author Oliver Wortley
+ */
+public enum InventoryFeedEventType {
+
+    SNAPSHOT("snapshot"),
+    SNAPSHOT_END("snapshot-end"),
+    UPSERT("upsert"),
+    REMOVE("remove"),
+    RESET("reset");
+
+    public final String event;
+
+    InventoryFeedEventType(String event) {
+        this.event = event;
+    }
+}
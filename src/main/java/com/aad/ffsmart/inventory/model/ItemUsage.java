@@ -0,0 +1,29 @@
+package com.aad.ffsmart.inventory.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * ItemUsage class
+ *
+ * Quantity of an item added and removed in one day/week/month, aggregated from InventoryDailyStats
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ItemUsage {
+    private String itemId;
+
+    private String itemName;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd")
+    private Date periodStart;
+
+    private Integer added;
+
+    private Integer removed;
+}
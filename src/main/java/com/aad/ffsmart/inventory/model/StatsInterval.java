@@ -0,0 +1,22 @@
+package com.aad.ffsmart.inventory.model;
+
+/**
+ * Stats interval enum
+ * <p>
+ * Bucket size for inventory usage stats, unit is the matching MongoDB $dateTrunc unit
+ * Weeks start on Monday
+ *
+ * @author Oliver Wortley
+ */
+public enum StatsInterval {
+
+    DAY("day"),
+    WEEK("week"),
+    MONTH("month");
+
+    public final String unit;
+
+    StatsInterval(String unit) {
+        this.unit = unit;
+    }
+}
@@ -0,0 +1,22 @@
+package com.aad.ffsmart.inventory.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * StockDiscrepancy class
+ *
+ * Returned by the supplier stock consistency check for each supplier/item whose projected total
+ * differs from the live inventory aggregation
+ */
+@Data
+@AllArgsConstructor
+public class StockDiscrepancy {
+    private String supplierId;
+
+    private String itemId;
+
+    private Integer inventoryQuantity;
+
+    private Integer projectedQuantity;
+}
@@ -0,0 +1,58 @@
+package com.aad.ffsmart.item;
+
+import com.aad.ffsmart.util.PrefixIndex;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Item catalog
+ * <p>
+ * Immutable index over the item catalog, built once and swapped as a whole on reload
+ * Items are held sorted by case-folded name, so a name prefix is two binary searches and results are list views
+ * Each supplier has its own sorted index for supplier (+ name prefix) queries
+ *
+ * @author Oliver Wortley
+ */
+public final class ItemCatalog {
+    private final List<Item> items; // original order
+
+    private final PrefixIndex<Item> itemsByName;
+
+    private final Map<String, ItemCatalog> supplierCatalogs;
+
+    private ItemCatalog(List<Item> items, boolean indexSuppliers) {
+        this.items = List.copyOf(items);
+        this.itemsByName = PrefixIndex.of(this.items, item -> fold(item.getName()));
+        this.supplierCatalogs = indexSuppliers
+                ? this.items.stream().collect(Collectors.collectingAndThen(
+                        Collectors.groupingBy(Item::getSupplierId, Collectors.collectingAndThen(Collectors.toList(), supplierItems -> new ItemCatalog(supplierItems, false))),
+                        Map::copyOf))
+                : Map.of();
+    }
+
+    public static ItemCatalog of(List<Item> items) {
+        return new ItemCatalog(items, true);
+    }
+
+    public List<Item> find(String namePrefix, String supplierId) {
+        ItemCatalog catalog = this;
+        if (supplierId != null) {
+            catalog = supplierCatalogs.get(supplierId);
+            if (catalog == null) {
+                return List.of();
+            }
+        }
+        return namePrefix == null ? catalog.items : catalog.itemsByName.find(fold(namePrefix));
+    }
+
+    public int size() {
+        return items.size();
+    }
+
+    private static String fold(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
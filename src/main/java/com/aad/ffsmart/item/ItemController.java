@@ -4,7 +4,9 @@ import com.aad.ffsmart.web.ResponseMessage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -15,7 +17,7 @@ import static com.aad.ffsmart.web.ResponseHandler.generateResponse;
 /**
  * Items controller
  * <p>
- * Defines /items endpoints (get items)
+ * Defines /items endpoints (get items, reload item catalog)
  *
  * @author Oliver Wortley
  */
@@ -31,4 +33,10 @@ public class ItemController {
         return generateResponse(ResponseMessage.SUCCESS, HttpStatus.OK, itemService.getAllItems(name, supplierId));
     }
 
+    @PostMapping("/reload")
+    @PreAuthorize("hasRole('HEAD_CHEF')")
+    public Mono<ResponseEntity<Object>> reloadCatalog() {
+        return generateResponse(ResponseMessage.SUCCESS, HttpStatus.OK, itemService.reloadCatalog());
+    }
+
 }
@@ -1,15 +1,18 @@
 package com.aad.ffsmart.item;
 
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 /**
  * Item service interface
  * <p>
- * Defines getAllItems method, implemented in ItemServiceImpl
+ * Defines getAllItems and reloadCatalog methods, implemented in ItemServiceImpl
  *
  * @author Oliver Wortley
  */
 public interface ItemService {
 
     Flux<Item> getAllItems(String name, String supplierId);
+
+    Mono<Integer> reloadCatalog();
 }
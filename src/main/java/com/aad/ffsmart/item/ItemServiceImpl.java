@@ -1,6 +1,11 @@
 package com.aad.ffsmart.item;
 
 import com.aad.ffsmart.item.data.Items;
+import com.aad.ffsmart.supplier.SupplierRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -10,20 +15,48 @@ import reactor.core.publisher.Mono;
  * <p>
  * Defines get all items method:
  * - nullable param name
- * - filters items so that item.name starts with name
+ * - filters items so that item.name starts with name (case-insensitive)
+ * - nullable param supplierId
+ * <p>
+ * Queries are answered from an immutable ItemCatalog index, starting from the static item list
+ * The catalog is reloaded from the Suppliers collection on startup and on demand, and swapped in atomically
  *
  * @author Oliver Wortley
  */
 @Service
+@Slf4j
 public class ItemServiceImpl implements ItemService {
 
+    @Autowired
+    private SupplierRepository supplierRepository;
+
+    private volatile ItemCatalog catalog = ItemCatalog.of(Items.ITEM_LIST);
+
     public Flux<Item> getAllItems(String name, String supplierId) {
-        return Mono.just(
-                Items.ITEM_LIST
-                        .stream()
-                        .filter(item -> name == null || item.getName().toLowerCase().startsWith(name.toLowerCase()))
-                        .filter(item -> supplierId == null || item.getSupplierId().equals(supplierId))
-                        .toList()
-        ).flatMapMany(Flux::fromIterable);
+        return Flux.fromIterable(catalog.find(name, supplierId));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initCatalog() {
+        reloadCatalog().subscribe(null, error -> log.error("Item catalog load failed", error));
+    }
+
+    public Mono<Integer> reloadCatalog() {
+        return supplierRepository.findAll()
+                .filter(supplier -> supplier.getItems() != null)
+                .flatMapIterable(supplier -> supplier.getItems().stream()
+                        .map(item -> new Item(item.getId(), item.getName(), supplier.getId(), supplier.getName()))
+                        .toList())
+                .collectList()
+                .map(items -> {
+                    if (items.isEmpty()) {
+                        // nothing to index yet, keep serving the current catalog
+                        log.warn("No supplier items found, keeping current item catalog");
+                    } else {
+                        catalog = ItemCatalog.of(items);
+                        log.info("Item catalog loaded with " + items.size() + " items");
+                    }
+                    return catalog.size();
+                });
     }
 }
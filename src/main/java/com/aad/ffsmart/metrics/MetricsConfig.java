@@ -0,0 +1,48 @@
+package com.aad.ffsmart.metrics;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import org.springframework.boot.actuate.autoconfigure.metrics.MeterRegistryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Set;
+
+/**
+ * Metrics configuration class
+ * <p>
+ * Most meters come from the actuator's instrumentation:
+ * - http.server.requests -> latency/count per endpoint (uri template, method, status)
+ * - spring.data.repository.invocations -> latency per repository method, timed until the Flux/Mono terminates
+ * - mongodb.driver.commands / mongodb.driver.pool.* -> per collection and command, see MongoConfig
+ * - rabbitmq.* -> connection factory channels and publishes
+ * Components add their own by implementing MeterBinder (publish confirms, JWT verification, caches, inventory gauges)
+ * and scheduled jobs are timed with ReactorMetrics
+ * This adds an application tag and latency histograms (for Prometheus quantiles) on the request and query timers
+ *
+ * @author Oliver Wortley
+ */
+@Configuration
+public class MetricsConfig {
+    private static final Set<String> HISTOGRAM_METERS = Set.of("http.server.requests", "spring.data.repository.invocations", "mongodb.driver.commands");
+
+    @Bean
+    public MeterRegistryCustomizer<MeterRegistry> commonTags() {
+        return registry -> registry.config().commonTags("application", "ffsmart");
+    }
+
+    @Bean
+    public MeterFilter latencyHistograms() {
+        return new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                if (id.getType() == Meter.Type.TIMER && HISTOGRAM_METERS.contains(id.getName())) {
+                    return DistributionStatisticConfig.builder().percentilesHistogram(true).build().merge(config);
+                }
+                return config;
+            }
+        };
+    }
+}
@@ -0,0 +1,38 @@
+package com.aad.ffsmart.metrics;
+
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import io.prometheus.client.exporter.common.TextFormat;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+/**
+ * Metrics controller class
+ * <p>
+ * Prometheus scrape endpoint, for head chefs / operators only (scrapers authenticate with a bearer token)
+ * Returns the Prometheus text format as is rather than the usual response wrapper, so it can be scraped directly
+ * 404 if Prometheus export is disabled (e.g. in tests, where the actuator leaves it off)
+ *
+ * @author Oliver Wortley
+ */
+@RestController
+@RequestMapping("/metrics")
+public class MetricsController {
+
+    @Autowired
+    private ObjectProvider<PrometheusMeterRegistry> prometheusMeterRegistry;
+
+    @GetMapping(produces = TextFormat.CONTENT_TYPE_004)
+    @PreAuthorize("hasRole('HEAD_CHEF')")
+    public Mono<String> scrape() {
+        return Mono.justOrEmpty(prometheusMeterRegistry.getIfAvailable())
+                .map(PrometheusMeterRegistry::scrape)
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Metrics export is disabled")));
+    }
+}
@@ -0,0 +1,30 @@
+package com.aad.ffsmart.metrics;
+
+import io.micrometer.core.instrument.Metrics;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import reactor.core.observability.micrometer.Micrometer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactor pipeline metrics
+ * <p>
+ * Times a named pipeline from subscription to termination (<name>.flow.duration, tagged by status and exception)
+ * and counts its subscriptions, used for the scheduled jobs
+ * Meters go to the global registry, which the actuator adds the application's registries to,
+ * so jobs can be timed without a registry being injected into every service
+ *
+ * @author Oliver Wortley
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class ReactorMetrics {
+
+    public static <T> Mono<T> timed(String name, Mono<T> pipeline) {
+        return pipeline.name(name).tap(Micrometer.metrics(Metrics.globalRegistry));
+    }
+
+    public static <T> Flux<T> timed(String name, Flux<T> pipeline) {
+        return pipeline.name(name).tap(Micrometer.metrics(Metrics.globalRegistry));
+    }
+}
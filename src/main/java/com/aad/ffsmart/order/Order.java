@@ -3,6 +3,8 @@ package com.aad.ffsmart.order;
 import com.aad.ffsmart.inventory.InventoryItem;
 import com.fasterxml.jackson.annotation.JsonFormat;
 import lombok.*;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.MongoId;
 import org.springframework.lang.Nullable;
@@ -15,10 +17,12 @@ import java.util.List;
  * <p>
  * Defines schema for Orders collection
  * Has required args constructor for creating orders server-side (auto-generation)
+ * Indexed on status (+ placedDate for ordering), placedDate and driverId for the filtered/sorted order queries
  *
  * @author Oliver Wortley
  */
 @Document("Orders")
+@CompoundIndex(name = "status_placedDate", def = "{ status : 1, placedDate : -1 }")
 @RequiredArgsConstructor
 @AllArgsConstructor
 @NoArgsConstructor
@@ -35,6 +39,7 @@ public class Order {
     private String supplierName;
 
     @Nullable
+    @Indexed
     private String driverId;
 
     @NonNull
@@ -42,6 +47,7 @@ public class Order {
 
     @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd")
     @NonNull
+    @Indexed
     private Date placedDate;
 
     @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd")
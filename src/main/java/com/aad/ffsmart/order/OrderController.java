@@ -1,18 +1,23 @@
 package com.aad.ffsmart.order;
 
-import com.aad.ffsmart.auth.JWTUtil;
+import com.aad.ffsmart.order.model.OrderBatchRequest;
 import com.aad.ffsmart.order.model.OrderRequest;
 import com.aad.ffsmart.web.ResponseMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpHeaders;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.security.Principal;
+
 import static com.aad.ffsmart.web.ResponseHandler.generateResponse;
+import static com.aad.ffsmart.web.ResponseHandler.generateStreamingResponse;
 
 /**
  * Order controller class
@@ -28,7 +33,7 @@ public class OrderController {
     private OrderService orderService;
 
     @Autowired
-    private JWTUtil jwtUtil;
+    private ObjectMapper objectMapper;
 
     @PostMapping
     @PreAuthorize("hasRole('HEAD_CHEF')")
@@ -54,8 +59,9 @@ public class OrderController {
 
     @GetMapping
     @PreAuthorize("hasRole('HEAD_CHEF')")
-    public Mono<ResponseEntity<Object>> getAllOrders(@RequestParam(required = false) Integer status) {
-        return generateResponse(ResponseMessage.SUCCESS, HttpStatus.OK, orderService.getAllOrders(status != null ? OrderStatus.fromValue(status) : null));
+    public Mono<ResponseEntity<Flux<DataBuffer>>> getAllOrders(@RequestParam(required = false) Integer status, ServerWebExchange serverWebExchange) {
+        return generateStreamingResponse(ResponseMessage.SUCCESS, HttpStatus.OK,
+                orderService.getAllOrders(status != null ? OrderStatus.fromValue(status) : null), serverWebExchange, objectMapper);
     }
 
     @GetMapping("/approved")
@@ -66,9 +72,8 @@ public class OrderController {
 
     @GetMapping("/my-orders")
     @PreAuthorize("hasRole('DELIVERY_DRIVER')")
-    public Mono<ResponseEntity<Object>> getMyOrders(ServerWebExchange serverWebExchange) {
-        String authToken = serverWebExchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
-        String userId = jwtUtil.getUsernameFromToken(authToken != null ? authToken.substring(7) : null);
+    public Mono<ResponseEntity<Object>> getMyOrders(Principal principal) {
+        String userId = principal.getName();
         return generateResponse(ResponseMessage.SUCCESS, HttpStatus.OK, orderService.getMyOrders(userId));
     }
 
@@ -92,9 +97,8 @@ public class OrderController {
 
     @PutMapping("/{orderId}/in-transit")
     @PreAuthorize("hasRole('DELIVERY_DRIVER')")
-    public Mono<ResponseEntity<Object>> markOrderInTransit(@PathVariable String orderId, ServerWebExchange serverWebExchange) {
-        String authToken = serverWebExchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
-        String userId = jwtUtil.getUsernameFromToken(authToken != null ? authToken.substring(7) : null);
+    public Mono<ResponseEntity<Object>> markOrderInTransit(@PathVariable String orderId, Principal principal) {
+        String userId = principal.getName();
         return generateResponse(ResponseMessage.SUCCESS, HttpStatus.OK, orderService.dispatchOrder(orderId, userId));
     }
 
@@ -104,4 +108,23 @@ public class OrderController {
         return generateResponse(ResponseMessage.SUCCESS, HttpStatus.OK, orderService.deliverOrder(orderId));
     }
 
+    @PutMapping("/approve")
+    @PreAuthorize("hasRole('HEAD_CHEF')")
+    public Mono<ResponseEntity<Object>> approveOrders(@RequestBody OrderBatchRequest orderBatchRequest) {
+        return generateResponse(ResponseMessage.SUCCESS, HttpStatus.OK, orderService.approveOrders(orderBatchRequest.getOrderIds()));
+    }
+
+    @PutMapping("/in-transit")
+    @PreAuthorize("hasRole('DELIVERY_DRIVER')")
+    public Mono<ResponseEntity<Object>> markOrdersInTransit(@RequestBody OrderBatchRequest orderBatchRequest, Principal principal) {
+        String userId = principal.getName();
+        return generateResponse(ResponseMessage.SUCCESS, HttpStatus.OK, orderService.dispatchOrders(orderBatchRequest.getOrderIds(), userId));
+    }
+
+    @PutMapping("/deliver")
+    @PreAuthorize("hasRole('DELIVERY_DRIVER')")
+    public Mono<ResponseEntity<Object>> deliverOrders(@RequestBody OrderBatchRequest orderBatchRequest) {
+        return generateResponse(ResponseMessage.SUCCESS, HttpStatus.OK, orderService.deliverOrders(orderBatchRequest.getOrderIds()));
+    }
+
 }
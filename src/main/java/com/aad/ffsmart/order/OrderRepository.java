@@ -11,12 +11,13 @@ import reactor.core.publisher.Flux;
  * Links to Orders collection in MongoDB
  *
  * Contains queries to filter orders by status APPROVED and status READY
+ * Batch status transitions are in OrderRepositoryCustom
  *
  * @author Oliver Wortley
  */
 @Repository
-public interface OrderRepository extends ReactiveMongoRepository<Order, String> {
-    @Query(value = "{ status : ?0 }")
+public interface OrderRepository extends ReactiveMongoRepository<Order, String>, OrderRepositoryCustom {
+    @Query(value = "{ status : ?0 }", sort = "{ placedDate : -1 }")
     public Flux<Order> findAll(OrderStatus status);
 
     @Query(value = "{ driverId: ?0 }")
@@ -0,0 +1,18 @@
+package com.aad.ffsmart.order;
+
+import reactor.core.publisher.Flux;
+
+import java.util.Collection;
+
+/**
+ * Order repository custom fragment
+ * <p>
+ * Defines batch status transitions which cannot be expressed as derived/annotated queries
+ * Implemented in OrderRepositoryCustomImpl, mixed into OrderRepository by Spring Data
+ *
+ * @author Oliver Wortley
+ */
+public interface OrderRepositoryCustom {
+
+    Flux<Order> transitionStatus(Collection<String> orderIds, OrderStatus from, OrderStatus to, String driverId);
+}
@@ -0,0 +1,61 @@
+package com.aad.ffsmart.order;
+
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Order repository custom fragment implementation
+ * <p>
+ * Moves a batch of orders from one status to the next with a single conditional updateMany, so an order is only
+ * changed if it is still in the expected status (e.g. two drivers dispatching the same order, only one succeeds)
+ * Each batch stamps a unique transitionId on the orders it changed, which is then used to read back exactly
+ * those orders (by _id), then unset again so it is not left on the documents - three round trips however many
+ * orders are in the batch
+ *
+ * @author Oliver Wortley
+ */
+public class OrderRepositoryCustomImpl implements OrderRepositoryCustom {
+    private static final String ID = "id";
+    private static final String STATUS = "status";
+    private static final String DRIVER_ID = "driverId";
+    private static final String TRANSITION_ID = "transitionId"; // not mapped on Order, only used to find a batch's updates
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    public OrderRepositoryCustomImpl(ReactiveMongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Sets status (and driverId, if given) on the orders which are currently in status from
+     *
+     * @return orders changed by this call, orders not found or in another status are not returned
+     */
+    @Override
+    public Flux<Order> transitionStatus(Collection<String> orderIds, OrderStatus from, OrderStatus to, String driverId) {
+        if (orderIds.isEmpty()) {
+            return Flux.empty();
+        }
+        String transitionId = UUID.randomUUID().toString();
+        Update update = new Update().set(STATUS, to).set(TRANSITION_ID, transitionId);
+        if (driverId != null) {
+            update.set(DRIVER_ID, driverId);
+        }
+
+        return mongoTemplate.updateMulti(Query.query(Criteria.where(ID).in(orderIds).and(STATUS).is(from)), update, Order.class)
+                .filter(result -> result.getModifiedCount() > 0)
+                .flatMapMany(result -> {
+                    Query transitioned = Query.query(Criteria.where(ID).in(orderIds).and(TRANSITION_ID).is(transitionId));
+                    return mongoTemplate.find(transitioned, Order.class)
+                            .collectList()
+                            .flatMapMany(orders -> mongoTemplate.updateMulti(transitioned, new Update().unset(TRANSITION_ID), Order.class)
+                                    .thenMany(Flux.fromIterable(orders)));
+                });
+    }
+}
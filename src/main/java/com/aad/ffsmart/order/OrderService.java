@@ -1,8 +1,11 @@
 package com.aad.ffsmart.order;
 
+import com.aad.ffsmart.order.model.OrderTransitionResult;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 /**
  * Order service
  * <p>
@@ -31,4 +34,10 @@ public interface OrderService {
     Mono<Order> dispatchOrder(String orderId, String userId);
 
     Mono<Order> deliverOrder(String orderId);
+
+    Flux<OrderTransitionResult> approveOrders(List<String> orderIds);
+
+    Flux<OrderTransitionResult> dispatchOrders(List<String> orderIds, String userId);
+
+    Flux<OrderTransitionResult> deliverOrders(List<String> orderIds);
 }
@@ -2,28 +2,56 @@ package com.aad.ffsmart.order;
 
 import com.aad.ffsmart.alert.Alert;
 import com.aad.ffsmart.alert.AlertCode;
-import com.aad.ffsmart.alert.RabbitConfig;
-import com.aad.ffsmart.inventory.InventoryChange;
+import com.aad.ffsmart.alert.AlertOutbox;
+import com.aad.ffsmart.forecast.DemandForecaster;
+import com.aad.ffsmart.forecast.Forecaster;
+import com.aad.ffsmart.forecast.model.ForecastSettings;
 import com.aad.ffsmart.inventory.InventoryItem;
 import com.aad.ffsmart.inventory.InventoryService;
-import com.aad.ffsmart.inventory.model.InventoryOperation;
+import com.aad.ffsmart.inventory.model.ItemCount;
 import com.aad.ffsmart.inventory.model.SupplierItems;
+import com.aad.ffsmart.item.Item;
+import com.aad.ffsmart.metrics.ReactorMetrics;
+import com.aad.ffsmart.order.model.OrderTransitionResult;
+import com.aad.ffsmart.scheduling.SchedulerConfig;
+import com.aad.ffsmart.supplier.Supplier;
+import com.aad.ffsmart.supplier.SupplierService;
+import com.aad.ffsmart.tracing.ReactorTracing;
+import io.micrometer.observation.ObservationRegistry;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 
-import java.util.*;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 /**
  * Order service implementation
  * <p>
  * Contains order business logic inc. checking function and auto order generation
+ * Auto order generation runs on the job scheduler and creates each supplier's order concurrently (timed and traced as jobs.auto-generate-order)
+ * Items are ordered when forecast demand (supplier's forecast model) until the next order arrives exceeds stock,
+ * every catalog item is checked so items which have run out (no stock total) are reordered too
+ * Alerts are added to the alert outbox once the order has been saved, never published on the request path
+ * Batch approve/dispatch/deliver move all orders in one conditional update, guarded on the previous status
+ * (READY -> APPROVED -> IN_TRANSIT -> DELIVERED), and return a result per order, including orders whose status
+ * changed but whose follow-up (alert, inventory add on delivery) failed
+ * Single approve/dispatch/deliver use the same guarded update and fail with 409 if the order is in another status
  *
  * @author Oliver Wortley
  */
@@ -32,6 +60,8 @@ import java.util.*;
 public class OrderServiceImpl implements OrderService {
     private static final String ORDER_NOT_FOUND_MSG = "Order not found";
     private static final String ORDER_STR = "Order ";
+    private static final String FOLLOW_UP_FAILED_MSG = "Status changed, but the follow-up (alert / inventory update) failed";
+    private static final int DELIVERY_LEAD_DAYS = 4;
     @Autowired
     private OrderRepository orderRepository;
 
@@ -39,7 +69,30 @@ public class OrderServiceImpl implements OrderService {
     private InventoryService inventoryService;
 
     @Autowired
-    private RabbitTemplate rabbitTemplate;
+    private AlertOutbox alertOutbox;
+
+    @Autowired
+    private SupplierService supplierService;
+
+    @Autowired
+    private DemandForecaster demandForecaster;
+
+    @Autowired
+    @Qualifier(SchedulerConfig.JOB_SCHEDULER)
+    private Scheduler jobScheduler;
+
+    @Autowired(required = false)
+    private ObservationRegistry observationRegistry = ObservationRegistry.NOOP;
+
+    @Value("${orders.auto-generate.concurrency:4}")
+    private int autoOrderConcurrency = 4;
+
+    // days of demand an auto order covers once delivered, i.e. until the next weekly order arrives
+    @Value("${orders.auto-generate.cover-days:7}")
+    private int coverDays = 7;
+
+    @Value("${orders.batch.max-size:100}")
+    private int maxBatchSize = 100;
 
     private boolean checkOrder() {
 //        checking function -> fails for 1 in 10 orders
@@ -48,44 +101,70 @@ public class OrderServiceImpl implements OrderService {
 
     @Scheduled(cron = "0 0 9 * * MON") // every MON at 9am
     private void autoGenerateOrder() {
+        ReactorTracing.observed(observationRegistry, "jobs.auto-generate-order", ReactorMetrics.timed("jobs.auto-generate-order", generateOrders()))
+                .subscribeOn(jobScheduler)
+                .subscribe(null, error -> log.error("Auto order generation failed", error));
+    }
+
+    Flux<Order> generateOrders() {
         Calendar cal = Calendar.getInstance();
-        cal.add(Calendar.DATE, 4); // + 4 days
+        cal.add(Calendar.DATE, DELIVERY_LEAD_DAYS);
         Date deliveryDate = cal.getTime();
         cal.add(Calendar.DATE, 10);
         Date desiredExpiryDate = cal.getTime(); // + 14 days
-        Map<String, Integer> weeklyRemovedQuantities = new HashMap<>();
-        final Integer weeks = 4;
-
-        List<InventoryChange> inventoryChanges = inventoryService.getInventoryChanges4Weeks().collectList().block();
-        if (inventoryChanges != null) {
-            inventoryChanges.forEach(change -> {
-                if (change.getOperation() == InventoryOperation.REMOVE) {
-                    change.getItems().forEach(item -> weeklyRemovedQuantities.merge(item.getItemId(), item.getQuantity(), Integer::sum));
-                }
-            });
+
+        // demand comes from the forecaster's in-memory item histories, settings from the (cached) suppliers
+        return demandForecaster.ready()
+                .then(Mono.zip(supplierService.getAllSuppliers(null).collectList(),
+                        inventoryService.aggregateInventory().collectMap(SupplierItems::getSupplierId)))
+                .flatMapMany(suppliersAndStock -> {
+                    List<Supplier> suppliers = suppliersAndStock.getT1();
+                    Map<String, SupplierItems> stock = new HashMap<>(suppliersAndStock.getT2());
+                    List<Order> orders = new ArrayList<>();
+                    for (Supplier supplier : suppliers) {
+                        orders.add(generateOrder(supplier.getId(), supplier.getName(), supplier.getItems(), stock.remove(supplier.getId()),
+                                demandForecaster.resolve(supplier.getForecast()), deliveryDate, desiredExpiryDate));
+                    }
+                    // stock of suppliers no longer on file is still checked, with the default forecast settings
+                    for (SupplierItems supplierItems : stock.values()) {
+                        orders.add(generateOrder(supplierItems.getSupplierId(), supplierItems.getSupplierName(), null, supplierItems,
+                                demandForecaster.resolve(null), deliveryDate, desiredExpiryDate));
+                    }
+                    return Flux.fromIterable(orders);
+                })
+                .flatMap(order -> createOrder(order, true), autoOrderConcurrency);
+    }
+
+    /**
+     * Items are the supplier's catalog items plus any other items in stock from the supplier
+     * Stock totals only hold items in stock, so a catalog item without one has run out and is forecast against 0
+     */
+    private Order generateOrder(String supplierId, String supplierName, List<Item> catalogItems, SupplierItems supplierStock,
+                                ForecastSettings settings, Date deliveryDate, Date desiredExpiryDate) {
+        Map<String, String> itemNames = new LinkedHashMap<>();
+        Map<String, Integer> quantities = new HashMap<>();
+        if (catalogItems != null) {
+            catalogItems.forEach(item -> itemNames.put(item.getId(), item.getName()));
+        }
+        if (supplierStock != null) {
+            for (ItemCount item : supplierStock.getItems()) {
+                itemNames.putIfAbsent(item.getItemId(), item.getItemName());
+                quantities.put(item.getItemId(), item.getQuantity());
+            }
+        }
+
+        Forecaster forecaster = demandForecaster.forecaster(settings);
+        List<InventoryItem> items = new ArrayList<>();
+        for (Map.Entry<String, String> item : itemNames.entrySet()) {
+            // stock has to last until this order is delivered, then until the next order is
+            double demand = demandForecaster.forecast(item.getKey(), forecaster, DELIVERY_LEAD_DAYS + coverDays);
+            int shortfall = (int) Math.ceil(demand - quantities.getOrDefault(item.getKey(), 0));
+            if (shortfall > 0) {
+                items.add(new InventoryItem(item.getKey(), item.getValue(), supplierId, supplierName,
+                        Math.max(shortfall, settings.getMinOrderQuantity()), desiredExpiryDate));
+            }
         }
-        weeklyRemovedQuantities.replaceAll((k, v) -> v / weeks); // compute average removed count
-
-        List<SupplierItems> supplierItemsList = inventoryService.aggregateInventory().collectList().block();
-        assert supplierItemsList != null;
-
-        supplierItemsList.forEach(supplierItems ->
-                createOrder(new Order(supplierItems.getSupplierId(), supplierItems.getSupplierName(), OrderStatus.READY, new Date(), deliveryDate,
-                        supplierItems.getItems()
-                                .stream()
-                                .filter(it -> it.getQuantity() < weeklyRemovedQuantities.getOrDefault(it.getItemId(), 0))
-                                .map(it -> new InventoryItem(
-                                        it.getItemId(),
-                                        it.getItemName(),
-                                        supplierItems.getSupplierId(),
-                                        supplierItems.getSupplierName(),
-                                        weeklyRemovedQuantities.getOrDefault(it.getItemId(), 0) > 10
-                                                ? weeklyRemovedQuantities.get(it.getItemId())
-                                                : 10,
-                                        desiredExpiryDate)
-                                ).toList()
-                ), true).block()
-        );
+        return new Order(supplierId, supplierName, OrderStatus.READY, new Date(), deliveryDate, items);
     }
 
     public Mono<Order> createOrder(Order order, boolean autoGenerated) {
@@ -95,22 +174,20 @@ public class OrderServiceImpl implements OrderService {
         log.info("Order being saved into database");
         log.info(order.toString());
 
-        return orderRepository.save(order).map(odr -> {
-            if (autoGenerated) {
-                rabbitTemplate.convertAndSend(RabbitConfig.ALERTS_EXCHANGE_NAME, RabbitConfig.HEAD_CHEF_QUEUE_NAME,
-                        new Alert(AlertCode.ORDER_READY, "New order generated", "A new order has been generated and is ready for approval", new Date()));
-            } else {
-                rabbitTemplate.convertAndSend(RabbitConfig.ALERTS_EXCHANGE_NAME, RabbitConfig.HEAD_CHEF_QUEUE_NAME,
-                        new Alert(AlertCode.ORDER_PLACED, "Order placed", ORDER_STR + odr.getId() + " was approved and sent!", new Date()));
-            }
-            return odr;
-        });
+        return orderRepository.save(order).flatMap(odr -> alertOutbox.add(autoGenerated
+                        ? new Alert(AlertCode.ORDER_READY, "New order generated", "A new order has been generated and is ready for approval", new Date())
+                        : orderPlacedAlert(odr))
+                .thenReturn(odr));
+    }
+
+    private static Alert orderPlacedAlert(Order order) {
+        return new Alert(AlertCode.ORDER_PLACED, "Order placed", ORDER_STR + order.getId() + " was approved and sent!", new Date());
     }
 
     public Flux<Order> getAllOrders(OrderStatus status) {
         return status == null
-                ? orderRepository.findAll().sort(Comparator.comparing(Order::getPlacedDate).reversed())
-                : orderRepository.findAll(status).sort(Comparator.comparing(Order::getPlacedDate).reversed());
+                ? orderRepository.findAll(Sort.by(Sort.Direction.DESC, "placedDate"))
+                : orderRepository.findAll(status);
     }
 
     public Flux<Order> getMyOrders(String userId) {
@@ -131,17 +208,8 @@ public class OrderServiceImpl implements OrderService {
     }
 
     public Mono<Order> approveOrder(String orderId) {
-        return orderRepository.findById(orderId)
-                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, ORDER_NOT_FOUND_MSG)))
-                .map(order -> {
-                    order.setStatus(OrderStatus.APPROVED);
-                    return order;
-                })
-                .flatMap(order -> {
-                    rabbitTemplate.convertAndSend(RabbitConfig.ALERTS_EXCHANGE_NAME, RabbitConfig.HEAD_CHEF_QUEUE_NAME,
-                            new Alert(AlertCode.ORDER_PLACED, "Order placed", ORDER_STR + orderId + " was approved and sent!", new Date()));
-                    return orderRepository.save(order);
-                });
+        return transitionOrder(orderId, OrderStatus.READY, OrderStatus.APPROVED, null)
+                .flatMap(order -> alertOutbox.add(orderPlacedAlert(order)).thenReturn(order));
     }
 
     public Mono<Void> rejectOrder(String orderId) {
@@ -152,41 +220,95 @@ public class OrderServiceImpl implements OrderService {
     }
 
     public Mono<Order> dispatchOrder(String orderId, String userId) {
-        return orderRepository.findById(orderId)
-                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, ORDER_NOT_FOUND_MSG)))
-                .map(order -> {
-                    order.setStatus(OrderStatus.IN_TRANSIT);
-                    order.setDriverId(userId);
-                    return order;
-                })
-                .flatMap(orderRepository::save);
+        return transitionOrder(orderId, OrderStatus.APPROVED, OrderStatus.IN_TRANSIT, userId);
     }
 
     private Mono<Order> checkOrderAndAddInventory(Order order) {
-        rabbitTemplate.convertAndSend(RabbitConfig.ALERTS_EXCHANGE_NAME, RabbitConfig.HEAD_CHEF_QUEUE_NAME,
-                new Alert(AlertCode.ORDER_DELIVERED, "Order delivered", ORDER_STR + order.getId() + " was just delivered!", new Date()));
+        return ReactorTracing.observed(observationRegistry, "orders.check-and-add-inventory", Mono.defer(() -> checkAndAddInventory(order)));
+    }
+
+    private Mono<Order> checkAndAddInventory(Order order) {
+        Alert delivered = new Alert(AlertCode.ORDER_DELIVERED, "Order delivered", ORDER_STR + order.getId() + " was just delivered!", new Date());
 
         if (checkOrder()) {
-            rabbitTemplate.convertAndSend(RabbitConfig.ALERTS_EXCHANGE_NAME, RabbitConfig.HEAD_CHEF_QUEUE_NAME,
-                    new Alert(AlertCode.CHECKING_FUNCTION_RESULT, "Checking function passed", "Checking function passed for order " + order.getId(), new Date()));
-            inventoryService.addInventory(order.getItems(), order.getDriverId()).block();
-        } else {
-            rabbitTemplate.convertAndSend(RabbitConfig.ALERTS_EXCHANGE_NAME, RabbitConfig.HEAD_CHEF_QUEUE_NAME,
-                    new Alert(AlertCode.CHECKING_FUNCTION_RESULT, "Checking function failed", "Checking function failed for order " + order.getId(), new Date()));
+            return inventoryService.addInventory(order.getItems(), order.getDriverId())
+                    .then(alertOutbox.addAll(List.of(delivered,
+                            new Alert(AlertCode.CHECKING_FUNCTION_RESULT, "Checking function passed", "Checking function passed for order " + order.getId(), new Date()))))
+                    .thenReturn(order);
         }
-
-        return Mono.just(order);
+        return alertOutbox.addAll(List.of(delivered,
+                        new Alert(AlertCode.CHECKING_FUNCTION_RESULT, "Checking function failed", "Checking function failed for order " + order.getId(), new Date())))
+                .thenReturn(order);
     }
 
     public Mono<Order> deliverOrder(String orderId) {
-        return orderRepository.findById(orderId)
-                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, ORDER_NOT_FOUND_MSG)))
-                .map(order -> {
-                    order.setStatus(OrderStatus.DELIVERED);
-                    return order;
-                })
-                .flatMap(orderRepository::save)
+        return transitionOrder(orderId, OrderStatus.IN_TRANSIT, OrderStatus.DELIVERED, null)
                 .flatMap(this::checkOrderAndAddInventory);
     }
 
+    /**
+     * Single order transition, guarded on the previous status like the batch endpoints, so a single and a batch
+     * request for the same order cannot both apply it (e.g. inventory added twice on delivery)
+     */
+    private Mono<Order> transitionOrder(String orderId, OrderStatus from, OrderStatus to, String driverId) {
+        return orderRepository.transitionStatus(List.of(orderId), from, to, driverId)
+                .next()
+                // not moved, read it back to tell a missing order from one in another status
+                .switchIfEmpty(Mono.defer(() -> orderRepository.findById(orderId)
+                        .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, ORDER_NOT_FOUND_MSG)))
+                        .flatMap(current -> Mono.error(new ResponseStatusException(HttpStatus.CONFLICT,
+                                ORDER_STR + "is " + current.getStatus() + ", expected " + from)))));
+    }
+
+    public Flux<OrderTransitionResult> approveOrders(List<String> orderIds) {
+        return transitionOrders(orderIds, OrderStatus.READY, OrderStatus.APPROVED, null,
+                order -> alertOutbox.add(orderPlacedAlert(order)).thenReturn(order));
+    }
+
+    public Flux<OrderTransitionResult> dispatchOrders(List<String> orderIds, String userId) {
+        return transitionOrders(orderIds, OrderStatus.APPROVED, OrderStatus.IN_TRANSIT, userId, Mono::just);
+    }
+
+    public Flux<OrderTransitionResult> deliverOrders(List<String> orderIds) {
+        return transitionOrders(orderIds, OrderStatus.IN_TRANSIT, OrderStatus.DELIVERED, null, this::checkOrderAndAddInventory);
+    }
+
+    private Flux<OrderTransitionResult> transitionOrders(List<String> orderIds, OrderStatus from, OrderStatus to, String driverId,
+                                                         Function<Order, Mono<Order>> afterTransition) {
+        if (orderIds == null || orderIds.isEmpty()) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "No order IDs given"));
+        }
+        List<String> ids = orderIds.stream().distinct().toList();
+        if (ids.size() > maxBatchSize) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + maxBatchSize + " orders per batch"));
+        }
+
+        return orderRepository.transitionStatus(ids, from, to, driverId)
+                .flatMap(order -> afterTransition.apply(order)
+                        .thenReturn(new OrderTransitionResult(order.getId(), true, order.getStatus(), null))
+                        // the status change is saved, so one order's failed follow-up must not fail the others' results
+                        .onErrorResume(ex -> {
+                            log.error(ORDER_STR + order.getId() + " moved to " + to + " but its follow-up failed", ex);
+                            return Mono.just(new OrderTransitionResult(order.getId(), true, order.getStatus(), FOLLOW_UP_FAILED_MSG));
+                        }))
+                .collectMap(OrderTransitionResult::getOrderId)
+                .flatMapMany(transitioned -> {
+                    List<String> failedIds = ids.stream().filter(id -> !transitioned.containsKey(id)).toList();
+                    // only orders which did not move are read back, to report why
+                    Mono<Map<String, Order>> failed = failedIds.isEmpty()
+                            ? Mono.just(Map.of())
+                            : orderRepository.findAllById(failedIds).collectMap(Order::getId);
+                    return failed.flatMapIterable(current -> ids.stream()
+                            .map(id -> transitioned.containsKey(id) ? transitioned.get(id) : result(id, current.get(id), from))
+                            .toList());
+                });
+    }
+
+    private static OrderTransitionResult result(String orderId, Order current, OrderStatus from) {
+        if (current == null) {
+            return new OrderTransitionResult(orderId, false, null, ORDER_NOT_FOUND_MSG);
+        }
+        return new OrderTransitionResult(orderId, false, current.getStatus(), ORDER_STR + "is " + current.getStatus() + ", expected " + from);
+    }
+
 }
@@ -0,0 +1,19 @@
+package com.aad.ffsmart.order.model;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Order batch request
+ * <p>
+ * Request body for batch approve/dispatch/deliver, the IDs of the orders to move (duplicates are ignored,
+ * at most orders.batch.max-size)
+ *
+ * @author Oliver Wortley
+ */
+@Data
+public class OrderBatchRequest {
+
+    private List<String> orderIds;
+}
@@ -0,0 +1,26 @@
+package com.aad.ffsmart.order.model;
+
+import com.aad.ffsmart.order.OrderStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Order transition result
+ * <p>
+ * Outcome of one order in a batch approve/dispatch/deliver
+ * status is the order's status after the batch (null if the order was not found), message explains a failure,
+ * or a failed follow-up of a successful transition (success stays true, the status change is saved)
+ *
+ * @author Oliver Wortley
+ */
+@Data
+@AllArgsConstructor
+public class OrderTransitionResult {
+    private String orderId;
+
+    private boolean success;
+
+    private OrderStatus status;
+
+    private String message;
+}
@@ -0,0 +1,101 @@
+package com.aad.ffsmart.report;
+
+import com.aad.ffsmart.inventory.InventoryItem;
+import com.lowagie.text.*;
+import com.lowagie.text.Font;
+import com.lowagie.text.pdf.PdfPCell;
+import com.lowagie.text.pdf.PdfPTable;
+import com.lowagie.text.pdf.PdfWriter;
+
+import java.awt.*;
+import java.io.Closeable;
+import java.io.OutputStream;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * PDF report writer
+ * <p>
+ * Writes the expired items report to an output stream using OpenPDF
+ * The table is marked incomplete so each chunk of rows is written to the document and released as it is added,
+ * keeping memory flat however many expired items there are (header row is repeated on each page)
+ * Not thread-safe, one writer per report
+ *
+ * @author Oliver Wortley
+ */
+public class PdfReportWriter implements Closeable {
+    private final Document document = new Document(PageSize.A4);
+
+    private final PdfPTable table = new PdfPTable(4);
+
+    private final DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+
+    public PdfReportWriter(OutputStream outputStream, Date reportDate) {
+        PdfWriter.getInstance(document, outputStream);
+        document.open();
+
+        Font font = FontFactory.getFont(FontFactory.HELVETICA_BOLD);
+        font.setSize(12);
+        font.setColor(Color.BLACK);
+
+        Paragraph p = new Paragraph("Expired items in FFsmart as of " + dateFormat.format(reportDate), font);
+        p.setAlignment(Element.ALIGN_CENTER);
+
+        document.add(p);
+
+        table.setWidthPercentage(100f);
+        table.setWidths(new float[]{1.5f, 3.5f, 2.5f, 1.5f});
+        table.setSpacingBefore(8);
+        table.setComplete(false);
+
+        writeTableHeader();
+    }
+
+    private void writeTableHeader() {
+        PdfPCell cell = new PdfPCell();
+        cell.setBackgroundColor(Color.LIGHT_GRAY);
+        cell.setPadding(4);
+
+        Font font = FontFactory.getFont(FontFactory.HELVETICA);
+        font.setColor(Color.BLACK);
+        font.setSize(10);
+
+        cell.setPhrase(new Phrase("Item ID", font));
+        table.addCell(cell);
+
+        cell.setPhrase(new Phrase("Item name", font));
+        table.addCell(cell);
+
+        cell.setPhrase(new Phrase("Expiry date", font));
+        table.addCell(cell);
+
+        cell.setPhrase(new Phrase("Quantity", font));
+        table.addCell(cell);
+
+        table.setHeaderRows(1);
+    }
+
+    public void writeRows(List<InventoryItem> expiredItems) {
+        expiredItems.forEach(item -> {
+            table.addCell(item.getId());
+            table.addCell(item.getItemName());
+            table.addCell(dateFormat.format(item.getExpiryDate()));
+            table.addCell(item.getQuantity().toString());
+        });
+        document.add(table); // flushes the rows added so far
+    }
+
+    public void finish() {
+        table.setComplete(true);
+        document.add(table);
+    }
+
+    @Override
+    public void close() {
+        if (document.isOpen()) {
+            document.close(); // also closes the output stream
+        }
+    }
+}
@@ -17,6 +17,7 @@ import static com.aad.ffsmart.web.ResponseHandler.generateResponse;
  * Report REST controller
  * <p>
  * Defines endpoints for /reports path inc. auth and response code/message
+ * Generating a report returns the queued job, its progress can be polled at /reports/jobs/{jobId}
  *
  * @author Oliver Wortley
  */
@@ -35,7 +36,13 @@ public class ReportController {
     @PostMapping
     @PreAuthorize("hasRole('HEAD_CHEF')")
     public Mono<ResponseEntity<Object>> generateReport() {
-        return reportService.generateReport().then(generateResponse(ResponseMessage.SUCCESS, HttpStatus.CREATED));
+        return generateResponse(ResponseMessage.SUCCESS, HttpStatus.ACCEPTED, reportService.generateReport());
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    @PreAuthorize("hasRole('HEAD_CHEF')")
+    public Mono<ResponseEntity<Object>> getReportJob(@PathVariable String jobId) {
+        return generateResponse(ResponseMessage.SUCCESS, HttpStatus.OK, reportService.getReportJob(jobId));
     }
 
     @GetMapping(value = "/{fileName}", produces = MediaType.APPLICATION_PDF_VALUE)
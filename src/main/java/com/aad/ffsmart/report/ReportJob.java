@@ -0,0 +1,52 @@
+package com.aad.ffsmart.report;
+
+import com.aad.ffsmart.report.model.ReportEmailStatus;
+import com.aad.ffsmart.report.model.ReportJobStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.MongoId;
+
+import java.util.Date;
+
+/**
+ * ReportJob data class
+ * <p>
+ * Defines schema for ReportJobs collection, one document per report requested
+ * Also acts as the outbox for report emails: completed jobs wait with emailStatus PENDING until the email relay sends them
+ * emailStatus + nextEmailAttempt index serves the relay's due emails query
+ *
+ * @author Oliver Wortley
+ */
+@Document("ReportJobs")
+@CompoundIndex(name = "emailStatus_nextEmailAttempt", def = "{ emailStatus : 1, nextEmailAttempt : 1 }")
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class ReportJob {
+
+    @MongoId
+    private String id;
+
+    private ReportJobStatus status;
+
+    private String fileName;
+
+    private Date requestedDate;
+
+    private Date completedDate;
+
+    private String error;
+
+    private ReportEmailStatus emailStatus;
+
+    private Integer emailAttempts;
+
+    private Date nextEmailAttempt;
+
+    public ReportJob copy() {
+        return new ReportJob(id, status, fileName, requestedDate, completedDate, error, emailStatus, emailAttempts, nextEmailAttempt);
+    }
+}
@@ -0,0 +1,31 @@
+package com.aad.ffsmart.report;
+
+import com.aad.ffsmart.report.model.ReportEmailStatus;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.data.mongodb.repository.Update;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Date;
+
+/**
+ * Report job repository
+ * <p>
+ * Links to ReportJobs collection
+ * findEmailsDue returns the report emails which are ready for another send attempt, oldest first
+ * failStaleJobs marks jobs still queued or generating since before the given date failed (e.g. left behind by a restart)
+ *
+ * @author Oliver Wortley
+ */
+@Repository
+public interface ReportJobRepository extends ReactiveMongoRepository<ReportJob, String> {
+
+    @Query(value = "{ emailStatus : ?0, nextEmailAttempt : { $lte : ?1 } }", sort = "{ nextEmailAttempt : 1 }")
+    Flux<ReportJob> findEmailsDue(ReportEmailStatus emailStatus, Date now);
+
+    @Query("{ status : { $in : ['QUEUED', 'GENERATING'] }, requestedDate : { $lt : ?0 } }")
+    @Update("{ $set : { status : 'FAILED', error : ?1 } }")
+    Mono<Long> failStaleJobs(Date requestedBefore, String error);
+}
@@ -16,7 +16,9 @@ public interface ReportService {
 
     Flux<String> getAllReports();
 
-    Mono<Void> generateReport();
+    Mono<ReportJob> generateReport();
+
+    Mono<ReportJob> getReportJob(String jobId);
 
     Flux<DataBuffer> downloadReport(String fileName);
 }
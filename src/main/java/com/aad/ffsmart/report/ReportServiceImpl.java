@@ -1,17 +1,18 @@
 package com.aad.ffsmart.report;
 
-import com.aad.ffsmart.inventory.InventoryItem;
 import com.aad.ffsmart.inventory.InventoryService;
-import com.lowagie.text.*;
-import com.lowagie.text.Font;
-import com.lowagie.text.pdf.PdfPCell;
-import com.lowagie.text.pdf.PdfPTable;
-import com.lowagie.text.pdf.PdfWriter;
+import com.aad.ffsmart.metrics.ReactorMetrics;
+import com.aad.ffsmart.report.model.ReportEmailStatus;
+import com.aad.ffsmart.report.model.ReportJobStatus;
+import com.aad.ffsmart.scheduling.SchedulerConfig;
 import io.netty.buffer.ByteBufAllocator;
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.DataBufferFactory;
@@ -20,21 +21,26 @@ import org.springframework.core.io.buffer.NettyDataBufferFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 
-import java.awt.*;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
 import java.util.Comparator;
 import java.util.Date;
-import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -42,7 +48,13 @@ import java.util.stream.Stream;
  * Report service implementation
  * <p>
  * For generating PDF health and safety reports containing the expired items currently in the fridge
- * Utilises OpenPDF library
+ * Utilises OpenPDF library, see PdfReportWriter
+ * Reports are generated as jobs on the report worker pool, expired items are written to the table as they stream in
+ * Each job writes its own file (named by date and job id) under a .part name, moved into place once complete
+ * The reports directory is listed on the report worker pool too, never on the event loop
+ * Report emails go through an outbox (ReportJobs with emailStatus PENDING), sent by a relay which retries with backoff
+ * Generation times out after reports.job-timeout, jobs still unfinished after twice that (e.g. the instance running them
+ * restarted) are marked failed by a periodic sweep
  *
  * @author Oliver Wortley
  */
@@ -51,60 +63,46 @@ import java.util.stream.Stream;
 public class ReportServiceImpl implements ReportService {
     public static final String REPORTS_BASE_DIR = "C:/ffsmart/reports/";
     public static final int BUFFER_SIZE = 8096;
+    private static final String REPORT_PREFIX = "ffsmart_report_";
+    private static final String PARTIAL_SUFFIX = ".part";
+    private static final DateTimeFormatter FILE_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy_MM_dd");
+    private static final int TABLE_CHUNK_SIZE = 100;
+    private static final Duration EMAIL_RETRY_BASE_DELAY = Duration.ofMinutes(1);
     @Autowired
     private InventoryService inventoryService;
     @Autowired
     private JavaMailSender javaMailSender;
+    @Autowired
+    private ReportJobRepository reportJobRepository;
+    @Autowired
+    @Qualifier(SchedulerConfig.REPORT_SCHEDULER)
+    private Scheduler reportScheduler;
 
-    private final DateFormat formatter = new SimpleDateFormat("yyyy_MM_dd");
-
-    private final DataBufferFactory dataBufferFactory = new NettyDataBufferFactory(ByteBufAllocator.DEFAULT);
-
-    private void writeTableHeader(PdfPTable table) {
-        PdfPCell cell = new PdfPCell();
-        cell.setBackgroundColor(Color.LIGHT_GRAY);
-        cell.setPadding(4);
-
-        Font font = FontFactory.getFont(FontFactory.HELVETICA);
-        font.setColor(Color.BLACK);
-        font.setSize(10);
-
-        cell.setPhrase(new Phrase("Item ID", font));
-        table.addCell(cell);
+    @Value("${reports.email.max-attempts:5}")
+    private int maxEmailAttempts = 5;
 
-        cell.setPhrase(new Phrase("Item name", font));
-        table.addCell(cell);
+    @Value("${reports.base-dir:" + REPORTS_BASE_DIR + "}")
+    private String reportsDir = REPORTS_BASE_DIR;
 
-        cell.setPhrase(new Phrase("Expiry date", font));
-        table.addCell(cell);
+    @Value("${reports.job-timeout:1800000}")
+    private long jobTimeout = 1800000;
 
-        cell.setPhrase(new Phrase("Quantity", font));
-        table.addCell(cell);
-    }
+    private final AtomicBoolean relayRunning = new AtomicBoolean(false);
 
-    private void writeTableData(PdfPTable table, List<InventoryItem> expiredItems) {
-        DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-        expiredItems.forEach(item -> {
-            table.addCell(item.getId());
-            table.addCell(item.getItemName());
-            table.addCell(dateFormat.format(item.getExpiryDate()));
-            table.addCell(item.getQuantity().toString());
-        });
-    }
+    private final DataBufferFactory dataBufferFactory = new NettyDataBufferFactory(ByteBufAllocator.DEFAULT);
 
     public Flux<String> getAllReports() {
-        return Mono.just(Stream.of(Objects.requireNonNull(new File(REPORTS_BASE_DIR).listFiles()))
+        // directory listing blocks, keep it off the event loop
+        return Mono.fromCallable(() -> Stream.of(Objects.requireNonNull(new File(reportsDir).listFiles()))
                         .filter(file -> !file.isDirectory())
                         .map(File::getName)
+                        .filter(name -> !name.endsWith(PARTIAL_SUFFIX))
                         .collect(Collectors.toSet()))
+                .subscribeOn(reportScheduler)
                 .flatMapMany(Flux::fromIterable)
-                .sort(Comparator.comparing(s -> {
-                    if (((String) s).startsWith("ffsmart_report")) {
-                        return Integer.valueOf(((String) s).substring(15).replace("_", "").replace(".pdf", ""));
-                    } else {
-                        return -1;
-                    }
-                }).reversed());
+                // newest first: by date, then job id (ObjectIds increase over time), other files last
+                .sort(Comparator.comparing((String name) -> name.startsWith(REPORT_PREFIX) ? name.substring(REPORT_PREFIX.length()) : "")
+                        .reversed());
     }
 
     private void sendReport(String fileName) throws MessagingException {
@@ -115,56 +113,152 @@ public class ReportServiceImpl implements ReportService {
         helper.setSubject("FFsmart Health and Safety Report");
         helper.setText("Hi,\n\nHere is the latest health and safety report for FFsmart, detailing the expired items currently in the fridge.\n\nBest,\n\nThe FFsmart API");
 
-        helper.addAttachment(fileName, new FileSystemResource(new File(REPORTS_BASE_DIR + fileName)));
+        helper.addAttachment(fileName, new FileSystemResource(new File(reportsDir + fileName)));
 
         javaMailSender.send(msg);
     }
 
-    public Mono<Void> generateReport() {
-        Document document = new Document(PageSize.A4);
-        String fileName = "ffsmart_report_" + formatter.format(new Date()) + ".pdf";
+    public Mono<ReportJob> generateReport() {
+        // one file per job, so jobs on the same day never write to or email each other's file
+        String jobId = new ObjectId().toHexString();
+        String fileName = REPORT_PREFIX + LocalDate.now().format(FILE_DATE_FORMAT) + "_" + jobId + ".pdf";
 
-        try {
-            PdfWriter.getInstance(document, new FileOutputStream(REPORTS_BASE_DIR + fileName, false));
-        } catch (FileNotFoundException e) {
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Generate report failed");
-        }
+        return reportJobRepository.save(new ReportJob(jobId, ReportJobStatus.QUEUED, fileName, new Date(), null, null, null, 0, null))
+                // generation updates its own copy, the caller's job is not changed under it
+                .doOnNext(job -> runJob(job.copy()).subscribe(null, error -> log.error("Report job " + job.getId() + " failed", error)));
+    }
 
-        document.open();
-        Font font = FontFactory.getFont(FontFactory.HELVETICA_BOLD);
-        font.setSize(12);
-        font.setColor(Color.BLACK);
+    public Mono<ReportJob> getReportJob(String jobId) {
+        return reportJobRepository.findById(jobId)
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Report job not found")));
+    }
 
-        Paragraph p = new Paragraph("Expired items in FFsmart as of " + new SimpleDateFormat("yyyy-MM-dd").format(new Date()), font);
-        p.setAlignment(Element.ALIGN_CENTER);
+    Mono<ReportJob> runJob(ReportJob job) {
+        job.setStatus(ReportJobStatus.GENERATING);
+        return reportJobRepository.save(job)
+                .then(writeReport(job.getFileName()).timeout(Duration.ofMillis(jobTimeout)))
+                .then(Mono.fromSupplier(() -> {
+                    job.setStatus(ReportJobStatus.COMPLETED);
+                    job.setCompletedDate(new Date());
+                    job.setEmailStatus(ReportEmailStatus.PENDING);
+                    job.setNextEmailAttempt(new Date());
+                    return job;
+                }))
+                .onErrorResume(ex -> {
+                    log.error("Generate report failed", ex);
+                    job.setStatus(ReportJobStatus.FAILED);
+                    job.setError("Generate report failed");
+                    return Mono.just(job);
+                })
+                .flatMap(reportJobRepository::save)
+                .doOnNext(saved -> {
+                    if (saved.getEmailStatus() == ReportEmailStatus.PENDING) {
+                        relayReportEmails(); // send now rather than waiting for the next poll
+                    }
+                });
+    }
 
-        document.add(p);
+    Mono<Void> writeReport(String fileName) {
+        // written to a partial file, moved into place once complete, so an unfinished or failed report is never listed,
+        // downloaded or emailed
+        Path partial = Path.of(reportsDir + fileName + PARTIAL_SUFFIX);
+        // the file is its own resource, so it is still closed if the writer cannot be created
+        return Mono.using(
+                        () -> new FileOutputStream(partial.toFile(), false),
+                        outputStream -> Mono.using(
+                                () -> new PdfReportWriter(outputStream, new Date()),
+                                writer -> inventoryService.getExpiredItems()
+                                        .publishOn(reportScheduler)
+                                        .buffer(TABLE_CHUNK_SIZE)
+                                        .doOnNext(writer::writeRows)
+                                        .then(Mono.fromRunnable(writer::finish)),
+                                PdfReportWriter::close),
+                        ReportServiceImpl::close)
+                .then(Mono.fromCallable(() -> Files.move(partial, Path.of(reportsDir + fileName), StandardCopyOption.ATOMIC_MOVE)))
+                .doFinally(signal -> delete(partial)) // already moved unless generation failed or timed out
+                .subscribeOn(reportScheduler)
+                .then();
+    }
 
-        PdfPTable table = new PdfPTable(4);
-        table.setWidthPercentage(100f);
-        table.setWidths(new float[]{1.5f, 3.5f, 2.5f, 1.5f});
-        table.setSpacingBefore(8);
+    private static void close(FileOutputStream outputStream) {
+        try {
+            outputStream.close();
+        } catch (IOException e) {
+            log.warn("Close report file failed", e);
+        }
+    }
 
-        writeTableHeader(table);
+    private static void delete(Path partial) {
+        try {
+            Files.deleteIfExists(partial);
+        } catch (IOException e) {
+            log.warn("Delete partial report " + partial + " failed", e);
+        }
+    }
 
-        return inventoryService.getExpiredItems().collectList().flatMap(expiredItems -> {
-            writeTableData(table, expiredItems);
+    @Scheduled(fixedDelayString = "${reports.stale-check-interval:300000}")
+    void recoverStaleJobs() {
+        failStaleJobs().subscribe(
+                failed -> {
+                    if (failed > 0) {
+                        log.warn(failed + " stale report jobs marked failed");
+                    }
+                },
+                error -> log.error("Stale report job check failed", error));
+    }
 
-            document.add(table);
-            document.close();
-            try {
-                sendReport(fileName);
-            } catch (MessagingException e) {
-                throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Send report failed");
-            }
+    Mono<Long> failStaleJobs() {
+        // twice the timeout, so a job still running elsewhere times itself out first
+        return reportJobRepository.failStaleJobs(new Date(System.currentTimeMillis() - 2 * jobTimeout), "Generate report timed out");
+    }
+
+    @Scheduled(fixedDelayString = "${reports.email.poll-interval:60000}")
+    void relayReportEmails() {
+        if (!relayRunning.compareAndSet(false, true)) {
+            return;
+        }
+        ReactorMetrics.timed("jobs.report-email-relay", sendDueEmails())
+                .doFinally(signal -> relayRunning.set(false))
+                .subscribe(null, error -> log.error("Report email relay failed", error));
+    }
 
-            return Mono.empty();
-        });
+    Mono<Void> sendDueEmails() {
+        return reportJobRepository.findEmailsDue(ReportEmailStatus.PENDING, new Date())
+                .concatMap(this::sendEmail)
+                .then();
+    }
+
+    private Mono<ReportJob> sendEmail(ReportJob job) {
+        return Mono.fromCallable(() -> {
+                    sendReport(job.getFileName());
+                    return job;
+                })
+                .subscribeOn(reportScheduler)
+                .map(sent -> {
+                    sent.setEmailAttempts(sent.getEmailAttempts() + 1);
+                    sent.setEmailStatus(ReportEmailStatus.SENT);
+                    sent.setNextEmailAttempt(null);
+                    return sent;
+                })
+                .onErrorResume(ex -> {
+                    int attempts = job.getEmailAttempts() + 1;
+                    log.warn("Send report " + job.getFileName() + " failed (attempt " + attempts + ")", ex);
+                    job.setEmailAttempts(attempts);
+                    if (attempts >= maxEmailAttempts) {
+                        job.setEmailStatus(ReportEmailStatus.FAILED);
+                        job.setNextEmailAttempt(null);
+                    } else {
+                        // exponential backoff: 1, 2, 4... minutes
+                        job.setNextEmailAttempt(new Date(System.currentTimeMillis() + EMAIL_RETRY_BASE_DELAY.toMillis() * (1L << (attempts - 1))));
+                    }
+                    return Mono.just(job);
+                })
+                .flatMap(reportJobRepository::save);
     }
 
     public Flux<DataBuffer> downloadReport(String fileName) {
         return DataBufferUtils.read(
-                new File(REPORTS_BASE_DIR + fileName).toPath(),
+                new File(reportsDir + fileName).toPath(),
                 dataBufferFactory,
                 BUFFER_SIZE
         );
@@ -0,0 +1,14 @@
+package com.aad.ffsmart.report.model;
+
+/**
+ * Report email status enum
+ * <p>
+ * PENDING until the report email is sent (SENT) or the maximum number of attempts is reached (FAILED)
+ *
+ * @author Oliver Wortley
+ */
+public enum ReportEmailStatus {
+    PENDING,
+    SENT,
+    FAILED
+}
@@ -0,0 +1,15 @@
+package com.aad.ffsmart.report.model;
+
+/**
+ * Report job status enum
+ * <p>
+ * QUEUED -> GENERATING -> COMPLETED, or FAILED if the PDF could not be written
+ *
+ * @author Oliver Wortley
+ */
+public enum ReportJobStatus {
+    QUEUED,
+    GENERATING,
+    COMPLETED,
+    FAILED
+}
@@ -0,0 +1,93 @@
+package com.aad.ffsmart.scheduling;
+
+import io.micrometer.core.instrument.Metrics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+import org.springframework.stereotype.Component;
+import reactor.blockhound.BlockHound;
+import reactor.blockhound.BlockingMethod;
+import reactor.blockhound.BlockingOperationError;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Blocking call detector
+ * <p>
+ * Diagnostic mode, on with the blocking-detector profile and in the EventLoopBlockingTests suite
+ * Instruments the JVM with BlockHound, which catches blocking calls (sleeps, lock waits, socket / file I/O)
+ * made on non-blocking threads, i.e. Netty event loops and Reactor's parallel scheduler
+ * Directory listings are added to BlockHound's list of JDK calls, and BCrypt hashing is marked as blocking too,
+ * as tens of ms of CPU on an event loop stalls it just the same
+ * Each call is logged with its stack trace, counted (eventloop.blocking.calls, tagged by method) and kept for tests;
+ * with blocking-detector.fail set the call also throws BlockingOperationError, failing the request
+ * Needs -XX:+AllowRedefinitionToAddDeleteMethods on Java 13+ (set for tests by the blocking-detector Maven profile)
+ *
+ * @author Oliver Wortley
+ */
+@Component
+@Profile(BlockingCallDetector.PROFILE)
+@Slf4j
+public class BlockingCallDetector {
+    public static final String PROFILE = "blocking-detector";
+    private static final int MAX_DETECTED = 100;
+
+    private static final AtomicBoolean installed = new AtomicBoolean(false);
+    private static final Queue<BlockingOperationError> detected = new ConcurrentLinkedQueue<>();
+    private static volatile boolean fail;
+
+    @Value("${blocking-detector.fail:false}")
+    private boolean failOnBlocking = false;
+
+    @PostConstruct
+    public void init() {
+        install(failOnBlocking);
+        log.warn("Blocking call detector installed, blocking calls on event loop threads are " + (fail ? "rejected" : "logged"));
+    }
+
+    /**
+     * Installs BlockHound once per JVM, later calls only change whether blocking calls throw
+     */
+    public static void install(boolean failOnBlocking) {
+        fail = failOnBlocking;
+        if (installed.compareAndSet(false, true)) {
+            BlockHound.builder()
+                    .loadIntegrations()
+                    .markAsBlocking("java.io.UnixFileSystem", "list0", "(Ljava/io/File;)[Ljava/lang/String;")
+                    .markAsBlocking("java.io.WinNTFileSystem", "list0", "(Ljava/io/File;)[Ljava/lang/String;")
+                    .markAsBlocking(BCrypt.class, "hashpw", "([BLjava/lang/String;Z)Ljava/lang/String;")
+                    .blockingMethodCallback(BlockingCallDetector::onBlockingCall)
+                    .install();
+        }
+    }
+
+    /**
+     * Blocking calls detected since the last call, oldest first
+     */
+    public static List<BlockingOperationError> drain() {
+        List<BlockingOperationError> calls = new ArrayList<>();
+        BlockingOperationError call;
+        while ((call = detected.poll()) != null) {
+            calls.add(call);
+        }
+        return calls;
+    }
+
+    private static void onBlockingCall(BlockingMethod method) {
+        BlockingOperationError error = new BlockingOperationError(method);
+        if (detected.size() < MAX_DETECTED) {
+            detected.add(error);
+        }
+        Metrics.counter("eventloop.blocking.calls", "method", method.toString()).increment();
+        log.warn("Blocking call " + method + " on " + Thread.currentThread().getName(), error);
+        if (fail) {
+            throw error;
+        }
+    }
+}
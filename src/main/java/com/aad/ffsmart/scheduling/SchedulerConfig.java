@@ -0,0 +1,65 @@
+package com.aad.ffsmart.scheduling;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.observability.micrometer.Micrometer;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Scheduler configuration class
+ * <p>
+ * Defines the bounded Reactor scheduler that scheduled jobs (auto order generation, expiry alerts) run on,
+ * so @Scheduled threads only subscribe to a job and return
+ * Also defines the report worker pool used for PDF generation and report emails, which block on file and SMTP I/O
+ * and the hash pool for BCrypt (see PasswordHasher), sized for CPU work, with a short queue per thread
+ * so a login burst is turned away with 429 rather than queueing without limit
+ * All are timed (task queue wait and execution time, active/pending tasks) under ffsmart.scheduler.<name>
+ *
+ * @author Oliver Wortley
+ */
+@Configuration
+public class SchedulerConfig {
+    public static final String JOB_SCHEDULER = "jobScheduler";
+    public static final String REPORT_SCHEDULER = "reportScheduler";
+    public static final String HASH_SCHEDULER = "hashScheduler";
+
+    @Value("${scheduling.jobs.threads:4}")
+    private int threads;
+
+    @Value("${scheduling.jobs.queue-size:100}")
+    private int queueSize;
+
+    @Value("${scheduling.reports.threads:2}")
+    private int reportThreads;
+
+    @Value("${scheduling.reports.queue-size:20}")
+    private int reportQueueSize;
+
+    @Value("${scheduling.hashing.threads:2}")
+    private int hashThreads;
+
+    // per thread
+    @Value("${scheduling.hashing.queue-size:16}")
+    private int hashQueueSize;
+
+    @Bean(name = JOB_SCHEDULER, destroyMethod = "dispose")
+    public Scheduler jobScheduler(MeterRegistry meterRegistry) {
+        return Micrometer.timedScheduler(Schedulers.newBoundedElastic(threads, queueSize, "ffsmart-jobs"),
+                meterRegistry, "ffsmart.scheduler.jobs");
+    }
+
+    @Bean(name = REPORT_SCHEDULER, destroyMethod = "dispose")
+    public Scheduler reportScheduler(MeterRegistry meterRegistry) {
+        return Micrometer.timedScheduler(Schedulers.newBoundedElastic(reportThreads, reportQueueSize, "ffsmart-reports"),
+                meterRegistry, "ffsmart.scheduler.reports");
+    }
+
+    @Bean(name = HASH_SCHEDULER, destroyMethod = "dispose")
+    public Scheduler hashScheduler(MeterRegistry meterRegistry) {
+        return Micrometer.timedScheduler(Schedulers.newBoundedElastic(hashThreads, hashQueueSize, "ffsmart-hashing"),
+                meterRegistry, "ffsmart.scheduler.hashing");
+    }
+}
@@ -1,9 +1,11 @@
 package com.aad.ffsmart.supplier;
 
+import com.aad.ffsmart.forecast.model.ForecastSettings;
 import com.aad.ffsmart.item.Item;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.MongoId;
 
@@ -13,6 +15,8 @@ import java.util.List;
  * Supplier data class
  * <p>
  * Schema for Suppliers collection in DB
+ * Name is indexed for supplier name lookups
+ * Forecast holds the supplier's demand forecast settings for auto orders, null -> defaults
  *
  * @author Oliver Wortley
  */
@@ -25,6 +29,7 @@ public class Supplier {
     @MongoId
     private String id;
 
+    @Indexed
     private String name;
 
     private List<Item> items;
@@ -33,4 +38,6 @@ public class Supplier {
 
     private String phone;
 
+    private ForecastSettings forecast;
+
 }
@@ -0,0 +1,135 @@
+package com.aad.ffsmart.supplier;
+
+import com.aad.ffsmart.db.ChangeStreams;
+import com.aad.ffsmart.supplier.model.CacheStatistics;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Supplier cache
+ * <p>
+ * Read-through cache in front of SupplierRepository:
+ * - suppliers by id, size bounded
+ * - a directory of all suppliers indexed by name, for name prefix lookups
+ * Entries expire after a TTL and are invalidated as soon as the Suppliers collection changes (Mongo change stream,
+ * reopened with backoff when it fails, and when it closes after a drop/rename/invalidate)
+ * Concurrent misses for the same key share a single database call
+ * Hit/miss/eviction statistics are bound to Micrometer as the suppliers.byId and suppliers.directory caches
+ *
+ * @author Oliver Wortley
+ */
+@Component
+public class SupplierCache implements MeterBinder {
+    private static final String DIRECTORY_KEY = "suppliers";
+
+    private final SupplierRepository supplierRepository;
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    private final AsyncCache<String, Supplier> suppliersById;
+
+    private final AsyncCache<String, SupplierDirectory> directory;
+
+    private Disposable changeSubscription;
+
+    public SupplierCache(SupplierRepository supplierRepository, ReactiveMongoTemplate mongoTemplate,
+                         @Value("${suppliers.cache.size:1000}") long cacheSize,
+                         @Value("${suppliers.cache.ttl-seconds:600}") long ttlSeconds) {
+        this.supplierRepository = supplierRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.suppliersById = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .buildAsync();
+        this.directory = Caffeine.newBuilder()
+                .maximumSize(1)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .buildAsync();
+    }
+
+    public Mono<Supplier> getSupplier(String supplierId) {
+        // missing suppliers complete empty and are not cached
+        return Mono.fromFuture(suppliersById.get(supplierId, (key, executor) -> supplierRepository.findById(key).toFuture()), true);
+    }
+
+    public Flux<Supplier> getSuppliers(String namePrefix) {
+        return Mono.fromFuture(directory.get(DIRECTORY_KEY, (key, executor) -> supplierRepository.findAll()
+                        .collectList()
+                        .map(SupplierDirectory::of)
+                        .toFuture()), true)
+                .flatMapIterable(suppliers -> suppliers.find(namePrefix));
+    }
+
+    public void invalidate(String supplierId) {
+        suppliersById.synchronous().invalidate(supplierId);
+        directory.synchronous().invalidateAll();
+    }
+
+    public void invalidateAll() {
+        suppliersById.synchronous().invalidateAll();
+        directory.synchronous().invalidateAll();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, suppliersById.synchronous(), "suppliers.byId");
+        CaffeineCacheMetrics.monitor(registry, directory.synchronous(), "suppliers.directory");
+    }
+
+    public List<CacheStatistics> getStatistics() {
+        return List.of(statistics("suppliersById", suppliersById), statistics("directory", directory));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void watchChanges() {
+        // entries expire after TTL while the stream is being reopened
+        changeSubscription = ChangeStreams.reopening(mongoTemplate.changeStream(Supplier.class)
+                        .watchCollection(Supplier.class)
+                        .listen()
+                        .doOnSubscribe(subscription -> invalidateAll()) // changes may have been missed while not watching
+                        .doOnNext(this::onChange), "Suppliers")
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stopWatching() {
+        if (changeSubscription != null) {
+            changeSubscription.dispose();
+        }
+    }
+
+    void onChange(ChangeStreamEvent<Supplier> event) {
+        String supplierId = ChangeStreams.documentId(event);
+        if (supplierId == null) {
+            // drop, rename and invalidate events have no document key
+            invalidateAll();
+        } else {
+            invalidate(supplierId);
+        }
+    }
+
+    private static CacheStatistics statistics(String name, AsyncCache<?, ?> cache) {
+        CacheStats stats = cache.synchronous().stats();
+        return new CacheStatistics(name, stats.hitCount(), stats.missCount(), stats.hitRate(), stats.evictionCount(),
+                cache.synchronous().estimatedSize());
+    }
+}
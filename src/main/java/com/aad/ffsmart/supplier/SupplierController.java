@@ -1,5 +1,6 @@
 package com.aad.ffsmart.supplier;
 
+import com.aad.ffsmart.forecast.model.ForecastSettings;
 import com.aad.ffsmart.web.ResponseMessage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -16,6 +17,8 @@ import static com.aad.ffsmart.web.ResponseHandler.generateResponse;
  * Contains endpoints and mappings for /suppliers path:
  * - getSupplierById
  * - getAllSuppliers
+ * - getCacheStatistics
+ * - updateForecastSettings
  *
  * @author Oliver Wortley
  */
@@ -37,4 +40,15 @@ public class SupplierController {
         return generateResponse(ResponseMessage.SUCCESS, HttpStatus.OK, supplierService.getAllSuppliers(supplierName));
     }
 
+    @GetMapping("/cache/stats")
+    @PreAuthorize("hasRole('HEAD_CHEF')")
+    public Mono<ResponseEntity<Object>> getCacheStatistics() {
+        return generateResponse(ResponseMessage.SUCCESS, HttpStatus.OK, supplierService.getCacheStatistics());
+    }
+
+    @PutMapping("/{supplierId}/forecast")
+    @PreAuthorize("hasRole('HEAD_CHEF')")
+    public Mono<ResponseEntity<Object>> updateForecastSettings(@PathVariable String supplierId, @RequestBody ForecastSettings settings) {
+        return generateResponse(ResponseMessage.SUCCESS, HttpStatus.OK, supplierService.updateForecastSettings(supplierId, settings));
+    }
 }
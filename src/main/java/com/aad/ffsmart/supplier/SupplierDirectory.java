@@ -0,0 +1,33 @@
+package com.aad.ffsmart.supplier;
+
+import com.aad.ffsmart.util.PrefixIndex;
+
+import java.util.List;
+
+/**
+ * Supplier directory
+ * <p>
+ * Immutable snapshot of all suppliers, sorted by name so a name prefix lookup is two binary searches
+ * Built by SupplierCache from a single findAll, prefix results are views over the snapshot
+ *
+ * @author Oliver Wortley
+ */
+final class SupplierDirectory {
+    private final PrefixIndex<Supplier> suppliers;
+
+    private SupplierDirectory(List<Supplier> suppliers) {
+        this.suppliers = PrefixIndex.of(suppliers, SupplierDirectory::name);
+    }
+
+    static SupplierDirectory of(List<Supplier> suppliers) {
+        return new SupplierDirectory(suppliers);
+    }
+
+    List<Supplier> find(String namePrefix) {
+        return namePrefix == null ? suppliers.values() : suppliers.find(namePrefix);
+    }
+
+    private static String name(Supplier supplier) {
+        return supplier.getName() != null ? supplier.getName() : "";
+    }
+}
@@ -1,5 +1,7 @@
 package com.aad.ffsmart.supplier;
 
+import com.aad.ffsmart.forecast.model.ForecastSettings;
+import com.aad.ffsmart.supplier.model.CacheStatistics;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
@@ -15,4 +17,8 @@ public interface SupplierService {
     Mono<Supplier> getSupplierById(String supplierId);
 
     Flux<Supplier> getAllSuppliers(String supplierName);
+
+    Flux<CacheStatistics> getCacheStatistics();
+
+    Mono<Supplier> updateForecastSettings(String supplierId, ForecastSettings settings);
 }
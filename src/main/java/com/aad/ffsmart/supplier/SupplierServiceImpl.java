@@ -1,5 +1,9 @@
 package com.aad.ffsmart.supplier;
 
+import com.aad.ffsmart.forecast.DemandForecaster;
+import com.aad.ffsmart.forecast.model.ForecastModel;
+import com.aad.ffsmart.forecast.model.ForecastSettings;
+import com.aad.ffsmart.supplier.model.CacheStatistics;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
@@ -10,25 +14,62 @@ import reactor.core.publisher.Mono;
 /**
  * Supplier service implementation
  * <p>
- * Implements service interface, calls repository functions
- * Methods: get supplier by ID, get all suppliers
+ * Implements service interface, reads go through SupplierCache
+ * Methods: get supplier by ID, get all suppliers (name prefix), get cache statistics, update forecast settings
  *
  * @author Oliver Wortley
  */
 @Service
 public class SupplierServiceImpl implements SupplierService {
+    private static final String SUPPLIER_NOT_FOUND_MSG = "Supplier not found";
+
+    @Autowired
+    private SupplierCache supplierCache;
 
     @Autowired
     private SupplierRepository supplierRepository;
 
+    @Autowired
+    private DemandForecaster demandForecaster;
+
     public Mono<Supplier> getSupplierById(String supplierId) {
-        return supplierRepository.findById(supplierId).switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Supplier not found")));
+        return supplierCache.getSupplier(supplierId).switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, SUPPLIER_NOT_FOUND_MSG)));
     }
 
     public Flux<Supplier> getAllSuppliers(String supplierName) {
-        if (supplierName != null) {
-            return supplierRepository.findAll().filter(sp -> sp.getName().startsWith(supplierName));
+        return supplierCache.getSuppliers(supplierName);
+    }
+
+    public Flux<CacheStatistics> getCacheStatistics() {
+        return Flux.fromIterable(supplierCache.getStatistics());
+    }
+
+    public Mono<Supplier> updateForecastSettings(String supplierId, ForecastSettings settings) {
+        String invalid = validate(settings);
+        if (invalid != null) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, invalid));
+        }
+        return supplierRepository.findById(supplierId)
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, SUPPLIER_NOT_FOUND_MSG)))
+                .flatMap(supplier -> {
+                    supplier.setForecast(settings);
+                    return supplierRepository.save(supplier);
+                })
+                .doOnNext(saved -> supplierCache.invalidate(supplierId)); // don't wait for the change stream
+    }
+
+    private String validate(ForecastSettings settings) {
+        // unset fields take the forecast.* defaults, so a window is checked against the model that will actually apply
+        ForecastSettings resolved = demandForecaster.resolve(settings);
+        if (resolved.getWindowDays() < (resolved.getModel() == ForecastModel.DAY_OF_WEEK ? 7 : 1)) {
+            return "Window must be at least 1 day (7 days for day of week forecasts)";
+        }
+        if (settings.getAlpha() != null && (settings.getAlpha() <= 0 || settings.getAlpha() > 1)) {
+            return "Alpha must be greater than 0 and at most 1";
+        }
+        if (settings.getMinOrderQuantity() != null && settings.getMinOrderQuantity() < 1) {
+            return "Minimum order quantity must be at least 1";
         }
-        return supplierRepository.findAll();
+        return null;
     }
 }
@@ -0,0 +1,27 @@
+package com.aad.ffsmart.supplier.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Cache statistics
+ * <p>
+ * Hit/miss counts of one of the supplier caches, since startup
+ *
+ * @author Oliver Wortley
+ */
+@Data
+@AllArgsConstructor
+public class CacheStatistics {
+    private String cache;
+
+    private long hits;
+
+    private long misses;
+
+    private double hitRate;
+
+    private long evictions;
+
+    private long size;
+}
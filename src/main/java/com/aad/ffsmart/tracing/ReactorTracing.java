@@ -0,0 +1,29 @@
+package com.aad.ffsmart.tracing;
+
+import io.micrometer.observation.ObservationRegistry;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import reactor.core.observability.micrometer.Micrometer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactor pipeline tracing
+ * <p>
+ * Observes a named pipeline from subscription to termination, as a child of the observation in the Reactor context
+ * (the request's, put there by the WebFlux server observation) and the parent of everything subscribed upstream of it,
+ * so Mongo commands and Rabbit publishes made by a service method appear under that method's span
+ *
+ * @author Oliver Wortley
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class ReactorTracing {
+
+    public static <T> Mono<T> observed(ObservationRegistry registry, String name, Mono<T> pipeline) {
+        return pipeline.name(name).tap(Micrometer.observation(registry));
+    }
+
+    public static <T> Flux<T> observed(ObservationRegistry registry, String name, Flux<T> pipeline) {
+        return pipeline.name(name).tap(Micrometer.observation(registry));
+    }
+}
@@ -0,0 +1,160 @@
+package com.aad.ffsmart.tracing;
+
+import com.aad.ffsmart.tracing.model.TraceSpan;
+import com.aad.ffsmart.tracing.model.TraceSummary;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.exporter.FinishedSpan;
+import io.micrometer.tracing.exporter.SpanReporter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+
+/**
+ * Trace collector
+ * <p>
+ * In-process span exporter: keeps the spans of recent sampled traces in memory (tracing.collector.max-traces,
+ * dropped after tracing.collector.ttl-seconds) for the /traces endpoints, rather than shipping them to a collector
+ * When a trace's root span ends, the trace is summarised and logged:
+ * - WARN if a client span (Mongo command, Rabbit publish) repeats at least tracing.n-plus-one.threshold times,
+ *   the shape of an N+1 query
+ * - INFO with its slowest spans if it took at least tracing.log.slow-threshold ms
+ * - DEBUG otherwise
+ * Mongo commands with no parent (change stream polling, driver background work) would each be a trace of their own
+ * and are not kept
+ *
+ * @author Oliver Wortley
+ */
+@Component
+@Slf4j
+public class TraceCollector implements SpanReporter {
+    static final String THREAD_TAG = "thread";
+    private static final int SLOWEST_SPANS_LOGGED = 5;
+
+    @Value("${tracing.collector.max-spans:1000}")
+    private int maxSpansPerTrace = 1000;
+
+    @Value("${tracing.log.slow-threshold:500}")
+    private long slowThreshold = 500;
+
+    @Value("${tracing.n-plus-one.threshold:10}")
+    private int repeatedSpanThreshold = 10;
+
+    private final Cache<String, Queue<TraceSpan>> traces;
+
+    public TraceCollector(@Value("${tracing.collector.max-traces:500}") long maxTraces,
+                          @Value("${tracing.collector.ttl-seconds:600}") long ttlSeconds) {
+        this.traces = Caffeine.newBuilder()
+                .maximumSize(maxTraces)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+
+    @Override
+    public void report(FinishedSpan finished) {
+        if (finished.getParentId() == null && finished.getKind() == Span.Kind.CLIENT) {
+            return;
+        }
+        TraceSpan span = toTraceSpan(finished);
+        Queue<TraceSpan> spans = traces.get(span.getTraceId(), traceId -> new ConcurrentLinkedQueue<>());
+        if (spans.size() < maxSpansPerTrace) {
+            spans.add(span);
+        }
+        if (isRoot(span)) {
+            logTrace(summarise(span.getTraceId(), List.copyOf(spans)), spans);
+        }
+    }
+
+    /**
+     * Summaries of the traces held, newest first
+     */
+    public List<TraceSummary> getTraces(int limit) {
+        return traces.asMap().entrySet().stream()
+                .map(entry -> summarise(entry.getKey(), List.copyOf(entry.getValue())))
+                .filter(summary -> summary.getStart() != null)
+                .sorted(Comparator.comparing(TraceSummary::getStart).reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * Spans of a trace in start order, empty if the trace is not held (not sampled, or dropped)
+     */
+    public List<TraceSpan> getTrace(String traceId) {
+        Queue<TraceSpan> spans = traces.getIfPresent(traceId);
+        if (spans == null) {
+            return List.of();
+        }
+        return spans.stream().sorted(Comparator.comparing(TraceSpan::getStart)).toList();
+    }
+
+    private static TraceSpan toTraceSpan(FinishedSpan span) {
+        Map<String, String> tags = new HashMap<>(span.getTags());
+        String thread = tags.remove(THREAD_TAG);
+        return new TraceSpan(
+                span.getTraceId(),
+                span.getSpanId(),
+                span.getParentId(),
+                span.getName(),
+                span.getKind() != null ? span.getKind().name() : null,
+                thread,
+                Date.from(span.getStartTimestamp()),
+                ChronoUnit.MICROS.between(span.getStartTimestamp(), span.getEndTimestamp()),
+                tags,
+                span.getError() != null ? String.valueOf(span.getError().getMessage()) : null
+        );
+    }
+
+    // local root, a request or a message consumed from a trace started elsewhere
+    private static boolean isRoot(TraceSpan span) {
+        return span.getParentId() == null || Span.Kind.SERVER.name().equals(span.getKind()) || Span.Kind.CONSUMER.name().equals(span.getKind());
+    }
+
+    private TraceSummary summarise(String traceId, List<TraceSpan> spans) {
+        TraceSpan root = spans.stream()
+                .filter(span -> span.getParentId() == null)
+                .findFirst()
+                .orElseGet(() -> spans.stream().min(Comparator.comparing(TraceSpan::getStart)).orElse(null));
+        Map<String, Long> repeated = spans.stream()
+                .filter(span -> Span.Kind.CLIENT.name().equals(span.getKind()))
+                .collect(Collectors.groupingBy(TraceSpan::getName, TreeMap::new, Collectors.counting()));
+        repeated.values().removeIf(count -> count < repeatedSpanThreshold);
+        return new TraceSummary(
+                traceId,
+                root != null ? root.getName() : null,
+                root != null ? root.getStart() : null,
+                root != null ? root.getDurationMicros() / 1000 : null,
+                spans.size(),
+                repeated
+        );
+    }
+
+    private void logTrace(TraceSummary summary, Queue<TraceSpan> spans) {
+        String trace = "Trace " + summary.getTraceId() + " " + summary.getName() + " took " + summary.getDurationMillis()
+                + " ms over " + summary.getSpans() + " spans";
+        if (!summary.getRepeatedSpans().isEmpty()) {
+            log.warn(trace + ", possible N+1 queries: " + summary.getRepeatedSpans());
+        } else if (summary.getDurationMillis() >= slowThreshold) {
+            log.info(trace + ", slowest: " + spans.stream()
+                    .sorted(Comparator.comparing(TraceSpan::getDurationMicros).reversed())
+                    .limit(SLOWEST_SPANS_LOGGED)
+                    .map(span -> span.getName() + " " + span.getDurationMicros() / 1000 + " ms on " + span.getThread())
+                    .collect(Collectors.joining(", ")));
+        } else if (log.isDebugEnabled()) {
+            log.debug(trace);
+        }
+    }
+}
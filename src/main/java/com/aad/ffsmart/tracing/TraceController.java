@@ -0,0 +1,46 @@
+package com.aad.ffsmart.tracing;
+
+import com.aad.ffsmart.web.ResponseMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static com.aad.ffsmart.web.ResponseHandler.generateResponse;
+
+/**
+ * Trace controller class
+ * <p>
+ * Lets head chefs / operators look at recent sampled traces held by the TraceCollector
+ * /traces lists trace summaries (newest first), /traces/{traceId} returns a trace's spans in start order
+ *
+ * @author Oliver Wortley
+ */
+@RestController
+@RequestMapping("/traces")
+public class TraceController {
+    private static final int MAX_LIMIT = 500;
+
+    @Autowired
+    private TraceCollector traceCollector;
+
+    @GetMapping
+    @PreAuthorize("hasRole('HEAD_CHEF')")
+    public Mono<ResponseEntity<Object>> getTraces(@RequestParam(defaultValue = "50") Integer limit) {
+        return generateResponse(ResponseMessage.SUCCESS, HttpStatus.OK,
+                Flux.defer(() -> Flux.fromIterable(traceCollector.getTraces(Math.max(1, Math.min(limit, MAX_LIMIT))))));
+    }
+
+    @GetMapping("/{traceId}")
+    @PreAuthorize("hasRole('HEAD_CHEF')")
+    public Mono<ResponseEntity<Object>> getTrace(@PathVariable String traceId) {
+        return generateResponse(ResponseMessage.SUCCESS, HttpStatus.OK,
+                Mono.fromSupplier(() -> traceCollector.getTrace(traceId))
+                        .filter(spans -> !spans.isEmpty())
+                        .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Trace not found"))));
+    }
+}
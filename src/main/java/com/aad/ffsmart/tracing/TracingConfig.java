@@ -0,0 +1,55 @@
+package com.aad.ffsmart.tracing;
+
+import brave.sampler.RateLimitingSampler;
+import brave.sampler.Sampler;
+import io.micrometer.common.KeyValue;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Tracing configuration class
+ * <p>
+ * Spans come from observations, which Brave turns into spans and reports to the TraceCollector:
+ * - http.server.requests -> one root span per request, its observation is carried in the Reactor context
+ * - services (ReactorTracing) -> children of the request, parents of the Mongo / Rabbit spans they cause
+ * - spring.data.mongodb.command -> one span per Mongo command, see MongoConfig
+ * - rabbit publishes (RabbitTemplate observation) and the alert listener, trace headers are carried in the message
+ * Traces are sampled when they start, either a fraction of them (tracing.sampling.probability)
+ * or a number per second (tracing.sampling.rate-limit, if above 0)
+ * Every span is tagged with the thread it started on, so work running on an event loop thread
+ * (reactor-http-*, nioEventLoopGroup-*) can be told apart from work on the job / report schedulers
+ *
+ * @author Oliver Wortley
+ */
+@Configuration
+public class TracingConfig {
+
+    @Value("${tracing.sampling.probability:0.1}")
+    private float samplingProbability = 0.1f;
+
+    @Value("${tracing.sampling.rate-limit:0}")
+    private int samplingRateLimit = 0;
+
+    @Bean
+    public Sampler sampler() {
+        return samplingRateLimit > 0 ? RateLimitingSampler.create(samplingRateLimit) : Sampler.create(samplingProbability);
+    }
+
+    @Bean
+    public ObservationHandler<Observation.Context> threadObservationHandler() {
+        return new ObservationHandler<>() {
+            @Override
+            public void onStart(Observation.Context context) {
+                context.addHighCardinalityKeyValue(KeyValue.of(TraceCollector.THREAD_TAG, Thread.currentThread().getName()));
+            }
+
+            @Override
+            public boolean supportsContext(Observation.Context context) {
+                return true;
+            }
+        };
+    }
+}
@@ -0,0 +1,38 @@
+package com.aad.ffsmart.tracing.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * TraceSpan class
+ *
+ * A finished span held by the trace collector
+ * kind is SERVER (request), CLIENT (Mongo command / Rabbit publish), CONSUMER or null (service / job span)
+ * thread is the thread the span started on, error the exception message if it failed
+ */
+@Data
+@AllArgsConstructor
+public class TraceSpan {
+    private String traceId;
+
+    private String spanId;
+
+    private String parentId;
+
+    private String name;
+
+    private String kind;
+
+    private String thread;
+
+    private Date start;
+
+    private Long durationMicros;
+
+    private Map<String, String> tags;
+
+    private String error;
+}
@@ -0,0 +1,30 @@
+package com.aad.ffsmart.tracing.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * TraceSummary class
+ *
+ * Summary of a trace held by the trace collector, named after its root span (e.g. http get /orders/{orderId})
+ * repeatedSpans counts client spans with the same name repeated at least tracing.n-plus-one.threshold times,
+ * i.e. a query run once per item rather than once per request
+ */
+@Data
+@AllArgsConstructor
+public class TraceSummary {
+    private String traceId;
+
+    private String name;
+
+    private Date start;
+
+    private Long durationMillis;
+
+    private Integer spans;
+
+    private Map<String, Long> repeatedSpans;
+}
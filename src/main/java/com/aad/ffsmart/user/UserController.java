@@ -1,18 +1,18 @@
 package com.aad.ffsmart.user;
 
-import com.aad.ffsmart.auth.JWTUtil;
 import com.aad.ffsmart.user.model.LoginForm;
+import com.aad.ffsmart.user.model.RefreshRequest;
 import com.aad.ffsmart.user.model.UserRequest;
 import com.aad.ffsmart.web.ResponseMessage;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
+import java.security.Principal;
+
 import static com.aad.ffsmart.web.ResponseHandler.generateResponse;
 
 /**
@@ -28,14 +28,21 @@ public class UserController {
     @Autowired
     private UserService userService;
 
-    @Autowired
-    private JWTUtil jwtUtil;
-
     @PostMapping("/login")
     public Mono<ResponseEntity<Object>> login(@RequestBody LoginForm loginForm) {
         return generateResponse(ResponseMessage.SUCCESS, HttpStatus.OK, userService.login(loginForm));
     }
 
+    @PostMapping("/refresh")
+    public Mono<ResponseEntity<Object>> refresh(@RequestBody RefreshRequest refreshRequest) {
+        return generateResponse(ResponseMessage.SUCCESS, HttpStatus.OK, userService.refresh(refreshRequest.getRefreshToken()));
+    }
+
+    @PostMapping("/logout")
+    public Mono<ResponseEntity<Object>> logout(@RequestBody RefreshRequest refreshRequest) {
+        return userService.logout(refreshRequest.getRefreshToken()).then(generateResponse(ResponseMessage.SUCCESS, HttpStatus.NO_CONTENT));
+    }
+
     @PostMapping
     public Mono<ResponseEntity<Object>> register(@RequestBody UserRequest userRequest) {
         User user = new User(
@@ -89,17 +96,26 @@ public class UserController {
         return userService.deleteUserById(userId).then(generateResponse(ResponseMessage.SUCCESS, HttpStatus.NO_CONTENT));
     }
 
+    @DeleteMapping("/{userId}/sessions")
+    @PreAuthorize("hasRole('HEAD_CHEF')")
+    public Mono<ResponseEntity<Object>> revokeSessions(@PathVariable String userId) {
+        return userService.revokeSessions(userId).then(generateResponse(ResponseMessage.SUCCESS, HttpStatus.NO_CONTENT));
+    }
+
+    @DeleteMapping("/me/sessions")
+    public Mono<ResponseEntity<Object>> revokeSessionsMe(Principal principal) {
+        return userService.revokeSessions(principal.getName()).then(generateResponse(ResponseMessage.SUCCESS, HttpStatus.NO_CONTENT));
+    }
+
     @GetMapping("/me")
-    public Mono<ResponseEntity<Object>> getUserMe(ServerWebExchange serverWebExchange) {
-        String authToken = serverWebExchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
-        String userId = jwtUtil.getUsernameFromToken(authToken != null ? authToken.substring(7) : null);
+    public Mono<ResponseEntity<Object>> getUserMe(Principal principal) {
+        String userId = principal.getName();
         return generateResponse(ResponseMessage.SUCCESS, HttpStatus.OK, userService.getUserById(userId));
     }
 
     @PutMapping("/me")
-    public Mono<ResponseEntity<Object>> updateUserMe(@RequestBody UserRequest userRequest, ServerWebExchange serverWebExchange) {
-        String authToken = serverWebExchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
-        String userId = jwtUtil.getUsernameFromToken(authToken != null ? authToken.substring(7) : null);
+    public Mono<ResponseEntity<Object>> updateUserMe(@RequestBody UserRequest userRequest, Principal principal) {
+        String userId = principal.getName();
         User user = new User(
                 userRequest.getId(),
                 userRequest.getEmail(),
@@ -114,9 +130,8 @@ public class UserController {
     }
 
     @DeleteMapping("/me")
-    public Mono<ResponseEntity<Object>> deleteUserMe(ServerWebExchange serverWebExchange) {
-        String authToken = serverWebExchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
-        String userId = jwtUtil.getUsernameFromToken(authToken != null ? authToken.substring(7) : null);
+    public Mono<ResponseEntity<Object>> deleteUserMe(Principal principal) {
+        String userId = principal.getName();
         return userService.deleteUserById(userId).then(generateResponse(ResponseMessage.SUCCESS, HttpStatus.NO_CONTENT));
     }
 
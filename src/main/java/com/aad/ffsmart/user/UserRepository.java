@@ -2,6 +2,7 @@ package com.aad.ffsmart.user;
 
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.data.mongodb.repository.Update;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Mono;
 
@@ -9,7 +10,7 @@ import reactor.core.publisher.Mono;
  * User repository
  *
  * Maps to Users collection in DB
- * Defines extra findByEmail method for login functionality
+ * Defines extra findByEmail method for login functionality, and updatePassword for rehashing on login
  *
  * @author Oliver Wortley
  */
@@ -18,4 +19,9 @@ public interface UserRepository extends ReactiveMongoRepository<User, String> {
 
     @Query(value = "{email : ?0}")
     Mono<User> findByEmail(String email);
+
+    // guarded on the current hash, so a password changed in the meantime is not overwritten
+    @Query("{ _id : ?0, password : ?1 }")
+    @Update("{ $set : { password : ?2 } }")
+    Mono<Long> updatePassword(String userId, String currentPassword, String newPassword);
 }
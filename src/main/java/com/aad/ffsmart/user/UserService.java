@@ -17,6 +17,12 @@ public interface UserService {
 
     Mono<TokenUser> register(User user);
 
+    Mono<TokenUser> refresh(String refreshToken);
+
+    Mono<Void> logout(String refreshToken);
+
+    Mono<Void> revokeSessions(String userId);
+
     Flux<User> getAllUsers();
 
     Mono<User> getUserById(String userId);
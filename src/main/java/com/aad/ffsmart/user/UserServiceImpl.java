@@ -1,11 +1,13 @@
 package com.aad.ffsmart.user;
 
 import com.aad.ffsmart.auth.JWTUtil;
+import com.aad.ffsmart.auth.PasswordHasher;
+import com.aad.ffsmart.auth.RefreshTokenService;
 import com.aad.ffsmart.user.model.LoginForm;
 import com.aad.ffsmart.user.model.TokenUser;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
@@ -15,34 +17,79 @@ import reactor.core.publisher.Mono;
  * User service implementation class
  * <p>
  * Implements UserService functions such as login/register and admin functionality
+ * Passwords are hashed and checked by PasswordHasher, off the event loop; a login whose stored hash has
+ * a lower work factor than configured stores a fresh hash once the password is verified
+ * Login and register also issue a refresh token, which refresh exchanges (rotating it) for a new access token
+ * without a password check; changing a password or deleting the user revokes all of their refresh tokens
  *
  * @author Oliver Wortley
  */
 @Service
+@Slf4j
 public class UserServiceImpl implements UserService {
     private static final String USER_NOT_FOUND_MSG = "User not found";
     @Autowired
     private UserRepository userRepository;
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private PasswordHasher passwordHasher;
     @Autowired
     private JWTUtil jwtUtil;
+    @Autowired
+    private RefreshTokenService refreshTokenService;
 
     public Mono<TokenUser> login(LoginForm loginForm) {
         return userRepository.findByEmail(loginForm.getEmail())
                 .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, USER_NOT_FOUND_MSG)))
-                .flatMap(usr -> {
-                    if (passwordEncoder.matches(loginForm.getPassword(), usr.getPassword())) {
-                        return Mono.just(new TokenUser(jwtUtil.generateToken(usr), usr));
-                    } else {
-                        throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Incorrect email or password");
-                    }
-                });
+                .flatMap(usr -> passwordHasher.matches(loginForm.getPassword(), usr.getPassword())
+                        .flatMap(matches -> {
+                            if (!matches) {
+                                return Mono.error(new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Incorrect email or password"));
+                            }
+                            return rehashIfNeeded(usr, loginForm.getPassword())
+                                    .then(tokenUser(usr, null));
+                        }));
+    }
+
+    // upgrades the stored hash to the current work factor, never fails the login
+    private Mono<Void> rehashIfNeeded(User user, String rawPassword) {
+        if (!passwordHasher.needsRehash(user.getPassword())) {
+            return Mono.empty();
+        }
+        return passwordHasher.encode(rawPassword)
+                .flatMap(hash -> userRepository.updatePassword(user.getId(), user.getPassword(), hash))
+                .doOnError(error -> log.warn("Password rehash failed for user " + user.getId(), error))
+                .onErrorResume(error -> Mono.empty())
+                .then();
     }
 
     public Mono<TokenUser> register(User user) {
-        user.setPassword(passwordEncoder.encode(user.getPassword())); // hash password
-        return userRepository.save(user).flatMap(u -> Mono.just(new TokenUser(jwtUtil.generateToken(user), u)));
+        return passwordHasher.encode(user.getPassword())
+                .flatMap(hash -> {
+                    user.setPassword(hash);
+                    return userRepository.save(user);
+                })
+                .flatMap(u -> tokenUser(u, null));
+    }
+
+    public Mono<TokenUser> refresh(String refreshToken) {
+        return refreshTokenService.redeem(refreshToken)
+                .flatMap(token -> userRepository.findById(token.getUserId())
+                        .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid refresh token")))
+                        .flatMap(usr -> tokenUser(usr, token.getFamilyId())));
+    }
+
+    public Mono<Void> logout(String refreshToken) {
+        return refreshTokenService.revoke(refreshToken);
+    }
+
+    public Mono<Void> revokeSessions(String userId) {
+        return refreshTokenService.revokeAll(userId);
+    }
+
+    // familyId null for a new login
+    private Mono<TokenUser> tokenUser(User user, String familyId) {
+        return refreshTokenService.issue(user.getId(), familyId)
+                .map(refreshToken -> new TokenUser(jwtUtil.generateToken(user), refreshToken, user));
     }
 
     public Flux<User> getAllUsers() {
@@ -60,9 +107,10 @@ public class UserServiceImpl implements UserService {
     }
 
     public Mono<User> updateUserById(String userId, User user) {
+        String password = user.getPassword();
         return userRepository.findById(userId)
                 .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, USER_NOT_FOUND_MSG)))
-                .map(usr -> {
+                .flatMap(usr -> {
                     if (user.getId() == null) {
                         user.setId(usr.getId());
                     }
@@ -75,27 +123,33 @@ public class UserServiceImpl implements UserService {
                     if (user.getLastName() == null) {
                         user.setLastName(usr.getLastName());
                     }
-                    if (user.getPassword() == null) {
-                        user.setPassword(usr.getPassword());
-                    } else {
-                        user.setPassword(passwordEncoder.encode(user.getPassword()));
-                    }
                     if (user.getRole() == null) {
                         user.setRole(usr.getRole());
                     }
                     if (user.getAvatar() == null) {
                         user.setAvatar(usr.getAvatar());
                     }
-                    return user;
+                    if (user.getPassword() == null) {
+                        user.setPassword(usr.getPassword());
+                        return Mono.just(user);
+                    }
+                    return passwordHasher.encode(user.getPassword()).map(hash -> {
+                        user.setPassword(hash);
+                        return user;
+                    });
                 })
-                .flatMap(userRepository::save);
+                .flatMap(usr -> {
+                    Mono<User> saved = userRepository.save(usr);
+                    // a new password revokes every refresh token, including the caller's own when changed through /me
+                    return password != null ? saved.flatMap(u -> refreshTokenService.revokeAll(userId).thenReturn(u)) : saved;
+                });
     }
 
     public Mono<Void> deleteUserById(String userId) {
         return userRepository
                 .findById(userId)
                 .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, USER_NOT_FOUND_MSG)))
-                .flatMap(userRepository::delete);
+                .flatMap(usr -> userRepository.delete(usr).then(refreshTokenService.revokeAll(usr.getId())));
     }
 
 }
@@ -0,0 +1,20 @@
+package com.aad.ffsmart.user.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * RefreshRequest
+ * <p>
+ * refresh token data class for token refresh and logout requests
+ *
+ * @author Oliver Wortley
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RefreshRequest {
+
+    private String refreshToken;
+}
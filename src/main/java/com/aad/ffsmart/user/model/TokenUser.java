@@ -8,7 +8,7 @@ import lombok.NoArgsConstructor;
 /**
  * TokenUser
  * <p>
- * For login and register responses with token and user data
+ * For login, register and refresh responses with access token, refresh token and user data
  *
  * @author Oliver Wortley
  */
@@ -19,5 +19,7 @@ public class TokenUser {
 
     private String token;
 
+    private String refreshToken;
+
     private User user;
 }
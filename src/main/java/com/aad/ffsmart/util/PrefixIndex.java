@@ -0,0 +1,69 @@
+package com.aad.ffsmart.util;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Prefix index
+ * <p>
+ * Immutable list of values sorted by a string key, so the values whose key starts with a prefix are
+ * two binary searches away and are returned as a view over the sorted list
+ *
+ * @author Oliver Wortley
+ */
+public final class PrefixIndex<T> {
+    private final List<T> values;
+
+    private final String[] keys;
+
+    private PrefixIndex(List<T> values, Function<T, String> key) {
+        @SuppressWarnings("unchecked")
+        T[] sorted = (T[]) values.toArray();
+        Arrays.sort(sorted, Comparator.comparing(key));
+        this.values = List.of(sorted);
+        this.keys = Arrays.stream(sorted).map(key).toArray(String[]::new);
+    }
+
+    public static <T> PrefixIndex<T> of(List<T> values, Function<T, String> key) {
+        return new PrefixIndex<>(values, key);
+    }
+
+    /**
+     * @return all values, sorted by key
+     */
+    public List<T> values() {
+        return values;
+    }
+
+    public List<T> find(String prefix) {
+        int from = lowerBound(prefix);
+        int to = from;
+        int high = keys.length;
+        // keys starting with prefix are contiguous from 'from', binary search for the end of that run
+        while (to < high) {
+            int mid = (to + high) >>> 1;
+            if (keys[mid].startsWith(prefix)) {
+                to = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return values.subList(from, to);
+    }
+
+    private int lowerBound(String prefix) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid].compareTo(prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
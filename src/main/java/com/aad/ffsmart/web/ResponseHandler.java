@@ -1,12 +1,21 @@
 package com.aad.ffsmart.web;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.Exceptions;
 import reactor.core.publisher.Mono;
 import reactor.core.publisher.Flux;
 
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -15,6 +24,9 @@ import java.util.Map;
  * <p>
  * Takes message, status and data and produces Spring response entity object
  * Method is overloaded for no data, Mono and Flux
+ * generateStreamingResponse writes a Flux element by element as it is emitted (no collectList), either as the same
+ * {"message", "data": [...]} envelope or as NDJSON when the client accepts application/x-ndjson
+ * Streamed elements are written with the caller's (Spring configured) ObjectMapper, so they match buffered responses
  * <a href="https://spring.io/blog/2016/04/19/understanding-reactive-types">...</a>
  *
  * @author Oliver Wortley
@@ -23,6 +35,10 @@ import java.util.Map;
 public class ResponseHandler {
     private static final String MESSAGE = "message";
     private static final String DATA = "data";
+    private static final byte[] ENVELOPE_END = "]}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SEPARATOR = ",".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] NEWLINE = "\n".getBytes(StandardCharsets.UTF_8);
+    private static final DataBufferFactory BUFFER_FACTORY = DefaultDataBufferFactory.sharedInstance;
 
     public static Mono<ResponseEntity<Object>> generateResponse(String message, HttpStatus status) {
         Map<String, Object> map = new HashMap<>();
@@ -46,4 +62,48 @@ public class ResponseHandler {
         });
     }
 
+    public static Mono<ResponseEntity<Flux<DataBuffer>>> generateStreamingResponse(String message, HttpStatus status, Flux<?> data,
+                                                                             ServerWebExchange serverWebExchange, ObjectMapper objectMapper) {
+        boolean ndjson = serverWebExchange.getRequest().getHeaders().getAccept().stream()
+                .anyMatch(MediaType.APPLICATION_NDJSON::equalsTypeAndSubtype);
+        return Mono.just(ResponseEntity.status(status)
+                .contentType(ndjson ? MediaType.APPLICATION_NDJSON : MediaType.APPLICATION_JSON)
+                .body(ndjson ? ndjson(data, objectMapper) : envelope(message, data, objectMapper)));
+    }
+
+    private static Flux<DataBuffer> ndjson(Flux<?> data, ObjectMapper objectMapper) {
+        return data.map(obj -> BUFFER_FACTORY.wrap(concat(toJson(objectMapper, obj), NEWLINE)));
+    }
+
+    private static Flux<DataBuffer> envelope(String message, Flux<?> data, ObjectMapper objectMapper) {
+        byte[] prefix = concat(
+                concat(("{\"" + MESSAGE + "\":").getBytes(StandardCharsets.UTF_8), toJson(objectMapper, message)),
+                (",\"" + DATA + "\":[").getBytes(StandardCharsets.UTF_8));
+
+        // nothing is written until the first signal, so an error raised before any data still gets an error response
+        return data.switchOnFirst((signal, elements) -> signal.isOnError()
+                ? elements.map(obj -> BUFFER_FACTORY.wrap(toJson(objectMapper, obj)))
+                : Flux.concat(
+                        Mono.fromCallable(() -> BUFFER_FACTORY.wrap(prefix)),
+                        elements.index().map(indexed -> BUFFER_FACTORY.wrap(indexed.getT1() == 0
+                                ? toJson(objectMapper, indexed.getT2())
+                                : concat(SEPARATOR, toJson(objectMapper, indexed.getT2())))),
+                        Mono.fromCallable(() -> BUFFER_FACTORY.wrap(ENVELOPE_END))));
+    }
+
+    private static byte[] toJson(ObjectMapper objectMapper, Object obj) {
+        try {
+            return objectMapper.writeValueAsBytes(obj);
+        } catch (JsonProcessingException e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] bytes = new byte[first.length + second.length];
+        System.arraycopy(first, 0, bytes, 0, first.length);
+        System.arraycopy(second, 0, bytes, first.length, second.length);
+        return bytes;
+    }
+
 }
@@ -3,6 +3,7 @@ package com.aad.ffsmart.web;
 import com.aad.ffsmart.auth.AuthenticationManager;
 import com.aad.ffsmart.auth.SecurityContextRepository;
 import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -20,7 +21,7 @@ import reactor.core.publisher.Mono;
  * <p>
  * Defines authenticated/non-authenticated endpoints,
  * adds authentication manager and security context repo to HTTP security
- * Also features BCrypt password encoder bean
+ * Also features BCrypt password encoder bean, work factor passwords.bcrypt.strength (stored hashes are upgraded on login)
  *
  * @author Oliver Wortley
  */
@@ -51,14 +52,15 @@ public class SecurityConfig {
                 .pathMatchers(HttpMethod.OPTIONS).permitAll()
                 .pathMatchers(HttpMethod.POST, "/users").permitAll()
                 .pathMatchers("/users/login").permitAll()
+                .pathMatchers(HttpMethod.POST, "/users/refresh", "/users/logout").permitAll()
                 .pathMatchers(HttpMethod.POST, "/users/reset-password").permitAll()
                 .anyExchange().authenticated()
                 .and().build();
     }
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder(12);
+    public PasswordEncoder passwordEncoder(@Value("${passwords.bcrypt.strength:12}") int strength) {
+        return new BCryptPasswordEncoder(strength);
     }
 
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.aad.ffsmart.alert;
 
+import com.aad.ffsmart.alert.model.PublisherStatistics;
 import com.aad.ffsmart.exception.GlobalErrorAttributes;
 import com.aad.ffsmart.web.WebFluxTestSecurityConfig;
 import org.junit.jupiter.api.DisplayName;
@@ -8,12 +9,19 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
 import java.util.Date;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 import static org.springframework.web.reactive.function.client.ExchangeFilterFunctions.basicAuthentication;
 
@@ -34,7 +42,7 @@ class AlertControllerTests {
     @Test
     void givenAlerts_whenGetAlerts_thenStatusOk() {
         Alert alert = new Alert(AlertCode.ORDER_READY, "Order ready", "Order is ready for approval", new Date());
-        when(alertService.getAlerts()).thenReturn(Flux.just(alert));
+        when(alertService.getAlerts(null)).thenReturn(Flux.just(alert));
 
         webTestClient.get()
                 .uri("/alerts")
@@ -43,7 +51,7 @@ class AlertControllerTests {
                 .expectBody()
                 .jsonPath("$.data[0].alertCode").isEqualTo(AlertCode.ORDER_READY.value)
                 .consumeWith(System.out::println);
-        verify(alertService, times(1)).getAlerts();
+        verify(alertService, times(1)).getAlerts(null);
     }
 
     @DisplayName("Get alerts with delivery driver role, expect status Forbidden")
@@ -54,7 +62,73 @@ class AlertControllerTests {
                 .uri("/alerts")
                 .exchange()
                 .expectStatus().isForbidden();
-        verify(alertService, never()).getAlerts();
+        verify(alertService, never()).getAlerts(any());
     }
 
+    @DisplayName("Get alerts since timestamp, expect status Ok and timestamp passed to service")
+    @WithMockUser(roles = "HEAD_CHEF")
+    @Test
+    void givenSince_whenGetAlerts_thenStatusOk() {
+        when(alertService.getAlerts(any(Date.class))).thenReturn(Flux.empty());
+
+        webTestClient.get()
+                .uri("/alerts?since=2023-03-01T10:00:00.000Z")
+                .exchange()
+                .expectStatus().isOk();
+        verify(alertService, times(1)).getAlerts(any(Date.class));
+    }
+
+    @DisplayName("Stream alerts, expect alerts pushed as server-sent events")
+    @WithMockUser(roles = "HEAD_CHEF")
+    @Test
+    void givenAlerts_whenStreamAlerts_thenEventsReceived() {
+        Alert alert = new Alert(AlertCode.ORDER_READY, "Order ready", "Order is ready for approval", new Date());
+        when(alertService.streamAlerts()).thenReturn(Flux.just(alert));
+
+        Flux<ServerSentEvent<Alert>> events = webTestClient.get()
+                .uri("/alerts/stream")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(new ParameterizedTypeReference<ServerSentEvent<Alert>>() {
+                })
+                .getResponseBody();
+
+        StepVerifier
+                .create(events)
+                .consumeNextWith(event -> {
+                    assertEquals("alert", event.event());
+                    assertEquals(AlertCode.ORDER_READY, event.data().getAlertCode());
+                })
+                .thenCancel()
+                .verify();
+    }
+
+    @DisplayName("Stream alerts with delivery driver role, expect status Forbidden")
+    @WithMockUser(roles = "DELIVERY_DRIVER")
+    @Test
+    void givenDeliveryDriverRole_whenStreamAlerts_thenStatusForbidden() {
+        webTestClient.get()
+                .uri("/alerts/stream")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isForbidden();
+        verify(alertService, never()).streamAlerts();
+    }
+
+    @DisplayName("Get publisher statistics, expect status Ok")
+    @WithMockUser(roles = "HEAD_CHEF")
+    @Test
+    void givenPublisherStatistics_whenGetPublisherStatistics_thenStatusOk() {
+        when(alertService.getPublisherStatistics()).thenReturn(Mono.just(new PublisherStatistics(10, 8, 1, 1, 2.5, 12.0)));
+
+        webTestClient.get()
+                .uri("/alerts/publisher/stats")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.data.acked").isEqualTo(8)
+                .jsonPath("$.data.inFlight").isEqualTo(1);
+        verify(alertService, times(1)).getPublisherStatistics();
+    }
 }
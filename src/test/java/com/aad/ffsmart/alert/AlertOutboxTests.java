@@ -0,0 +1,112 @@
+package com.aad.ffsmart.alert;
+
+import com.aad.ffsmart.alert.model.AlertOutboxStatus;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AlertOutboxTests {
+    @Mock
+    private AlertOutboxRepository alertOutboxRepository;
+
+    @Mock
+    private AlertPublisher alertPublisher;
+
+    @InjectMocks
+    private AlertOutbox alertOutbox;
+
+    @DisplayName("Add alerts, expect pending entries inserted for the head chef's queue")
+    @Test
+    void givenAlerts_whenAddAll_thenPendingEntriesInserted() {
+        when(alertOutboxRepository.insert(anyList())).thenReturn(Flux.empty());
+        ReflectionTestUtils.setField(alertOutbox, "relayRunning", new AtomicBoolean(true)); // relay not under test
+
+        StepVerifier.create(alertOutbox.addAll(List.of(alert(), alert()))).verifyComplete();
+
+        verify(alertOutboxRepository, times(1)).insert(argThat((List<AlertOutboxEntry> entries) -> entries.size() == 2
+                && entries.stream().allMatch(entry -> entry.getStatus() == AlertOutboxStatus.PENDING
+                && entry.getRoutingKey().equals(RabbitConfig.HEAD_CHEF_QUEUE_NAME))));
+    }
+
+    @DisplayName("Publish due alerts confirmed by broker, expect batch marked sent")
+    @Test
+    void givenConfirmedPublishes_whenPublishDue_thenMarkedSent() {
+        when(alertOutboxRepository.findDue(eq(AlertOutboxStatus.PENDING), any(Date.class), any(Pageable.class)))
+                .thenReturn(Flux.just(entry("1"), entry("2")));
+        when(alertOutboxRepository.markSent(anyList(), any(Date.class))).thenReturn(Mono.just(2L));
+        when(alertOutboxRepository.saveAll(anyList())).thenReturn(Flux.empty());
+        when(alertPublisher.publish(anyList())).thenReturn(Mono.just(Set.of("1", "2")));
+
+        StepVerifier.create(alertOutbox.publishDue()).verifyComplete();
+
+        verify(alertOutboxRepository, times(1)).markSent(argThat(ids -> ids.containsAll(List.of("1", "2"))), any(Date.class));
+        verify(alertOutboxRepository, times(1)).saveAll(argThat((List<AlertOutboxEntry> failed) -> failed.isEmpty()));
+    }
+
+    @DisplayName("Publish due alerts, one unconfirmed, expect confirmed one marked sent and other retried with backoff")
+    @Test
+    void givenPartlyConfirmed_whenPublishDue_thenUnconfirmedRetried() {
+        AlertOutboxEntry unconfirmed = entry("2");
+        when(alertOutboxRepository.findDue(eq(AlertOutboxStatus.PENDING), any(Date.class), any(Pageable.class)))
+                .thenReturn(Flux.just(entry("1"), unconfirmed));
+        when(alertOutboxRepository.markSent(anyList(), any(Date.class))).thenReturn(Mono.just(1L));
+        when(alertOutboxRepository.saveAll(anyList())).thenReturn(Flux.empty());
+        when(alertPublisher.publish(anyList())).thenReturn(Mono.just(Set.of("1")));
+
+        StepVerifier.create(alertOutbox.publishDue()).verifyComplete();
+
+        verify(alertOutboxRepository, times(1)).markSent(eq(List.of("1")), any(Date.class));
+        assertEquals(1, unconfirmed.getAttempts());
+        assertEquals(AlertOutboxStatus.PENDING, unconfirmed.getStatus());
+        assertTrue(unconfirmed.getNextAttempt().after(new Date()));
+    }
+
+    @DisplayName("Publish fails on last attempt, expect entry marked failed")
+    @Test
+    void givenBrokerDown_whenLastAttempt_thenMarkedFailed() {
+        AlertOutboxEntry entry = entry("1");
+        entry.setAttempts(9);
+        when(alertOutboxRepository.findDue(eq(AlertOutboxStatus.PENDING), any(Date.class), any(Pageable.class))).thenReturn(Flux.just(entry));
+        when(alertOutboxRepository.saveAll(anyList())).thenReturn(Flux.empty());
+        when(alertPublisher.publish(anyList())).thenReturn(Mono.just(Set.of()));
+
+        StepVerifier.create(alertOutbox.publishDue()).verifyComplete();
+
+        assertEquals(AlertOutboxStatus.FAILED, entry.getStatus());
+        assertNull(entry.getNextAttempt());
+        assertNotNull(entry.getFailedDate()); // removed by the TTL index later
+    }
+
+    private static Alert alert() {
+        return new Alert(AlertCode.ORDER_READY, "Order ready", "Order is ready for approval", new Date());
+    }
+
+    private static AlertOutboxEntry entry(String id) {
+        return new AlertOutboxEntry(id, alert(), RabbitConfig.HEAD_CHEF_QUEUE_NAME, AlertOutboxStatus.PENDING, 0, new Date(), new Date(), null, null);
+    }
+
+}
@@ -0,0 +1,147 @@
+package com.aad.ffsmart.alert;
+
+import com.aad.ffsmart.alert.model.AlertOutboxStatus;
+import com.aad.ffsmart.alert.model.PublisherStatistics;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConfirmListener;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class AlertPublisherTests {
+    private final AtomicLong nextSeqNo = new AtomicLong(1);
+
+    private final AtomicReference<ConfirmListener> confirmListener = new AtomicReference<>();
+
+    private com.rabbitmq.client.ConnectionFactory rabbitConnectionFactory;
+
+    private Connection connection;
+
+    private CachingConnectionFactory connectionFactory;
+
+    private PublisherMetrics publisherMetrics;
+
+    private AlertPublisher alertPublisher;
+
+    @BeforeEach
+    void setup() throws Exception {
+        // real RabbitTemplate and CachingConnectionFactory, over a stand-in broker channel
+        Channel channel = mock(Channel.class);
+        when(channel.isOpen()).thenReturn(true);
+        when(channel.getNextPublishSeqNo()).thenAnswer(invocation -> nextSeqNo.get());
+        doAnswer(invocation -> {
+            confirmListener.set(invocation.getArgument(0));
+            return null;
+        }).when(channel).addConfirmListener(any(ConfirmListener.class));
+        // stand-in broker: ack ids starting "ack", nack ids starting "nack", never confirm anything else
+        doAnswer(invocation -> {
+            long seqNo = nextSeqNo.getAndIncrement();
+            String messageId = invocation.<AMQP.BasicProperties>getArgument(3).getMessageId();
+            if (messageId.startsWith("ack")) {
+                confirmListener.get().handleAck(seqNo, false);
+            } else if (messageId.startsWith("nack")) {
+                confirmListener.get().handleNack(seqNo, false);
+            }
+            return null;
+        }).when(channel).basicPublish(anyString(), anyString(), anyBoolean(), any(AMQP.BasicProperties.class), any(byte[].class));
+
+        connection = mock(Connection.class);
+        when(connection.isOpen()).thenReturn(true);
+        when(connection.createChannel()).thenReturn(channel);
+
+        rabbitConnectionFactory = mock(com.rabbitmq.client.ConnectionFactory.class);
+        when(rabbitConnectionFactory.newConnection(nullable(ExecutorService.class), anyString())).thenReturn(connection);
+
+        connectionFactory = new CachingConnectionFactory(rabbitConnectionFactory);
+        connectionFactory.setPublisherConfirmType(CachingConnectionFactory.ConfirmType.CORRELATED);
+        connectionFactory.setPublisherReturns(true);
+
+        publisherMetrics = new PublisherMetrics();
+        alertPublisher = new AlertPublisher();
+        ReflectionTestUtils.setField(alertPublisher, "rabbitTemplate",
+                new RabbitConfig().rabbitTemplate(new Jackson2JsonMessageConverter(), connectionFactory, publisherMetrics));
+        ReflectionTestUtils.setField(alertPublisher, "publisherMetrics", publisherMetrics);
+        ReflectionTestUtils.setField(alertPublisher, "jobScheduler", Schedulers.immediate());
+        ReflectionTestUtils.setField(alertPublisher, "confirmTimeout", 200L);
+    }
+
+    @AfterEach
+    void teardown() {
+        connectionFactory.destroy();
+    }
+
+    @DisplayName("Publish batch acked by broker, expect all ids confirmed and batch sent on one channel")
+    @Test
+    void givenAckedBatch_whenPublish_thenAllConfirmedOnOneChannel() throws IOException {
+        StepVerifier.create(alertPublisher.publish(List.of(entry("ack-1"), entry("ack-2"), entry("ack-3"))))
+                .expectNext(Set.of("ack-1", "ack-2", "ack-3"))
+                .verifyComplete();
+
+        verify(connection, times(1)).createChannel();
+        PublisherStatistics statistics = publisherMetrics.getStatistics();
+        assertEquals(3, statistics.getPublished());
+        assertEquals(3, statistics.getAcked());
+        assertEquals(0, statistics.getInFlight());
+    }
+
+    @DisplayName("Publish batch with nacked and unconfirmed alerts, expect only acked id confirmed and confirms timed")
+    @Test
+    void givenNackAndTimeout_whenPublish_thenOnlyAckedConfirmed() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        publisherMetrics.bindTo(registry);
+
+        StepVerifier.create(alertPublisher.publish(List.of(entry("ack-1"), entry("nack-2"), entry("lost-3"))))
+                .expectNext(Set.of("ack-1"))
+                .verifyComplete();
+
+        PublisherStatistics statistics = publisherMetrics.getStatistics();
+        assertEquals(1, statistics.getAcked());
+        assertEquals(1, statistics.getNacked());
+        assertEquals(1, statistics.getInFlight());
+        assertEquals(1, registry.get("alerts.publish.confirm").tag("outcome", "ack").timer().count());
+        assertEquals(1, registry.get("alerts.publish.confirm").tag("outcome", "nack").timer().count());
+        assertEquals(1, registry.get("alerts.publish.in-flight").gauge().value());
+    }
+
+    @DisplayName("Publish with broker down, expect nothing confirmed")
+    @Test
+    void givenBrokerDown_whenPublish_thenNoneConfirmed() throws Exception {
+        when(rabbitConnectionFactory.newConnection(nullable(ExecutorService.class), anyString())).thenThrow(new ConnectException("refused"));
+
+        StepVerifier.create(alertPublisher.publish(List.of(entry("ack-1"))))
+                .expectNext(Set.of())
+                .verifyComplete();
+
+        assertEquals(0, publisherMetrics.getStatistics().getInFlight());
+    }
+
+    private static AlertOutboxEntry entry(String id) {
+        Alert alert = new Alert(AlertCode.ORDER_READY, "Order ready", "Order is ready for approval", new Date());
+        return new AlertOutboxEntry(id, alert, RabbitConfig.HEAD_CHEF_QUEUE_NAME, AlertOutboxStatus.PENDING, 0, new Date(), new Date(), null, null);
+    }
+}
@@ -0,0 +1,68 @@
+package com.aad.ffsmart.alert;
+
+import com.aad.ffsmart.alert.model.AlertOutboxStatus;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.AmqpConnectException;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.net.ConnectException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AlertQueueMetricsTests {
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    @Mock
+    private AmqpAdmin amqpAdmin;
+
+    @Mock
+    private AlertOutboxRepository alertOutboxRepository;
+
+    @InjectMocks
+    private AlertQueueMetrics alertQueueMetrics;
+
+    @BeforeEach
+    void setup() {
+        ReflectionTestUtils.setField(alertQueueMetrics, "jobScheduler", Schedulers.immediate());
+        alertQueueMetrics.bindTo(registry);
+        when(alertOutboxRepository.countByStatus(AlertOutboxStatus.PENDING)).thenReturn(Mono.just(4L));
+    }
+
+    @DisplayName("Refresh with broker reachable, expect queue depth, consumers and outbox backlog")
+    @Test
+    void givenBrokerUp_whenRefresh_thenGaugesSet() {
+        when(amqpAdmin.getQueueInfo(RabbitConfig.HEAD_CHEF_QUEUE_NAME)).thenReturn(new QueueInformation(RabbitConfig.HEAD_CHEF_QUEUE_NAME, 7, 1));
+
+        alertQueueMetrics.refresh();
+
+        assertEquals(7, registry.get("alerts.queue.depth").gauge().value());
+        assertEquals(1, registry.get("alerts.queue.consumers").gauge().value());
+        assertEquals(4, registry.get("alerts.outbox.pending").gauge().value());
+    }
+
+    @DisplayName("Refresh with broker down, expect queue gauges unknown and outbox backlog still set")
+    @Test
+    void givenBrokerDown_whenRefresh_thenQueueGaugesNaN() {
+        when(amqpAdmin.getQueueInfo(RabbitConfig.HEAD_CHEF_QUEUE_NAME)).thenThrow(new AmqpConnectException(new ConnectException("refused")));
+
+        alertQueueMetrics.refresh();
+
+        assertTrue(Double.isNaN(registry.get("alerts.queue.depth").gauge().value()));
+        assertEquals(4, registry.get("alerts.outbox.pending").gauge().value());
+    }
+}
@@ -5,41 +5,28 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
-import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
 import reactor.core.publisher.Flux;
 import reactor.test.StepVerifier;
 
 import java.util.Date;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.mockito.ArgumentMatchers.anyString;
-import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 @Slf4j
 class AlertServiceTests {
-    @Mock
-    private RabbitTemplate rabbitTemplate;
     @InjectMocks
     private AlertServiceImpl alertService;
 
     @DisplayName("Get alerts, expect flux of alerts returned")
     @Test
     void givenAlerts_whenGetAlerts_thenAlertsReturned() {
-        final boolean[] i = {true};
         Alert alert = new Alert(AlertCode.ORDER_READY, "Order ready", "Order is ready for approval", new Date());
-        when(rabbitTemplate.receiveAndConvert(anyString())).then(ans -> {
-            if (i[0]) {
-                i[0] = false;
-                return alert;
-            } else {
-                return null;
-            }
-        });
+        alertService.receiveAlert(alert, null);
 
-        Flux<Alert> alertFlux = alertService.getAlerts();
+        Flux<Alert> alertFlux = alertService.getAlerts(null);
 
         StepVerifier
                 .create(alertFlux)
@@ -50,4 +37,61 @@ class AlertServiceTests {
                 .verifyComplete();
     }
 
+    @DisplayName("Get alerts after buffer is full, expect newest alerts returned first and oldest dropped")
+    @Test
+    void givenFullBuffer_whenGetAlerts_thenNewestAlertsReturned() {
+        ReflectionTestUtils.setField(alertService, "bufferSize", 2);
+        Alert first = new Alert(AlertCode.ORDER_READY, "First", "First alert", new Date(1000));
+        Alert second = new Alert(AlertCode.ORDER_READY, "Second", "Second alert", new Date(2000));
+        Alert third = new Alert(AlertCode.ORDER_READY, "Third", "Third alert", new Date(3000));
+        alertService.receiveAlert(first, null);
+        alertService.receiveAlert(second, null);
+        alertService.receiveAlert(third, null);
+
+        StepVerifier
+                .create(alertService.getAlerts(null))
+                .expectNext(third, second)
+                .verifyComplete();
+    }
+
+    @DisplayName("Get alerts since timestamp, expect only newer alerts returned")
+    @Test
+    void givenAlertsAndSince_whenGetAlerts_thenNewerAlertsReturned() {
+        Alert older = new Alert(AlertCode.ORDER_READY, "Older", "Older alert", new Date(1000));
+        Alert newer = new Alert(AlertCode.ORDER_READY, "Newer", "Newer alert", new Date(3000));
+        alertService.receiveAlert(older, null);
+        alertService.receiveAlert(newer, null);
+
+        StepVerifier
+                .create(alertService.getAlerts(new Date(2000)))
+                .expectNext(newer)
+                .verifyComplete();
+    }
+
+    @DisplayName("Stream alerts, expect alerts received after subscribing pushed to subscriber")
+    @Test
+    void givenSubscriber_whenAlertReceived_thenAlertPushed() {
+        Alert alert = new Alert(AlertCode.ORDER_READY, "Order ready", "Order is ready for approval", new Date());
+
+        StepVerifier
+                .create(alertService.streamAlerts())
+                .then(() -> alertService.receiveAlert(alert, null))
+                .expectNext(alert)
+                .thenCancel()
+                .verify();
+    }
+
+    @DisplayName("Receive the same message twice, expect duplicate dropped")
+    @Test
+    void givenRedeliveredMessage_whenReceiveAlert_thenDuplicateDropped() {
+        Alert alert = new Alert(AlertCode.ORDER_READY, "Order ready", "Order is ready for approval", new Date());
+        alertService.receiveAlert(alert, "abc");
+        alertService.receiveAlert(alert, "abc");
+
+        StepVerifier
+                .create(alertService.getAlerts(null))
+                .expectNext(alert)
+                .verifyComplete();
+    }
+
 }
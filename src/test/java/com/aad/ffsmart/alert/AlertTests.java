@@ -8,7 +8,9 @@ import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWeb
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.test.StepVerifier;
 
+import java.time.Duration;
 import java.util.Date;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
@@ -27,8 +29,14 @@ class AlertTests {
     @WithMockUser(roles = "HEAD_CHEF")
     @Test
     void givenAlerts_whenTestGetAlerts_thenStatusOkAndAlertsReturned() {
-        rabbitTemplate.convertAndSend(RabbitConfig.ALERTS_EXCHANGE_NAME, RabbitConfig.HEAD_CHEF_QUEUE_NAME,
-                new Alert(AlertCode.ORDER_READY, "New order generated", "A new order has been generated and is ready for approval", new Date()));
+        // alerts are consumed asynchronously, so wait for the listener to push it before reading the buffer
+        StepVerifier
+                .create(alertService.streamAlerts().next())
+                .then(() -> rabbitTemplate.convertAndSend(RabbitConfig.ALERTS_EXCHANGE_NAME, RabbitConfig.HEAD_CHEF_QUEUE_NAME,
+                        new Alert(AlertCode.ORDER_READY, "New order generated", "A new order has been generated and is ready for approval", new Date())))
+                .expectNextMatches(alert -> alert.getAlertCode() == AlertCode.ORDER_READY)
+                .expectComplete()
+                .verify(Duration.ofSeconds(10));
 
         webTestClient.get()
                 .uri("/alerts")
@@ -0,0 +1,103 @@
+package com.aad.ffsmart.auth;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.test.StepVerifier;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AuthenticationManagerTests {
+    private static final String TOKEN = "header.payload.signature";
+
+    @Mock
+    private JWTUtil jwtUtil;
+
+    private AuthenticationManager authenticationManager;
+
+    @BeforeEach
+    void setup() {
+        authenticationManager = new AuthenticationManager(jwtUtil, 100);
+    }
+
+    private static Claims claims(Date expiration) {
+        Claims claims = Jwts.claims();
+        claims.setSubject("123");
+        claims.setExpiration(expiration);
+        claims.put("role", List.of("ROLE_CHEF"));
+        return claims;
+    }
+
+    @DisplayName("Authenticate with valid token, expect user id principal and roles")
+    @Test
+    void givenValidToken_whenAuthenticate_thenPrincipalAndRolesReturned() {
+        when(jwtUtil.getAllClaimsFromToken(TOKEN)).thenReturn(claims(new Date(System.currentTimeMillis() + 60000)));
+
+        StepVerifier
+                .create(authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(TOKEN, TOKEN)))
+                .assertNext(auth -> {
+                    assertEquals("123", auth.getName());
+                    assertEquals(List.of("ROLE_CHEF"), auth.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList());
+                })
+                .verifyComplete();
+    }
+
+    @DisplayName("Authenticate with same token twice, expect token only verified once and the verification timed")
+    @Test
+    void givenSameTokenTwice_whenAuthenticate_thenClaimsCached() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        authenticationManager.bindTo(registry);
+        when(jwtUtil.getAllClaimsFromToken(TOKEN)).thenReturn(claims(new Date(System.currentTimeMillis() + 60000)));
+
+        StepVerifier.create(authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(TOKEN, TOKEN)))
+                .expectNextCount(1)
+                .verifyComplete();
+        StepVerifier.create(authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(TOKEN, TOKEN)))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        verify(jwtUtil, times(1)).getAllClaimsFromToken(TOKEN);
+        assertEquals(1, registry.get("jwt.verifications").tag("outcome", "valid").timer().count());
+        assertEquals(1, registry.get("cache.gets").tags("cache", "jwt.claims", "result", "hit").functionCounter().count());
+    }
+
+    @DisplayName("Authenticate with invalid token, expect 401 and token not cached")
+    @Test
+    void givenInvalidToken_whenAuthenticate_thenUnauthorized() {
+        when(jwtUtil.getAllClaimsFromToken(TOKEN)).thenThrow(new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid token"));
+
+        for (int i = 0; i < 2; i++) {
+            StepVerifier.create(authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(TOKEN, TOKEN)))
+                    .expectErrorMatches(ex -> ex instanceof ResponseStatusException rse && rse.getStatusCode() == HttpStatus.UNAUTHORIZED)
+                    .verify();
+        }
+
+        verify(jwtUtil, times(2)).getAllClaimsFromToken(TOKEN);
+    }
+
+    @DisplayName("Authenticate with expired claims, expect no authentication")
+    @Test
+    void givenExpiredClaims_whenAuthenticate_thenEmpty() {
+        when(jwtUtil.getAllClaimsFromToken(TOKEN)).thenReturn(claims(new Date(System.currentTimeMillis() - 1000)));
+
+        StepVerifier
+                .create(authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(TOKEN, TOKEN)))
+                .verifyComplete();
+    }
+}
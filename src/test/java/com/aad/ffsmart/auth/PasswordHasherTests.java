@@ -0,0 +1,89 @@
+package com.aad.ffsmart.auth;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordHasherTests {
+    private final Scheduler hashScheduler = Schedulers.newBoundedElastic(1, 1, "test-hashing");
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final PasswordHasher passwordHasher = new PasswordHasher();
+
+    @BeforeEach
+    void setup() {
+        ReflectionTestUtils.setField(passwordHasher, "passwordEncoder", new BCryptPasswordEncoder(5));
+        ReflectionTestUtils.setField(passwordHasher, "hashScheduler", hashScheduler);
+        passwordHasher.bindTo(meterRegistry);
+    }
+
+    @AfterEach
+    void teardown() {
+        hashScheduler.dispose();
+    }
+
+    @DisplayName("Encode then match password, expect hashed off the calling thread")
+    @Test
+    void givenPassword_whenEncodeAndMatch_thenMatchesOnHashScheduler() {
+        String caller = Thread.currentThread().getName();
+        String hash = passwordHasher.encode("password").block();
+
+        assertNotNull(hash);
+        StepVerifier.create(passwordHasher.matches("password", hash)
+                        .map(matches -> matches && !Thread.currentThread().getName().equals(caller)))
+                .expectNext(true)
+                .verifyComplete();
+        StepVerifier.create(passwordHasher.matches("wrong", hash))
+                .expectNext(false)
+                .verifyComplete();
+    }
+
+    @DisplayName("Check a hash made with a lower work factor, expect rehash needed")
+    @Test
+    void givenLowerStrengthHash_whenNeedsRehash_thenTrue() {
+        assertTrue(passwordHasher.needsRehash(new BCryptPasswordEncoder(4).encode("password")));
+        assertFalse(passwordHasher.needsRehash(new BCryptPasswordEncoder(5).encode("password")));
+    }
+
+    @DisplayName("Hash while the scheduler is saturated, expect too many requests and rejection counted")
+    @Test
+    void givenSaturatedScheduler_whenMatch_thenTooManyRequests() throws InterruptedException {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        hashScheduler.schedule(() -> {
+            running.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        running.await();
+        hashScheduler.schedule(() -> { }); // fills the queue
+
+        try {
+            StepVerifier.create(passwordHasher.matches("password", "hash"))
+                    .expectErrorSatisfies(error -> assertEquals(HttpStatus.TOO_MANY_REQUESTS,
+                            ((ResponseStatusException) error).getStatusCode()))
+                    .verify();
+            assertEquals(1, meterRegistry.get("passwords.hash.rejected").functionCounter().count());
+        } finally {
+            release.countDown();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.aad.ffsmart.auth;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RefreshTokenServiceTests {
+    private static final String USER_ID = "123";
+
+    @Mock
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @InjectMocks
+    private RefreshTokenService refreshTokenService;
+
+    @DisplayName("Issue refresh token, expect only its hash stored in a new family")
+    @Test
+    void givenUser_whenIssue_thenHashStored() {
+        when(refreshTokenRepository.save(any(RefreshToken.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        String token = refreshTokenService.issue(USER_ID, null).block();
+
+        ArgumentCaptor<RefreshToken> saved = ArgumentCaptor.forClass(RefreshToken.class);
+        verify(refreshTokenRepository).save(saved.capture());
+        assertNotNull(token);
+        assertEquals(RefreshTokenService.hash(token), saved.getValue().getTokenHash());
+        assertNotEquals(token, saved.getValue().getTokenHash());
+        assertEquals(USER_ID, saved.getValue().getUserId());
+        assertNotNull(saved.getValue().getFamilyId());
+        assertTrue(saved.getValue().getExpiresAt().after(new Date()));
+    }
+
+    @DisplayName("Redeem unused token, expect token marked used and returned")
+    @Test
+    void givenUnusedToken_whenRedeem_thenReturned() {
+        RefreshToken stored = stored("token");
+        when(refreshTokenRepository.findByTokenHash(stored.getTokenHash())).thenReturn(Mono.just(stored));
+        when(refreshTokenRepository.markUsed(stored.getTokenHash())).thenReturn(Mono.just(1L));
+
+        StepVerifier.create(refreshTokenService.redeem("token"))
+                .expectNext(stored)
+                .verifyComplete();
+
+        verify(refreshTokenRepository, never()).deleteByFamilyId(any());
+    }
+
+    @DisplayName("Redeem token already used, expect unauthorized and family revoked")
+    @Test
+    void givenUsedToken_whenRedeem_thenFamilyRevoked() {
+        RefreshToken stored = stored("token");
+        when(refreshTokenRepository.findByTokenHash(stored.getTokenHash())).thenReturn(Mono.just(stored));
+        when(refreshTokenRepository.markUsed(stored.getTokenHash())).thenReturn(Mono.just(0L));
+        when(refreshTokenRepository.deleteByFamilyId("family")).thenReturn(Mono.just(2L));
+
+        StepVerifier.create(refreshTokenService.redeem("token"))
+                .expectErrorSatisfies(error -> assertEquals(HttpStatus.UNAUTHORIZED, ((ResponseStatusException) error).getStatusCode()))
+                .verify();
+
+        verify(refreshTokenRepository, times(1)).deleteByFamilyId("family");
+    }
+
+    @DisplayName("Redeem unknown, missing or expired token, expect unauthorized")
+    @Test
+    void givenInvalidToken_whenRedeem_thenUnauthorized() {
+        RefreshToken expired = stored("expired");
+        expired.setExpiresAt(new Date(System.currentTimeMillis() - 1000));
+        when(refreshTokenRepository.findByTokenHash(any())).thenReturn(Mono.empty());
+        when(refreshTokenRepository.findByTokenHash(expired.getTokenHash())).thenReturn(Mono.just(expired));
+
+        for (String token : new String[]{"unknown", null, "expired"}) {
+            StepVerifier.create(refreshTokenService.redeem(token))
+                    .expectErrorSatisfies(error -> assertEquals(HttpStatus.UNAUTHORIZED, ((ResponseStatusException) error).getStatusCode()))
+                    .verify();
+        }
+        verify(refreshTokenRepository, never()).markUsed(any());
+    }
+
+    private static RefreshToken stored(String token) {
+        return new RefreshToken("1", RefreshTokenService.hash(token), USER_ID, "family", false, new Date(),
+                new Date(System.currentTimeMillis() + 60000));
+    }
+}
@@ -0,0 +1,25 @@
+package com.aad.ffsmart.db;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import reactor.test.StepVerifier;
+
+@SpringBootTest(properties = "mongodb.explain-check=true")
+class IndexProvisionerTests {
+    @Autowired
+    private IndexProvisioner indexProvisioner;
+    @Autowired
+    private QueryPlanChecker queryPlanChecker;
+
+    @DisplayName("Provision indexes, expect no repository query uses a collection scan")
+    @Test
+    void givenIndexesProvisioned_whenExplainRepositoryQueries_thenNoCollectionScans() {
+        indexProvisioner.provisionIndexes().blockLast();
+
+        StepVerifier
+                .create(queryPlanChecker.findCollectionScans())
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,84 @@
+package com.aad.ffsmart.db;
+
+import com.aad.ffsmart.alert.AlertOutboxEntry;
+import com.aad.ffsmart.auth.RefreshToken;
+import com.aad.ffsmart.inventory.InventoryChange;
+import com.aad.ffsmart.inventory.InventoryItem;
+import com.aad.ffsmart.order.Order;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IndexResolutionTests {
+    private final MongoMappingContext mappingContext = new MongoMappingContext();
+
+    private final IndexResolver indexResolver = IndexResolver.create(mappingContext);
+
+    @DisplayName("Resolve indexes for collections embedding inventory items, expect item indexes left to the Inventory collection")
+    @Test
+    void givenEmbeddedDocument_whenResolveIndexes_thenEmbeddedIndexesSkipped() {
+        for (Class<?> type : List.of(Order.class, InventoryChange.class)) {
+            List<String> keys = keys(type);
+
+            assertFalse(keys.isEmpty());
+            assertTrue(keys.stream().noneMatch(key -> key.startsWith("items.")), type.getSimpleName() + " " + keys);
+        }
+    }
+
+    @DisplayName("Resolve embedded indexes for collections embedding inventory items, expect the unique item index named for dropping")
+    @Test
+    void givenEmbeddedDocument_whenEmbeddedIndexNames_thenItemIndexListed() {
+        for (Class<?> type : List.of(Order.class, InventoryChange.class)) {
+            List<String> names = IndexProvisioner.embeddedIndexNames(indexResolver, mappingContext.getRequiredPersistentEntity(type));
+
+            assertTrue(names.contains("items.itemId_expiryDate"), type.getSimpleName() + " " + names);
+        }
+        assertTrue(IndexProvisioner.embeddedIndexNames(indexResolver, mappingContext.getRequiredPersistentEntity(InventoryItem.class)).isEmpty());
+    }
+
+    @DisplayName("Resolve indexes for inventory, expect search key and text indexes")
+    @Test
+    void givenInventoryItem_whenResolveIndexes_thenSearchIndexesResolved() {
+        List<String> keys = keys(InventoryItem.class);
+
+        assertTrue(keys.contains("searchKey"));
+        assertTrue(keys.contains("itemName"));
+        assertTrue(keys.contains("itemId"));
+    }
+
+    @DisplayName("Resolve indexes for refresh tokens, expect unique hash and TTL expiry indexes")
+    @Test
+    void givenRefreshToken_whenResolveIndexes_thenHashAndTtlIndexesResolved() {
+        List<? extends IndexDefinition> indexes = IndexProvisioner.resolveIndexes(indexResolver, mappingContext.getRequiredPersistentEntity(RefreshToken.class));
+
+        assertTrue(indexes.stream().anyMatch(index -> index.getIndexKeys().containsKey("tokenHash")
+                && Boolean.TRUE.equals(index.getIndexOptions().get("unique"))));
+        assertTrue(indexes.stream().anyMatch(index -> index.getIndexKeys().containsKey("expiresAt")
+                && Long.valueOf(0).equals(((Number) index.getIndexOptions().get("expireAfterSeconds")).longValue())));
+    }
+
+    @DisplayName("Resolve indexes for the alert outbox, expect TTL indexes on sent and failed dates")
+    @Test
+    void givenAlertOutboxEntry_whenResolveIndexes_thenSentAndFailedEntriesExpire() {
+        List<? extends IndexDefinition> indexes = IndexProvisioner.resolveIndexes(indexResolver, mappingContext.getRequiredPersistentEntity(AlertOutboxEntry.class));
+
+        for (String field : List.of("sentDate", "failedDate")) {
+            assertTrue(indexes.stream().anyMatch(index -> index.getIndexKeys().containsKey(field)
+                    && index.getIndexOptions().get("expireAfterSeconds") != null), field);
+        }
+    }
+
+    private List<String> keys(Class<?> type) {
+        return IndexProvisioner.resolveIndexes(indexResolver, mappingContext.getRequiredPersistentEntity(type)).stream()
+                .map(IndexDefinition::getIndexKeys)
+                .flatMap(keys -> keys.keySet().stream())
+                .toList();
+    }
+}
@@ -0,0 +1,40 @@
+package com.aad.ffsmart.db;
+
+import org.bson.Document;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QueryPlanCheckerTests {
+
+    @DisplayName("Plan with index scan input stage, expect no collection scan")
+    @Test
+    void givenIndexScanPlan_whenContainsCollectionScan_thenFalse() {
+        Document plan = new Document("stage", "FETCH")
+                .append("inputStage", new Document("stage", "IXSCAN").append("indexName", "expiryDate"));
+
+        assertFalse(QueryPlanChecker.containsCollectionScan(plan));
+    }
+
+    @DisplayName("Plan with collection scan root stage, expect collection scan")
+    @Test
+    void givenCollectionScanPlan_whenContainsCollectionScan_thenTrue() {
+        assertTrue(QueryPlanChecker.containsCollectionScan(new Document("stage", "COLLSCAN")));
+    }
+
+    @DisplayName("Plan with collection scan nested in input stages, expect collection scan")
+    @Test
+    void givenNestedCollectionScanPlan_whenContainsCollectionScan_thenTrue() {
+        Document plan = new Document("stage", "SUBPLAN")
+                .append("inputStage", new Document("stage", "OR")
+                        .append("inputStages", List.of(
+                                new Document("stage", "IXSCAN"),
+                                new Document("stage", "COLLSCAN"))));
+
+        assertTrue(QueryPlanChecker.containsCollectionScan(plan));
+    }
+}
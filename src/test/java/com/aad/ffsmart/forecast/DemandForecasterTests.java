@@ -0,0 +1,139 @@
+package com.aad.ffsmart.forecast;
+
+import com.aad.ffsmart.forecast.model.ForecastModel;
+import com.aad.ffsmart.forecast.model.ForecastSettings;
+import com.aad.ffsmart.inventory.InventoryChange;
+import com.aad.ffsmart.inventory.InventoryDailyStats;
+import com.aad.ffsmart.inventory.InventoryDailyStatsRepository;
+import com.aad.ffsmart.inventory.InventoryItem;
+import com.aad.ffsmart.inventory.model.InventoryOperation;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DemandForecasterTests {
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final long TODAY = Math.floorDiv(System.currentTimeMillis(), DAY_MILLIS);
+
+    @Mock
+    private InventoryDailyStatsRepository inventoryDailyStatsRepository;
+
+    @InjectMocks
+    private DemandForecaster demandForecaster;
+
+    @DisplayName("Seed history then forecast with moving average, expect mean daily demand over the window")
+    @Test
+    void givenSeededHistory_whenMovingAverageForecast_thenMeanDemand() {
+        // 28 days of 2 a day, plus 28 extra on one day -> 3 a day
+        seed(IntStream.rangeClosed(1, 28).mapToObj(daysAgo -> count("1", TODAY - daysAgo, daysAgo == 5 ? 30 : 2)).toList());
+
+        assertEquals(21, forecast("1", new ForecastSettings(ForecastModel.MOVING_AVERAGE, 28, null, null), 7), 1e-9);
+        assertEquals(0, forecast("unknown", new ForecastSettings(), 7));
+    }
+
+    @DisplayName("Forecast with EWMA after demand rises, expect forecast closer to recent demand than the average")
+    @Test
+    void givenRisingDemand_whenEwmaForecast_thenWeightedTowardsRecentDays() {
+        // 21 days of 1 a day, then 7 days of 10 a day
+        seed(IntStream.rangeClosed(1, 28).mapToObj(daysAgo -> count("1", TODAY - daysAgo, daysAgo <= 7 ? 10 : 1)).toList());
+
+        double average = forecast("1", new ForecastSettings(ForecastModel.MOVING_AVERAGE, 28, null, null), 1);
+        double ewma = forecast("1", new ForecastSettings(ForecastModel.EWMA, 28, 0.3, null), 1);
+
+        assertEquals(3.25, average, 1e-9);
+        assertTrue(ewma > 9 && ewma < 10, "EWMA forecast " + ewma);
+    }
+
+    @DisplayName("Forecast with day of week model, expect each weekday forecast from the same weekday's history")
+    @Test
+    void givenWeeklyDemand_whenDayOfWeekForecast_thenWeekdaysForecastSeparately() {
+        // 20 removed every week on today's weekday, nothing on other days
+        seed(IntStream.rangeClosed(1, 28).mapToObj(daysAgo -> count("1", TODAY - daysAgo, daysAgo % 7 == 0 ? 20 : 0)).toList());
+        ForecastSettings settings = new ForecastSettings(ForecastModel.DAY_OF_WEEK, 28, 0.5, null);
+
+        assertEquals(20, forecast("1", settings, 1), 1e-9); // today is the busy weekday
+        assertEquals(20, forecast("1", settings, 7), 1e-9);
+        assertEquals(40, forecast("1", settings, 8), 1e-9);
+    }
+
+    @DisplayName("Record removals after seed, expect history updated and additions and pre-seed removals ignored")
+    @Test
+    void givenRemovals_whenRecord_thenHistoryUpdated() {
+        seed(List.of());
+        Date yesterday = new Date((TODAY - 1) * DAY_MILLIS + 1000);
+        // before the seed cutoff (start of today) -> already counted by the seed
+        demandForecaster.record(change(InventoryOperation.REMOVE, yesterday, 100));
+
+        ForecastSettings settings = new ForecastSettings(ForecastModel.MOVING_AVERAGE, 1, null, null);
+        assertEquals(0, forecast("1", settings, 1));
+
+        // back-dated so it lands in the window of complete days, but after the cutoff
+        ((AtomicLong) ReflectionTestUtils.getField(demandForecaster, "seedCutoff")).set(yesterday.getTime());
+        demandForecaster.record(change(InventoryOperation.REMOVE, yesterday, 4));
+        demandForecaster.record(change(InventoryOperation.INSERT, yesterday, 50));
+
+        assertEquals(4, forecast("1", settings, 1), 1e-9);
+    }
+
+    @DisplayName("Record removals before seed, expect today's counted once seeded and earlier days left to the seed")
+    @Test
+    @SuppressWarnings("unchecked")
+    void givenRemovalsBeforeSeed_whenSeed_thenTodaysRemovalsKept() {
+        demandForecaster.record(change(InventoryOperation.REMOVE, new Date(), 6));
+        demandForecaster.record(change(InventoryOperation.REMOVE, new Date((TODAY - 1) * DAY_MILLIS + 1000), 100));
+
+        seed(List.of(count("1", TODAY - 1, 3)));
+
+        Map<String, DemandHistory> histories = (Map<String, DemandHistory>) ReflectionTestUtils.getField(demandForecaster, "histories");
+        assertArrayEquals(new int[]{3, 6}, histories.get("1").window(TODAY, 2));
+    }
+
+    @DisplayName("Resolve settings with unset fields, expect defaults and window capped to history")
+    @Test
+    void givenPartialSettings_whenResolve_thenDefaultsUsed() {
+        ForecastSettings resolved = demandForecaster.resolve(new ForecastSettings(ForecastModel.EWMA, 365, null, null));
+
+        assertEquals(new ForecastSettings(ForecastModel.EWMA, 56, 0.3, 1), resolved);
+        assertEquals(new ForecastSettings(ForecastModel.MOVING_AVERAGE, 28, 0.3, 1), demandForecaster.resolve(null));
+    }
+
+    private void seed(List<InventoryDailyStats> days) {
+        when(inventoryDailyStatsRepository.findByDayRange(any(Date.class), eq(new Date(TODAY * DAY_MILLIS))))
+                .thenReturn(Flux.fromIterable(days));
+        StepVerifier.create(demandForecaster.ready()).verifyComplete();
+    }
+
+    private double forecast(String itemId, ForecastSettings settings, int days) {
+        return demandForecaster.forecast(itemId, demandForecaster.forecaster(demandForecaster.resolve(settings)), days);
+    }
+
+    private static InventoryDailyStats count(String itemId, long day, int removed) {
+        Date date = new Date(day * DAY_MILLIS);
+        return new InventoryDailyStats(InventoryDailyStats.key(itemId, date), itemId, "Bananas 100g", date, 0, removed);
+    }
+
+    private static InventoryChange change(InventoryOperation operation, Date date, int quantity) {
+        return new InventoryChange(null, "789", List.of(new InventoryItem("1", "Bananas 100g", "123", "Supplier 1", quantity, new Date())), operation, date);
+    }
+}
@@ -0,0 +1,224 @@
+package com.aad.ffsmart.inventory;
+
+import com.aad.ffsmart.alert.Alert;
+import com.aad.ffsmart.alert.AlertCode;
+import com.aad.ffsmart.alert.AlertOutbox;
+import com.aad.ffsmart.inventory.model.ExpirySummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ExpiryIndexTests {
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private VirtualTimeScheduler scheduler;
+
+    @Mock
+    private InventoryRepository inventoryRepository;
+
+    @Mock
+    private AlertOutbox alertOutbox;
+
+    @InjectMocks
+    private ExpiryIndex expiryIndex;
+
+    @BeforeEach
+    void setup() {
+        scheduler = VirtualTimeScheduler.create();
+        scheduler.advanceTimeTo(Instant.now());
+        ReflectionTestUtils.setField(expiryIndex, "jobScheduler", scheduler);
+        lenient().when(alertOutbox.add(any(Alert.class))).thenReturn(Mono.empty());
+    }
+
+    @AfterEach
+    void teardown() {
+        scheduler.dispose();
+    }
+
+    @DisplayName("Seed index then get summary, expect expired, expiring and next expiry from the seeded inventory")
+    @Test
+    void givenSeededInventory_whenGetSummary_thenCountsAndNextExpiry() {
+        seed(item("1", -1, 5), item("2", 1, 3), item("3", 2, 4), item("4", 10, 1));
+
+        ExpirySummary summary = expiryIndex.getSummary(3);
+
+        assertEquals(1, summary.getExpired());
+        assertEquals(2, summary.getExpiring());
+        assertEquals(new Date(now() + DAY_MILLIS), summary.getNextExpiry());
+        assertTrue(expiryIndex.hasExpired(new Date(now())));
+        assertFalse(expiryIndex.hasExpired(new Date(now() - 2 * DAY_MILLIS)));
+    }
+
+    @DisplayName("Bind index to a registry, expect inventory gauges read from the index")
+    @Test
+    void givenSeededIndex_whenBound_thenInventoryGauges() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        expiryIndex.bindTo(registry);
+        seed(item("1", -1, 5), item("2", 1, 3));
+
+        assertEquals(2, registry.get("inventory.items").gauge().value());
+        assertEquals(8, registry.get("inventory.quantity").gauge().value());
+        assertEquals(1, registry.get("inventory.expired.items").gauge().value());
+    }
+
+    @DisplayName("Apply adds and removes, expect quantities mirrored and emptied entries dropped")
+    @Test
+    void givenWrites_whenApply_thenIndexMirrorsInventory() {
+        seed();
+        InventoryItem bananas = item("1", 5, 5);
+
+        expiryIndex.apply(List.of(bananas, bananas), 1);
+        expiryIndex.apply(List.of(item("1", 5, 7)), -1);
+        assertEquals(1, expiryIndex.getSummary(7).getExpiring());
+
+        expiryIndex.apply(List.of(item("1", 5, 3)), -1);
+        assertEquals(0, expiryIndex.getSummary(7).getExpiring());
+        assertNull(expiryIndex.getSummary(7).getNextExpiry());
+
+        expiryIndex.apply(List.of(item("2", -1, 2), item("3", 1, 2)), 1);
+        expiryIndex.removeExpired(new Date(now()));
+        assertFalse(expiryIndex.hasExpired(new Date(now())));
+        assertEquals(1, expiryIndex.getSummary(3).getExpiring());
+    }
+
+    @DisplayName("Seed with items expiring later, expect an alert as each comes within 3 days")
+    @Test
+    void givenLaterExpiry_whenTimeAdvances_thenAlertSentAsItemsEnterWindow() {
+        seed(item("1", 5, 5), item("2", 5.5, 5));
+
+        scheduler.advanceTimeBy(Duration.ofDays(1));
+        verify(alertOutbox, never()).add(any(Alert.class));
+
+        scheduler.advanceTimeBy(Duration.ofDays(1).plusMinutes(1));
+        verify(alertOutbox, times(1)).add(argThat(alert -> alert.getAlertCode() == AlertCode.ITEMS_TO_EXPIRE
+                && alert.getMessage().startsWith("5 items"))); // quantity, not documents
+
+        scheduler.advanceTimeBy(Duration.ofHours(11));
+        verify(alertOutbox, times(1)).add(any(Alert.class));
+
+        scheduler.advanceTimeBy(Duration.ofHours(1));
+        verify(alertOutbox, times(2)).add(any(Alert.class));
+    }
+
+    @DisplayName("Add stock inside an alerted window, expect another alert no sooner than the minimum interval")
+    @Test
+    void givenAlertedWindow_whenStockAdded_thenAlertAfterMinInterval() {
+        seed(item("1", 1, 5));
+        scheduler.advanceTimeBy(Duration.ofMinutes(1));
+        verify(alertOutbox, times(1)).add(any(Alert.class));
+
+        expiryIndex.apply(List.of(item("2", 2, 1)), 1);
+        scheduler.advanceTimeBy(Duration.ofMinutes(30));
+        verify(alertOutbox, times(1)).add(any(Alert.class));
+
+        scheduler.advanceTimeBy(Duration.ofMinutes(31));
+        verify(alertOutbox, times(2)).add(any(Alert.class));
+    }
+
+    @DisplayName("Write runs while the seed reads inventory, expect seed retried")
+    @Test
+    void givenConcurrentWrite_whenSeed_thenSeedRetried() {
+        when(inventoryRepository.findAll())
+                .thenReturn(Flux.defer(() -> {
+                    expiryIndex.writeStarted();
+                    expiryIndex.apply(List.of(item("2", 1, 1)), 1);
+                    expiryIndex.writeFinished();
+                    return Flux.just(item("1", 1, 5));
+                }))
+                .thenReturn(Flux.just(item("1", 1, 5), item("2", 1, 1)));
+
+        Mono<Void> ready = expiryIndex.ready().cache();
+        ready.subscribe();
+        scheduler.advanceTimeBy(Duration.ofSeconds(1));
+
+        assertTrue(ready.toFuture().isDone());
+        verify(inventoryRepository, times(2)).findAll();
+        assertEquals(2, expiryIndex.getSummary(3).getExpiring());
+    }
+
+    @DisplayName("Seed keeps being overlapped by writes, expect seed retried with growing delays until it succeeds")
+    @Test
+    void givenContinuousWrites_whenSeed_thenRetriedUntilInstalled() {
+        AtomicInteger reads = new AtomicInteger();
+        when(inventoryRepository.findAll()).thenReturn(Flux.defer(() -> {
+            if (reads.incrementAndGet() <= 25) {
+                expiryIndex.writeStarted();
+                expiryIndex.writeFinished();
+            }
+            return Flux.just(item("1", 1, 5));
+        }));
+
+        Mono<Void> ready = expiryIndex.ready().cache();
+        ready.subscribe();
+        assertFalse(expiryIndex.isCurrent());
+        scheduler.advanceTimeBy(Duration.ofMinutes(15));
+
+        assertTrue(ready.toFuture().isDone());
+        assertTrue(expiryIndex.isCurrent());
+        assertEquals(26, reads.get());
+    }
+
+    @DisplayName("Seed when not the sole writer, expect index seeded but not current")
+    @Test
+    void givenNotSoleWriter_whenSeed_thenNotCurrent() {
+        ReflectionTestUtils.setField(expiryIndex, "soleWriter", false);
+        seed(item("1", 1, 5));
+
+        assertFalse(expiryIndex.isCurrent());
+        assertEquals(1, expiryIndex.getSummary(3).getExpiring());
+    }
+
+    @DisplayName("Write fails partway, expect index not current until re-seeded from the collection")
+    @Test
+    void givenFailedWrite_whenWriteFinished_thenReseeded() {
+        seed(item("1", 1, 5));
+        // the failed write added item 2 to the collection without it being applied
+        when(inventoryRepository.findAll()).thenReturn(Flux.just(item("1", 1, 5), item("2", 1, 3)));
+
+        expiryIndex.writeStarted();
+        expiryIndex.writeFailed();
+        assertFalse(expiryIndex.isCurrent());
+        expiryIndex.writeFinished();
+        scheduler.advanceTimeBy(Duration.ofSeconds(1));
+
+        assertTrue(expiryIndex.isCurrent());
+        assertEquals(2, expiryIndex.getSummary(3).getExpiring());
+    }
+
+    private void seed(InventoryItem... items) {
+        when(inventoryRepository.findAll()).thenReturn(Flux.just(items));
+        expiryIndex.ready().block();
+    }
+
+    private long now() {
+        return scheduler.now(TimeUnit.MILLISECONDS);
+    }
+
+    private InventoryItem item(String itemId, double days, int quantity) {
+        return new InventoryItem(itemId, "Item " + itemId, "123", "Supplier 1", quantity, new Date(now() + (long) (days * DAY_MILLIS)));
+    }
+}
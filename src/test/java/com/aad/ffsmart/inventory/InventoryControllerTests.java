@@ -3,7 +3,13 @@ package com.aad.ffsmart.inventory;
 import com.aad.ffsmart.auth.JWTUtil;
 import com.aad.ffsmart.exception.GlobalErrorAttributes;
 import com.aad.ffsmart.exception.GlobalExceptionHandler;
+import com.aad.ffsmart.inventory.model.ExpirySummary;
+import com.aad.ffsmart.inventory.model.InventoryFeedEvent;
+import com.aad.ffsmart.inventory.model.InventoryFeedEventType;
 import com.aad.ffsmart.inventory.model.InventoryOperation;
+import com.aad.ffsmart.inventory.model.ItemUsage;
+import com.aad.ffsmart.inventory.model.StatsInterval;
+import com.aad.ffsmart.inventory.model.StockDiscrepancy;
 import com.aad.ffsmart.web.ResponseMessage;
 import com.aad.ffsmart.web.WebFluxTestSecurityConfig;
 import org.junit.jupiter.api.BeforeAll;
@@ -13,16 +19,23 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.security.test.web.reactive.server.SecurityMockServerConfigurers;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
+import java.time.LocalDate;
 import java.util.Date;
 import java.util.List;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @WebFluxTest(InventoryController.class)
@@ -55,8 +68,8 @@ class InventoryControllerTests {
         inventoryChange = new InventoryChange("123", "789", List.of(inventoryItem), InventoryOperation.INSERT, new Date());
     }
 
-    @DisplayName("Add inventory, expect status Created")
-    @WithMockUser(roles = "DELIVERY_DRIVER")
+    @DisplayName("Add inventory, expect status Created and change recorded against authenticated user")
+    @WithMockUser(username = "789", roles = "DELIVERY_DRIVER")
     @Test
     void whenAddInventory_thenStatusCreated() {
         when(inventoryService.addInventory(anyList(), any())).thenReturn(Mono.just(inventoryChange));
@@ -72,7 +85,7 @@ class InventoryControllerTests {
                 .jsonPath("$.data.id").isEqualTo("123")
                 .consumeWith(System.out::println);
 
-        verify(inventoryService, times(1)).addInventory(anyList(), any());
+        verify(inventoryService, times(1)).addInventory(anyList(), eq("789"));
     }
 
     @DisplayName("Remove inventory, expect status Ok")
@@ -113,6 +126,45 @@ class InventoryControllerTests {
         verify(inventoryService, times(1)).getAllInventory(anyString(), anyInt(), anyInt(), any(Date.class), any(Date.class));
     }
 
+    @DisplayName("Get all inventory with search, expect text search used")
+    @WithMockUser(roles = "CHEF")
+    @Test
+    void givenSearch_WhenGetAllInventory_thenSearchInventoryCalled() {
+        when(inventoryService.searchInventory(eq("whole milk"), anyString(), anyInt(), anyInt(), any(Date.class), any(Date.class))).thenReturn(Flux.just(inventoryItem));
+
+        webTestClient.get()
+                .uri("/inventory?search=whole milk")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.data[0].itemId").isEqualTo("0")
+                .jsonPath("$.data[0].searchKey").doesNotExist()
+                .consumeWith(System.out::println);
+
+        verify(inventoryService, never()).getAllInventory(anyString(), anyInt(), anyInt(), any(Date.class), any(Date.class));
+    }
+
+    @DisplayName("Get all inventory as NDJSON, expect one item per line")
+    @WithMockUser(roles = "CHEF")
+    @Test
+    void givenNdjsonAccept_WhenGetAllInventory_thenItemsStreamed() {
+        when(inventoryService.getAllInventory(anyString(), anyInt(), anyInt(), any(Date.class), any(Date.class))).thenReturn(Flux.just(inventoryItem, inventoryItem));
+
+        webTestClient.get()
+                .uri("/inventory")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_NDJSON)
+                .returnResult(InventoryItem.class)
+                .getResponseBody()
+                .as(StepVerifier::create)
+                .expectNextCount(2)
+                .verifyComplete();
+
+        verify(inventoryService, times(1)).getAllInventory(anyString(), anyInt(), anyInt(), any(Date.class), any(Date.class));
+    }
+
     @DisplayName("Get inventory by id, expect status Ok")
     @WithMockUser(roles = "CHEF")
     @Test
@@ -154,7 +206,7 @@ class InventoryControllerTests {
     @WithMockUser(roles = "HEAD_CHEF")
     @Test
     void givenInventoryChanges_WhenGetInventoryChangeHistory_thenStatusOk() {
-        when(inventoryService.getInventoryChangeHistory()).thenReturn(Flux.just(inventoryChange));
+        when(inventoryService.getInventoryChangeHistory(any(), any(), any(), any())).thenReturn(Flux.just(inventoryChange));
 
         webTestClient.get()
                 .uri("/inventory/change-history")
@@ -163,7 +215,24 @@ class InventoryControllerTests {
                 .expectBody()
                 .consumeWith(System.out::println);
 
-        verify(inventoryService, times(1)).getInventoryChangeHistory();
+        verify(inventoryService, times(1)).getInventoryChangeHistory(any(), any(), any(), any());
+    }
+
+    @DisplayName("Get inventory change history page with params, expect status Ok")
+    @WithMockUser(roles = "CHEF")
+    @Test
+    void givenParams_WhenGetInventoryChangeHistory_thenStatusOk() {
+        when(inventoryService.getInventoryChangeHistory(any(LocalDate.class), any(LocalDate.class), anyString(), anyInt())).thenReturn(Flux.just(inventoryChange));
+
+        webTestClient.get()
+                .uri("/inventory/change-history?from=2023-01-01&to=2023-02-01&cursor=456&limit=20")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.data[0].id").isEqualTo("123")
+                .consumeWith(System.out::println);
+
+        verify(inventoryService, times(1)).getInventoryChangeHistory(eq(LocalDate.of(2023, 1, 1)), eq(LocalDate.of(2023, 2, 1)), eq("456"), eq(20));
     }
 
     @DisplayName("Get expired items, expect status Ok")
@@ -197,4 +266,108 @@ class InventoryControllerTests {
         verify(inventoryService, times(1)).removeExpiredItems();
     }
 
+    @DisplayName("Stream inventory feed, expect snapshot then deltas as Server-Sent Events until reset")
+    @WithMockUser(roles = "CHEF")
+    @Test
+    void givenFeed_WhenStreamInventory_thenEventsStreamed() {
+        when(inventoryService.streamInventory(eq("ban"), eq(0), eq(100000), any(Date.class), any(Date.class))).thenReturn(Flux.just(
+                new InventoryFeedEvent(InventoryFeedEventType.SNAPSHOT, "1", inventoryItem),
+                new InventoryFeedEvent(InventoryFeedEventType.SNAPSHOT_END, null, null),
+                new InventoryFeedEvent(InventoryFeedEventType.REMOVE, "1", null),
+                new InventoryFeedEvent(InventoryFeedEventType.RESET, null, null)));
+
+        Flux<String> events = webTestClient.get()
+                .uri("/inventory/feed?itemName=ban")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(new ParameterizedTypeReference<ServerSentEvent<InventoryFeedEvent>>() {
+                })
+                .getResponseBody()
+                .map(ServerSentEvent::event);
+
+        StepVerifier.create(events)
+                .expectNext("snapshot", "snapshot-end", "remove", "reset")
+                .verifyComplete();
+    }
+
+    @DisplayName("Get expiry summary, expect status Ok")
+    @WithMockUser(roles = "CHEF")
+    @Test
+    void givenDays_WhenGetExpirySummary_thenStatusOk() {
+        when(inventoryService.getExpirySummary(7)).thenReturn(Mono.just(new ExpirySummary(7, 0L, 2L, new Date())));
+
+        webTestClient.get()
+                .uri("/inventory/expiry?days=7")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .consumeWith(System.out::println);
+
+        verify(inventoryService, times(1)).getExpirySummary(7);
+    }
+
+    @DisplayName("Rebuild supplier stock, expect status No Content")
+    @WithMockUser(roles = "HEAD_CHEF")
+    @Test
+    void whenRebuildSupplierStock_thenStatusNoContent() {
+        when(inventoryService.rebuildSupplierStock()).thenReturn(Mono.empty());
+
+        webTestClient.mutateWith(SecurityMockServerConfigurers.csrf())
+                .post()
+                .uri("/inventory/supplier-stock/rebuild")
+                .exchange()
+                .expectStatus().isNoContent();
+
+        verify(inventoryService, times(1)).rebuildSupplierStock();
+    }
+
+    @DisplayName("Check supplier stock, expect status Ok and discrepancies returned")
+    @WithMockUser(roles = "HEAD_CHEF")
+    @Test
+    void whenCheckSupplierStock_thenStatusOk() {
+        when(inventoryService.checkSupplierStock()).thenReturn(Flux.just(new StockDiscrepancy("123", "2", 3, 7)));
+
+        webTestClient.get()
+                .uri("/inventory/supplier-stock/check")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.data[0].itemId").isEqualTo("2")
+                .jsonPath("$.data[0].projectedQuantity").isEqualTo(7)
+                .consumeWith(System.out::println);
+
+        verify(inventoryService, times(1)).checkSupplierStock();
+    }
+
+    @DisplayName("Get usage stats by week, expect status Ok and usage returned")
+    @WithMockUser(roles = "CHEF")
+    @Test
+    void givenWeekInterval_whenGetUsageStats_thenStatusOk() {
+        when(inventoryService.getUsageStats(eq(LocalDate.of(2023, 1, 2)), isNull(), eq(StatsInterval.WEEK), eq("0")))
+                .thenReturn(Flux.just(new ItemUsage("0", "Bananas 100g", new Date(), 10, 4)));
+
+        webTestClient.get()
+                .uri("/inventory/stats?from=2023-01-02&interval=WEEK&itemId=0")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.data[0].removed").isEqualTo(4);
+
+        verify(inventoryService, times(1)).getUsageStats(eq(LocalDate.of(2023, 1, 2)), isNull(), eq(StatsInterval.WEEK), eq("0"));
+    }
+
+    @DisplayName("Rebuild daily stats with chef role, expect status Forbidden")
+    @WithMockUser(roles = "CHEF")
+    @Test
+    void givenChefRole_whenRebuildDailyStats_thenStatusForbidden() {
+        webTestClient.mutateWith(SecurityMockServerConfigurers.csrf())
+                .post()
+                .uri("/inventory/stats/rebuild")
+                .exchange()
+                .expectStatus().isForbidden();
+
+        verify(inventoryService, never()).rebuildDailyStats();
+    }
+
 }
@@ -0,0 +1,55 @@
+package com.aad.ffsmart.inventory;
+
+import com.aad.ffsmart.db.MongoConfig;
+import com.aad.ffsmart.inventory.model.InventoryOperation;
+import com.aad.ffsmart.inventory.model.StatsInterval;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import reactor.test.StepVerifier;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataMongoTest
+@ContextConfiguration(classes = MongoConfig.class)
+@ExtendWith(SpringExtension.class)
+class InventoryDailyStatsRepositoryTests {
+    @Autowired
+    private InventoryDailyStatsRepository inventoryDailyStatsRepository;
+
+    @Test
+    void givenChanges_whenApplyChange_thenDailyTotalsUpdatedAndAggregated() {
+        Date now = new Date();
+        Date today = InventoryDailyStats.dayOf(now);
+        InventoryItem item = new InventoryItem("test-item", "Test item", "test-supplier", "Test supplier", 5, now);
+        String key = InventoryDailyStats.key("test-item", today);
+        inventoryDailyStatsRepository.deleteById(key).block();
+
+        inventoryDailyStatsRepository.applyChange(new InventoryChange(null, "test-user", List.of(item, item), InventoryOperation.INSERT, now)).block();
+        inventoryDailyStatsRepository.applyChange(new InventoryChange(null, "test-user", List.of(item), InventoryOperation.REMOVE, now)).block();
+        StepVerifier
+                .create(inventoryDailyStatsRepository.findById(key))
+                .assertNext(stats -> {
+                    assertEquals(10, stats.getAdded());
+                    assertEquals(5, stats.getRemoved());
+                    assertEquals(today, stats.getDay());
+                    assertEquals("Test item", stats.getItemName());
+                })
+                .verifyComplete();
+
+        StepVerifier
+                .create(inventoryDailyStatsRepository.aggregateUsage(today, new Date(today.getTime() + TimeUnit.DAYS.toMillis(1)), StatsInterval.MONTH, "test-item"))
+                .assertNext(usage -> {
+                    assertEquals(10, usage.getAdded());
+                    assertEquals(5, usage.getRemoved());
+                })
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,188 @@
+package com.aad.ffsmart.inventory;
+
+import com.aad.ffsmart.inventory.model.InventoryFeedEvent;
+import com.aad.ffsmart.inventory.model.InventoryFeedEventType;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class InventoryFeedTests {
+    private static final Date FROM = new Date(0);
+    private static final Date TO = new Date(Long.MAX_VALUE);
+
+    private final MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext());
+
+    private final InventoryItem bananas = new InventoryItem("1", "0", "Bananas 100g", "123", "Supplier 1", 5, new Date());
+
+    private final InventoryItem apples = new InventoryItem("2", "1", "Apples 6 pack", "123", "Supplier 1", 3, new Date());
+
+    @Mock
+    private InventoryRepository inventoryRepository;
+
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @InjectMocks
+    private InventoryFeed inventoryFeed;
+
+    @BeforeEach
+    void setup() {
+        converter.afterPropertiesSet();
+    }
+
+    @DisplayName("Open feed then change inventory, expect snapshot followed by filtered deltas")
+    @Test
+    void givenChanges_whenFeed_thenSnapshotThenDeltas() {
+        when(inventoryRepository.findAll(any(), any(), any(), any(), any())).thenReturn(Flux.just(bananas));
+        InventoryItem fewerBananas = new InventoryItem("1", "0", "Bananas 100g", "123", "Supplier 1", 2, bananas.getExpiryDate());
+
+        StepVerifier.create(inventoryFeed.feed("ban", 0, 100, FROM, TO))
+                .expectNext(new InventoryFeedEvent(InventoryFeedEventType.SNAPSHOT, "1", bananas))
+                .expectNext(new InventoryFeedEvent(InventoryFeedEventType.SNAPSHOT_END, null, null))
+                .then(() -> inventoryFeed.onChange(change("update", fewerBananas)))
+                .expectNext(new InventoryFeedEvent(InventoryFeedEventType.UPSERT, "1", fewerBananas))
+                .then(() -> inventoryFeed.onChange(change("insert", apples))) // does not match "ban"
+                .expectNext(new InventoryFeedEvent(InventoryFeedEventType.REMOVE, "2", null))
+                .then(() -> inventoryFeed.onChange(deleted("1")))
+                .expectNext(new InventoryFeedEvent(InventoryFeedEventType.REMOVE, "1", null))
+                .thenCancel()
+                .verify();
+    }
+
+    @DisplayName("Open feed with a differently cased and accented prefix, expect matching items still sent")
+    @Test
+    void givenNormalizedPrefix_whenFeed_thenCaseAndAccentIgnored() {
+        when(inventoryRepository.findAll(any(), any(), any(), any(), any())).thenReturn(Flux.empty());
+        InventoryItem creme = new InventoryItem("3", "2", "Crème  Fraîche", "123", "Supplier 1", 1, new Date());
+
+        assertEquals("creme fraiche", creme.getSearchKey());
+        StepVerifier.create(inventoryFeed.feed(" CREME fr", 0, 100, FROM, TO))
+                .expectNext(new InventoryFeedEvent(InventoryFeedEventType.SNAPSHOT_END, null, null))
+                .then(() -> inventoryFeed.onChange(change("insert", creme)))
+                .expectNext(new InventoryFeedEvent(InventoryFeedEventType.UPSERT, "3", creme))
+                .then(() -> inventoryFeed.onChange(change("insert", apples)))
+                .expectNext(new InventoryFeedEvent(InventoryFeedEventType.REMOVE, "2", null))
+                .thenCancel()
+                .verify();
+    }
+
+    @DisplayName("Change inventory while the snapshot is read, expect change sent after the snapshot")
+    @Test
+    void givenChangeDuringSnapshot_whenFeed_thenChangeSentAfterSnapshot() {
+        when(inventoryRepository.findAll(any(), any(), any(), any(), any())).thenReturn(Flux.defer(() -> {
+            inventoryFeed.onChange(change("insert", apples));
+            return Flux.just(bananas);
+        }));
+
+        StepVerifier.create(inventoryFeed.feed("", 0, 100, FROM, TO))
+                .expectNext(new InventoryFeedEvent(InventoryFeedEventType.SNAPSHOT, "1", bananas))
+                .expectNext(new InventoryFeedEvent(InventoryFeedEventType.SNAPSHOT_END, null, null))
+                .expectNext(new InventoryFeedEvent(InventoryFeedEventType.UPSERT, "2", apples))
+                .thenCancel()
+                .verify();
+    }
+
+    @DisplayName("Drop collection or fall behind, expect reset and feed ended")
+    @Test
+    void givenDropOrOverflow_whenFeed_thenResetAndComplete() {
+        when(inventoryRepository.findAll(any(), any(), any(), any(), any())).thenReturn(Flux.empty());
+
+        StepVerifier.create(inventoryFeed.feed("", 0, 100, FROM, TO))
+                .expectNext(new InventoryFeedEvent(InventoryFeedEventType.SNAPSHOT_END, null, null))
+                .then(() -> inventoryFeed.onChange(new ChangeStreamEvent<>(new ChangeStreamDocument<Document>("drop",
+                        null, null, null, null, null, null, null, null, null), InventoryItem.class, converter)))
+                .expectNext(new InventoryFeedEvent(InventoryFeedEventType.RESET, null, null))
+                .verifyComplete();
+
+        // queues are rounded up to a minimum size, more changes than that arrive before the snapshot is sent
+        ReflectionTestUtils.setField(inventoryFeed, "bufferSize", 2);
+        when(inventoryRepository.findAll(any(), any(), any(), any(), any())).thenReturn(Flux.defer(() -> {
+            IntStream.range(0, 100).forEach(i -> inventoryFeed.onChange(change("insert", apples)));
+            return Flux.empty();
+        }));
+
+        StepVerifier.create(inventoryFeed.feed("", 0, 100, FROM, TO))
+                .expectNext(new InventoryFeedEvent(InventoryFeedEventType.SNAPSHOT_END, null, null))
+                .thenConsumeWhile(event -> event.getType() == InventoryFeedEventType.UPSERT)
+                .expectNext(new InventoryFeedEvent(InventoryFeedEventType.RESET, null, null))
+                .verifyComplete();
+    }
+
+    @DisplayName("Change stream closed by an invalidate, expect it reopened, open feeds reset and deltas sent again")
+    @Test
+    void givenChangeStreamClosed_whenWatching_thenReopenedAndDeltasSent() {
+        when(inventoryRepository.findAll(any(), any(), any(), any(), any())).thenReturn(Flux.empty());
+        ReactiveMongoTemplate template = mock(ReactiveMongoTemplate.class, RETURNS_DEEP_STUBS);
+        ChangeStreamEvent<InventoryItem> invalidate = new ChangeStreamEvent<>(new ChangeStreamDocument<Document>("invalidate",
+                null, null, null, null, null, null, null, null, null), InventoryItem.class, converter);
+        Sinks.Many<ChangeStreamEvent<InventoryItem>> reopened = Sinks.many().multicast().directBestEffort();
+        AtomicInteger subscriptions = new AtomicInteger();
+        // the first stream closes after the invalidate event, as Mongo's does
+        when(template.changeStream(InventoryItem.class).withOptions(any()).watchCollection(InventoryItem.class).listen())
+                .thenReturn(Flux.defer(() -> subscriptions.incrementAndGet() == 1 ? Flux.just(invalidate) : reopened.asFlux()));
+        ReflectionTestUtils.setField(inventoryFeed, "mongoTemplate", template);
+        VirtualTimeScheduler scheduler = VirtualTimeScheduler.getOrSet();
+        try {
+            inventoryFeed.watchChanges();
+            assertEquals(1, subscriptions.get());
+
+            // opened while the stream is closed, so reset once it is reopened
+            StepVerifier.create(inventoryFeed.feed("", 0, 100, FROM, TO))
+                    .expectNext(new InventoryFeedEvent(InventoryFeedEventType.SNAPSHOT_END, null, null))
+                    .then(() -> scheduler.advanceTimeBy(Duration.ofSeconds(1)))
+                    .expectNext(new InventoryFeedEvent(InventoryFeedEventType.RESET, null, null))
+                    .verifyComplete();
+            assertEquals(2, subscriptions.get());
+
+            StepVerifier.create(inventoryFeed.feed("", 0, 100, FROM, TO))
+                    .expectNext(new InventoryFeedEvent(InventoryFeedEventType.SNAPSHOT_END, null, null))
+                    .then(() -> reopened.tryEmitNext(change("insert", apples)))
+                    .expectNext(new InventoryFeedEvent(InventoryFeedEventType.UPSERT, "2", apples))
+                    .thenCancel()
+                    .verify();
+        } finally {
+            inventoryFeed.stopWatching();
+            VirtualTimeScheduler.reset();
+        }
+    }
+
+    private ChangeStreamEvent<InventoryItem> change(String operation, InventoryItem item) {
+        Document document = new Document();
+        converter.write(item, document);
+        return new ChangeStreamEvent<>(new ChangeStreamDocument<>(operation, null, null, null, document,
+                new BsonDocument("_id", new BsonString(item.getId())), null, null, null, null), InventoryItem.class, converter);
+    }
+
+    private ChangeStreamEvent<InventoryItem> deleted(String id) {
+        return new ChangeStreamEvent<>(new ChangeStreamDocument<Document>("delete", null, null, null, null,
+                new BsonDocument("_id", new BsonString(id)), null, null, null, null), InventoryItem.class, converter);
+    }
+}
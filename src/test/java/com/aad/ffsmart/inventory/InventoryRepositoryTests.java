@@ -14,6 +14,7 @@ import reactor.test.StepVerifier;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -76,7 +77,7 @@ class InventoryRepositoryTests {
 
     @Test
     void givenExpiredInventory_whenDeleteExpired_thenNoExpiredItemsReturned() {
-        inventoryRepository.deleteExpired().block();
+        inventoryRepository.deleteExpired(new Date()).block();
         Flux<InventoryItem> inventoryItemFlux = inventoryRepository.findExpired();
 
         StepVerifier
@@ -84,4 +85,75 @@ class InventoryRepositoryTests {
                 .expectComplete()
                 .verify(); // check no expired items
     }
+
+    @Test
+    void givenInventory_whenAddAndRemoveQuantities_thenQuantityUpdated() throws ParseException {
+        Date date = formatter.parse("2023-03-14");
+        InventoryItem item = new InventoryItem("0", "Bananas 100g", "63d1b3dae8b8e7e8b68300af", "Supplier 1", 5, date);
+        Integer initialQuantity = inventoryRepository.findByItemIdExpiryDate("0", date)
+                .map(InventoryItem::getQuantity)
+                .defaultIfEmpty(0)
+                .block();
+
+        inventoryRepository.addQuantities(List.of(item)).block();
+        StepVerifier
+                .create(inventoryRepository.findByItemIdExpiryDate("0", date))
+                .assertNext(it -> assertEquals(initialQuantity + 5, it.getQuantity()))
+                .verifyComplete();
+
+        InventoryItem missing = new InventoryItem("0", "Bananas 100g", "63d1b3dae8b8e7e8b68300af", "Supplier 1", 5, new Date(0));
+        StepVerifier
+                .create(inventoryRepository.removeQuantities(List.of(item, missing)))
+                .verifyComplete();
+        StepVerifier
+                .create(inventoryRepository.findByItemIdExpiryDate("0", date))
+                .assertNext(it -> assertEquals(initialQuantity + 5, it.getQuantity()))
+                .verifyComplete();
+
+        StepVerifier
+                .create(inventoryRepository.removeQuantities(List.of(item)))
+                .assertNext(removed -> assertEquals(5, removed.get(0).getQuantity()))
+                .verifyComplete();
+    }
+
+    @Test
+    void givenInventory_whenRemoveMoreThanInStock_thenRemovedQuantityClampedAndDocumentDeleted() throws ParseException {
+        Date date = formatter.parse("2023-03-15");
+        InventoryItem item = new InventoryItem("0", "Bananas 100g", "63d1b3dae8b8e7e8b68300af", "Supplier 1", 5, date);
+        inventoryRepository.deleteAll(inventoryRepository.findByItemIdExpiryDate("0", date)).block();
+        inventoryRepository.addQuantities(List.of(item)).block();
+
+        StepVerifier
+                .create(inventoryRepository.removeQuantities(List.of(new InventoryItem("0", "Bananas 100g", "63d1b3dae8b8e7e8b68300af", "Supplier 1", 8, date))))
+                .assertNext(removed -> {
+                    assertEquals(1, removed.size());
+                    assertEquals(5, removed.get(0).getQuantity());
+                })
+                .verifyComplete();
+        StepVerifier
+                .create(inventoryRepository.findByItemIdExpiryDate("0", date))
+                .verifyComplete();
+    }
+
+    @Test
+    void givenInventory_whenRemoveSameItemTwice_thenLinesShareStock() throws ParseException {
+        Date date = formatter.parse("2023-03-16");
+        InventoryItem item = new InventoryItem("0", "Bananas 100g", "63d1b3dae8b8e7e8b68300af", "Supplier 1", 5, date);
+        inventoryRepository.deleteAll(inventoryRepository.findByItemIdExpiryDate("0", date)).block();
+        inventoryRepository.addQuantities(List.of(item)).block();
+
+        StepVerifier
+                .create(inventoryRepository.removeQuantities(List.of(
+                        new InventoryItem("0", "Bananas 100g", "63d1b3dae8b8e7e8b68300af", "Supplier 1", 3, date),
+                        new InventoryItem("0", "Bananas 100g", "63d1b3dae8b8e7e8b68300af", "Supplier 1", 4, date))))
+                .assertNext(removed -> {
+                    assertEquals(2, removed.size());
+                    assertEquals(3, removed.get(0).getQuantity());
+                    assertEquals(2, removed.get(1).getQuantity());
+                })
+                .verifyComplete();
+        StepVerifier
+                .create(inventoryRepository.findByItemIdExpiryDate("0", date))
+                .verifyComplete();
+    }
 }
@@ -1,6 +1,14 @@
 package com.aad.ffsmart.inventory;
 
+import com.aad.ffsmart.forecast.DemandForecaster;
+import com.aad.ffsmart.inventory.model.ExpirySummary;
+import com.aad.ffsmart.inventory.model.InventoryFeedEvent;
+import com.aad.ffsmart.inventory.model.InventoryFeedEventType;
 import com.aad.ffsmart.inventory.model.InventoryOperation;
+import com.aad.ffsmart.inventory.model.ItemCount;
+import com.aad.ffsmart.inventory.model.ItemUsage;
+import com.aad.ffsmart.inventory.model.StatsInterval;
+import com.aad.ffsmart.inventory.model.StockDiscrepancy;
 import com.aad.ffsmart.inventory.model.SupplierItems;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.BeforeAll;
@@ -10,14 +18,25 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -33,6 +52,21 @@ class InventoryServiceTests {
     @Mock
     private InventoryChangeRepository inventoryChangeRepository;
 
+    @Mock
+    private SupplierStockRepository supplierStockRepository;
+
+    @Mock
+    private InventoryDailyStatsRepository inventoryDailyStatsRepository;
+
+    @Mock
+    private DemandForecaster demandForecaster;
+
+    @Mock
+    private ExpiryIndex expiryIndex;
+
+    @Mock
+    private InventoryFeed inventoryFeed;
+
     @InjectMocks
     private InventoryServiceImpl inventoryService;
 
@@ -47,9 +81,10 @@ class InventoryServiceTests {
     @DisplayName("Add inventory, expect inventory added and inventory change returned")
     @Test
     void givenInventory_whenAddInventory_thenInventoryChangeReturned() {
-        when(inventoryRepository.findByItemIdExpiryDate(anyString(), any(Date.class))).thenReturn(Mono.just(inventoryItem));
-        when(inventoryRepository.save(any(InventoryItem.class))).thenReturn(Mono.just(inventoryItem));
+        when(inventoryRepository.addQuantities(anyList())).thenReturn(Mono.empty());
+        when(supplierStockRepository.applyChanges(anyList())).thenReturn(Mono.empty());
         when(inventoryChangeRepository.save(any(InventoryChange.class))).thenReturn(Mono.just(inventoryChange));
+        when(inventoryDailyStatsRepository.applyChange(inventoryChange)).thenReturn(Mono.empty());
 
         Mono<InventoryChange> inventoryChangeMono = inventoryService.addInventory(List.of(inventoryItem), "123");
 
@@ -61,17 +96,41 @@ class InventoryServiceTests {
                 })
                 .verifyComplete();
 
-        verify(inventoryRepository, times(1)).findByItemIdExpiryDate(anyString(), any(Date.class));
-        verify(inventoryRepository, times(2)).save(any(InventoryItem.class));
+        verify(inventoryRepository, times(1)).addQuantities(anyList());
+        verify(supplierStockRepository, times(1)).applyChanges(List.of(SupplierStock.of(inventoryItem, 5)));
+        verify(inventoryRepository, never()).save(any(InventoryItem.class));
         verify(inventoryChangeRepository, times(1)).save(any(InventoryChange.class));
+        verify(inventoryDailyStatsRepository, times(1)).applyChange(inventoryChange);
+        verify(expiryIndex, times(1)).apply(List.of(inventoryItem), 1);
+        verify(expiryIndex, times(1)).writeStarted();
+        verify(expiryIndex, times(1)).writeFinished();
+    }
+
+    @DisplayName("Add inventory when the bulk write fails, expect error and expiry index told to re-seed")
+    @Test
+    void givenWriteFailure_whenAddInventory_thenExpiryIndexReseeded() {
+        when(inventoryRepository.addQuantities(anyList())).thenReturn(Mono.error(new IllegalStateException("Bulk write failed")));
+        when(supplierStockRepository.applyChanges(anyList())).thenReturn(Mono.empty());
+        when(inventoryChangeRepository.save(any(InventoryChange.class))).thenReturn(Mono.just(inventoryChange));
+
+        StepVerifier
+                .create(inventoryService.addInventory(List.of(inventoryItem), "789"))
+                .expectError(IllegalStateException.class)
+                .verify();
+
+        verify(expiryIndex, never()).apply(anyList(), anyInt());
+        verify(inventoryDailyStatsRepository, never()).applyChange(any(InventoryChange.class));
+        verify(expiryIndex, times(1)).writeFailed();
+        verify(expiryIndex, times(1)).writeFinished();
     }
 
     @DisplayName("Remove inventory, expect inventory removed and inventory change returned")
     @Test
     void givenInventory_whenRemoveInventory_thenInventoryChangeReturned() {
-        when(inventoryRepository.findByItemIdExpiryDate(anyString(), any(Date.class))).thenReturn(Mono.just(inventoryItem));
-        when(inventoryRepository.deleteById((String) isNull())).thenReturn(Mono.empty());
+        when(inventoryRepository.removeQuantities(anyList())).thenReturn(Mono.just(List.of(inventoryItem)));
+        when(supplierStockRepository.applyChanges(anyList())).thenReturn(Mono.empty());
         when(inventoryChangeRepository.save(any(InventoryChange.class))).thenReturn(Mono.just(inventoryChangeRemove));
+        when(inventoryDailyStatsRepository.applyChange(inventoryChangeRemove)).thenReturn(Mono.empty());
 
         Mono<InventoryChange> inventoryChangeMono = inventoryService.removeInventory(List.of(inventoryItem), "789");
 
@@ -83,8 +142,62 @@ class InventoryServiceTests {
                 })
                 .verifyComplete();
 
-        verify(inventoryRepository, times(1)).findByItemIdExpiryDate(anyString(), any(Date.class));
+        verify(inventoryRepository, times(1)).removeQuantities(anyList());
+        verify(supplierStockRepository, times(1)).applyChanges(List.of(SupplierStock.of(inventoryItem, -5)));
         verify(inventoryChangeRepository, times(1)).save(any(InventoryChange.class));
+        verify(inventoryDailyStatsRepository, times(1)).applyChange(inventoryChangeRemove);
+        verify(demandForecaster, times(1)).record(inventoryChangeRemove);
+        verify(expiryIndex, times(1)).apply(List.of(inventoryItem), -1);
+    }
+
+    @DisplayName("Remove inventory where one item does not exist, expect not found error and nothing written")
+    @Test
+    void givenMissingInventory_whenRemoveInventory_thenErrorBeforeWrite() {
+        when(inventoryRepository.removeQuantities(anyList())).thenReturn(Mono.empty());
+
+        Mono<InventoryChange> inventoryChangeMono = inventoryService.removeInventory(List.of(inventoryItem, updatedInventoryItem), "789");
+
+        StepVerifier
+                .create(inventoryChangeMono)
+                .expectErrorSatisfies(error -> assertEquals(HttpStatus.NOT_FOUND, ((ResponseStatusException) error).getStatusCode()))
+                .verify();
+
+        verifyNoInteractions(supplierStockRepository, inventoryChangeRepository);
+        verify(expiryIndex, never()).apply(anyList(), anyInt());
+    }
+
+    @DisplayName("Remove inventory deleted concurrently after the read, expect change still recorded")
+    @Test
+    void givenInventoryDeletedDuringRemove_whenRemoveInventory_thenChangeRecorded() {
+        when(inventoryRepository.removeQuantities(anyList())).thenReturn(Mono.just(List.of()));
+        when(supplierStockRepository.applyChanges(anyList())).thenReturn(Mono.empty());
+        when(inventoryChangeRepository.save(any(InventoryChange.class))).thenReturn(Mono.just(inventoryChangeRemove));
+        when(inventoryDailyStatsRepository.applyChange(inventoryChangeRemove)).thenReturn(Mono.empty());
+
+        StepVerifier
+                .create(inventoryService.removeInventory(List.of(inventoryItem), "789"))
+                .expectNext(inventoryChangeRemove)
+                .verifyComplete();
+
+        verify(inventoryChangeRepository, times(1)).save(any(InventoryChange.class));
+    }
+
+    @DisplayName("Remove more inventory than is in stock, expect projection, index and change given the quantity actually removed")
+    @Test
+    void givenOverRemoval_whenRemoveInventory_thenRemovedQuantityApplied() {
+        InventoryItem requested = new InventoryItem("0", "Bananas 100g", "63d1b3dae8b8e7e8b68300af", "Supplier 1", 8, inventoryItem.getExpiryDate());
+        when(inventoryRepository.removeQuantities(List.of(requested))).thenReturn(Mono.just(List.of(inventoryItem))); // only 5 in stock
+        when(supplierStockRepository.applyChanges(anyList())).thenReturn(Mono.empty());
+        when(inventoryChangeRepository.save(any(InventoryChange.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(inventoryDailyStatsRepository.applyChange(any(InventoryChange.class))).thenReturn(Mono.empty());
+
+        StepVerifier
+                .create(inventoryService.removeInventory(List.of(requested), "789"))
+                .assertNext(change -> assertEquals(List.of(inventoryItem), change.getItems()))
+                .verifyComplete();
+
+        verify(supplierStockRepository, times(1)).applyChanges(List.of(SupplierStock.of(inventoryItem, -5)));
+        verify(expiryIndex, times(1)).apply(List.of(inventoryItem), -1);
     }
 
     @DisplayName("Get all inventory, expect inventory returned")
@@ -102,6 +215,38 @@ class InventoryServiceTests {
         verify(inventoryRepository, times(1)).findAll(any(), any(), any(), any(), any());
     }
 
+    @DisplayName("Search inventory by word, expect text search used, falling back to name prefix when blank")
+    @Test
+    void givenSearch_whenSearchInventory_thenTextSearchUsed() {
+        when(inventoryRepository.searchInventory(eq("milk"), any(), any(), any(), any(), any())).thenReturn(Flux.just(inventoryItem));
+        when(inventoryRepository.findAll(any(), any(), any(), any(), any())).thenReturn(Flux.empty());
+
+        StepVerifier
+                .create(inventoryService.searchInventory("milk", "", 0, 100, null, null))
+                .expectNext(inventoryItem)
+                .verifyComplete();
+        StepVerifier
+                .create(inventoryService.searchInventory(" ", "", 0, 100, null, null))
+                .verifyComplete();
+
+        verify(inventoryRepository, times(1)).searchInventory(eq("milk"), any(), any(), any(), any(), any());
+        verify(inventoryRepository, times(1)).findAll(any(), any(), any(), any(), any());
+    }
+
+    @DisplayName("Stream inventory, expect live feed returned with the same filters")
+    @Test
+    void givenFilters_whenStreamInventory_thenFeedReturned() {
+        InventoryFeedEvent snapshotEnd = new InventoryFeedEvent(InventoryFeedEventType.SNAPSHOT_END, null, null);
+        Date from = new Date(0);
+        Date to = new Date();
+        when(inventoryFeed.feed("ban", 1, 10, from, to)).thenReturn(Flux.just(snapshotEnd));
+
+        StepVerifier
+                .create(inventoryService.streamInventory("ban", 1, 10, from, to))
+                .expectNext(snapshotEnd)
+                .verifyComplete();
+    }
+
     @DisplayName("Get inventory by id, expect inventory returned")
     @Test
     void givenInventory_whenGetInventoryById_thenSuccess() {
@@ -121,6 +266,7 @@ class InventoryServiceTests {
     void givenInventory_whenUpdateInventoryById_thenSuccess() {
         when(inventoryRepository.findById(anyString())).thenReturn(Mono.just(inventoryItem));
         when(inventoryRepository.save(any(InventoryItem.class))).thenReturn(Mono.just(updatedInventoryItem));
+        when(supplierStockRepository.applyChanges(anyList())).thenReturn(Mono.empty());
         Mono<InventoryItem> inventoryMono = inventoryService.updateInventoryById("123", updatedInventoryItem);
 
         StepVerifier
@@ -130,20 +276,78 @@ class InventoryServiceTests {
 
         verify(inventoryRepository, times(1)).findById(anyString());
         verify(inventoryRepository, times(1)).save(any(InventoryItem.class));
+        verify(supplierStockRepository, times(1)).applyChanges(List.of(SupplierStock.of(inventoryItem, -5), SupplierStock.of(updatedInventoryItem, 20)));
+        verify(expiryIndex, times(1)).apply(List.of(inventoryItem), -1);
+        verify(expiryIndex, times(1)).apply(List.of(updatedInventoryItem), 1);
     }
 
-    @DisplayName("Get inventory change history, expect successful")
+    @DisplayName("Get inventory change history, expect first page returned")
     @Test
     void givenInventoryChange_whenGetInventoryChangeHistory_thenSuccess() {
-        when(inventoryChangeRepository.findAll()).thenReturn(Flux.just(inventoryChange));
-        Flux<InventoryChange> inventoryChangeFlux = inventoryService.getInventoryChangeHistory();
+        when(inventoryChangeRepository.findByDateRange(any(Date.class), any(Date.class), any(Pageable.class))).thenReturn(Flux.just(inventoryChange));
+        Flux<InventoryChange> inventoryChangeFlux = inventoryService.getInventoryChangeHistory(null, null, null, null);
 
         StepVerifier
                 .create(inventoryChangeFlux)
                 .consumeNextWith(change -> assertEquals(inventoryChange, change))
                 .verifyComplete();
 
-        verify(inventoryChangeRepository, times(1)).findAll();
+        verify(inventoryChangeRepository, times(1)).findByDateRange(any(Date.class), any(Date.class), any(Pageable.class));
+        verify(inventoryChangeRepository, never()).findAll();
+    }
+
+    @DisplayName("Get inventory change history for a day range, expect whole UTC days with both ends included")
+    @Test
+    void givenDayRange_whenGetInventoryChangeHistory_thenToDayIncluded() {
+        when(inventoryChangeRepository.findByDateRange(any(Date.class), any(Date.class), any(Pageable.class))).thenReturn(Flux.just(inventoryChange));
+
+        StepVerifier
+                .create(inventoryService.getInventoryChangeHistory(LocalDate.of(2023, 1, 2), LocalDate.of(2023, 1, 2), null, null))
+                .expectNext(inventoryChange)
+                .verifyComplete();
+
+        verify(inventoryChangeRepository, times(1)).findByDateRange(eq(Date.from(Instant.parse("2023-01-02T00:00:00Z"))),
+                eq(Date.from(Instant.parse("2023-01-03T00:00:00Z"))), any(Pageable.class));
+    }
+
+    @DisplayName("Get inventory change history with from after to, expect bad request")
+    @Test
+    void givenFromAfterTo_whenGetInventoryChangeHistory_thenError() {
+        StepVerifier
+                .create(inventoryService.getInventoryChangeHistory(LocalDate.of(2023, 1, 3), LocalDate.of(2023, 1, 2), null, null))
+                .expectError(ResponseStatusException.class)
+                .verify();
+
+        verify(inventoryChangeRepository, never()).findByDateRange(any(Date.class), any(Date.class), any(Pageable.class));
+    }
+
+    @DisplayName("Get inventory change history with cursor, expect next page returned")
+    @Test
+    void givenCursor_whenGetInventoryChangeHistory_thenNextPageReturned() {
+        when(inventoryChangeRepository.findById(anyString())).thenReturn(Mono.just(inventoryChange));
+        when(inventoryChangeRepository.findByDateRangeBefore(any(Date.class), any(Date.class), any(Date.class), anyString(), any(Pageable.class)))
+                .thenReturn(Flux.just(inventoryChangeRemove));
+        Flux<InventoryChange> inventoryChangeFlux = inventoryService.getInventoryChangeHistory(null, null, "123", 10);
+
+        StepVerifier
+                .create(inventoryChangeFlux)
+                .consumeNextWith(change -> assertEquals(inventoryChangeRemove, change))
+                .verifyComplete();
+
+        verify(inventoryChangeRepository, times(1)).findByDateRangeBefore(any(Date.class), any(Date.class),
+                eq(inventoryChange.getDate()), eq("123"), eq(PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "date", "id"))));
+    }
+
+    @DisplayName("Get inventory change history with unknown cursor, expect error")
+    @Test
+    void givenInvalidCursor_whenGetInventoryChangeHistory_thenError() {
+        when(inventoryChangeRepository.findById(anyString())).thenReturn(Mono.empty());
+        Flux<InventoryChange> inventoryChangeFlux = inventoryService.getInventoryChangeHistory(null, null, "123", null);
+
+        StepVerifier
+                .create(inventoryChangeFlux)
+                .expectError()
+                .verify();
     }
 
     @DisplayName("Get inventory change by id, expect successful")
@@ -163,6 +367,8 @@ class InventoryServiceTests {
     @DisplayName("Get expired items, expect expired items returned")
     @Test
     void givenExpiredItems_whenGetExpiredItems_thenSuccessful() {
+        when(expiryIndex.isCurrent()).thenReturn(true);
+        when(expiryIndex.hasExpired(any(Date.class))).thenReturn(true);
         when(inventoryRepository.findExpired()).thenReturn(Flux.just(inventoryItem));
         Flux<InventoryItem> expiredItemFlux = inventoryService.getExpiredItems();
 
@@ -174,18 +380,105 @@ class InventoryServiceTests {
         verify(inventoryRepository, times(1)).findExpired();
     }
 
+    @DisplayName("Get expired items when index holds nothing expired, expect no items and collection not queried")
+    @Test
+    void givenNothingExpired_whenGetExpiredItems_thenCollectionNotQueried() {
+        when(expiryIndex.isCurrent()).thenReturn(true);
+        when(expiryIndex.hasExpired(any(Date.class))).thenReturn(false);
+
+        StepVerifier
+                .create(inventoryService.getExpiredItems())
+                .verifyComplete();
+
+        verify(inventoryRepository, never()).findExpired();
+    }
+
+    @DisplayName("Get expired items when the index is not current, expect collection queried")
+    @Test
+    void givenIndexNotCurrent_whenGetExpiredItems_thenCollectionQueried() {
+        when(expiryIndex.isCurrent()).thenReturn(false);
+        when(inventoryRepository.findExpired()).thenReturn(Flux.just(inventoryItem));
+
+        StepVerifier
+                .create(inventoryService.getExpiredItems())
+                .expectNext(inventoryItem)
+                .verifyComplete();
+
+        verify(expiryIndex, never()).hasExpired(any(Date.class));
+    }
+
     @DisplayName("Remove expired items, expect successful")
     @Test
     void givenExpiredItems_whenRemoveExpiredItems_thenSuccessful() {
-        inventoryService.removeExpiredItems();
-        verify(inventoryRepository, times(1)).deleteExpired();
+        when(expiryIndex.isCurrent()).thenReturn(true);
+        when(expiryIndex.hasExpired(any(Date.class))).thenReturn(true);
+        SupplierStock expired = SupplierStock.of(inventoryItem, 5);
+        when(inventoryRepository.sumExpired(any(Date.class))).thenReturn(Flux.just(expired));
+        when(inventoryRepository.deleteExpired(any(Date.class))).thenReturn(Mono.empty());
+        when(supplierStockRepository.applyChanges(anyList())).thenReturn(Mono.empty());
+
+        StepVerifier
+                .create(inventoryService.removeExpiredItems())
+                .verifyComplete();
+
+        verify(inventoryRepository, times(1)).deleteExpired(any(Date.class));
+        verify(supplierStockRepository, times(1)).applyChanges(List.of(SupplierStock.of(inventoryItem, -5)));
+        verify(expiryIndex, times(1)).removeExpired(any(Date.class));
+    }
+
+    @DisplayName("Remove expired items when index holds nothing expired, expect nothing deleted")
+    @Test
+    void givenNothingExpired_whenRemoveExpiredItems_thenNothingDeleted() {
+        when(expiryIndex.isCurrent()).thenReturn(true);
+        when(expiryIndex.hasExpired(any(Date.class))).thenReturn(false);
+
+        StepVerifier
+                .create(inventoryService.removeExpiredItems())
+                .verifyComplete();
+
+        verify(inventoryRepository, never()).sumExpired(any(Date.class));
+        verify(inventoryRepository, never()).deleteExpired(any(Date.class));
+    }
+
+    @DisplayName("Get expiry summary when the index is not current, expect summary from the collection")
+    @Test
+    void givenIndexNotCurrent_whenGetExpirySummary_thenSummaryQueried() {
+        when(expiryIndex.isCurrent()).thenReturn(false);
+        when(inventoryRepository.countExpired(any(Date.class))).thenReturn(Mono.just(1L));
+        when(inventoryRepository.countExpiringBetween(any(Date.class), any(Date.class))).thenReturn(Mono.just(2L));
+        when(inventoryRepository.findFirstByExpiryDateGreaterThanEqualOrderByExpiryDateAsc(any(Date.class))).thenReturn(Mono.empty());
+
+        StepVerifier
+                .create(inventoryService.getExpirySummary(7))
+                .expectNext(new ExpirySummary(7, 1L, 2L, null))
+                .verifyComplete();
+
+        verify(expiryIndex, never()).getSummary(anyInt());
+    }
+
+    @DisplayName("Get expiry summary with no days, expect summary for 3 days from the expiry index")
+    @Test
+    void givenNoDays_whenGetExpirySummary_thenSummaryFor3Days() {
+        ExpirySummary summary = new ExpirySummary(3, 1L, 2L, new Date());
+        when(expiryIndex.isCurrent()).thenReturn(true);
+        when(expiryIndex.getSummary(3)).thenReturn(summary);
+
+        StepVerifier
+                .create(inventoryService.getExpirySummary(null))
+                .expectNext(summary)
+                .verifyComplete();
+
+        StepVerifier
+                .create(inventoryService.getExpirySummary(-1))
+                .expectErrorMatches(error -> error instanceof ResponseStatusException e && e.getStatusCode() == HttpStatus.BAD_REQUEST)
+                .verify();
     }
 
     @DisplayName("Aggregate inventory for order generation, expect grouped inventory returned")
     @Test
     void givenInventory_whenAggregateInventory_thenSuccessful() {
         SupplierItems aggregation = new SupplierItems("123", "ABC", List.of());
-        when(inventoryRepository.aggregateInventory()).thenReturn(Flux.just(aggregation));
+        when(supplierStockRepository.aggregateBySupplier()).thenReturn(Flux.just(aggregation));
 
         Flux<SupplierItems> supplierItemsFlux = inventoryService.aggregateInventory();
 
@@ -197,7 +490,71 @@ class InventoryServiceTests {
                 })
                 .verifyComplete();
 
-        verify(inventoryRepository, times(1)).aggregateInventory();
+        verify(supplierStockRepository, times(1)).aggregateBySupplier();
+        verify(inventoryRepository, never()).aggregateInventory();
+    }
+
+    @DisplayName("Check supplier stock, expect discrepancies between projection and live aggregation returned")
+    @Test
+    void givenDriftedSupplierStock_whenCheckSupplierStock_thenDiscrepanciesReturned() {
+        ItemCount bananas = new ItemCount();
+        bananas.setItemId("0");
+        bananas.setItemName("Bananas 100g");
+        bananas.setQuantity(5);
+        ItemCount lamb = new ItemCount();
+        lamb.setItemId("2");
+        lamb.setItemName("Lamb 500g");
+        lamb.setQuantity(3);
+        when(inventoryRepository.aggregateInventory()).thenReturn(Flux.just(new SupplierItems("123", "ABC", List.of(bananas, lamb))));
+        when(supplierStockRepository.findAll()).thenReturn(Flux.just(
+                new SupplierStock("123:0", "123", "ABC", "0", "Bananas 100g", 5),
+                new SupplierStock("123:2", "123", "ABC", "2", "Lamb 500g", 7),
+                new SupplierStock("123:6", "123", "ABC", "6", "Milk 2L", 1)));
+
+        StepVerifier
+                .create(inventoryService.checkSupplierStock())
+                .expectNext(new StockDiscrepancy("123", "2", 3, 7))
+                .expectNext(new StockDiscrepancy("123", "6", 0, 1))
+                .verifyComplete();
     }
 
+    @DisplayName("Get usage stats with no dates, expect last 4 weeks up to and including today")
+    @Test
+    void givenNoDates_whenGetUsageStats_thenLast4WeeksAggregated() {
+        ItemUsage usage = new ItemUsage("0", "Bananas 100g", new Date(), 10, 4);
+        when(inventoryDailyStatsRepository.aggregateUsage(any(Date.class), any(Date.class), eq(StatsInterval.WEEK), isNull())).thenReturn(Flux.just(usage));
+
+        StepVerifier
+                .create(inventoryService.getUsageStats(null, null, StatsInterval.WEEK, null))
+                .expectNext(usage)
+                .verifyComplete();
+
+        Date tomorrow = new Date(InventoryDailyStats.dayOf(new Date()).getTime() + TimeUnit.DAYS.toMillis(1));
+        verify(inventoryDailyStatsRepository, times(1)).aggregateUsage(
+                eq(new Date(tomorrow.getTime() - TimeUnit.DAYS.toMillis(28))), eq(tomorrow), eq(StatsInterval.WEEK), isNull());
+    }
+
+    @DisplayName("Get usage stats for one day, expect that whole UTC day aggregated")
+    @Test
+    void givenSameFromAndTo_whenGetUsageStats_thenWholeDayAggregated() {
+        when(inventoryDailyStatsRepository.aggregateUsage(any(Date.class), any(Date.class), eq(StatsInterval.DAY), eq("0"))).thenReturn(Flux.empty());
+
+        StepVerifier
+                .create(inventoryService.getUsageStats(LocalDate.of(2023, 1, 2), LocalDate.of(2023, 1, 2), StatsInterval.DAY, "0"))
+                .verifyComplete();
+
+        verify(inventoryDailyStatsRepository, times(1)).aggregateUsage(
+                Date.from(Instant.parse("2023-01-02T00:00:00Z")), Date.from(Instant.parse("2023-01-03T00:00:00Z")), StatsInterval.DAY, "0");
+    }
+
+    @DisplayName("Get usage stats with from after to, expect bad request error")
+    @Test
+    void givenFromAfterTo_whenGetUsageStats_thenError() {
+        StepVerifier
+                .create(inventoryService.getUsageStats(LocalDate.of(2023, 1, 3), LocalDate.of(2023, 1, 2), StatsInterval.DAY, "0"))
+                .expectErrorMatches(error -> error instanceof ResponseStatusException ex && ex.getStatusCode() == HttpStatus.BAD_REQUEST)
+                .verify();
+
+        verify(inventoryDailyStatsRepository, never()).aggregateUsage(any(), any(), any(), any());
+    }
 }
@@ -0,0 +1,44 @@
+package com.aad.ffsmart.inventory;
+
+import com.aad.ffsmart.db.MongoConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import reactor.test.StepVerifier;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataMongoTest
+@ContextConfiguration(classes = MongoConfig.class)
+@ExtendWith(SpringExtension.class)
+class SupplierStockRepositoryTests {
+    @Autowired
+    private SupplierStockRepository supplierStockRepository;
+
+    @Test
+    void givenStockChanges_whenApplyChanges_thenTotalsUpdatedAndEmptiedStockRemoved() {
+        InventoryItem item = new InventoryItem("test-item", "Test item", "test-supplier", "Test supplier", 5, new Date());
+        String key = SupplierStock.key("test-supplier", "test-item");
+
+        supplierStockRepository.applyChanges(List.of(SupplierStock.of(item, 5), SupplierStock.of(item, 3))).block();
+        StepVerifier
+                .create(supplierStockRepository.findById(key))
+                .assertNext(stock -> {
+                    assertEquals(8, stock.getQuantity());
+                    assertEquals("test-supplier", stock.getSupplierId());
+                    assertEquals("Test item", stock.getItemName());
+                })
+                .verifyComplete();
+
+        supplierStockRepository.applyChanges(List.of(SupplierStock.of(item, -8))).block();
+        StepVerifier
+                .create(supplierStockRepository.findById(key))
+                .verifyComplete();
+    }
+}
@@ -11,6 +11,7 @@ import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
 import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.security.test.web.reactive.server.SecurityMockServerConfigurers;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -47,4 +48,20 @@ class ItemControllerTests {
         verify(itemService, times(1)).getAllItems(isNull(), isNull());
     }
 
+    @DisplayName("Reload item catalog, expect status Ok and item count returned")
+    @WithMockUser(roles = "HEAD_CHEF")
+    @Test
+    void whenReloadCatalog_thenStatusOk() {
+        when(itemService.reloadCatalog()).thenReturn(Mono.just(7));
+
+        webTestClient.mutateWith(SecurityMockServerConfigurers.csrf())
+                .post()
+                .uri("/items/reload")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.data").isEqualTo(7);
+        verify(itemService, times(1)).reloadCatalog();
+    }
+
 }
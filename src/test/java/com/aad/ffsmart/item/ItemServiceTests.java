@@ -1,18 +1,27 @@
 package com.aad.ffsmart.item;
 
+import com.aad.ffsmart.supplier.Supplier;
+import com.aad.ffsmart.supplier.SupplierRepository;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
+import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import reactor.core.publisher.Flux;
 import reactor.test.StepVerifier;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class ItemServiceTests {
+    @Mock
+    private SupplierRepository supplierRepository;
+
     @InjectMocks
     private ItemServiceImpl itemService;
 
@@ -31,4 +40,54 @@ class ItemServiceTests {
                 .verifyComplete();
     }
 
-}
\ No newline at end of file
+    @DisplayName("Get items by name prefix in a different case, expect matching items returned")
+    @Test
+    void givenNamePrefix_whenGetAllItems_thenMatchingItemsReturned() {
+        StepVerifier
+                .create(itemService.getAllItems("b", null).map(Item::getName))
+                .expectNext("Bananas 100g", "Broccoli 200g")
+                .verifyComplete();
+    }
+
+    @DisplayName("Get items by name prefix and supplier, expect only that supplier's matching items returned")
+    @Test
+    void givenNamePrefixAndSupplierId_whenGetAllItems_thenSupplierItemsReturned() {
+        StepVerifier
+                .create(itemService.getAllItems("B", "63d1b48ce8b8e7e8b68300b1").map(Item::getName))
+                .expectNext("Broccoli 200g")
+                .verifyComplete();
+    }
+
+    @DisplayName("Get items for unknown supplier or unmatched name, expect no items returned")
+    @Test
+    void givenNoMatches_whenGetAllItems_thenEmpty() {
+        StepVerifier.create(itemService.getAllItems(null, "unknown")).verifyComplete();
+        StepVerifier.create(itemService.getAllItems("zz", null)).verifyComplete();
+    }
+
+    @DisplayName("Reload catalog from suppliers, expect supplier items served afterwards")
+    @Test
+    void givenSuppliers_whenReloadCatalog_thenSupplierItemsReturned() {
+        Supplier supplier = new Supplier("s1", "Supplier A", List.of(new Item("10", "Butter 250g", null, null), new Item("11", "Bread", null, null)), "a@b.com", "0123", null);
+        when(supplierRepository.findAll()).thenReturn(Flux.just(supplier));
+
+        StepVerifier.create(itemService.reloadCatalog()).expectNext(2).verifyComplete();
+        StepVerifier
+                .create(itemService.getAllItems("bu", "s1"))
+                .consumeNextWith(item -> {
+                    assertEquals("10", item.getId());
+                    assertEquals("s1", item.getSupplierId());
+                    assertEquals("Supplier A", item.getSupplierName());
+                })
+                .verifyComplete();
+    }
+
+    @DisplayName("Reload catalog with no supplier items, expect current catalog kept")
+    @Test
+    void givenNoSupplierItems_whenReloadCatalog_thenCatalogKept() {
+        when(supplierRepository.findAll()).thenReturn(Flux.empty());
+
+        StepVerifier.create(itemService.reloadCatalog()).expectNext(7).verifyComplete();
+    }
+
+}
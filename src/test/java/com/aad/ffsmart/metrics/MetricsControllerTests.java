@@ -0,0 +1,58 @@
+package com.aad.ffsmart.metrics;
+
+import com.aad.ffsmart.exception.GlobalErrorAttributes;
+import com.aad.ffsmart.web.WebFluxTestSecurityConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import static org.mockito.Mockito.*;
+
+@WebFluxTest(MetricsController.class)
+@Import(WebFluxTestSecurityConfig.class)
+class MetricsControllerTests {
+    private static final String SCRAPE = "# TYPE inventory_items gauge\ninventory_items{application=\"ffsmart\",} 12.0\n";
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @MockBean
+    private PrometheusMeterRegistry prometheusMeterRegistry;
+
+    @MockBean
+    private GlobalErrorAttributes globalErrorAttributes;
+
+    @DisplayName("Scrape metrics as head chef, expect Prometheus text format")
+    @WithMockUser(roles = "HEAD_CHEF")
+    @Test
+    void givenHeadChef_whenScrape_thenPrometheusText() {
+        when(prometheusMeterRegistry.scrape()).thenReturn(SCRAPE);
+
+        webTestClient.get()
+                .uri("/metrics")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.TEXT_PLAIN)
+                .expectBody(String.class).isEqualTo(SCRAPE)
+                .consumeWith(System.out::println);
+        verify(prometheusMeterRegistry, times(1)).scrape();
+    }
+
+    @DisplayName("Scrape metrics as chef, expect status Forbidden")
+    @WithMockUser(roles = "CHEF")
+    @Test
+    void givenChef_whenScrape_thenStatusForbidden() {
+        webTestClient.get()
+                .uri("/metrics")
+                .exchange()
+                .expectStatus().isForbidden();
+        verify(prometheusMeterRegistry, never()).scrape();
+    }
+}
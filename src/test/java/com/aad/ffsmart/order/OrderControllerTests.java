@@ -3,6 +3,8 @@ package com.aad.ffsmart.order;
 import com.aad.ffsmart.auth.JWTUtil;
 import com.aad.ffsmart.exception.GlobalErrorAttributes;
 import com.aad.ffsmart.exception.GlobalExceptionHandler;
+import com.aad.ffsmart.order.model.OrderBatchRequest;
+import com.aad.ffsmart.order.model.OrderTransitionResult;
 import com.aad.ffsmart.web.WebFluxTestSecurityConfig;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.DisplayName;
@@ -186,4 +188,27 @@ class OrderControllerTests {
         verify(orderService, times(1)).rejectOrder(anyString());
     }
 
+    @DisplayName("Dispatch orders in batch, expect status Ok and result per order")
+    @WithMockUser(username = "789", roles = "DELIVERY_DRIVER")
+    @Test
+    void givenApprovedOrders_whenMarkOrdersInTransit_thenStatusOk() {
+        OrderBatchRequest request = new OrderBatchRequest();
+        request.setOrderIds(List.of("1", "2"));
+        when(orderService.dispatchOrders(List.of("1", "2"), "789")).thenReturn(Flux.just(
+                new OrderTransitionResult("1", true, OrderStatus.IN_TRANSIT, null),
+                new OrderTransitionResult("2", false, OrderStatus.DELIVERED, "Order is DELIVERED, expected APPROVED")));
+
+        webTestClient.mutateWith(SecurityMockServerConfigurers.csrf())
+                .put()
+                .uri("/orders/in-transit")
+                .bodyValue(request)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.data[0].success").isEqualTo(true)
+                .jsonPath("$.data[1].success").isEqualTo(false);
+
+        verify(orderService, times(1)).dispatchOrders(List.of("1", "2"), "789");
+    }
+
 }
@@ -4,12 +4,17 @@ import com.aad.ffsmart.db.MongoConfig;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.bson.Document;
 import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import reactor.core.publisher.Flux;
 import reactor.test.StepVerifier;
 
+import java.util.Date;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 @DataMongoTest
@@ -19,6 +24,9 @@ class OrderRepositoryTests {
     @Autowired
     private OrderRepository orderRepository;
 
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
     @Test
     void givenOrders_whenFindApprovedOrders_thenApprovedOrdersReturned() {
         Flux<Order> orderFlux = orderRepository.findApproved();
@@ -57,4 +65,23 @@ class OrderRepositoryTests {
                     assertEquals(driverId, order.getDriverId());
                 });
     }
+
+    @Test
+    void givenReadyOrder_whenTransitionStatusTwice_thenOnlyFirstMovesAndNoTransitionIdLeft() {
+        Order order = orderRepository.save(new Order("63d1b3dae8b8e7e8b68300af", "Supplier 1", OrderStatus.READY, new Date(), new Date(), List.of())).block();
+
+        StepVerifier
+                .create(orderRepository.transitionStatus(List.of(order.getId()), OrderStatus.READY, OrderStatus.APPROVED, null))
+                .assertNext(approved -> assertEquals(OrderStatus.APPROVED, approved.getStatus()))
+                .verifyComplete();
+        StepVerifier
+                .create(orderRepository.transitionStatus(List.of(order.getId()), OrderStatus.READY, OrderStatus.APPROVED, null))
+                .verifyComplete();
+        StepVerifier
+                .create(mongoTemplate.findById(order.getId(), Document.class, "Orders"))
+                .assertNext(document -> assertFalse(document.containsKey("transitionId")))
+                .verifyComplete();
+
+        orderRepository.delete(order).block();
+    }
 }
@@ -1,15 +1,29 @@
 package com.aad.ffsmart.order;
 
 import com.aad.ffsmart.alert.Alert;
+import com.aad.ffsmart.alert.AlertOutbox;
+import com.aad.ffsmart.forecast.DemandForecaster;
+import com.aad.ffsmart.forecast.Forecaster;
+import com.aad.ffsmart.forecast.model.ForecastModel;
+import com.aad.ffsmart.forecast.model.ForecastSettings;
 import com.aad.ffsmart.inventory.InventoryService;
+import com.aad.ffsmart.inventory.model.ItemCount;
+import com.aad.ffsmart.inventory.model.SupplierItems;
+import com.aad.ffsmart.item.Item;
+import com.aad.ffsmart.order.model.OrderTransitionResult;
+import com.aad.ffsmart.supplier.Supplier;
+import com.aad.ffsmart.supplier.SupplierService;
 import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
@@ -18,8 +32,13 @@ import java.util.Date;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -33,7 +52,11 @@ class OrderServiceTests {
     @Mock
     private InventoryService inventoryService;
     @Mock
-    private RabbitTemplate rabbitTemplate;
+    private AlertOutbox alertOutbox;
+    @Mock
+    private SupplierService supplierService;
+    @Mock
+    private DemandForecaster demandForecaster;
     @InjectMocks
     private OrderServiceImpl orderService;
 
@@ -73,6 +96,12 @@ class OrderServiceTests {
         );
     }
 
+    @BeforeEach
+    void setupAlertOutbox() {
+        lenient().when(alertOutbox.add(any(Alert.class))).thenReturn(Mono.empty());
+        lenient().when(alertOutbox.addAll(anyList())).thenReturn(Mono.empty());
+    }
+
     @DisplayName("Create order, expect order created and returned")
     @Test
     void givenUser_whenCreateOrder_thenOrderCreated() {
@@ -84,14 +113,70 @@ class OrderServiceTests {
                 .assertNext(ordr -> assertEquals(order, ordr))
                 .verifyComplete();
 
-        verify(rabbitTemplate, times(1)).convertAndSend(anyString(), anyString(), any(Alert.class));
+        verify(alertOutbox, times(1)).add(any(Alert.class));
         verify(orderRepository, times(1)).save(any(Order.class));
     }
 
+    @DisplayName("Generate orders, expect one order per supplier with items short of forecast demand, inc. items out of stock")
+    @Test
+    void givenInventoryAndForecast_whenGenerateOrders_thenOrdersCreated() {
+        ForecastSettings settings = new ForecastSettings(ForecastModel.EWMA, 28, 0.3, 10);
+        Forecaster forecaster = mock(Forecaster.class);
+        ItemCount lowStock = new ItemCount();
+        lowStock.setItemId("1");
+        lowStock.setItemName("Bananas 100g");
+        lowStock.setQuantity(5);
+        ItemCount nearlyEnough = new ItemCount();
+        nearlyEnough.setItemId("2");
+        nearlyEnough.setItemName("Apples 100g");
+        nearlyEnough.setQuantity(48);
+        ItemCount wellStocked = new ItemCount();
+        wellStocked.setItemId("3");
+        wellStocked.setItemName("Pears 100g");
+        wellStocked.setQuantity(50);
+        when(demandForecaster.ready()).thenReturn(Mono.empty());
+        when(supplierService.getAllSuppliers(null)).thenReturn(Flux.just(
+                new Supplier("123", "Supplier 1", List.of(new Item("3", "Pears 100g", "123", "Supplier 1"), new Item("4", "Plums 100g", "123", "Supplier 1")),
+                        "supplier1@gmail.com", "07577123123", settings),
+                new Supplier("456", "Supplier 2", List.of(), "supplier2@gmail.com", "07577123124", null)));
+        when(demandForecaster.resolve(any())).thenAnswer(invocation -> invocation.getArgument(0) != null ? invocation.getArgument(0) : settings);
+        when(demandForecaster.forecaster(settings)).thenReturn(forecaster);
+        when(demandForecaster.forecast("1", forecaster, 11)).thenReturn(30.2); // 4 days until delivery + 7 days cover
+        when(demandForecaster.forecast("2", forecaster, 11)).thenReturn(50.0);
+        when(demandForecaster.forecast("3", forecaster, 11)).thenReturn(50.0);
+        when(demandForecaster.forecast("4", forecaster, 11)).thenReturn(12.0); // no stock total, run out
+        when(inventoryService.aggregateInventory()).thenReturn(Flux.just(
+                new SupplierItems("123", "Supplier 1", List.of(lowStock, nearlyEnough, wellStocked)),
+                new SupplierItems("456", "Supplier 2", List.of())));
+        when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        StepVerifier
+                .create(orderService.generateOrders().collectMap(Order::getSupplierId))
+                .assertNext(orders -> {
+                    assertEquals(2, orders.size());
+                    Order supplier1Order = orders.get("123");
+                    assertEquals(OrderStatus.READY, supplier1Order.getStatus());
+                    assertEquals(3, supplier1Order.getItems().size());
+                    assertEquals("4", supplier1Order.getItems().get(0).getItemId()); // catalog items first
+                    assertEquals("Plums 100g", supplier1Order.getItems().get(0).getItemName());
+                    assertEquals(12, supplier1Order.getItems().get(0).getQuantity());
+                    assertEquals("1", supplier1Order.getItems().get(1).getItemId());
+                    assertEquals(26, supplier1Order.getItems().get(1).getQuantity()); // shortfall, rounded up
+                    assertEquals("2", supplier1Order.getItems().get(2).getItemId());
+                    assertEquals(10, supplier1Order.getItems().get(2).getQuantity()); // minimum order quantity
+                    assertTrue(orders.get("456").getItems().isEmpty());
+                })
+                .verifyComplete();
+
+        verify(demandForecaster, times(1)).resolve(null); // supplier 2 falls back to defaults
+        verify(orderRepository, times(2)).save(any(Order.class));
+        verify(alertOutbox, times(2)).add(any(Alert.class));
+    }
+
     @DisplayName("Get all orders, expect orders returned")
     @Test
     void givenNoStatus_whenGetAllOrders_thenOrdersReturned() {
-        when(orderRepository.findAll()).thenReturn(Flux.just(order));
+        when(orderRepository.findAll(any(Sort.class))).thenReturn(Flux.just(order));
         Flux<Order> orderFlux = orderService.getAllOrders(null);
 
         StepVerifier
@@ -99,7 +184,7 @@ class OrderServiceTests {
                 .assertNext(ordr -> assertEquals(order, ordr))
                 .verifyComplete();
 
-        verify(orderRepository, times(1)).findAll();
+        verify(orderRepository, times(1)).findAll(any(Sort.class));
     }
 
     @DisplayName("Get all orders with status approved, expect approved orders returned")
@@ -187,8 +272,7 @@ class OrderServiceTests {
     @DisplayName("Approve order, expect order status approved")
     @Test
     void givenOrder_whenApproveOrder_thenOrderStatusApproved() {
-        when(orderRepository.findById(anyString())).thenReturn(Mono.just(readyOrder));
-        when(orderRepository.save(any(Order.class))).thenReturn(Mono.just(order));
+        when(orderRepository.transitionStatus(List.of("123"), OrderStatus.READY, OrderStatus.APPROVED, null)).thenReturn(Flux.just(order));
         Mono<Order> orderMono = orderService.approveOrder("123");
 
         StepVerifier
@@ -196,9 +280,36 @@ class OrderServiceTests {
                 .assertNext(ordr -> assertEquals(OrderStatus.APPROVED, ordr.getStatus()))
                 .verifyComplete();
 
-        verify(rabbitTemplate, times(1)).convertAndSend(anyString(), anyString(), any(Alert.class));
-        verify(orderRepository, times(1)).findById(anyString());
-        verify(orderRepository, times(1)).save(any(Order.class));
+        verify(alertOutbox, times(1)).add(any(Alert.class));
+        verify(orderRepository, never()).save(any(Order.class));
+    }
+
+    @DisplayName("Approve order not in ready status, expect conflict and no alert")
+    @Test
+    void givenApprovedOrder_whenApproveOrder_thenConflict() {
+        when(orderRepository.transitionStatus(List.of("123"), OrderStatus.READY, OrderStatus.APPROVED, null)).thenReturn(Flux.empty());
+        when(orderRepository.findById("123")).thenReturn(Mono.just(order));
+
+        StepVerifier
+                .create(orderService.approveOrder("123"))
+                .expectErrorMatches(ex -> ex instanceof ResponseStatusException rse && rse.getStatusCode() == HttpStatus.CONFLICT)
+                .verify();
+
+        verify(alertOutbox, never()).add(any(Alert.class));
+    }
+
+    @DisplayName("Deliver missing order, expect not found")
+    @Test
+    void givenInvalidOrderId_whenDeliverOrder_thenNotFound() {
+        when(orderRepository.transitionStatus(List.of("123"), OrderStatus.IN_TRANSIT, OrderStatus.DELIVERED, null)).thenReturn(Flux.empty());
+        when(orderRepository.findById("123")).thenReturn(Mono.empty());
+
+        StepVerifier
+                .create(orderService.deliverOrder("123"))
+                .expectErrorMatches(ex -> ex instanceof ResponseStatusException rse && rse.getStatusCode() == HttpStatus.NOT_FOUND)
+                .verify();
+
+        verify(inventoryService, never()).addInventory(any(), any());
     }
 
     @DisplayName("Reject order, expect order deleted")
@@ -216,8 +327,7 @@ class OrderServiceTests {
     @DisplayName("Dispatch order, expect order status in transit")
     @Test
     void givenOrder_whenDispatchOrder_thenOrderStatusInTransit() {
-        when(orderRepository.findById(anyString())).thenReturn(Mono.just(order));
-        when(orderRepository.save(any(Order.class))).thenReturn(Mono.just(inTransitOrder));
+        when(orderRepository.transitionStatus(List.of("123"), OrderStatus.APPROVED, OrderStatus.IN_TRANSIT, "789")).thenReturn(Flux.just(inTransitOrder));
         Mono<Order> orderMono = orderService.dispatchOrder("123", "789");
 
         StepVerifier
@@ -225,15 +335,13 @@ class OrderServiceTests {
                 .assertNext(ordr -> assertEquals(OrderStatus.IN_TRANSIT, ordr.getStatus()))
                 .verifyComplete();
 
-        verify(orderRepository, times(1)).findById(anyString());
-        verify(orderRepository, times(1)).save(any(Order.class));
+        verify(orderRepository, never()).save(any(Order.class));
     }
 
     @DisplayName("Deliver order, expect order status delivered")
     @Test
     void givenOrder_whenDeliverOrder_thenOrderStatusDelivered() {
-        when(orderRepository.findById(anyString())).thenReturn(Mono.just(inTransitOrder));
-        when(orderRepository.save(any())).thenReturn(Mono.just(deliveredOrder));
+        when(orderRepository.transitionStatus(List.of("123"), OrderStatus.IN_TRANSIT, OrderStatus.DELIVERED, null)).thenReturn(Flux.just(deliveredOrder));
         lenient().when(inventoryService.addInventory(any(), any())).thenReturn(Mono.empty());
         Mono<Order> orderMono = orderService.deliverOrder("123");
 
@@ -242,8 +350,101 @@ class OrderServiceTests {
                 .assertNext(ordr -> assertEquals(OrderStatus.DELIVERED, ordr.getStatus()))
                 .verifyComplete();
 
-        verify(orderRepository, times(1)).findById(anyString());
-        verify(orderRepository, times(1)).save(any());
-        verify(rabbitTemplate, times(2)).convertAndSend(anyString(), anyString(), any(Alert.class));
+        verify(orderRepository, never()).save(any());
+        verify(alertOutbox, times(1)).addAll(argThat(alerts -> alerts.size() == 2));
+    }
+
+    @DisplayName("Approve orders in batch, expect result per order and alert for each approved order")
+    @Test
+    void givenMixedOrders_whenApproveOrders_thenResultPerOrder() {
+        Order approved = new Order("1", "s1", "Supplier 1", null, OrderStatus.APPROVED, new Date(), new Date(), List.of());
+        Order inTransit = new Order("2", "s1", "Supplier 1", "789", OrderStatus.IN_TRANSIT, new Date(), new Date(), List.of());
+        when(orderRepository.transitionStatus(List.of("1", "2", "3"), OrderStatus.READY, OrderStatus.APPROVED, null)).thenReturn(Flux.just(approved));
+        when(orderRepository.findAllById(List.of("2", "3"))).thenReturn(Flux.just(inTransit));
+
+        StepVerifier
+                .create(orderService.approveOrders(List.of("1", "2", "3", "1")))
+                .assertNext(result -> {
+                    assertEquals("1", result.getOrderId());
+                    assertTrue(result.isSuccess());
+                    assertEquals(OrderStatus.APPROVED, result.getStatus());
+                })
+                .assertNext(result -> {
+                    assertFalse(result.isSuccess());
+                    assertEquals(OrderStatus.IN_TRANSIT, result.getStatus());
+                })
+                .assertNext(result -> {
+                    assertFalse(result.isSuccess());
+                    assertNull(result.getStatus());
+                    assertEquals("Order not found", result.getMessage());
+                })
+                .verifyComplete();
+
+        verify(alertOutbox, times(1)).add(any(Alert.class));
+    }
+
+    @DisplayName("Approve orders in batch when an alert fails, expect every approved order still reported with the failure noted")
+    @Test
+    void givenAlertFailure_whenApproveOrders_thenResultPerOrder() {
+        Order first = new Order("1", "s1", "Supplier 1", null, OrderStatus.APPROVED, new Date(), new Date(), List.of());
+        Order second = new Order("2", "s1", "Supplier 1", null, OrderStatus.APPROVED, new Date(), new Date(), List.of());
+        when(orderRepository.transitionStatus(List.of("1", "2"), OrderStatus.READY, OrderStatus.APPROVED, null)).thenReturn(Flux.just(first, second));
+        when(alertOutbox.add(any(Alert.class))).thenReturn(Mono.error(new IllegalStateException("outbox down")), Mono.empty());
+
+        StepVerifier
+                .create(orderService.approveOrders(List.of("1", "2")))
+                .assertNext(result -> {
+                    assertTrue(result.isSuccess());
+                    assertEquals(OrderStatus.APPROVED, result.getStatus());
+                    assertNotNull(result.getMessage());
+                })
+                .assertNext(result -> {
+                    assertTrue(result.isSuccess());
+                    assertNull(result.getMessage());
+                })
+                .verifyComplete();
+
+        verify(orderRepository, never()).findAllById(any(Iterable.class));
+    }
+
+    @DisplayName("Dispatch orders in batch, all moved, expect driver set and no read back")
+    @Test
+    void givenApprovedOrders_whenDispatchOrders_thenAllSucceed() {
+        Order dispatched = new Order("1", "s1", "Supplier 1", "789", OrderStatus.IN_TRANSIT, new Date(), new Date(), List.of());
+        when(orderRepository.transitionStatus(List.of("1"), OrderStatus.APPROVED, OrderStatus.IN_TRANSIT, "789")).thenReturn(Flux.just(dispatched));
+
+        StepVerifier
+                .create(orderService.dispatchOrders(List.of("1"), "789").map(OrderTransitionResult::isSuccess))
+                .expectNext(true)
+                .verifyComplete();
+
+        verify(orderRepository, never()).findAllById(any(Iterable.class));
     }
+
+    @DisplayName("Deliver orders in batch, expect delivered orders checked")
+    @Test
+    void givenInTransitOrders_whenDeliverOrders_thenDelivered() {
+        Order delivered = new Order("1", "s1", "Supplier 1", "789", OrderStatus.DELIVERED, new Date(), new Date(), List.of());
+        when(orderRepository.transitionStatus(List.of("1"), OrderStatus.IN_TRANSIT, OrderStatus.DELIVERED, null)).thenReturn(Flux.just(delivered));
+        lenient().when(inventoryService.addInventory(any(), eq("789"))).thenReturn(Mono.empty());
+
+        StepVerifier
+                .create(orderService.deliverOrders(List.of("1")).map(OrderTransitionResult::getStatus))
+                .expectNext(OrderStatus.DELIVERED)
+                .verifyComplete();
+
+        verify(alertOutbox, times(1)).addAll(argThat(alerts -> alerts.size() == 2));
+    }
+
+    @DisplayName("Batch with no order ids, expect bad request")
+    @Test
+    void givenNoOrderIds_whenApproveOrders_thenError() {
+        StepVerifier
+                .create(orderService.approveOrders(List.of()))
+                .expectError(ResponseStatusException.class)
+                .verify();
+
+        verify(orderRepository, never()).transitionStatus(any(), any(), any(), any());
+    }
+
 }
@@ -2,6 +2,8 @@ package com.aad.ffsmart.report;
 
 import com.aad.ffsmart.exception.GlobalErrorAttributes;
 import com.aad.ffsmart.exception.GlobalExceptionHandler;
+import com.aad.ffsmart.report.model.ReportEmailStatus;
+import com.aad.ffsmart.report.model.ReportJobStatus;
 import com.aad.ffsmart.web.ResponseMessage;
 import com.aad.ffsmart.web.WebFluxTestSecurityConfig;
 import org.junit.jupiter.api.DisplayName;
@@ -17,6 +19,8 @@ import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Date;
+
 import static org.mockito.Mockito.*;
 
 @WebFluxTest(ReportController.class)
@@ -62,24 +66,46 @@ class ReportControllerTests {
         verify(reportService, never()).getAllReports();
     }
 
-    @DisplayName("Generate report, expect status Created")
+    @DisplayName("Generate report, expect status Accepted and queued job returned")
     @WithMockUser(roles = "HEAD_CHEF")
     @Test
-    void givenRoleHeadChef_whenGenerateReport_thenStatusCreated() {
-        when(reportService.generateReport()).thenReturn(Mono.empty());
+    void givenRoleHeadChef_whenGenerateReport_thenStatusAccepted() {
+        when(reportService.generateReport()).thenReturn(Mono.just(
+                new ReportJob("123", ReportJobStatus.QUEUED, "ffsmart_report_2023_02_06.pdf", new Date(), null, null, null, 0, null)));
 
         webTestClient.mutateWith(SecurityMockServerConfigurers.csrf())
                 .post()
                 .uri("/reports")
                 .exchange()
-                .expectStatus().isCreated()
+                .expectStatus().isAccepted()
                 .expectBody()
                 .jsonPath("$.message").isEqualTo(ResponseMessage.SUCCESS)
+                .jsonPath("$.data.id").isEqualTo("123")
+                .jsonPath("$.data.status").isEqualTo("QUEUED")
                 .consumeWith(System.out::println);
 
         verify(reportService, times(1)).generateReport();
     }
 
+    @DisplayName("Get report job, expect status Ok and job returned")
+    @WithMockUser(roles = "HEAD_CHEF")
+    @Test
+    void givenReportJob_whenGetReportJob_thenStatusOk() {
+        when(reportService.getReportJob("123")).thenReturn(Mono.just(
+                new ReportJob("123", ReportJobStatus.COMPLETED, "ffsmart_report_2023_02_06.pdf", new Date(), new Date(), null, ReportEmailStatus.SENT, 1, null)));
+
+        webTestClient.get()
+                .uri("/reports/jobs/123")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.data.status").isEqualTo("COMPLETED")
+                .jsonPath("$.data.emailStatus").isEqualTo("SENT")
+                .consumeWith(System.out::println);
+
+        verify(reportService, times(1)).getReportJob("123");
+    }
+
     @DisplayName("Download report, expect status Ok and Content-Type PDF")
     @WithMockUser(roles = "HEAD_CHEF")
     @Test
@@ -2,21 +2,40 @@ package com.aad.ffsmart.report;
 
 import com.aad.ffsmart.inventory.InventoryItem;
 import com.aad.ffsmart.inventory.InventoryService;
+import com.aad.ffsmart.report.model.ReportEmailStatus;
+import com.aad.ffsmart.report.model.ReportJobStatus;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.test.util.ReflectionTestUtils;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 import reactor.test.StepVerifier;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
 import java.util.Date;
+import java.util.stream.Stream;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -25,31 +44,186 @@ class ReportServiceTests {
     private static final String DOWNLOAD_FILENAME = "ffsmart_report_2023_01_29.pdf";
     @Mock
     private InventoryService inventoryService;
+    @Mock
+    private ReportJobRepository reportJobRepository;
+    @Mock
+    private JavaMailSender javaMailSender;
+    @TempDir
+    Path reportsDir;
     @InjectMocks
     private ReportServiceImpl reportService;
 
-    @DisplayName("Get all reports, expect list of reports returned")
+    @DisplayName("Get all reports, expect reports newest first and partial reports not listed")
     @Test
-    void givenReports_whenGetAllReports_thenReportsReturned() {
+    void givenReports_whenGetAllReports_thenReportsReturned() throws IOException {
+        String sameDayReport = "ffsmart_report_2023_02_06_63e0c1f4a1b2c3d4e5f60718.pdf";
+        Files.createFile(reportsDir.resolve(FILENAME));
+        Files.createFile(reportsDir.resolve(sameDayReport));
+        Files.createFile(reportsDir.resolve(DOWNLOAD_FILENAME));
+        Files.createFile(reportsDir.resolve("ffsmart_report_2023_02_07_63e2135ea1b2c3d4e5f60719.pdf.part"));
+        ReflectionTestUtils.setField(reportService, "reportScheduler", Schedulers.immediate());
+        ReflectionTestUtils.setField(reportService, "reportsDir", reportsDir.toString() + "/");
         Flux<String> reportFlux = reportService.getAllReports();
 
         StepVerifier
                 .create(reportFlux)
-                .consumeNextWith(reportName -> assertEquals(FILENAME, reportName))
-                .thenCancel()
-                .verify();
+                .expectNext(sameDayReport, FILENAME, DOWNLOAD_FILENAME)
+                .verifyComplete();
     }
 
-    @DisplayName("Generate report, expect report generated and sent")
+    @DisplayName("Generate report, expect queued job returned")
     @Test
-    void givenUser_whenGenerateReport_thenReportGenerated() {
-        when(inventoryService.getExpiredItems()).thenReturn(Flux.just(
-                new InventoryItem("0", "Bananas 100g", "63d1b3dae8b8e7e8b68300af", "Supplier 1", 10, new Date())));
+    void givenUser_whenGenerateReport_thenJobQueued() {
+        ReflectionTestUtils.setField(reportService, "reportScheduler", Schedulers.immediate());
+        ReflectionTestUtils.setField(reportService, "reportsDir", reportsDir.toString() + "/");
+        when(reportJobRepository.save(any(ReportJob.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(reportJobRepository.findEmailsDue(any(), any(Date.class))).thenReturn(Flux.empty());
+        when(inventoryService.getExpiredItems()).thenReturn(Flux.empty());
+
+        StepVerifier
+                .create(reportService.generateReport())
+                .assertNext(job -> {
+                    assertEquals("ffsmart_report_" + LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy_MM_dd")) + "_" + job.getId() + ".pdf",
+                            job.getFileName());
+                    assertEquals(ReportJobStatus.QUEUED, job.getStatus()); // generation ran, but on its own copy
+                })
+                .verifyComplete();
 
-        reportService.generateReport();
         verify(inventoryService, times(1)).getExpiredItems();
     }
 
+    @DisplayName("Run report job, expect PDF written in chunks and email queued")
+    @Test
+    void givenExpiredItems_whenRunJob_thenReportWrittenAndEmailPending() throws IOException {
+        ReflectionTestUtils.setField(reportService, "reportScheduler", Schedulers.immediate());
+        ReflectionTestUtils.setField(reportService, "reportsDir", reportsDir.toString() + "/");
+        when(reportJobRepository.save(any(ReportJob.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(reportJobRepository.findEmailsDue(any(), any(Date.class))).thenReturn(Flux.empty());
+        when(inventoryService.getExpiredItems()).thenReturn(Flux.range(0, 250).map(i ->
+                new InventoryItem(String.valueOf(i), "0", "Bananas 100g", "63d1b3dae8b8e7e8b68300af", "Supplier 1", 10, new Date())));
+        ReportJob job = new ReportJob("123", ReportJobStatus.QUEUED, FILENAME, new Date(), null, null, null, 0, null);
+
+        StepVerifier
+                .create(reportService.runJob(job))
+                .assertNext(completed -> {
+                    assertEquals(ReportJobStatus.COMPLETED, completed.getStatus());
+                    assertEquals(ReportEmailStatus.PENDING, completed.getEmailStatus());
+                })
+                .verifyComplete();
+
+        byte[] pdf = Files.readAllBytes(reportsDir.resolve(FILENAME));
+        assertEquals("%PDF", new String(pdf, 0, 4));
+        assertFalse(Files.exists(reportsDir.resolve(FILENAME + ".part")));
+    }
+
+    @DisplayName("Run report job when reading expired items fails, expect job failed and no report file left")
+    @Test
+    void givenExpiredItemsError_whenRunJob_thenJobFailedAndNoFile() throws IOException {
+        ReflectionTestUtils.setField(reportService, "reportScheduler", Schedulers.immediate());
+        ReflectionTestUtils.setField(reportService, "reportsDir", reportsDir.toString() + "/");
+        when(reportJobRepository.save(any(ReportJob.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(inventoryService.getExpiredItems()).thenReturn(Flux.error(new IllegalStateException("Database unavailable")));
+        ReportJob job = new ReportJob("123", ReportJobStatus.QUEUED, FILENAME, new Date(), null, null, null, 0, null);
+
+        StepVerifier
+                .create(reportService.runJob(job))
+                .assertNext(failed -> assertEquals(ReportJobStatus.FAILED, failed.getStatus()))
+                .verifyComplete();
+
+        try (Stream<Path> files = Files.list(reportsDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @DisplayName("Run report job when report cannot be written, expect job failed")
+    @Test
+    void givenMissingReportsDir_whenRunJob_thenJobFailed() {
+        ReflectionTestUtils.setField(reportService, "reportScheduler", Schedulers.immediate());
+        ReflectionTestUtils.setField(reportService, "reportsDir", reportsDir.resolve("missing").toString() + "/");
+        when(reportJobRepository.save(any(ReportJob.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        ReportJob job = new ReportJob("123", ReportJobStatus.QUEUED, FILENAME, new Date(), null, null, null, 0, null);
+
+        StepVerifier
+                .create(reportService.runJob(job))
+                .assertNext(failed -> {
+                    assertEquals(ReportJobStatus.FAILED, failed.getStatus());
+                    assertNull(failed.getEmailStatus());
+                })
+                .verifyComplete();
+    }
+
+    @DisplayName("Fail stale jobs, expect jobs requested before twice the job timeout marked failed")
+    @Test
+    void givenStaleJobs_whenFailStaleJobs_thenMarkedFailed() {
+        ReflectionTestUtils.setField(reportService, "jobTimeout", 60000L);
+        when(reportJobRepository.failStaleJobs(any(Date.class), anyString())).thenReturn(Mono.just(2L));
+        long before = System.currentTimeMillis();
+
+        StepVerifier
+                .create(reportService.failStaleJobs())
+                .expectNext(2L)
+                .verifyComplete();
+
+        verify(reportJobRepository, times(1)).failStaleJobs(
+                argThat(date -> date.getTime() >= before - 120000 && date.getTime() <= System.currentTimeMillis() - 120000),
+                eq("Generate report timed out"));
+    }
+
+    @DisplayName("Send due emails, expect email sent and marked sent")
+    @Test
+    void givenPendingEmail_whenSendDueEmails_thenEmailSent() {
+        ReflectionTestUtils.setField(reportService, "reportScheduler", Schedulers.immediate());
+        ReportJob job = new ReportJob("123", ReportJobStatus.COMPLETED, FILENAME, new Date(), new Date(), null, ReportEmailStatus.PENDING, 0, new Date());
+        when(reportJobRepository.findEmailsDue(eq(ReportEmailStatus.PENDING), any(Date.class))).thenReturn(Flux.just(job));
+        when(reportJobRepository.save(any(ReportJob.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(javaMailSender.createMimeMessage()).thenReturn(new MimeMessage((Session) null));
+
+        StepVerifier
+                .create(reportService.sendDueEmails())
+                .verifyComplete();
+
+        verify(javaMailSender, times(1)).send(any(MimeMessage.class));
+        assertEquals(ReportEmailStatus.SENT, job.getEmailStatus());
+        assertEquals(1, job.getEmailAttempts());
+    }
+
+    @DisplayName("Send due emails when sending fails, expect retry scheduled with backoff")
+    @Test
+    void givenPendingEmailAndMailFailure_whenSendDueEmails_thenRetryScheduled() {
+        ReflectionTestUtils.setField(reportService, "reportScheduler", Schedulers.immediate());
+        ReportJob job = new ReportJob("123", ReportJobStatus.COMPLETED, FILENAME, new Date(), new Date(), null, ReportEmailStatus.PENDING, 1, new Date());
+        when(reportJobRepository.findEmailsDue(eq(ReportEmailStatus.PENDING), any(Date.class))).thenReturn(Flux.just(job));
+        when(reportJobRepository.save(any(ReportJob.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(javaMailSender.createMimeMessage()).thenReturn(new MimeMessage((Session) null));
+        doThrow(new MailSendException("SMTP unavailable")).when(javaMailSender).send(any(MimeMessage.class));
+
+        StepVerifier
+                .create(reportService.sendDueEmails())
+                .verifyComplete();
+
+        assertEquals(ReportEmailStatus.PENDING, job.getEmailStatus());
+        assertEquals(2, job.getEmailAttempts());
+        assertTrue(job.getNextEmailAttempt().after(new Date(System.currentTimeMillis() + 90_000))); // 2 min backoff
+    }
+
+    @DisplayName("Send due emails when last attempt fails, expect email marked failed")
+    @Test
+    void givenLastAttemptAndMailFailure_whenSendDueEmails_thenEmailFailed() {
+        ReflectionTestUtils.setField(reportService, "reportScheduler", Schedulers.immediate());
+        ReportJob job = new ReportJob("123", ReportJobStatus.COMPLETED, FILENAME, new Date(), new Date(), null, ReportEmailStatus.PENDING, 4, new Date());
+        when(reportJobRepository.findEmailsDue(eq(ReportEmailStatus.PENDING), any(Date.class))).thenReturn(Flux.just(job));
+        when(reportJobRepository.save(any(ReportJob.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(javaMailSender.createMimeMessage()).thenReturn(new MimeMessage((Session) null));
+        doThrow(new MailSendException("SMTP unavailable")).when(javaMailSender).send(any(MimeMessage.class));
+
+        StepVerifier
+                .create(reportService.sendDueEmails())
+                .verifyComplete();
+
+        assertEquals(ReportEmailStatus.FAILED, job.getEmailStatus());
+        assertNull(job.getNextEmailAttempt());
+    }
+
     @DisplayName("Download report, expect successful")
     @Test
     void givenReports_whenDownloadReport_thenSuccess() {
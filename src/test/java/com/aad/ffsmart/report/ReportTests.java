@@ -71,8 +71,8 @@ class ReportTests {
                 .map(File::getName)
                 .collect(Collectors.toSet());
 
-        assertTrue(files.contains("ffsmart_report_"
-                + new SimpleDateFormat("yyyy_MM_dd").format(new Date()) + ".pdf"));
+        String today = "ffsmart_report_" + new SimpleDateFormat("yyyy_MM_dd").format(new Date()) + "_";
+        assertTrue(files.stream().anyMatch(file -> file.startsWith(today) && file.endsWith(".pdf")));
     }
 
 }
@@ -0,0 +1,145 @@
+package com.aad.ffsmart.supplier;
+
+import com.aad.ffsmart.supplier.model.CacheStatistics;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import org.bson.BsonDocument;
+import org.bson.BsonObjectId;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SupplierCacheTests {
+    private static final String SUPPLIER_ID = "63d1b3dae8b8e7e8b68300af";
+
+    private final Supplier supplier1 = new Supplier(SUPPLIER_ID, "Supplier 1", List.of(), "supplier1@gmail.com", "07577123123", null);
+
+    private final Supplier supplier2 = new Supplier("63d1b48ce8b8e7e8b68300b1", "Fresh Co", List.of(), "fresh@gmail.com", "07577123124", null);
+
+    @Mock
+    private SupplierRepository supplierRepository;
+
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
+
+    private SupplierCache supplierCache;
+
+    @BeforeEach
+    void setup() {
+        supplierCache = new SupplierCache(supplierRepository, mongoTemplate, 100, 600);
+    }
+
+    @DisplayName("Get supplier twice, expect database called once and hit recorded")
+    @Test
+    void givenCachedSupplier_whenGetSupplier_thenDatabaseCalledOnce() {
+        when(supplierRepository.findById(SUPPLIER_ID)).thenReturn(Mono.just(supplier1));
+
+        StepVerifier.create(supplierCache.getSupplier(SUPPLIER_ID)).expectNext(supplier1).verifyComplete();
+        StepVerifier.create(supplierCache.getSupplier(SUPPLIER_ID)).expectNext(supplier1).verifyComplete();
+
+        verify(supplierRepository, times(1)).findById(SUPPLIER_ID);
+        CacheStatistics statistics = supplierCache.getStatistics().get(0);
+        assertEquals(1, statistics.getHits());
+        assertEquals(1, statistics.getMisses());
+    }
+
+    @DisplayName("Get missing supplier, expect empty and not cached")
+    @Test
+    void givenMissingSupplier_whenGetSupplier_thenEmptyAndNotCached() {
+        when(supplierRepository.findById(anyString())).thenReturn(Mono.empty());
+
+        StepVerifier.create(supplierCache.getSupplier("123")).verifyComplete();
+        StepVerifier.create(supplierCache.getSupplier("123")).verifyComplete();
+
+        verify(supplierRepository, times(2)).findById("123");
+    }
+
+    @DisplayName("Get suppliers by name prefix, expect matching suppliers from a single findAll")
+    @Test
+    void givenSuppliers_whenGetSuppliersByPrefix_thenMatchingReturned() {
+        when(supplierRepository.findAll()).thenReturn(Flux.just(supplier1, supplier2));
+
+        StepVerifier.create(supplierCache.getSuppliers("Supp")).expectNext(supplier1).verifyComplete();
+        StepVerifier.create(supplierCache.getSuppliers(null)).expectNext(supplier2, supplier1).verifyComplete();
+        StepVerifier.create(supplierCache.getSuppliers("x")).verifyComplete();
+
+        verify(supplierRepository, times(1)).findAll();
+    }
+
+    @DisplayName("Supplier changed in database, expect entry invalidated and reloaded")
+    @Test
+    void givenChangeEvent_whenGetSupplier_thenReloaded() {
+        when(supplierRepository.findById(SUPPLIER_ID)).thenReturn(Mono.just(supplier1));
+        when(supplierRepository.findAll()).thenReturn(Flux.just(supplier1));
+        supplierCache.getSupplier(SUPPLIER_ID).block();
+        supplierCache.getSuppliers(null).blockLast();
+
+        supplierCache.onChange(changeEvent(new BsonDocument("_id", new BsonObjectId(new ObjectId(SUPPLIER_ID)))));
+        supplierCache.getSupplier(SUPPLIER_ID).block();
+        supplierCache.getSuppliers(null).blockLast();
+
+        verify(supplierRepository, times(2)).findById(SUPPLIER_ID);
+        verify(supplierRepository, times(2)).findAll();
+    }
+
+    @DisplayName("Collection dropped, expect all entries invalidated")
+    @Test
+    void givenDropEvent_whenOnChange_thenAllInvalidated() {
+        when(supplierRepository.findById(SUPPLIER_ID)).thenReturn(Mono.just(supplier1));
+        supplierCache.getSupplier(SUPPLIER_ID).block();
+
+        supplierCache.onChange(changeEvent(null));
+
+        assertEquals(0, supplierCache.getStatistics().get(0).getSize());
+    }
+
+    @DisplayName("Change stream closed by a drop, expect it reopened and entries invalidated again")
+    @Test
+    void givenChangeStreamClosed_whenWatching_thenReopenedAndInvalidated() {
+        when(supplierRepository.findById(SUPPLIER_ID)).thenReturn(Mono.just(supplier1));
+        ReactiveMongoTemplate template = mock(ReactiveMongoTemplate.class, RETURNS_DEEP_STUBS);
+        AtomicInteger subscriptions = new AtomicInteger();
+        // the first stream closes after the drop event, as Mongo's does
+        when(template.changeStream(Supplier.class).watchCollection(Supplier.class).listen())
+                .thenReturn(Flux.defer(() -> subscriptions.incrementAndGet() == 1 ? Flux.just(changeEvent(null)) : Flux.never()));
+        supplierCache = new SupplierCache(supplierRepository, template, 100, 600);
+        VirtualTimeScheduler scheduler = VirtualTimeScheduler.getOrSet();
+        try {
+            supplierCache.watchChanges();
+            supplierCache.getSupplier(SUPPLIER_ID).block(); // cached while the stream is closed
+
+            scheduler.advanceTimeBy(Duration.ofSeconds(1));
+            supplierCache.getSupplier(SUPPLIER_ID).block();
+
+            assertEquals(2, subscriptions.get());
+            verify(supplierRepository, times(2)).findById(SUPPLIER_ID);
+        } finally {
+            supplierCache.stopWatching();
+            VirtualTimeScheduler.reset();
+        }
+    }
+
+    private static ChangeStreamEvent<Supplier> changeEvent(BsonDocument documentKey) {
+        return new ChangeStreamEvent<>(new ChangeStreamDocument<Document>(documentKey != null ? "update" : "drop",
+                null, null, null, null, documentKey, null, null, null, null), Supplier.class, null);
+    }
+
+}
@@ -1,7 +1,10 @@
 package com.aad.ffsmart.supplier;
 
 import com.aad.ffsmart.exception.GlobalErrorAttributes;
+import com.aad.ffsmart.forecast.model.ForecastModel;
+import com.aad.ffsmart.forecast.model.ForecastSettings;
 import com.aad.ffsmart.exception.GlobalExceptionHandler;
+import com.aad.ffsmart.supplier.model.CacheStatistics;
 import com.aad.ffsmart.web.WebFluxTestSecurityConfig;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.DisplayName;
@@ -11,12 +14,14 @@ import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
 import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.security.test.web.reactive.server.SecurityMockServerConfigurers;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.List;
 
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
 @WebFluxTest(SupplierController.class)
@@ -43,7 +48,8 @@ class SupplierControllerTests {
                 "Supplier 1",
                 List.of(),
                 "supplier1@gmail.com",
-                "07577123123");
+                "07577123123",
+                null);
     }
 
     @DisplayName("Get all suppliers, expect status Ok")
@@ -76,4 +82,47 @@ class SupplierControllerTests {
         verify(supplierService, times(1)).getSupplierById(anyString());
     }
 
+    @DisplayName("Get supplier cache statistics, expect status Ok")
+    @WithMockUser(roles = "HEAD_CHEF")
+    @Test
+    void whenGetCacheStatistics_thenStatusOk() {
+        when(supplierService.getCacheStatistics()).thenReturn(Flux.just(new CacheStatistics("suppliersById", 9, 1, 0.9, 0, 1)));
+
+        webTestClient.get()
+                .uri("/suppliers/cache/stats")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.data[0].hits").isEqualTo(9);
+        verify(supplierService, times(1)).getCacheStatistics();
+    }
+
+    @DisplayName("Update forecast settings, expect status Ok")
+    @WithMockUser(roles = "HEAD_CHEF")
+    @Test
+    void givenSettings_whenUpdateForecastSettings_thenStatusOk() {
+        ForecastSettings settings = new ForecastSettings(ForecastModel.EWMA, 28, 0.3, 5);
+        when(supplierService.updateForecastSettings(anyString(), any(ForecastSettings.class))).thenReturn(Mono.just(testSupplier));
+
+        webTestClient.mutateWith(SecurityMockServerConfigurers.csrf())
+                .put()
+                .uri("/suppliers/63d1b3dae8b8e7e8b68300af/forecast")
+                .body(Mono.just(settings), ForecastSettings.class)
+                .exchange()
+                .expectStatus().isOk();
+        verify(supplierService, times(1)).updateForecastSettings("63d1b3dae8b8e7e8b68300af", settings);
+    }
+
+    @DisplayName("Update forecast settings with chef role, expect status Forbidden")
+    @WithMockUser(roles = "CHEF")
+    @Test
+    void givenChefRole_whenUpdateForecastSettings_thenStatusForbidden() {
+        webTestClient.mutateWith(SecurityMockServerConfigurers.csrf())
+                .put()
+                .uri("/suppliers/63d1b3dae8b8e7e8b68300af/forecast")
+                .body(Mono.just(new ForecastSettings()), ForecastSettings.class)
+                .exchange()
+                .expectStatus().isForbidden();
+        verify(supplierService, never()).updateForecastSettings(anyString(), any(ForecastSettings.class));
+    }
 }
@@ -1,12 +1,20 @@
 package com.aad.ffsmart.supplier;
 
+import com.aad.ffsmart.forecast.DemandForecaster;
+import com.aad.ffsmart.forecast.model.ForecastModel;
+import com.aad.ffsmart.forecast.model.ForecastSettings;
 import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
@@ -22,6 +30,9 @@ class SupplierServiceTests {
     @Mock
     private SupplierRepository supplierRepository;
 
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
+
     @InjectMocks
     private SupplierServiceImpl supplierService;
 
@@ -32,7 +43,17 @@ class SupplierServiceTests {
                 "Supplier 1",
                 List.of(),
                 "supplier1@gmail.com",
-                "07577123123");
+                "07577123123",
+                null);
+    }
+
+    private DemandForecaster demandForecaster;
+
+    @BeforeEach
+    void setupCache() {
+        ReflectionTestUtils.setField(supplierService, "supplierCache", new SupplierCache(supplierRepository, mongoTemplate, 100, 600));
+        demandForecaster = new DemandForecaster();
+        ReflectionTestUtils.setField(supplierService, "demandForecaster", demandForecaster);
     }
 
     @DisplayName("Get all suppliers with no supplier name, expect suppliers returned")
@@ -84,4 +105,57 @@ class SupplierServiceTests {
                 .verify();
     }
 
+    @DisplayName("Update forecast settings, expect settings saved and supplier evicted from cache")
+    @Test
+    void givenSettings_whenUpdateForecastSettings_thenSaved() {
+        ForecastSettings settings = new ForecastSettings(ForecastModel.DAY_OF_WEEK, 28, 0.5, 5);
+        Supplier supplier = new Supplier("123", "Supplier 1", List.of(), "supplier1@gmail.com", "07577123123", null);
+        when(supplierRepository.findById("123")).thenReturn(Mono.just(supplier), Mono.just(supplier));
+        when(supplierRepository.save(supplier)).thenReturn(Mono.just(supplier));
+
+        StepVerifier.create(supplierService.getSupplierById("123")).expectNextCount(1).verifyComplete(); // cached
+        StepVerifier
+                .create(supplierService.updateForecastSettings("123", settings))
+                .assertNext(saved -> assertEquals(settings, saved.getForecast()))
+                .verifyComplete();
+        StepVerifier.create(supplierService.getSupplierById("123")).expectNextCount(1).verifyComplete();
+
+        verify(supplierRepository, times(1)).save(supplier);
+        verify(supplierRepository, times(3)).findById("123"); // cache reloaded after the update
+    }
+
+    @DisplayName("Update forecast settings with invalid alpha, expect bad request error")
+    @Test
+    void givenInvalidAlpha_whenUpdateForecastSettings_thenError() {
+        StepVerifier
+                .create(supplierService.updateForecastSettings("123", new ForecastSettings(ForecastModel.EWMA, null, 1.5, null)))
+                .expectErrorMatches(error -> error instanceof ResponseStatusException ex && ex.getStatusCode() == HttpStatus.BAD_REQUEST)
+                .verify();
+
+        verify(supplierRepository, never()).findById(anyString());
+    }
+
+    @DisplayName("Update forecast settings with a short window and day of week as the default model, expect bad request error")
+    @Test
+    void givenShortWindowAndDefaultDayOfWeekModel_whenUpdateForecastSettings_thenError() {
+        ReflectionTestUtils.setField(demandForecaster, "defaultModel", ForecastModel.DAY_OF_WEEK);
+
+        StepVerifier
+                .create(supplierService.updateForecastSettings("123", new ForecastSettings(null, 3, null, null)))
+                .expectErrorMatches(error -> error instanceof ResponseStatusException ex && ex.getStatusCode() == HttpStatus.BAD_REQUEST)
+                .verify();
+
+        verify(supplierRepository, never()).findById(anyString());
+    }
+
+    @DisplayName("Update forecast settings for unknown supplier, expect not found error")
+    @Test
+    void givenInvalidSupplierId_whenUpdateForecastSettings_thenError() {
+        when(supplierRepository.findById(anyString())).thenReturn(Mono.empty());
+
+        StepVerifier
+                .create(supplierService.updateForecastSettings("123", new ForecastSettings()))
+                .expectErrorMatches(error -> error instanceof ResponseStatusException ex && ex.getStatusCode() == HttpStatus.NOT_FOUND)
+                .verify();
+    }
 }
@@ -0,0 +1,97 @@
+package com.aad.ffsmart.tracing;
+
+import brave.Span;
+import brave.Tracing;
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.propagation.TraceContext;
+import brave.sampler.Sampler;
+import com.aad.ffsmart.tracing.model.TraceSpan;
+import com.aad.ffsmart.tracing.model.TraceSummary;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.contextpropagation.ObservationThreadLocalAccessor;
+import io.micrometer.tracing.brave.bridge.BraveCurrentTraceContext;
+import io.micrometer.tracing.brave.bridge.BraveFinishedSpan;
+import io.micrometer.tracing.brave.bridge.BraveTracer;
+import io.micrometer.tracing.handler.DefaultTracingObservationHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TraceCollectorTests {
+    private final TraceCollector traceCollector = new TraceCollector(100, 600);
+
+    private final Tracing tracing = Tracing.newBuilder()
+            .sampler(Sampler.ALWAYS_SAMPLE)
+            .addSpanHandler(new SpanHandler() {
+                @Override
+                public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+                    traceCollector.report(BraveFinishedSpan.fromBrave(span));
+                    return true;
+                }
+            })
+            .build();
+
+    @AfterEach
+    void close() {
+        tracing.close();
+    }
+
+    @DisplayName("Run a traced pipeline inside a request observation, expect child span under the request span")
+    @Test
+    void givenRequestObservation_whenObservedPipeline_thenChildSpanCollected() {
+        ObservationRegistry registry = ObservationRegistry.create();
+        registry.observationConfig()
+                .observationHandler(new DefaultTracingObservationHandler(new BraveTracer(tracing.tracer(), new BraveCurrentTraceContext(tracing.currentTraceContext()))))
+                .observationHandler(new TracingConfig().threadObservationHandler());
+
+        Observation request = Observation.start("http.server.requests", registry);
+        ReactorTracing.observed(registry, "inventory.add", Mono.just(1))
+                .contextWrite(context -> context.put(ObservationThreadLocalAccessor.KEY, request))
+                .block();
+        request.stop();
+
+        List<TraceSummary> traces = traceCollector.getTraces(10);
+        assertEquals(1, traces.size());
+        assertEquals(2, traces.get(0).getSpans());
+        List<TraceSpan> spans = traceCollector.getTrace(traces.get(0).getTraceId());
+        TraceSpan root = spans.stream().filter(span -> span.getParentId() == null).findFirst().orElseThrow();
+        TraceSpan child = spans.stream().filter(span -> span.getParentId() != null).findFirst().orElseThrow();
+        assertEquals("inventory.add", child.getName());
+        assertEquals(root.getSpanId(), child.getParentId());
+        assertEquals(Thread.currentThread().getName(), child.getThread());
+        assertFalse(child.getTags().containsKey(TraceCollector.THREAD_TAG));
+    }
+
+    @DisplayName("Run the same query once per item in a request, expect possible N+1 reported")
+    @Test
+    void givenRepeatedQueries_whenRootEnds_thenRepeatedSpansReported() {
+        Span request = tracing.tracer().newTrace().name("http get /orders").kind(Span.Kind.SERVER).start();
+        for (int i = 0; i < 12; i++) {
+            tracing.tracer().newChild(request.context()).name("find Inventory").kind(Span.Kind.CLIENT).start().finish();
+        }
+        tracing.tracer().newChild(request.context()).name("find Orders").kind(Span.Kind.CLIENT).start().finish();
+        request.finish();
+
+        TraceSummary summary = traceCollector.getTraces(10).get(0);
+        assertEquals("http get /orders", summary.getName());
+        assertEquals(14, summary.getSpans());
+        assertEquals(Map.of("find Inventory", 12L), summary.getRepeatedSpans());
+    }
+
+    @DisplayName("Finish a Mongo command with no parent, expect it not collected")
+    @Test
+    void givenParentlessClientSpan_whenReported_thenDropped() {
+        tracing.tracer().newTrace().name("getMore Inventory").kind(Span.Kind.CLIENT).start().finish();
+
+        assertTrue(traceCollector.getTraces(10).isEmpty());
+        assertTrue(traceCollector.getTrace("unknown").isEmpty());
+    }
+}
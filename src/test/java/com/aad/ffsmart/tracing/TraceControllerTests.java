@@ -0,0 +1,81 @@
+package com.aad.ffsmart.tracing;
+
+import com.aad.ffsmart.exception.GlobalErrorAttributes;
+import com.aad.ffsmart.tracing.model.TraceSpan;
+import com.aad.ffsmart.tracing.model.TraceSummary;
+import com.aad.ffsmart.web.WebFluxTestSecurityConfig;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@WebFluxTest(TraceController.class)
+@Import(WebFluxTestSecurityConfig.class)
+class TraceControllerTests {
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @MockBean
+    private TraceCollector traceCollector;
+
+    @MockBean
+    private GlobalErrorAttributes globalErrorAttributes;
+
+    @DisplayName("Get traces as head chef, expect trace summaries")
+    @WithMockUser(roles = "HEAD_CHEF")
+    @Test
+    void givenHeadChef_whenGetTraces_thenSummaries() {
+        when(traceCollector.getTraces(20)).thenReturn(List.of(
+                new TraceSummary("abc", "http get /orders", new Date(), 12L, 14, Map.of("find Inventory", 12L))));
+
+        webTestClient.get()
+                .uri("/traces?limit=20")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.data[0].traceId").isEqualTo("abc")
+                .jsonPath("$.data[0].repeatedSpans['find Inventory']").isEqualTo(12)
+                .consumeWith(System.out::println);
+        verify(traceCollector, times(1)).getTraces(20);
+    }
+
+    @DisplayName("Get a trace as head chef, expect its spans")
+    @WithMockUser(roles = "HEAD_CHEF")
+    @Test
+    void givenHeadChef_whenGetTrace_thenSpans() {
+        when(traceCollector.getTrace("abc")).thenReturn(List.of(
+                new TraceSpan("abc", "1", null, "http get /orders", "SERVER", "reactor-http-nio-2", new Date(), 12000L, Map.of(), null)));
+
+        webTestClient.get()
+                .uri("/traces/abc")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.data[0].thread").isEqualTo("reactor-http-nio-2")
+                .consumeWith(System.out::println);
+        verify(traceCollector, times(1)).getTrace("abc");
+    }
+
+    @DisplayName("Get traces as chef, expect status Forbidden")
+    @WithMockUser(roles = "CHEF")
+    @Test
+    void givenChef_whenGetTraces_thenStatusForbidden() {
+        webTestClient.get()
+                .uri("/traces")
+                .exchange()
+                .expectStatus().isForbidden();
+        verify(traceCollector, never()).getTraces(anyInt());
+    }
+}
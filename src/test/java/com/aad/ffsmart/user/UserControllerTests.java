@@ -4,6 +4,7 @@ import com.aad.ffsmart.auth.JWTUtil;
 import com.aad.ffsmart.exception.GlobalErrorAttributes;
 import com.aad.ffsmart.exception.GlobalExceptionHandler;
 import com.aad.ffsmart.user.model.LoginForm;
+import com.aad.ffsmart.user.model.RefreshRequest;
 import com.aad.ffsmart.user.model.TokenUser;
 import com.aad.ffsmart.web.WebFluxTestSecurityConfig;
 import org.junit.jupiter.api.BeforeAll;
@@ -53,7 +54,7 @@ class UserControllerTests {
     void givenUser_whenLogin_thenStatusOk() {
         when(userService.login(any(LoginForm.class)))
                 .thenReturn(Mono.just(
-                        new TokenUser("TOKEN", null)
+                        new TokenUser("TOKEN", "REFRESH", null)
                 ));
 
         webTestClient.mutateWith(SecurityMockServerConfigurers.csrf())
@@ -68,13 +69,51 @@ class UserControllerTests {
         verify(userService, times(1)).login(any(LoginForm.class));
     }
 
+    @DisplayName("Refresh token, expect status Ok with new tokens")
+    @WithMockUser
+    @Test
+    void givenRefreshToken_whenRefresh_thenStatusOk() {
+        when(userService.refresh("REFRESH"))
+                .thenReturn(Mono.just(
+                        new TokenUser("TOKEN", "NEW_REFRESH", null)
+                ));
+
+        webTestClient.mutateWith(SecurityMockServerConfigurers.csrf())
+                .post()
+                .uri("/users/refresh")
+                .body(Mono.just(new RefreshRequest("REFRESH")), RefreshRequest.class)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.data.token").isEqualTo("TOKEN")
+                .jsonPath("$.data.refreshToken").isEqualTo("NEW_REFRESH")
+                .consumeWith(System.out::println);
+        verify(userService, times(1)).refresh("REFRESH");
+    }
+
+    @DisplayName("Logout with refresh token, expect status No Content")
+    @WithMockUser
+    @Test
+    void givenRefreshToken_whenLogout_thenStatusNoContent() {
+        when(userService.logout("REFRESH")).thenReturn(Mono.empty());
+
+        webTestClient.mutateWith(SecurityMockServerConfigurers.csrf())
+                .post()
+                .uri("/users/logout")
+                .body(Mono.just(new RefreshRequest("REFRESH")), RefreshRequest.class)
+                .exchange()
+                .expectStatus().isNoContent();
+
+        verify(userService, times(1)).logout("REFRESH");
+    }
+
     @DisplayName("Register user, expect status Created")
     @WithMockUser
     @Test
     void givenUser_whenRegister_thenStatusCreated() {
         when(userService.register(any(User.class)))
                 .thenReturn(Mono.just(
-                        new TokenUser("TOKEN", null)
+                        new TokenUser("TOKEN", "REFRESH", null)
                 ));
 
         webTestClient.mutateWith(SecurityMockServerConfigurers.csrf())
@@ -1,6 +1,9 @@
 package com.aad.ffsmart.user;
 
 import com.aad.ffsmart.auth.JWTUtil;
+import com.aad.ffsmart.auth.PasswordHasher;
+import com.aad.ffsmart.auth.RefreshToken;
+import com.aad.ffsmart.auth.RefreshTokenService;
 import com.aad.ffsmart.user.model.LoginForm;
 import com.aad.ffsmart.user.model.TokenUser;
 import org.junit.jupiter.api.BeforeAll;
@@ -10,7 +13,6 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
@@ -29,7 +31,9 @@ class UserServiceTests {
     @Mock
     private JWTUtil jwtUtil;
     @Mock
-    private PasswordEncoder passwordEncoder;
+    private PasswordHasher passwordHasher;
+    @Mock
+    private RefreshTokenService refreshTokenService;
     @InjectMocks
     private UserServiceImpl userService;
 
@@ -42,23 +46,47 @@ class UserServiceTests {
     @Test
     void givenUserExistsAndCorrectPassword_whenLogin_thenSuccessful() {
         when(userRepository.findByEmail(anyString())).thenReturn(Mono.just(user));
-        when(passwordEncoder.matches(anyString(), any())).thenReturn(true);
+        when(passwordHasher.matches(anyString(), any())).thenReturn(Mono.just(true));
+        when(refreshTokenService.issue(USER_ID, null)).thenReturn(Mono.just("refresh"));
 
         Mono<TokenUser> tokenUserMono = userService.login(new LoginForm("test@gmail.com", "password"));
 
         StepVerifier
                 .create(tokenUserMono)
-                .assertNext(tokenUser -> assertEquals(user, tokenUser.getUser()))
+                .assertNext(tokenUser -> {
+                    assertEquals(user, tokenUser.getUser());
+                    assertEquals("refresh", tokenUser.getRefreshToken());
+                })
                 .verifyComplete();
 
         verify(userRepository, times(1)).findByEmail(anyString());
+        verify(userRepository, never()).updatePassword(anyString(), anyString(), anyString());
+    }
+
+    @DisplayName("Login with a hash of an older work factor, expect password rehashed")
+    @Test
+    void givenOutdatedHash_whenLogin_thenRehashed() {
+        User outdated = new User(USER_ID, "test@gmail.com", "old-hash", "Test", "User", Role.ROLE_HEAD_CHEF, null);
+        when(userRepository.findByEmail(anyString())).thenReturn(Mono.just(outdated));
+        when(passwordHasher.matches("password", "old-hash")).thenReturn(Mono.just(true));
+        when(passwordHasher.needsRehash("old-hash")).thenReturn(true);
+        when(passwordHasher.encode("password")).thenReturn(Mono.just("new-hash"));
+        when(userRepository.updatePassword(USER_ID, "old-hash", "new-hash")).thenReturn(Mono.error(new RuntimeException("write failed")));
+        when(refreshTokenService.issue(USER_ID, null)).thenReturn(Mono.just("refresh"));
+
+        StepVerifier
+                .create(userService.login(new LoginForm("test@gmail.com", "password")))
+                .assertNext(tokenUser -> assertEquals(outdated, tokenUser.getUser()))
+                .verifyComplete();
+
+        verify(userRepository, times(1)).updatePassword(USER_ID, "old-hash", "new-hash");
     }
 
     @DisplayName("Login with incorrect password, expect error")
     @Test
     void givenUserExistsAndIncorrectPassword_whenLogin_thenError() {
         when(userRepository.findByEmail(anyString())).thenReturn(Mono.just(user));
-        lenient().when(passwordEncoder.matches(anyString(), anyString())).thenReturn(false);
+        when(passwordHasher.matches(anyString(), anyString())).thenReturn(Mono.just(false));
 
         Mono<TokenUser> tokenUserMono = userService.login(new LoginForm("test@gmail.com", "password"));
 
@@ -73,7 +101,9 @@ class UserServiceTests {
     @DisplayName("Register new user, expect user and token returned")
     @Test
     void givenNewUser_whenRegister_thenSuccessful() {
+        when(passwordHasher.encode(anyString())).thenReturn(Mono.just("hashed"));
         when(userRepository.save(any(User.class))).thenReturn(Mono.just(user));
+        when(refreshTokenService.issue(USER_ID, null)).thenReturn(Mono.just("refresh"));
         Mono<TokenUser> tokenUserMono = userService.register(user);
 
         StepVerifier
@@ -88,6 +118,26 @@ class UserServiceTests {
         verify(userRepository, times(1)).save(any(User.class));
     }
 
+    @DisplayName("Refresh with a valid refresh token, expect new tokens in the same family")
+    @Test
+    void givenRefreshToken_whenRefresh_thenRotated() {
+        when(refreshTokenService.redeem("refresh")).thenReturn(Mono.just(new RefreshToken("1", "hash", USER_ID, "family", true, null, null)));
+        when(userRepository.findById(USER_ID)).thenReturn(Mono.just(user));
+        when(refreshTokenService.issue(USER_ID, "family")).thenReturn(Mono.just("next"));
+        when(jwtUtil.generateToken(user)).thenReturn("token");
+
+        StepVerifier
+                .create(userService.refresh("refresh"))
+                .assertNext(tokenUser -> {
+                    assertEquals("token", tokenUser.getToken());
+                    assertEquals("next", tokenUser.getRefreshToken());
+                    assertEquals(user, tokenUser.getUser());
+                })
+                .verifyComplete();
+
+        verifyNoInteractions(passwordHasher);
+    }
+
     @DisplayName("Get all users, expect users returned")
     @Test
     void givenUsers_whenGetAllUsers_thenSuccessful() {
@@ -146,7 +196,9 @@ class UserServiceTests {
     @Test
     void givenUserId_whenUpdateUserById_thenSuccessful() {
         when(userRepository.findById(anyString())).thenReturn(Mono.just(user));
+        when(passwordHasher.encode(anyString())).thenReturn(Mono.just("hashed"));
         when(userRepository.save(any(User.class))).thenReturn(Mono.just(user));
+        when(refreshTokenService.revokeAll(USER_ID)).thenReturn(Mono.empty());
 
         Mono<User> userMono = userService.updateUserById(USER_ID, user);
 
@@ -157,6 +209,7 @@ class UserServiceTests {
 
         verify(userRepository, times(1)).findById(anyString());
         verify(userRepository, times(1)).save(any(User.class));
+        verify(refreshTokenService, times(1)).revokeAll(USER_ID);
     }
 
     @DisplayName("Delete user by id, expect user deleted")
@@ -164,6 +217,7 @@ class UserServiceTests {
     void givenUserId_whenDeleteUserById_thenSuccessful() {
         when(userRepository.findById(anyString())).thenReturn(Mono.just(user));
         when(userRepository.delete(any(User.class))).thenReturn(Mono.empty());
+        when(refreshTokenService.revokeAll(USER_ID)).thenReturn(Mono.empty());
 
         userService.deleteUserById(USER_ID).block();
 
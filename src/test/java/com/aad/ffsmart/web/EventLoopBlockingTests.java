@@ -0,0 +1,443 @@
+package com.aad.ffsmart.web;
+
+import com.aad.ffsmart.alert.Alert;
+import com.aad.ffsmart.alert.AlertCode;
+import com.aad.ffsmart.alert.AlertService;
+import com.aad.ffsmart.auth.AuthenticationManager;
+import com.aad.ffsmart.auth.JWTUtil;
+import com.aad.ffsmart.auth.PasswordHasher;
+import com.aad.ffsmart.auth.RefreshToken;
+import com.aad.ffsmart.auth.RefreshTokenRepository;
+import com.aad.ffsmart.auth.RefreshTokenService;
+import com.aad.ffsmart.auth.SecurityContextRepository;
+import com.aad.ffsmart.exception.GlobalErrorAttributes;
+import com.aad.ffsmart.inventory.InventoryItem;
+import com.aad.ffsmart.inventory.InventoryService;
+import com.aad.ffsmart.inventory.model.InventoryFeedEvent;
+import com.aad.ffsmart.inventory.model.InventoryFeedEventType;
+import com.aad.ffsmart.item.ItemService;
+import com.aad.ffsmart.order.Order;
+import com.aad.ffsmart.order.OrderService;
+import com.aad.ffsmart.order.OrderStatus;
+import com.aad.ffsmart.report.ReportJobRepository;
+import com.aad.ffsmart.report.ReportServiceImpl;
+import com.aad.ffsmart.scheduling.BlockingCallDetector;
+import com.aad.ffsmart.scheduling.SchedulerConfig;
+import com.aad.ffsmart.supplier.SupplierService;
+import com.aad.ffsmart.tracing.TraceCollector;
+import com.aad.ffsmart.user.Role;
+import com.aad.ffsmart.user.User;
+import com.aad.ffsmart.user.UserRepository;
+import com.aad.ffsmart.user.UserServiceImpl;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Answers;
+import org.mockito.stubbing.Answer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.server.adapter.WebHttpHandlerBuilder;
+import reactor.blockhound.BlockingOperationError;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs a request to every controller endpoint through a Netty server with the blocking call detector installed,
+ * so handlers, security filters, response writing and the real report service run on event loop threads
+ * Services are mocks returning empty publishers unless stubbed, except the report service (file I/O)
+ * and the user and refresh token services (password hashing, with stored hashes of a lower work factor so logins rehash)
+ */
+@WebFluxTest(properties = {"jwt.secret=c2VjcmV0c2VjcmV0c2VjcmV0c2VjcmV0c2VjcmV0c2VjcmV0c2VjcmV0c2VjcmV0c2VjcmV0c2VjcmV0c2Vjcg==",
+        "passwords.bcrypt.strength=5"})
+@Import({SecurityConfig.class, AuthenticationManager.class, SecurityContextRepository.class, JWTUtil.class,
+        GlobalErrorAttributes.class, ReportServiceImpl.class, UserServiceImpl.class, PasswordHasher.class,
+        RefreshTokenService.class, EventLoopBlockingTests.Services.class})
+class EventLoopBlockingTests {
+    private static final Path REPORTS_DIR = createReportsDir();
+
+    private static final Alert ALERT = new Alert(AlertCode.ORDER_DELIVERED, "Order delivered", "Order 1 was just delivered!", new Date());
+
+    private static final InventoryItem ITEM = new InventoryItem("1", "0", "Bananas 100g", "123", "Supplier 1", 5, new Date());
+
+    private static final User USER = new User("1", "chef@ffsmart.com", new BCryptPasswordEncoder(4).encode("password"),
+            "A", "Chef", Role.ROLE_CHEF, null);
+
+    private static final Order ORDER = new Order("1", "123", "Supplier 1", null, OrderStatus.READY, new Date(), new Date(), List.of(ITEM));
+
+    @Autowired
+    private ApplicationContext context;
+
+    @Autowired
+    private JWTUtil jwtUtil;
+
+    @Autowired
+    private AlertService alertService;
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ReportJobRepository reportJobRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private DisposableServer server;
+
+    private WebTestClient webTestClient;
+
+    @TestConfiguration
+    static class Services {
+        // empty Mono / Flux for any call not stubbed, so every endpoint completes
+        private static final Answer<Object> EMPTY_PUBLISHERS = invocation -> {
+            Class<?> type = invocation.getMethod().getReturnType();
+            if (Mono.class.equals(type)) {
+                return Mono.empty();
+            }
+            if (Flux.class.equals(type)) {
+                return Flux.empty();
+            }
+            return Answers.RETURNS_DEFAULTS.answer(invocation);
+        };
+
+        @Bean
+        AlertService alertService() {
+            return mock(AlertService.class, EMPTY_PUBLISHERS);
+        }
+
+        @Bean
+        InventoryService inventoryService() {
+            return mock(InventoryService.class, EMPTY_PUBLISHERS);
+        }
+
+        @Bean
+        ItemService itemService() {
+            return mock(ItemService.class, EMPTY_PUBLISHERS);
+        }
+
+        @Bean
+        OrderService orderService() {
+            return mock(OrderService.class, EMPTY_PUBLISHERS);
+        }
+
+        @Bean
+        SupplierService supplierService() {
+            return mock(SupplierService.class, EMPTY_PUBLISHERS);
+        }
+
+        @Bean
+        UserRepository userRepository() {
+            UserRepository userRepository = mock(UserRepository.class, EMPTY_PUBLISHERS);
+            when(userRepository.findByEmail(any())).thenReturn(Mono.just(USER));
+            when(userRepository.findById(any(String.class))).thenReturn(Mono.just(USER));
+            when(userRepository.findAll()).thenReturn(Flux.just(USER));
+            when(userRepository.save(any(User.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+            when(userRepository.updatePassword(any(), any(), any())).thenReturn(Mono.just(1L));
+            return userRepository;
+        }
+
+        @Bean
+        RefreshTokenRepository refreshTokenRepository() {
+            RefreshTokenRepository refreshTokenRepository = mock(RefreshTokenRepository.class, EMPTY_PUBLISHERS);
+            when(refreshTokenRepository.findByTokenHash(any())).thenReturn(Mono.just(new RefreshToken("1", "hash", "1", "family",
+                    false, new Date(), new Date(System.currentTimeMillis() + 3600000))));
+            when(refreshTokenRepository.markUsed(any())).thenReturn(Mono.just(1L));
+            when(refreshTokenRepository.save(any(RefreshToken.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+            return refreshTokenRepository;
+        }
+
+        @Bean
+        ReportJobRepository reportJobRepository() {
+            return mock(ReportJobRepository.class, EMPTY_PUBLISHERS);
+        }
+
+        @Bean
+        JavaMailSender javaMailSender() {
+            return mock(JavaMailSender.class);
+        }
+
+        @Bean
+        TraceCollector traceCollector() {
+            return mock(TraceCollector.class);
+        }
+
+        @Bean(name = SchedulerConfig.REPORT_SCHEDULER, destroyMethod = "dispose")
+        @Qualifier(SchedulerConfig.REPORT_SCHEDULER)
+        Scheduler reportScheduler() {
+            return Schedulers.newBoundedElastic(2, 100, "report-test");
+        }
+
+        @Bean(name = SchedulerConfig.HASH_SCHEDULER, destroyMethod = "dispose")
+        @Qualifier(SchedulerConfig.HASH_SCHEDULER)
+        Scheduler hashScheduler() {
+            return Schedulers.newBoundedElastic(2, 100, "hashing-test");
+        }
+    }
+
+    @DynamicPropertySource
+    static void reportsDir(DynamicPropertyRegistry registry) {
+        registry.add("reports.base-dir", () -> REPORTS_DIR + "/");
+    }
+
+    @BeforeAll
+    static void installDetector() {
+        BlockingCallDetector.install(true);
+    }
+
+    @AfterAll
+    static void relaxDetector() {
+        // BlockHound stays installed for the rest of the JVM, later test classes only log blocking calls
+        BlockingCallDetector.install(false);
+    }
+
+    @BeforeEach
+    void startServer() {
+        server = HttpServer.create()
+                .host("localhost")
+                .port(0)
+                .handle(new ReactorHttpHandlerAdapter(WebHttpHandlerBuilder.applicationContext(context).build()))
+                .bindNow();
+        webTestClient = WebTestClient.bindToServer(new ReactorClientHttpConnector())
+                .baseUrl("http://localhost:" + server.port())
+                .responseTimeout(Duration.ofSeconds(30))
+                .build();
+        BlockingCallDetector.drain();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.disposeNow();
+    }
+
+    @DisplayName("Call every alert endpoint, expect no blocking calls on the event loop")
+    @Test
+    void givenAlertController_whenCalled_thenNoBlockingCalls() {
+        when(alertService.getAlerts(any())).thenReturn(Flux.just(ALERT));
+        when(alertService.streamAlerts()).thenReturn(Flux.just(ALERT));
+
+        assertOk(HttpMethod.GET, "/alerts", Role.ROLE_HEAD_CHEF, null);
+        assertOk(HttpMethod.GET, "/alerts/publisher/stats", Role.ROLE_HEAD_CHEF, null);
+        webTestClient.get()
+                .uri("/alerts/stream")
+                .header(HttpHeaders.AUTHORIZATION, bearer(Role.ROLE_HEAD_CHEF))
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(String.class).getResponseBody()
+                .blockFirst(Duration.ofSeconds(10));
+        assertNoBlockingCalls();
+    }
+
+    @DisplayName("Call every inventory endpoint, expect no blocking calls on the event loop")
+    @Test
+    void givenInventoryController_whenCalled_thenNoBlockingCalls() {
+        when(inventoryService.getAllInventory(any(), any(), any(), any(), any())).thenReturn(Flux.just(ITEM));
+        when(inventoryService.streamInventory(any(), any(), any(), any(), any()))
+                .thenReturn(Flux.just(new InventoryFeedEvent(InventoryFeedEventType.SNAPSHOT_END, null, null)));
+
+        List<InventoryItem> items = List.of(ITEM);
+        assertOk(HttpMethod.POST, "/inventory/insert", Role.ROLE_DELIVERY_DRIVER, items);
+        assertOk(HttpMethod.POST, "/inventory/remove", Role.ROLE_CHEF, items);
+        assertOk(HttpMethod.GET, "/inventory?itemName=ban", Role.ROLE_CHEF, null);
+        assertOk(HttpMethod.GET, "/inventory?search=bananas", Role.ROLE_CHEF, null);
+        assertOk(HttpMethod.GET, "/inventory/1", Role.ROLE_CHEF, null);
+        assertOk(HttpMethod.PUT, "/inventory/1", Role.ROLE_HEAD_CHEF, ITEM);
+        assertOk(HttpMethod.GET, "/inventory/change-history", Role.ROLE_HEAD_CHEF, null);
+        assertOk(HttpMethod.GET, "/inventory/change-history/1", Role.ROLE_HEAD_CHEF, null);
+        assertOk(HttpMethod.GET, "/inventory/expired-items", Role.ROLE_HEAD_CHEF, null);
+        assertOk(HttpMethod.DELETE, "/inventory/expired-items", Role.ROLE_HEAD_CHEF, null);
+        assertOk(HttpMethod.GET, "/inventory/expiry", Role.ROLE_CHEF, null);
+        assertOk(HttpMethod.GET, "/inventory/supplier-stock", Role.ROLE_HEAD_CHEF, null);
+        assertOk(HttpMethod.POST, "/inventory/supplier-stock/rebuild", Role.ROLE_HEAD_CHEF, null);
+        assertOk(HttpMethod.GET, "/inventory/supplier-stock/check", Role.ROLE_HEAD_CHEF, null);
+        assertOk(HttpMethod.GET, "/inventory/stats", Role.ROLE_HEAD_CHEF, null);
+        assertOk(HttpMethod.POST, "/inventory/stats/rebuild", Role.ROLE_HEAD_CHEF, null);
+        webTestClient.get()
+                .uri("/inventory/feed")
+                .header(HttpHeaders.AUTHORIZATION, bearer(Role.ROLE_CHEF))
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(String.class).getResponseBody()
+                .blockFirst(Duration.ofSeconds(10));
+        assertNoBlockingCalls();
+    }
+
+    @DisplayName("Call every item endpoint, expect no blocking calls on the event loop")
+    @Test
+    void givenItemController_whenCalled_thenNoBlockingCalls() {
+        assertOk(HttpMethod.GET, "/items?name=ban", Role.ROLE_CHEF, null);
+        assertOk(HttpMethod.POST, "/items/reload", Role.ROLE_HEAD_CHEF, null);
+        assertNoBlockingCalls();
+    }
+
+    @DisplayName("Call the metrics endpoint, expect no blocking calls on the event loop")
+    @Test
+    void givenMetricsController_whenCalled_thenNoBlockingCalls() {
+        // no Prometheus registry in the test slice, so 404
+        exchange(HttpMethod.GET, "/metrics", Role.ROLE_HEAD_CHEF, null).expectStatus().isNotFound();
+        assertNoBlockingCalls();
+    }
+
+    @DisplayName("Call every order endpoint, expect no blocking calls on the event loop")
+    @Test
+    void givenOrderController_whenCalled_thenNoBlockingCalls() {
+        when(orderService.getAllOrders(any())).thenReturn(Flux.just(ORDER));
+        when(orderService.getOrderById("1")).thenReturn(Mono.just(ORDER));
+
+        Map<String, List<String>> batch = Map.of("orderIds", List.of("1", "2"));
+        assertOk(HttpMethod.POST, "/orders", Role.ROLE_HEAD_CHEF, ORDER);
+        assertOk(HttpMethod.GET, "/orders", Role.ROLE_HEAD_CHEF, null);
+        assertOk(HttpMethod.GET, "/orders/1", Role.ROLE_HEAD_CHEF, null);
+        assertOk(HttpMethod.GET, "/orders/approved", Role.ROLE_DELIVERY_DRIVER, null);
+        assertOk(HttpMethod.GET, "/orders/my-orders", Role.ROLE_DELIVERY_DRIVER, null);
+        assertOk(HttpMethod.GET, "/orders/ready", Role.ROLE_HEAD_CHEF, null);
+        assertOk(HttpMethod.PUT, "/orders/1/approve", Role.ROLE_HEAD_CHEF, null);
+        assertOk(HttpMethod.DELETE, "/orders/1/reject", Role.ROLE_HEAD_CHEF, null);
+        assertOk(HttpMethod.PUT, "/orders/1/in-transit", Role.ROLE_DELIVERY_DRIVER, null);
+        assertOk(HttpMethod.PUT, "/orders/1/deliver", Role.ROLE_DELIVERY_DRIVER, null);
+        assertOk(HttpMethod.PUT, "/orders/approve", Role.ROLE_HEAD_CHEF, batch);
+        assertOk(HttpMethod.PUT, "/orders/in-transit", Role.ROLE_DELIVERY_DRIVER, batch);
+        assertOk(HttpMethod.PUT, "/orders/deliver", Role.ROLE_DELIVERY_DRIVER, batch);
+        assertNoBlockingCalls();
+    }
+
+    @DisplayName("Call every report endpoint, expect report files read and written off the event loop")
+    @Test
+    void givenReportController_whenCalled_thenNoBlockingCalls() throws IOException {
+        Files.write(REPORTS_DIR.resolve("ffsmart_report_2023_01_01.pdf"), new byte[]{'%', 'P', 'D', 'F'});
+        when(reportJobRepository.save(any())).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        assertOk(HttpMethod.GET, "/reports", Role.ROLE_HEAD_CHEF, null);
+        assertOk(HttpMethod.POST, "/reports", Role.ROLE_HEAD_CHEF, null);
+        exchange(HttpMethod.GET, "/reports/jobs/1", Role.ROLE_HEAD_CHEF, null).expectStatus().isNotFound();
+        assertOk(HttpMethod.GET, "/reports/ffsmart_report_2023_01_01.pdf", Role.ROLE_HEAD_CHEF, null);
+        assertNoBlockingCalls();
+    }
+
+    @DisplayName("Call every supplier endpoint, expect no blocking calls on the event loop")
+    @Test
+    void givenSupplierController_whenCalled_thenNoBlockingCalls() {
+        assertOk(HttpMethod.GET, "/suppliers", Role.ROLE_HEAD_CHEF, null);
+        assertOk(HttpMethod.GET, "/suppliers/123", Role.ROLE_HEAD_CHEF, null);
+        assertOk(HttpMethod.GET, "/suppliers/cache/stats", Role.ROLE_HEAD_CHEF, null);
+        assertOk(HttpMethod.PUT, "/suppliers/123/forecast", Role.ROLE_HEAD_CHEF, Map.of("model", "EWMA"));
+        assertNoBlockingCalls();
+    }
+
+    @DisplayName("Call every trace endpoint, expect no blocking calls on the event loop")
+    @Test
+    void givenTraceController_whenCalled_thenNoBlockingCalls() {
+        assertOk(HttpMethod.GET, "/traces", Role.ROLE_HEAD_CHEF, null);
+        exchange(HttpMethod.GET, "/traces/abc", Role.ROLE_HEAD_CHEF, null).expectStatus().isNotFound();
+        assertNoBlockingCalls();
+    }
+
+    @DisplayName("Call every user endpoint, expect no blocking calls on the event loop")
+    @Test
+    void givenUserController_whenCalled_thenNoBlockingCalls() {
+        Map<String, Object> user = Map.of("email", "chef@ffsmart.com", "password", "password", "firstName", "A", "lastName", "Chef", "role", 1);
+        assertOk(HttpMethod.POST, "/users/login", null, Map.of("email", "chef@ffsmart.com", "password", "password"));
+        assertOk(HttpMethod.POST, "/users", null, user);
+        assertOk(HttpMethod.POST, "/users/refresh", null, Map.of("refreshToken", "token"));
+        assertOk(HttpMethod.POST, "/users/logout", null, Map.of("refreshToken", "token"));
+        assertOk(HttpMethod.DELETE, "/users/1/sessions", Role.ROLE_HEAD_CHEF, null);
+        assertOk(HttpMethod.DELETE, "/users/me/sessions", Role.ROLE_CHEF, null);
+        assertOk(HttpMethod.GET, "/users", Role.ROLE_HEAD_CHEF, null);
+        assertOk(HttpMethod.GET, "/users/1", Role.ROLE_HEAD_CHEF, null);
+        assertOk(HttpMethod.GET, "/users/1/name", Role.ROLE_CHEF, null);
+        assertOk(HttpMethod.PUT, "/users/1", Role.ROLE_HEAD_CHEF, user);
+        assertOk(HttpMethod.DELETE, "/users/1", Role.ROLE_HEAD_CHEF, null);
+        assertOk(HttpMethod.GET, "/users/me", Role.ROLE_CHEF, null);
+        assertOk(HttpMethod.PUT, "/users/me", Role.ROLE_CHEF, user);
+        assertOk(HttpMethod.DELETE, "/users/me", Role.ROLE_CHEF, null);
+        assertNoBlockingCalls();
+        verify(userRepository, atLeastOnce()).updatePassword(any(), any(), any());
+    }
+
+    private void assertOk(HttpMethod method, String uri, Role role, Object body) {
+        exchange(method, uri, role, body).expectStatus().value(status ->
+                assertTrue(HttpStatusCode.valueOf(status).is2xxSuccessful(), method + " " + uri + " returned " + status + blockingCalls()));
+    }
+
+    private WebTestClient.ResponseSpec exchange(HttpMethod method, String uri, Role role, Object body) {
+        WebTestClient.RequestBodySpec request = webTestClient.method(method).uri(uri);
+        if (role != null) {
+            request.header(HttpHeaders.AUTHORIZATION, bearer(role));
+        }
+        return body != null ? request.bodyValue(body).exchange() : request.exchange();
+    }
+
+    private String bearer(Role role) {
+        return "Bearer " + jwtUtil.generateToken(new User(role.name().toLowerCase(), null, null, null, null, role, null));
+    }
+
+    private void assertNoBlockingCalls() {
+        String calls = blockingCalls();
+        if (!calls.isEmpty()) {
+            fail("Blocking calls on non-blocking threads:" + calls);
+        }
+    }
+
+    private static String blockingCalls() {
+        return BlockingCallDetector.drain().stream()
+                .map(EventLoopBlockingTests::stackTrace)
+                .collect(Collectors.joining());
+    }
+
+    private static String stackTrace(BlockingOperationError error) {
+        StringWriter writer = new StringWriter();
+        error.printStackTrace(new PrintWriter(writer));
+        return "\n" + writer;
+    }
+
+    private static Path createReportsDir() {
+        try {
+            return Files.createTempDirectory("ffsmart-reports");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.aad.ffsmart.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ResponseHandlerTests {
+    private static final ObjectMapper OBJECT_MAPPER = Jackson2ObjectMapperBuilder.json().build();
+
+    private static Mono<String> bodyAsString(ResponseEntity<Flux<DataBuffer>> response) {
+        return DataBufferUtils.join(response.getBody()).map(buffer -> {
+            String body = buffer.toString(StandardCharsets.UTF_8);
+            DataBufferUtils.release(buffer);
+            return body;
+        });
+    }
+
+    @DisplayName("Streaming response with JSON accept header, expect message and data envelope")
+    @Test
+    void givenJsonAccept_whenGenerateStreamingResponse_thenEnvelopeReturned() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/").accept(MediaType.APPLICATION_JSON));
+
+        StepVerifier
+                .create(ResponseHandler.generateStreamingResponse(ResponseMessage.SUCCESS, HttpStatus.OK,
+                                Flux.just(Map.of("id", "1"), Map.of("id", "2")), exchange, OBJECT_MAPPER)
+                        .flatMap(response -> {
+                            assertEquals(HttpStatus.OK, response.getStatusCode());
+                            assertEquals(MediaType.APPLICATION_JSON, response.getHeaders().getContentType());
+                            return bodyAsString(response);
+                        }))
+                .assertNext(body -> assertEquals("{\"message\":\"Success\",\"data\":[{\"id\":\"1\"},{\"id\":\"2\"}]}", body))
+                .verifyComplete();
+    }
+
+    @DisplayName("Streaming response with no data, expect empty data array")
+    @Test
+    void givenNoData_whenGenerateStreamingResponse_thenEmptyArrayReturned() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/"));
+
+        StepVerifier
+                .create(ResponseHandler.generateStreamingResponse(ResponseMessage.SUCCESS, HttpStatus.OK, Flux.empty(), exchange, OBJECT_MAPPER)
+                        .flatMap(ResponseHandlerTests::bodyAsString))
+                .assertNext(body -> assertEquals("{\"message\":\"Success\",\"data\":[]}", body))
+                .verifyComplete();
+    }
+
+    @DisplayName("Streaming response with NDJSON accept header, expect newline delimited elements")
+    @Test
+    void givenNdjsonAccept_whenGenerateStreamingResponse_thenNdjsonReturned() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/").accept(MediaType.APPLICATION_NDJSON));
+
+        StepVerifier
+                .create(ResponseHandler.generateStreamingResponse(ResponseMessage.SUCCESS, HttpStatus.OK,
+                                Flux.just(Map.of("id", "1"), Map.of("id", "2")), exchange, OBJECT_MAPPER)
+                        .flatMap(response -> {
+                            assertEquals(MediaType.APPLICATION_NDJSON, response.getHeaders().getContentType());
+                            return bodyAsString(response);
+                        }))
+                .assertNext(body -> assertEquals("{\"id\":\"1\"}\n{\"id\":\"2\"}\n", body))
+                .verifyComplete();
+    }
+
+    @DisplayName("Streaming response where data fails before first element, expect error and no partial envelope")
+    @Test
+    void givenDataError_whenGenerateStreamingResponse_thenErrorPropagated() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/"));
+
+        StepVerifier
+                .create(ResponseHandler.generateStreamingResponse(ResponseMessage.SUCCESS, HttpStatus.OK,
+                                Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor")), exchange, OBJECT_MAPPER)
+                        .flatMapMany(ResponseEntity::getBody))
+                .expectError(ResponseStatusException.class)
+                .verify();
+    }
+}